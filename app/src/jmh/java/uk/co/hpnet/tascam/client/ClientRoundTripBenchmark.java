@@ -0,0 +1,64 @@
+package uk.co.hpnet.tascam.client;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end client operations against an in-process {@link FakeTascamServer} over loopback.
+ * <p>
+ * Measures the client's share of a round trip - encoding, framing, CID matching and
+ * parsing - plus the fake server's, with no network latency. Recalls alternate between
+ * two presets so every one waits for its confirming NOTIFY; verification is disabled so
+ * the post-recall settle wait is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientRoundTripBenchmark {
+
+    private FakeTascamServer server;
+    private TascamTcpClient client;
+    private int nextPreset = 2;
+
+    @Setup
+    public void setUp() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = new HashMap<>();
+        for (int slot = 1; slot <= AbstractTascamClient.MAX_PRESET_NUMBER; slot++) {
+            if (slot % 4 != 0) {
+                String name = slot % 2 == 0 ? "Chœur d’église " + slot : "Preset " + slot;
+                presets.put(slot, new FakeTascamServer.TestPreset(name, slot % 3 == 0));
+            }
+        }
+        server = new FakeTascamServer(presets, 1);
+        client = new TascamTcpClient(0);
+        client.connect("localhost", server.getPort(), "");
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public List<Preset> listPresets() throws IOException {
+        return client.listPresets();
+    }
+
+    @Benchmark
+    public Optional<Preset> recallPreset() throws IOException {
+        Optional<Preset> loaded = client.recallPreset(nextPreset);
+        nextPreset = nextPreset == 1 ? 2 : 1;
+        return loaded;
+    }
+}
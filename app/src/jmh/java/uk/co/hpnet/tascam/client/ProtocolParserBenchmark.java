@@ -0,0 +1,83 @@
+package uk.co.hpnet.tascam.client;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and command building on responses shaped like a real mixer's.
+ * <p>
+ * The batch response answers the first command of a listing: the current preset
+ * followed by as many slots as fit in one packed GET. Every fourth slot is empty and
+ * answers {@code ERR5}; names are either plain ASCII or long multi-byte UTF-8.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolParserBenchmark {
+
+    private static final String[] ASCII_NAMES = {"Default Mix", "Quiet Mode", "Backup Config", "Band Rehearsal"};
+    private static final String[] UTF8_NAMES = {
+        "Chœur d’église – répétition générale",
+        "日本語のプリセット名・ステージ",
+        "Música en vivo ♫ sala principal",
+        "Зал заседаний — вечерний режим",
+    };
+
+    @Param({"ASCII", "UTF8"})
+    public String names;
+
+    private final ProtocolParser parser = new ProtocolParser();
+    private String batchResponse;
+    private String currentResponse;
+    private int batchSize;
+
+    @Setup
+    public void setUp() {
+        String[] pool = "UTF8".equals(names) ? UTF8_NAMES : ASCII_NAMES;
+
+        List<String> keys = new ArrayList<>(parser.currentPresetKeys());
+        keys.addAll(parser.presetSlotKeys(1, AbstractTascamClient.MAX_PRESET_NUMBER));
+        String firstCommand = new CommandPacker().packGet(keys, () -> "1001").get(0);
+        // Slots appear in threes (NAME, LOCK, CLEARED) after the two current preset keys
+        batchSize = (firstCommand.split(" ").length - 4) / 3;
+
+        StringBuilder response = new StringBuilder("OK GET PRESET/CUR:1 PRESET/NAME:\"").append(pool[0]).append('"');
+        for (int slot = 1; slot <= batchSize; slot++) {
+            String prefix = " PRESET/" + slot + "/";
+            if (slot % 4 == 0) {
+                response.append(prefix).append("NAME:ERR5")
+                    .append(prefix).append("LOCK:ERR5")
+                    .append(prefix).append("CLEARED:TRUE");
+            } else {
+                response.append(prefix).append("NAME:\"").append(pool[slot % pool.length]).append('"')
+                    .append(prefix).append("LOCK:").append(slot % 3 == 0 ? "ON" : "OFF")
+                    .append(prefix).append("CLEARED:FALSE");
+            }
+        }
+        batchResponse = response.append(" CID:1001 ").toString();
+        currentResponse = "OK GET PRESET/CUR:3 PRESET/NAME:\"" + pool[3] + "\" CID:1002 ";
+    }
+
+    @Benchmark
+    public List<Preset> parsePresetBatch() {
+        return parser.parsePresetBatch(batchResponse);
+    }
+
+    @Benchmark
+    public Optional<Preset> parseCurrentPreset() {
+        return parser.parseCurrentPreset(currentResponse);
+    }
+
+    @Benchmark
+    public String buildPresetBatchCommand() {
+        return parser.buildPresetBatchCommand(1, batchSize, "1001");
+    }
+}
@@ -0,0 +1,73 @@
+package uk.co.hpnet.tascam.journal;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The cost a journal adds to each line a client sends or receives.
+ * <p>
+ * Lines are a short command and a response the length of a packed preset listing. Small
+ * segments make rotation part of what is measured, as it would be over a long run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficJournalBenchmark {
+
+    private Path directory;
+    private TrafficJournal journal;
+    private int host;
+    private byte[] command;
+    private byte[] response;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-bench");
+        journal = new TrafficJournal(directory, 4 * 1024 * 1024, 16L * 1024 * 1024);
+        host = journal.host("192.168.1.100", 54726);
+        command = "GET PRESET/CUR PRESET/NAME CID:1001".getBytes(StandardCharsets.UTF_8);
+        StringBuilder listing = new StringBuilder("OK GET PRESET/CUR:1 PRESET/NAME:\"Default Mix\"");
+        for (int slot = 1; slot <= 16; slot++) {
+            listing.append(" PRESET/").append(slot).append("/NAME:\"Preset ").append(slot).append('"')
+                .append(" PRESET/").append(slot).append("/LOCK:OFF")
+                .append(" PRESET/").append(slot).append("/CLEARED:FALSE");
+        }
+        response = listing.append(" CID:1001 ").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void appendCommand() {
+        journal.append(host, TrafficJournal.Direction.SENT, command, 0, command.length);
+    }
+
+    @Benchmark
+    public void appendResponse() {
+        journal.append(host, TrafficJournal.Direction.RECEIVED, response, 0, response.length);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void appendContended() {
+        journal.append(host, TrafficJournal.Direction.RECEIVED, command, 0, command.length);
+    }
+}
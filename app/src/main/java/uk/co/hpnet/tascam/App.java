@@ -3,20 +3,51 @@ package uk.co.hpnet.tascam;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.impl.Log4jContextFactory;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
+import uk.co.hpnet.tascam.catalog.CatalogRecall;
+import uk.co.hpnet.tascam.catalog.PresetCatalog;
+import uk.co.hpnet.tascam.client.BusyBackoff;
 import uk.co.hpnet.tascam.client.TascamClient;
 import uk.co.hpnet.tascam.client.TascamTcpClient;
 import uk.co.hpnet.tascam.config.Config;
+import uk.co.hpnet.tascam.daemon.DaemonClient;
+import uk.co.hpnet.tascam.daemon.DaemonServer;
+import uk.co.hpnet.tascam.fleet.FleetRecall;
+import uk.co.hpnet.tascam.http.HttpApiServer;
+import uk.co.hpnet.tascam.journal.TrafficJournal;
+import uk.co.hpnet.tascam.metrics.ClientMetrics;
 import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+import uk.co.hpnet.tascam.schedule.PresetScheduler;
+import uk.co.hpnet.tascam.schedule.ScheduleRule;
+import uk.co.hpnet.tascam.shell.ShellSession;
+import uk.co.hpnet.tascam.snapshot.SnapshotDiff;
+import uk.co.hpnet.tascam.snapshot.SnapshotFile;
+import uk.co.hpnet.tascam.snapshot.SnapshotKeys;
+import uk.co.hpnet.tascam.watch.NotifyJsonWriter;
+import uk.co.hpnet.tascam.watch.NotifyWatcher;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.Console;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
 import java.util.concurrent.Callable;
 
 /**
@@ -26,11 +57,15 @@ import java.util.concurrent.Callable;
          mixinStandardHelpOptions = true,
          version = "1.0",
          description = "List and recall presets on Tascam MX-DCP series mixers",
-         subcommands = {App.ListCommand.class, App.RecallCommand.class})
+         subcommands = {App.ListCommand.class, App.RecallCommand.class, App.FleetCommand.class,
+                        App.ScheduleCommand.class, App.DaemonCommand.class, App.HttpCommand.class,
+                        App.ShellCommand.class, App.WatchCommand.class, App.SnapshotCommand.class,
+                        App.DiffCommand.class, App.JournalCommand.class})
 public class App implements Callable<Integer> {
 
     private static final int DEFAULT_PORT = 54726;
     private static final int DEFAULT_TIMEOUT_SECONDS = 10;
+    private static final long DEFAULT_CACHE_TTL_SECONDS = 86400;
 
     @Option(names = {"-d", "--debug"}, description = "Enable debug output (raw protocol messages)")
     private boolean debug;
@@ -44,11 +79,31 @@ public class App implements Callable<Integer> {
     @Option(names = {"-t", "--timeout"}, description = "Read timeout in seconds (default: 10)")
     private Integer timeoutSeconds;
 
+    @Option(names = {"--socket"}, description = "Daemon socket path (default: ~/.tascam-preset.sock)")
+    private Path socket;
+
+    @Option(names = {"--busy-wait"}, paramLabel = "SECONDS",
+            description = "Keep retrying for this long while another user is connected to the mixer (default: 0)")
+    private double busyWaitSeconds;
+
+    @Option(names = {"--journal"}, paramLabel = "DIR",
+            description = "Record all mixer traffic in memory-mapped segment files in this directory "
+                + "(or set journal in ~/.tascam-preset.conf); read back with the journal command")
+    private Path journalDirectory;
+
+    private TrafficJournal journal;
+    private boolean journalOpened;
+
     /**
      * Resolved connection settings.
      */
     record ConnectionSettings(String host, int port, String password, int timeoutMs) {}
 
+    /**
+     * Resolved mixer address, for requests that need no password.
+     */
+    record Endpoint(String host, int port) {}
+
     /**
      * Resolves connection settings from CLI args and config file.
      * 
@@ -61,9 +116,18 @@ public class App implements Callable<Integer> {
             .or(config::host)
             .orElseThrow(() -> new IllegalStateException("--host is required (or set host in ~/.tascam-preset.conf)"));
         
-        int effectivePort = Optional.ofNullable(port)
-            .or(config::port)
-            .orElse(DEFAULT_PORT);
+        return resolveConnectionSettings(config, effectiveHost);
+    }
+
+    /**
+     * Resolves connection settings for a host given elsewhere (e.g. one of several mixers).
+     */
+    ConnectionSettings resolveConnectionSettings(String explicitHost) {
+        return resolveConnectionSettings(Config.load(), explicitHost);
+    }
+
+    private ConnectionSettings resolveConnectionSettings(Config config, String effectiveHost) {
+        int effectivePort = resolvePort(config);
         
         String effectivePassword = config.password().orElseGet(App::promptForPassword);
         
@@ -73,6 +137,132 @@ public class App implements Callable<Integer> {
         return new ConnectionSettings(effectiveHost, effectivePort, effectivePassword, effectiveTimeoutMs);
     }
 
+    /**
+     * Resolves the mixer address from CLI args and config file, without prompting for a password.
+     *
+     * @throws IllegalStateException if host is not set anywhere
+     */
+    Endpoint resolveEndpoint() {
+        Config config = Config.load();
+        String effectiveHost = Optional.ofNullable(host)
+            .or(config::host)
+            .orElseThrow(() -> new IllegalStateException("--host is required (or set host in ~/.tascam-preset.conf)"));
+        return new Endpoint(effectiveHost, resolvePort(config));
+    }
+
+    private int resolvePort(Config config) {
+        return Optional.ofNullable(port)
+            .or(config::port)
+            .orElse(DEFAULT_PORT);
+    }
+
+    Path socketPath() {
+        return Optional.ofNullable(socket)
+            .orElseGet(() -> Path.of(System.getProperty("user.home"), ".tascam-preset.sock"));
+    }
+
+    /**
+     * Returns how to wait for a mixer that another user is connected to.
+     */
+    BusyBackoff busyBackoff() {
+        return busyWaitSeconds > 0 ? new BusyBackoff((long) (busyWaitSeconds * 1000)) : BusyBackoff.NONE;
+    }
+
+    /**
+     * Returns the preset catalog cache, with its TTL taken from the argument, the config file or the default.
+     */
+    PresetCatalog presetCatalog(Long ttlSeconds) {
+        long effectiveTtl = Optional.ofNullable(ttlSeconds)
+            .or(() -> Config.load().cacheTtlSeconds())
+            .orElse(DEFAULT_CACHE_TTL_SECONDS);
+        return new PresetCatalog(PresetCatalog.defaultDirectory(), Duration.ofSeconds(effectiveTtl));
+    }
+
+    /**
+     * Returns the journal directory from the argument or the config file, if either sets one.
+     */
+    Optional<Path> journalDirectory() {
+        return Optional.ofNullable(journalDirectory).or(() -> Config.load().journalDirectory());
+    }
+
+    /**
+     * Creates an unconnected client, recording its traffic if a journal is configured.
+     */
+    TascamTcpClient newClient(long recallWaitMs, int timeoutMs) {
+        TascamTcpClient client = new TascamTcpClient(recallWaitMs, timeoutMs);
+        journal().ifPresent(client::setJournal);
+        return client;
+    }
+
+    /**
+     * Creates an unconnected client that verifies recalls as the command's settle options say.
+     */
+    TascamTcpClient newClient(SettleOptions settle, int timeoutMs) {
+        return settle.configure(newClient(settle.waitMs(), timeoutMs));
+    }
+
+    /**
+     * Opens the journal on first use, shared by every client this run creates.
+     */
+    private synchronized Optional<TrafficJournal> journal() {
+        if (!journalOpened) {
+            journalOpened = true;
+            Optional<Path> directory = journalDirectory();
+            if (directory.isPresent()) {
+                try {
+                    journal = new TrafficJournal(directory.get());
+                } catch (IOException e) {
+                    // Recording is a diagnostic aid: carry on without it
+                    System.err.println("Warning: journal not started: " + e.getMessage());
+                }
+            }
+        }
+        return Optional.ofNullable(journal);
+    }
+
+    private synchronized void closeJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Returns a client for the resident daemon, if one is running.
+     */
+    Optional<DaemonClient> daemonClient() {
+        Path path = socketPath();
+        return DaemonClient.isRunning(path) ? Optional.of(new DaemonClient(path)) : Optional.empty();
+    }
+
+    /**
+     * How long a recall waits for the mixer to settle, shared by every command that recalls.
+     */
+    static class SettleOptions {
+
+        @Option(names = {"-w", "--wait"}, defaultValue = "5",
+                description = "Maximum seconds to wait for the mixer to settle before verification "
+                    + "(0 to skip verification, default: 5)")
+        private double waitSeconds;
+
+        @Option(names = {"--settle-quiet"}, paramLabel = "MS", defaultValue = "300",
+                description = "Milliseconds without a NOTIFY after which the mixer counts as settled (default: 300)")
+        private long settleQuietMs;
+
+        long waitMs() {
+            return (long) (waitSeconds * 1000);
+        }
+
+        /**
+         * Applies the settle window to a new client.
+         *
+         * @return the same client
+         */
+        TascamTcpClient configure(TascamTcpClient client) {
+            client.setSettleQuietWindow(settleQuietMs);
+            return client;
+        }
+    }
+
     @Command(name = "list", description = "List all presets", mixinStandardHelpOptions = true)
     static class ListCommand implements Callable<Integer> {
 
@@ -82,40 +272,52 @@ public class App implements Callable<Integer> {
         @Override
         public Integer call() {
             try {
+                Optional<DaemonClient> daemon = parent.daemonClient();
+                if (daemon.isPresent()) {
+                    Endpoint endpoint = parent.resolveEndpoint();
+                    return printListing(daemon.get().listPresets(endpoint.host(), endpoint.port()));
+                }
+
                 ConnectionSettings conn = parent.resolveConnectionSettings();
                 
-                try (TascamClient client = new TascamTcpClient(0, conn.timeoutMs())) {
-                    client.connect(conn.host(), conn.port(), conn.password());
-                    
-                    List<Preset> presets = client.listPresets();
-                    Optional<Preset> current = client.getCurrentPreset();
-                    
-                    if (presets.isEmpty()) {
-                        System.out.println("No presets found.");
-                        return 0;
-                    }
-                    
-                    int currentNumber = current.map(Preset::number).orElse(-1);
-                    
-                    for (Preset preset : presets) {
-                        String marker = (preset.number() == currentNumber) ? "*" : " ";
-                        String lockIndicator = preset.locked()
-                            .map(locked -> locked ? " [locked]" : "")
-                            .orElse("");
-                        System.out.printf("%s%2d: \"%s\"%s%n", 
-                            marker, 
-                            preset.number(), 
-                            preset.name(),
-                            lockIndicator);
-                    }
-                    
-                    return 0;
+                try (TascamClient client = parent.busyBackoff().connect(
+                        () -> parent.newClient(0, conn.timeoutMs()), conn.host(), conn.port(), conn.password())) {
+                    PresetListing listing = client.listPresetsWithCurrent();
+                    // A full scan is free to keep: refresh the catalog used by recall
+                    new CatalogRecall(parent.presetCatalog(null)).save(conn.host(), conn.port(), listing.presets());
+                    return printListing(listing);
                 }
             } catch (Exception e) {
                 System.err.println("Error: " + e.getMessage());
                 return 1;
             }
         }
+
+        private static int printListing(PresetListing listing) {
+            List<Preset> presets = listing.presets();
+            Optional<Preset> current = listing.current();
+            
+            if (presets.isEmpty()) {
+                System.out.println("No presets found.");
+                return 0;
+            }
+            
+            int currentNumber = current.map(Preset::number).orElse(-1);
+            
+            for (Preset preset : presets) {
+                String marker = (preset.number() == currentNumber) ? "*" : " ";
+                String lockIndicator = preset.locked()
+                    .map(locked -> locked ? " [locked]" : "")
+                    .orElse("");
+                System.out.printf("%s%2d: \"%s\"%s%n", 
+                    marker, 
+                    preset.number(), 
+                    preset.name(),
+                    lockIndicator);
+            }
+            
+            return 0;
+        }
     }
 
     @Command(name = "recall", description = "Recall (load) a preset by name", mixinStandardHelpOptions = true)
@@ -123,41 +325,79 @@ public class App implements Callable<Integer> {
 
         private static final Logger logger = LogManager.getLogger(RecallCommand.class);
 
+        /**
+         * Options that only shape a direct connection: the daemon verifies with its own
+         * {@code --wait} and resolves names from its own session.
+         */
+        private static final List<String> DIRECT_ONLY_OPTIONS =
+            List.of("--wait", "--settle-quiet", "--cache-ttl", "--rescan", "--no-cache");
+
         @CommandLine.ParentCommand
         private App parent;
 
-        @Option(names = {"-w", "--wait"}, defaultValue = "5", 
-                description = "Seconds to wait before verification (0 to skip verification, default: 5)")
-        private double waitSeconds;
+        @CommandLine.Spec
+        private CommandLine.Model.CommandSpec spec;
 
-        @Parameters(index = "0", description = "Preset name to recall")
+        @CommandLine.Mixin
+        private SettleOptions settle;
+
+        @Option(names = {"--cache-ttl"}, paramLabel = "SECONDS",
+                description = "Maximum age of the cached preset catalog (default: cacheTtl from config, or 86400)")
+        private Long cacheTtlSeconds;
+
+        @Option(names = {"--rescan"}, description = "Rescan presets and refresh the catalog before recalling")
+        private boolean rescan;
+
+        @Option(names = {"--no-cache"}, description = "Scan presets without reading or writing the catalog")
+        private boolean noCache;
+
+        @Option(names = {"--unique"}, description = "Fail if more than one preset has the name")
+        private boolean unique;
+
+        @Option(names = {"-n", "--number"}, paramLabel = "SLOT",
+                description = "Recall this preset slot (1-50) directly, without resolving a name")
+        private Integer presetNumber;
+
+        @Parameters(index = "0", arity = "0..1", description = "Preset name to recall")
         private String presetName;
 
         @Override
         public Integer call() {
             try {
+                if ((presetName == null) == (presetNumber == null)) {
+                    System.err.println("Error: Specify either a preset name or --number");
+                    return 1;
+                }
+
+                Optional<DaemonClient> daemon = parent.daemonClient();
+                if (daemon.isPresent()) {
+                    warnIgnoredByDaemon();
+                    Endpoint endpoint = parent.resolveEndpoint();
+                    if (presetNumber != null) {
+                        printRecalled(daemon.get().recallPreset(endpoint.host(), endpoint.port(), presetNumber));
+                    } else {
+                        printRecalled(daemon.get().recallPreset(endpoint.host(), endpoint.port(), presetName, unique));
+                    }
+                    return 0;
+                }
+
                 ConnectionSettings conn = parent.resolveConnectionSettings();
-                long waitMs = (long) (waitSeconds * 1000);
                 
-                try (TascamClient client = new TascamTcpClient(waitMs, conn.timeoutMs())) {
-                    client.connect(conn.host(), conn.port(), conn.password());
-                    
-                    // Find preset by name
-                    List<Preset> presets = client.listPresets();
-                    Optional<Preset> match = presets.stream()
-                        .filter(p -> p.name().equalsIgnoreCase(presetName))
-                        .findFirst();
+                try (TascamTcpClient client = parent.busyBackoff().connect(
+                        () -> parent.newClient(settle, conn.timeoutMs()), conn.host(), conn.port(), conn.password())) {
                     
-                    if (match.isEmpty()) {
-                        logger.debug("Available presets: {}", presets);
-                        System.err.println("Error: No preset found with name \"" + presetName + "\"");
-                        return 1;
+                    if (presetNumber != null) {
+                        printRecalled(client.recallPreset(presetNumber));
+                    } else if (noCache) {
+                        printRecalled(recallBySearch(client));
+                    } else {
+                        CatalogRecall catalogRecall = new CatalogRecall(parent.presetCatalog(cacheTtlSeconds));
+                        if (rescan) {
+                            catalogRecall.rescan(client, conn.host(), conn.port());
+                        }
+                        printRecalled(catalogRecall.recall(client, conn.host(), conn.port(), presetName, unique));
                     }
                     
-                    Preset preset = match.get();
-                    client.recallPreset(preset.number());
-                    System.out.println("Recalled preset " + preset.number() + ": \"" + preset.name() + "\"");
-                    
                     return 0;
                 }
             } catch (Exception e) {
@@ -165,6 +405,508 @@ public class App implements Callable<Integer> {
                 return 1;
             }
         }
+
+        /**
+         * Tells the user which of the options they gave have no effect when the daemon handles the recall.
+         */
+        private void warnIgnoredByDaemon() {
+            List<String> ignored = new ArrayList<>();
+            for (String option : DIRECT_ONLY_OPTIONS) {
+                if (spec.commandLine().getParseResult().hasMatchedOption(option)) {
+                    ignored.add(option);
+                }
+            }
+            if (parent.busyWaitSeconds > 0) {
+                ignored.add("--busy-wait");
+            }
+            if (!ignored.isEmpty()) {
+                System.err.println("Warning: recall is going through the daemon, which ignores "
+                    + String.join(", ", ignored));
+            }
+        }
+
+        /**
+         * Finds the preset with a search that stops at the first match, then recalls it.
+         */
+        private Preset recallBySearch(TascamClient client) throws IOException {
+            Preset preset = client.findPresetByName(presetName, unique).orElseThrow(() -> {
+                logger.debug("No slot is named \"{}\"", presetName);
+                return new IllegalArgumentException("No preset found with name \"" + presetName + "\"");
+            });
+            client.recallPreset(preset.number());
+            return preset;
+        }
+
+        private void printRecalled(Preset preset) {
+            System.out.println("Recalled preset " + preset.number() + ": \"" + preset.name() + "\"");
+        }
+
+        private void printRecalled(Optional<Preset> loaded) {
+            if (loaded.isPresent()) {
+                printRecalled(loaded.get());
+            } else {
+                System.out.println("Recalled preset " + presetNumber);
+            }
+        }
+    }
+
+    @Command(name = "fleet", description = "Recall a preset by name on several mixers at the same instant",
+             mixinStandardHelpOptions = true)
+    static class FleetCommand implements Callable<Integer> {
+
+        @CommandLine.ParentCommand
+        private App parent;
+
+        @Option(names = {"-m", "--mixer"}, required = true, paramLabel = "HOST[:PORT]",
+                description = "Mixer to recall on (repeat for each mixer)")
+        private List<String> mixers;
+
+        @CommandLine.Mixin
+        private SettleOptions settle;
+
+        @Parameters(index = "0", description = "Preset name to recall")
+        private String presetName;
+
+        @Override
+        public Integer call() {
+            try {
+                ConnectionSettings conn = parent.resolveConnectionSettings(mixers.get(0));
+                List<FleetRecall.Target> targets = mixers.stream()
+                    .map(spec -> FleetRecall.Target.parse(spec, conn.port()))
+                    .toList();
+
+                FleetRecall fleet = new FleetRecall(conn.password(),
+                    target -> parent.newClient(settle, conn.timeoutMs()));
+                FleetRecall.Report report = fleet.recall(targets, presetName);
+
+                for (FleetRecall.Outcome outcome : report.outcomes()) {
+                    if (outcome.succeeded()) {
+                        Preset preset = outcome.preset().orElseThrow();
+                        String confirmed = outcome.confirmLatencyNanos().isPresent()
+                            ? String.format("confirmed after %.3f ms", outcome.confirmLatencyNanos().getAsLong() / 1e6)
+                            : "already active";
+                        System.out.printf("%s: recalled preset %d: \"%s\" (issued +%.3f ms, %s)%n",
+                            outcome.target(), preset.number(), preset.name(),
+                            outcome.issueOffsetNanos().orElse(0) / 1e6, confirmed);
+                    } else {
+                        System.err.println(outcome.target() + ": Error: " + outcome.error().orElseThrow());
+                    }
+                }
+                report.issueSkewNanos().ifPresent(skew ->
+                    System.out.printf("Issue skew: %.3f ms%n", skew / 1e6));
+
+                return report.allSucceeded() ? 0 : 1;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+
+    @Command(name = "schedule", description = "Recall presets at cron-like times, connecting ahead of each one",
+             mixinStandardHelpOptions = true)
+    static class ScheduleCommand implements Callable<Integer> {
+
+        @CommandLine.ParentCommand
+        private App parent;
+
+        @Option(names = {"-r", "--rule"}, paramLabel = "\"MIN HOUR DAY MONTH WEEKDAY HOST[:PORT] NAME\"",
+                description = "Recall a preset whenever the cron fields match (repeat for each rule)")
+        private List<String> rules = List.of();
+
+        @Option(names = {"-f", "--rules-file"}, paramLabel = "PATH",
+                description = "Read rules from a file, one per line (# starts a comment)")
+        private Path rulesFile;
+
+        @Option(names = {"--warmup"}, defaultValue = "10",
+                description = "Seconds before each recall to connect and resolve the preset (default: 10)")
+        private double warmupSeconds;
+
+        @CommandLine.Mixin
+        private SettleOptions settle;
+
+        @Override
+        public Integer call() {
+            try {
+                Config config = Config.load();
+                int defaultPort = parent.resolvePort(config);
+                List<String> specs = new ArrayList<>(rules);
+                if (rulesFile != null) {
+                    for (String line : Files.readAllLines(rulesFile)) {
+                        String rule = line.strip();
+                        if (!rule.isEmpty() && !rule.startsWith("#")) {
+                            specs.add(rule);
+                        }
+                    }
+                }
+                if (specs.isEmpty()) {
+                    throw new IllegalArgumentException("At least one --rule or a --rules-file is required");
+                }
+                List<ScheduleRule> parsed = specs.stream()
+                    .map(spec -> ScheduleRule.parse(spec, defaultPort))
+                    .toList();
+
+                String password = config.password().orElseGet(App::promptForPassword);
+                int timeoutMs = Optional.ofNullable(parent.timeoutSeconds).orElse(DEFAULT_TIMEOUT_SECONDS) * 1000;
+                Duration warmup = Duration.ofMillis((long) (warmupSeconds * 1000));
+
+                try (PresetScheduler scheduler = new PresetScheduler(password,
+                        target -> parent.newClient(settle, timeoutMs), warmup, Clock.systemDefaultZone(),
+                        ScheduleCommand::printRun)) {
+                    scheduler.setBusyBackoff(parent.busyBackoff());
+                    scheduler.start(parsed);
+                    Runtime.getRuntime().addShutdownHook(new Thread(scheduler::close));
+                    for (ScheduleRule rule : parsed) {
+                        System.out.println("Scheduled: " + rule);
+                    }
+                    Thread.currentThread().join();
+                    return 0;
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+
+        private static void printRun(PresetScheduler.Run run) {
+            String drift = run.driftNanos().isPresent()
+                ? String.format("drift %+.3f ms", run.driftNanos().getAsLong() / 1e6)
+                : "not issued";
+            if (run.succeeded()) {
+                Preset preset = run.preset().orElseThrow();
+                System.out.printf("%s %s: recalled preset %d: \"%s\" (%s)%n",
+                    run.scheduled().toOffsetDateTime(), run.rule().target(), preset.number(), preset.name(), drift);
+            } else {
+                System.err.printf("%s %s: Error: %s (%s)%n",
+                    run.scheduled().toOffsetDateTime(), run.rule().target(), run.error().orElseThrow(), drift);
+            }
+        }
+    }
+
+    @Command(name = "daemon", description = "Keep logged-in sessions open and serve list and recall over a local socket",
+             mixinStandardHelpOptions = true)
+    static class DaemonCommand implements Callable<Integer> {
+
+        @CommandLine.ParentCommand
+        private App parent;
+
+        @Option(names = {"-m", "--mixer"}, paramLabel = "HOST[:PORT]",
+                description = "Mixer to connect to at startup (repeat for each mixer; others connect on first use)")
+        private List<String> mixers = List.of();
+
+        @Option(names = {"-k", "--keepalive"}, defaultValue = "60",
+                description = "Seconds between keepalives on idle sessions (0 to disable, default: 60)")
+        private long keepaliveSeconds;
+
+        @CommandLine.Mixin
+        private SettleOptions settle;
+
+        @Option(names = {"--metrics-file"}, paramLabel = "PATH",
+                description = "Write phase timings and counters to this file in Prometheus text format")
+        private Path metricsFile;
+
+        @Option(names = {"--metrics-interval"}, defaultValue = "15",
+                description = "Seconds between metrics file updates (default: 15)")
+        private long metricsIntervalSeconds;
+
+        @Override
+        public Integer call() {
+            try {
+                Config config = Config.load();
+                String password = config.password().orElseGet(App::promptForPassword);
+                int defaultPort = parent.resolvePort(config);
+                int timeoutMs = Optional.ofNullable(parent.timeoutSeconds).orElse(DEFAULT_TIMEOUT_SECONDS) * 1000;
+                // One set of metrics across every session and reconnect
+                ClientMetrics metrics = new ClientMetrics();
+
+                try (DaemonServer server = new DaemonServer(parent.socketPath(), password, () -> {
+                        TascamTcpClient client = parent.newClient(settle, timeoutMs);
+                        client.setMetrics(metrics);
+                        return client;
+                    }, keepaliveSeconds)) {
+                    server.setBusyBackoff(parent.busyBackoff());
+                    if (metricsFile != null) {
+                        server.exportMetrics(metrics, metricsFile, metricsIntervalSeconds);
+                    }
+                    server.start();
+                    Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+                    for (String spec : mixers) {
+                        FleetRecall.Target target = FleetRecall.Target.parse(spec, defaultPort);
+                        server.open(target.host(), target.port());
+                        System.out.println("Connected to " + target);
+                    }
+                    System.out.println("Listening on " + server.socketPath());
+                    Thread.currentThread().join();
+                    return 0;
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+
+    @Command(name = "http", description = "Serve list, current and recall over HTTP using resident mixer sessions",
+             mixinStandardHelpOptions = true)
+    static class HttpCommand implements Callable<Integer> {
+
+        @CommandLine.ParentCommand
+        private App parent;
+
+        @Option(names = {"-l", "--listen"}, paramLabel = "[ADDRESS:]PORT", defaultValue = "127.0.0.1:8080",
+                description = "Address and port to listen on (default: 127.0.0.1:8080)")
+        private String listen;
+
+        @Option(names = {"-m", "--mixer"}, paramLabel = "HOST[:PORT]",
+                description = "Mixer to serve, connected at startup (repeat for each mixer; default: --host or "
+                    + "host from config, connected on first use). Requests for any other mixer are answered 404")
+        private List<String> mixers = List.of();
+
+        @Option(names = {"-k", "--keepalive"}, defaultValue = "60",
+                description = "Seconds between keepalives on idle sessions (0 to disable, default: 60)")
+        private long keepaliveSeconds;
+
+        @CommandLine.Mixin
+        private SettleOptions settle;
+
+        @Option(names = {"--max-queued"}, defaultValue = "16",
+                description = "Requests allowed in progress or waiting per mixer before answering 503 (default: 16)")
+        private int maxQueued;
+
+        @Option(names = {"--cache-ttl"}, paramLabel = "SECONDS",
+                description = "Maximum age of the cached preset catalog (default: cacheTtl from config, or 86400)")
+        private Long cacheTtlSeconds;
+
+        @Override
+        public Integer call() {
+            try {
+                Config config = Config.load();
+                // Only named mixers are served: the password must not follow a request to any host
+                Optional<Endpoint> fallback = mixers.isEmpty()
+                    ? Optional.of(parent.resolveEndpoint())
+                    : Optional.empty();
+                String password = config.password().orElseGet(App::promptForPassword);
+                int defaultPort = parent.resolvePort(config);
+                int timeoutMs = Optional.ofNullable(parent.timeoutSeconds).orElse(DEFAULT_TIMEOUT_SECONDS) * 1000;
+                int colon = listen.lastIndexOf(':');
+                InetSocketAddress address = colon < 0
+                    ? new InetSocketAddress(Integer.parseInt(listen))
+                    : new InetSocketAddress(listen.substring(0, colon), Integer.parseInt(listen.substring(colon + 1)));
+
+                try (HttpApiServer server = new HttpApiServer(address, password,
+                        () -> parent.newClient(settle, timeoutMs), keepaliveSeconds, defaultPort,
+                        parent.presetCatalog(cacheTtlSeconds))) {
+                    server.setBusyBackoff(parent.busyBackoff());
+                    server.setMaxQueued(maxQueued);
+                    fallback.ifPresent(endpoint -> server.allow(endpoint.host(), endpoint.port()));
+                    server.start();
+                    Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+                    for (String spec : mixers) {
+                        FleetRecall.Target target = FleetRecall.Target.parse(spec, defaultPort);
+                        server.open(target.host(), target.port());
+                        System.out.println("Connected to " + target);
+                    }
+                    System.out.println("Listening on http://" + server.address().getHostString()
+                        + ":" + server.address().getPort());
+                    Thread.currentThread().join();
+                    return 0;
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+
+    @Command(name = "shell", description = "Run list, current, recall, wait and get commands from stdin or a file "
+             + "over one login", mixinStandardHelpOptions = true)
+    static class ShellCommand implements Callable<Integer> {
+
+        @CommandLine.ParentCommand
+        private App parent;
+
+        @Option(names = {"-f", "--file"}, paramLabel = "PATH",
+                description = "Read commands from a script instead of stdin")
+        private Path script;
+
+        @Option(names = {"-k", "--keep-going"},
+                description = "Carry on after a failed command instead of stopping the script")
+        private boolean keepGoing;
+
+        @Option(names = {"--keepalive"}, defaultValue = "60",
+                description = "Seconds between keepalives while waiting or idle at the prompt "
+                    + "(0 to disable, default: 60)")
+        private long keepaliveSeconds;
+
+        @CommandLine.Mixin
+        private SettleOptions settle;
+
+        @Override
+        public Integer call() {
+            try {
+                ConnectionSettings conn = parent.resolveConnectionSettings();
+                boolean interactive = script == null && System.console() != null;
+
+                try (TascamTcpClient client = parent.busyBackoff().connect(
+                        () -> parent.newClient(settle, conn.timeoutMs()), conn.host(), conn.port(), conn.password());
+                     BufferedReader input = script != null
+                        ? Files.newBufferedReader(script)
+                        : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+                    return new ShellSession(client, System.out, System.err, Duration.ofSeconds(keepaliveSeconds))
+                        .run(input, interactive, keepGoing);
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+
+    @Command(name = "watch", description = "Stream every change the mixer reports (NOTIFY) to stdout as NDJSON",
+             mixinStandardHelpOptions = true)
+    static class WatchCommand implements Callable<Integer> {
+
+        @CommandLine.ParentCommand
+        private App parent;
+
+        @Option(names = {"-k", "--keepalive"}, defaultValue = "60",
+                description = "Seconds between keepalives (0 to disable, default: 60)")
+        private long keepaliveSeconds;
+
+        @Override
+        public Integer call() {
+            try {
+                ConnectionSettings conn = parent.resolveConnectionSettings();
+                try (NotifyJsonWriter writer = new NotifyJsonWriter(System.out, conn.host() + ":" + conn.port());
+                     NotifyWatcher watcher = new NotifyWatcher(conn.host(), conn.port(), conn.password(),
+                         () -> parent.newClient(0, conn.timeoutMs()), parent.busyBackoff(),
+                         Duration.ofSeconds(keepaliveSeconds), writer)) {
+                    // On Ctrl-C, write out whatever is still buffered before the JVM exits
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        watcher.close();
+                        try {
+                            writer.close();
+                        } catch (IOException e) {
+                            // Nowhere left to report it
+                        }
+                    }));
+                    System.err.println("Watching " + conn.host() + ":" + conn.port());
+                    watcher.run();
+                    return 0;
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+
+    @Command(name = "snapshot", description = "Read every parameter in a key set and save it to a snapshot file",
+             mixinStandardHelpOptions = true)
+    static class SnapshotCommand implements Callable<Integer> {
+
+        @CommandLine.ParentCommand
+        private App parent;
+
+        @Option(names = {"-o", "--output"}, paramLabel = "PATH", required = true,
+                description = "Snapshot file to write")
+        private Path output;
+
+        @Option(names = {"-k", "--keys"}, paramLabel = "PATH",
+                description = "Key file, one key per line with {1..N} ranges "
+                    + "(default: device name, current preset and every slot's name, lock and cleared flag)")
+        private Path keyFile;
+
+        @Override
+        public Integer call() {
+            try {
+                List<String> keys = keyFile != null ? SnapshotKeys.load(keyFile) : SnapshotKeys.defaults();
+                ConnectionSettings conn = parent.resolveConnectionSettings();
+
+                try (TascamClient client = parent.busyBackoff().connect(
+                        () -> parent.newClient(0, conn.timeoutMs()), conn.host(), conn.port(), conn.password())) {
+                    long takenAt = System.currentTimeMillis();
+                    // Packed into as few GETs as fit, all pipelined
+                    Map<String, String> values = client.getBulk(keys);
+                    SnapshotFile.write(output, conn.host() + ":" + conn.port(), takenAt, values);
+                    System.out.println("Saved " + values.size() + " of " + keys.size() + " parameters to " + output);
+                    return 0;
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+
+    @Command(name = "diff", description = "Compare two snapshot files (exit 0 if identical, 1 if they differ)",
+             mixinStandardHelpOptions = true)
+    static class DiffCommand implements Callable<Integer> {
+
+        @Parameters(index = "0", paramLabel = "BEFORE", description = "Snapshot to compare against, e.g. a golden one")
+        private Path before;
+
+        @Parameters(index = "1", paramLabel = "AFTER", description = "Snapshot to compare")
+        private Path after;
+
+        @Override
+        public Integer call() {
+            try {
+                SnapshotFile.Cursor first = SnapshotFile.open(before);
+                SnapshotFile.Cursor second = SnapshotFile.open(after);
+                System.out.println("--- " + before + " (" + first.source() + ", " + Instant.ofEpochMilli(first.takenAtMillis()) + ")");
+                System.out.println("+++ " + after + " (" + second.source() + ", " + Instant.ofEpochMilli(second.takenAtMillis()) + ")");
+                int differences = SnapshotDiff.compare(first, second, (key, was, now) -> {
+                    if (was == null) {
+                        System.out.println("+ " + key + "=" + now);
+                    } else if (now == null) {
+                        System.out.println("- " + key + "=" + was);
+                    } else {
+                        System.out.println("~ " + key + ": " + was + " -> " + now);
+                    }
+                });
+                System.out.println(differences == 0 ? "No differences" : differences + " difference(s)");
+                return differences == 0 ? 0 : 1;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 2;
+            }
+        }
+    }
+
+    @Command(name = "journal", description = "Print the lines recorded by --journal, oldest first",
+             mixinStandardHelpOptions = true)
+    static class JournalCommand implements Callable<Integer> {
+
+        @CommandLine.ParentCommand
+        private App parent;
+
+        @Parameters(index = "0", arity = "0..1", paramLabel = "DIR",
+                description = "Journal directory (default: --journal or journal in ~/.tascam-preset.conf)")
+        private Path directory;
+
+        @Option(names = {"--mixer"}, paramLabel = "HOST:PORT", description = "Only lines to and from this mixer")
+        private String mixer;
+
+        @Override
+        public Integer call() {
+            try {
+                Path effective = Optional.ofNullable(directory)
+                    .or(parent::journalDirectory)
+                    .orElseThrow(() -> new IllegalStateException("Give a journal directory (or set --journal)"));
+                TrafficJournal.read(effective, entry -> {
+                    if (mixer == null || mixer.equals(entry.host())) {
+                        System.out.println(entry.instant() + " " + entry.host()
+                            + (entry.direction() == TrafficJournal.Direction.SENT ? " > " : " < ")
+                            + entry.line() + (entry.truncated() ? " [truncated]" : ""));
+                    }
+                });
+                return 0;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
     }
 
     private static String promptForPassword() {
@@ -175,12 +917,27 @@ public class App implements Callable<Integer> {
         } else {
             // Fallback for environments without console (e.g., IDE, tests)
             System.out.print("Password (press Enter if none): ");
-            Scanner scanner = new Scanner(System.in);
-            if (scanner.hasNextLine()) {
-                return scanner.nextLine();
+            return readLineUnbuffered();
+        }
+    }
+
+    /**
+     * Reads one line from stdin without reading ahead, leaving the rest for the command
+     * (a shell script piped in after the password, for one).
+     */
+    private static String readLineUnbuffered() {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try {
+            int b;
+            while ((b = System.in.read()) != -1 && b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
             }
-            return "";
+        } catch (IOException e) {
+            // Treated like end of input: no password
         }
+        return line.toString(StandardCharsets.UTF_8);
     }
 
     @Override
@@ -199,15 +956,29 @@ public class App implements Callable<Integer> {
      * Run the CLI with the given arguments. Used by tests.
      */
     public static int run(String[] args) {
-        App app = new App();
-        CommandLine cmd = new CommandLine(app);
-        
-        // Pre-parse to check for debug flag
+        // Pre-parse to check for debug flag, before anything touches a logger: in a fresh
+        // process log4j2.xml is then read once, with the level already in place
         if (Arrays.asList(args).contains("--debug") || Arrays.asList(args).contains("-d")) {
             System.setProperty("tascam.logLevel", "DEBUG");
-            Configurator.reconfigure();
+            if (loggingStarted()) {
+                Configurator.reconfigure();
+            }
         }
-        
-        return cmd.execute(args);
+
+        App app = new App();
+        CommandLine cmd = new CommandLine(app);
+        try {
+            return cmd.execute(args);
+        } finally {
+            app.closeJournal();
+        }
+    }
+
+    /**
+     * Whether Log4j has already configured itself, as it has when run() is called again in one JVM.
+     */
+    private static boolean loggingStarted() {
+        return LogManager.getFactory() instanceof Log4jContextFactory factory
+            && !factory.getSelector().getLoggerContexts().isEmpty();
     }
 }
@@ -0,0 +1,115 @@
+package uk.co.hpnet.tascam.catalog;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.client.AbstractTascamClient;
+import uk.co.hpnet.tascam.client.TascamProtocolException;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Recalls a preset by name, resolving the name from a {@link PresetCatalog} where possible.
+ * <p>
+ * With a cached slot number the SET goes out straight away; the name the mixer reports
+ * for the loaded preset is then checked against the cached name. If they differ the
+ * catalog was out of date (a preset was renamed, moved or deleted on the desk): the
+ * presets are rescanned, the catalog rewritten and the correct slot recalled. The wrong
+ * slot is briefly loaded in that case, which is the price of skipping the scan.
+ */
+public class CatalogRecall {
+
+    private static final Logger logger = LogManager.getLogger(CatalogRecall.class);
+
+    private final PresetCatalog catalog;
+
+    public CatalogRecall(PresetCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Recalls the named preset on a connected client.
+     *
+     * @param client a logged-in client
+     * @param host mixer host, identifying the catalog
+     * @param port mixer port, identifying the catalog
+     * @param presetName preset name, matched case-insensitively
+     * @param requireUnique if true, fail rather than pick one of several presets with the name
+     * @return the preset recalled
+     * @throws IllegalArgumentException if no preset has that name
+     * @throws IllegalStateException if uniqueness is required and several presets have the name
+     * @throws IOException if communication fails
+     */
+    public Preset recall(AbstractTascamClient client, String host, int port, String presetName,
+                         boolean requireUnique) throws IOException {
+        Optional<Preset> cached = catalog.load(host, port)
+            .flatMap(presets -> findByName(presets, presetName, requireUnique));
+        if (cached.isPresent()) {
+            Preset preset = cached.get();
+            try {
+                Optional<Preset> loaded = client.recallPreset(preset.number());
+                if (loaded.isEmpty() || loaded.get().name().equalsIgnoreCase(preset.name())) {
+                    return preset;
+                }
+                logger.debug("Catalog for {}:{} is out of date: slot {} is now \"{}\"",
+                    host, port, preset.number(), loaded.get().name());
+            } catch (TascamProtocolException e) {
+                // Most likely the cached slot has since been cleared
+                logger.debug("Recall of cached slot {} failed, rescanning: {}", preset.number(), e.getMessage());
+                cached = Optional.empty();
+            }
+            catalog.invalidate(host, port);
+        }
+
+        List<Preset> presets = rescan(client, host, port);
+        Preset preset = findByName(presets, presetName, requireUnique).orElseThrow(() -> {
+            logger.debug("Available presets: {}", presets);
+            return new IllegalArgumentException("No preset found with name \"" + presetName + "\"");
+        });
+        if (cached.isEmpty() || cached.get().number() != preset.number()) {
+            client.recallPreset(preset.number());
+        }
+        return preset;
+    }
+
+    /**
+     * Scans every slot and rewrites the catalog.
+     */
+    public List<Preset> rescan(AbstractTascamClient client, String host, int port) throws IOException {
+        List<Preset> presets = client.listPresets();
+        save(host, port, presets);
+        return presets;
+    }
+
+    /**
+     * Stores a freshly scanned preset list. A cache that cannot be written is not an error.
+     */
+    public void save(String host, int port, List<Preset> presets) {
+        try {
+            catalog.save(host, port, presets);
+        } catch (IOException e) {
+            logger.warn("Could not write preset catalog: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Finds a preset by name in a full listing, lowest slot first.
+     *
+     * @throws IllegalStateException if uniqueness is required and several presets have the name
+     */
+    public static Optional<Preset> findByName(List<Preset> presets, String name, boolean requireUnique) {
+        List<Preset> matches = presets.stream()
+            .filter(p -> p.name().equalsIgnoreCase(name))
+            .sorted(Comparator.comparingInt(Preset::number))
+            .toList();
+        if (requireUnique && matches.size() > 1) {
+            throw new IllegalStateException("Preset name \"" + name + "\" is not unique: slots "
+                + matches.stream().map(p -> String.valueOf(p.number())).collect(Collectors.joining(", ")));
+        }
+        return matches.stream().findFirst();
+    }
+}
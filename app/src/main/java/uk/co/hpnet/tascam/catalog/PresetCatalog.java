@@ -0,0 +1,171 @@
+package uk.co.hpnet.tascam.catalog;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * On-disk cache of each mixer's preset list, so a recall by name need not scan every slot.
+ * <p>
+ * One file per mixer, read and written through a memory mapping. Layout (big-endian):
+ * <pre>
+ * int   magic "TPC1"
+ * long  saved at (epoch milliseconds)
+ * short preset count
+ * per preset:
+ *   byte  number
+ *   byte  lock (0 unknown, 1 off, 2 on)
+ *   short name length, then that many UTF-8 bytes
+ * </pre>
+ * An entry older than the TTL is treated as missing. Files that cannot be parsed are
+ * treated as missing too, and replaced on the next save.
+ */
+public class PresetCatalog {
+
+    private static final Logger logger = LogManager.getLogger(PresetCatalog.class);
+
+    private static final int MAGIC = 0x54504331; // "TPC1"
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Short.BYTES;
+    private static final int ENTRY_FIXED_BYTES = 2 + Short.BYTES;
+
+    private final Path directory;
+    private final Duration ttl;
+    private final Clock clock;
+
+    /**
+     * @param directory where catalog files are kept (created on first save)
+     * @param ttl how long a saved catalog stays usable
+     */
+    public PresetCatalog(Path directory, Duration ttl) {
+        this(directory, ttl, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a catalog with a custom clock (for testing).
+     */
+    PresetCatalog(Path directory, Duration ttl, Clock clock) {
+        this.directory = directory;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns {@code $XDG_CACHE_HOME/tascam-preset}, or {@code ~/.cache/tascam-preset}.
+     */
+    public static Path defaultDirectory() {
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        Path base = xdg != null && !xdg.isBlank()
+            ? Path.of(xdg)
+            : Path.of(System.getProperty("user.home"), ".cache");
+        return base.resolve("tascam-preset");
+    }
+
+    /**
+     * Returns the cached presets for a mixer, if a catalog exists and is within the TTL.
+     */
+    public Optional<List<Preset>> load(String host, int port) {
+        Path file = file(host, port);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                logger.debug("Ignoring catalog {}: bad magic", file);
+                return Optional.empty();
+            }
+            long savedAt = buffer.getLong();
+            if (clock.millis() - savedAt > ttl.toMillis()) {
+                logger.debug("Catalog {} is stale", file);
+                return Optional.empty();
+            }
+            int count = buffer.getShort();
+            List<Preset> presets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int number = buffer.get();
+                byte lock = buffer.get();
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                presets.add(new Preset(number, new String(name, StandardCharsets.UTF_8),
+                    lock == 0 ? Optional.empty() : Optional.of(lock == 2)));
+            }
+            return Optional.of(List.copyOf(presets));
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            logger.debug("Ignoring unreadable catalog {}: {}", file, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the catalog for a mixer.
+     */
+    public void save(String host, int port, List<Preset> presets) throws IOException {
+        List<byte[]> names = new ArrayList<>(presets.size());
+        int size = HEADER_BYTES;
+        for (Preset preset : presets) {
+            byte[] name = preset.name().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            size += ENTRY_FIXED_BYTES + name.length;
+        }
+
+        Files.createDirectories(directory);
+        Path file = file(host, port);
+        // Written aside and moved into place, so a reader never maps a half-written file
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                write(buffer, presets, names);
+                buffer.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Forgets the catalog for a mixer, so the next lookup rescans.
+     */
+    public void invalidate(String host, int port) throws IOException {
+        Files.deleteIfExists(file(host, port));
+    }
+
+    private void write(ByteBuffer buffer, List<Preset> presets, List<byte[]> names) {
+        try {
+            buffer.putInt(MAGIC);
+            buffer.putLong(clock.millis());
+            buffer.putShort((short) presets.size());
+            for (int i = 0; i < presets.size(); i++) {
+                Preset preset = presets.get(i);
+                buffer.put((byte) preset.number());
+                buffer.put((byte) preset.locked().map(locked -> locked ? 2 : 1).orElse(0).intValue());
+                buffer.putShort((short) names.get(i).length);
+                buffer.put(names.get(i));
+            }
+        } catch (BufferOverflowException e) {
+            throw new IllegalStateException("Catalog size miscalculated", e);
+        }
+    }
+
+    Path file(String host, int port) {
+        return directory.resolve(host.replaceAll("[^A-Za-z0-9.-]", "_") + "_" + port + ".catalog");
+    }
+}
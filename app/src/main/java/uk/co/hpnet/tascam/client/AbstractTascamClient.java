@@ -0,0 +1,531 @@
+package uk.co.hpnet.tascam.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.metrics.ClientMetrics;
+import uk.co.hpnet.tascam.metrics.ClientMetrics.Phase;
+import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Protocol logic shared by the TascamClient transports.
+ * <p>
+ * Subclasses own the connection: they perform the login handshake, write command
+ * lines via {@link #writeCommand} and {@link #writeLine} and feed every received line
+ * to {@link #dispatcher}.
+ * Everything above that - packing, pipelining, CID matching, recall and verification -
+ * lives here.
+ */
+public abstract class AbstractTascamClient implements TascamClient {
+
+    private static final Logger logger = LogManager.getLogger(AbstractTascamClient.class);
+
+    protected static final int DEFAULT_TIMEOUT_MS = 10000;
+    protected static final int MAX_PRESET_NUMBER = 50;
+    protected static final AtomicInteger GLOBAL_CID_COUNTER = new AtomicInteger(1000);
+    private static final int DEFAULT_PIPELINE_WINDOW = 8;
+    private static final long DEFAULT_SETTLE_QUIET_MS = 300;
+
+    protected final ProtocolParser parser = new ProtocolParser();
+    protected final ResponseDispatcher dispatcher = new ResponseDispatcher();
+    protected final long recallWaitMs;
+    protected final int timeoutMs;
+    private final AtomicInteger cidCounter;
+    private final Sleeper sleeper;
+    private final CommandPacker packer = new CommandPacker();
+    private volatile int pipelineWindow = DEFAULT_PIPELINE_WINDOW;
+    private volatile long settleQuietMs = DEFAULT_SETTLE_QUIET_MS;
+    private volatile boolean connected;
+    private volatile ClientMetrics metrics = new ClientMetrics();
+
+    protected AbstractTascamClient(AtomicInteger cidCounter, long recallWaitMs, int timeoutMs, Sleeper sleeper) {
+        this.cidCounter = cidCounter;
+        this.recallWaitMs = recallWaitMs;
+        this.timeoutMs = timeoutMs;
+        this.sleeper = sleeper;
+        dispatcher.setMetrics(metrics);
+    }
+
+    /**
+     * Sends one command line to the mixer. The line terminator is added by the transport.
+     * Must be safe to call from several threads at once.
+     *
+     * @param command the command, without CR+LF
+     * @throws IOException if the command could not be sent
+     */
+    protected abstract void writeCommand(String command) throws IOException;
+
+    /**
+     * Sends a line that was encoded ahead of time, CR+LF included.
+     * Must be safe to call from several threads at once.
+     *
+     * @param line the UTF-8 encoded line
+     * @throws IOException if the line could not be sent
+     */
+    protected abstract void writeLine(byte[] line) throws IOException;
+
+    /**
+     * Sets how many commands may be in flight before a response is required.
+     * A window of 1 sends each command only after the previous response has arrived.
+     *
+     * @param pipelineWindow maximum number of unanswered commands (at least 1)
+     */
+    public void setPipelineWindow(int pipelineWindow) {
+        if (pipelineWindow < 1) {
+            throw new IllegalArgumentException("Pipeline window must be at least 1");
+        }
+        this.pipelineWindow = pipelineWindow;
+    }
+
+    /**
+     * Sets how long the NOTIFY stream must be silent after a recall before the mixer counts
+     * as settled and the recall is verified. {@code recallWaitMs} caps the whole wait.
+     *
+     * @param settleQuietMs quiet window in milliseconds (at least 1)
+     */
+    public void setSettleQuietWindow(long settleQuietMs) {
+        if (settleQuietMs < 1) {
+            throw new IllegalArgumentException("Settle quiet window must be at least 1ms");
+        }
+        this.settleQuietMs = settleQuietMs;
+    }
+
+    /**
+     * Records into the given metrics instead of this client's own, e.g. to aggregate
+     * several clients. Set before connecting so the handshake is included.
+     */
+    public void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+        dispatcher.setMetrics(metrics);
+    }
+
+    /**
+     * Phase timings and traffic counters recorded by this client.
+     */
+    public ClientMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Whether the session is usable: logged in and not yet closed by either side.
+     */
+    public boolean isOpen() {
+        return connected && !dispatcher.isClosed();
+    }
+
+    /**
+     * Marks the session as logged in; called by subclasses once the handshake succeeds.
+     */
+    protected void loggedIn() {
+        connected = true;
+    }
+
+    /**
+     * Registers a listener for every NOTIFY line received from the mixer.
+     * Listeners run on the transport's reader thread and must not block.
+     */
+    @Override
+    public void addNotifyListener(Consumer<String> listener) {
+        dispatcher.addNotifyListener(listener);
+    }
+
+    @Override
+    public void removeNotifyListener(Consumer<String> listener) {
+        dispatcher.removeNotifyListener(listener);
+    }
+
+    /**
+     * Registers a listener for every NOTIFY line, given as received bytes rather than a string.
+     * Listeners run on the transport's reader thread and must not block.
+     */
+    public void addRawNotifyListener(RawNotifyListener listener) {
+        dispatcher.addRawNotifyListener(listener);
+    }
+
+    public void removeRawNotifyListener(RawNotifyListener listener) {
+        dispatcher.removeRawNotifyListener(listener);
+    }
+
+    /**
+     * Asks the mixer to stream levels for the given meters and starts decoding them.
+     * <p>
+     * The subscription is registered before the METER commands go out, so no line sent
+     * in response is missed. Close the subscription to stop decoding; the stream itself
+     * ends with the connection.
+     *
+     * @param keys meter keys, e.g. {@code CH/1}; frames hold one value per key in this order
+     * @param capacity frames buffered for each reader before the oldest are dropped
+     * @return the subscription, already receiving frames
+     * @throws TascamProtocolException if the mixer rejects a key
+     * @throws IOException if communication fails
+     */
+    public MeterSubscription subscribeMeters(List<String> keys, int capacity) throws IOException {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("Subscribe to at least one meter");
+        }
+        MeterSubscription subscription = new MeterSubscription(keys, capacity, dispatcher::removeMeterSubscription);
+        dispatcher.addMeterSubscription(subscription);
+        try {
+            for (String response : sendPipelined(packer.packMeter(keys, this::generateCid))) {
+                if (!response.startsWith("OK METER") || response.contains(":ERR")) {
+                    throw new TascamProtocolException("Meter subscription refused: " + response);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            subscription.close();
+            throw e;
+        }
+        return subscription;
+    }
+
+    @Override
+    public List<Preset> listPresets() throws IOException {
+        return listPresetsWithCurrent().presets();
+    }
+
+    @Override
+    public PresetListing listPresetsWithCurrent() throws IOException {
+        long start = System.nanoTime();
+        // Current preset keys go first so they ride along with the first slot batch
+        List<String> keys = new ArrayList<>(parser.currentPresetKeys());
+        keys.addAll(parser.presetSlotKeys(1, MAX_PRESET_NUMBER));
+
+        PresetResponseParser slots = new PresetResponseParser();
+        for (String response : sendPipelined(packer.packGet(keys, this::generateCid))) {
+            slots.parse(response);
+        }
+        metrics.recordSince(Phase.LIST_PRESETS, start);
+        return new PresetListing(slots.presets(), slots.currentPreset());
+    }
+
+    @Override
+    public Optional<Preset> findPresetByName(String name, boolean requireUnique) throws IOException {
+        // Same packing as listPresetsWithCurrent: the current preset rides in the first command
+        List<String> keys = new ArrayList<>(parser.currentPresetKeys());
+        keys.addAll(parser.presetSlotKeys(1, MAX_PRESET_NUMBER));
+        List<String> commands = packer.packGet(keys, this::generateCid);
+
+        // Keyed by slot so the current preset and its slot entry count once
+        Map<Integer, Preset> matches = new LinkedHashMap<>();
+        PresetResponseParser slots = new PresetResponseParser();
+        Deque<Submitted> inFlight = new ArrayDeque<>();
+        int next = 0;
+        while (next < commands.size() || !inFlight.isEmpty()) {
+            // The first command goes alone: a match on it (the common case) costs one round trip
+            int window = next == 0 ? 1 : pipelineWindow;
+            while (next < commands.size() && inFlight.size() < window) {
+                inFlight.add(submit(commands.get(next++)));
+            }
+            slots.parse(await(inFlight.poll()));
+
+            // Current preset first, then slots in ascending order
+            matches.clear();
+            slots.currentPreset()
+                .filter(p -> p.name().equalsIgnoreCase(name))
+                .ifPresent(p -> matches.put(p.number(), p));
+            slots.presets().stream()
+                .filter(p -> p.name().equalsIgnoreCase(name))
+                .forEach(p -> matches.put(p.number(), p));
+
+            if (!requireUnique && !matches.isEmpty()) {
+                // Anything still in flight is answered and discarded by the dispatcher
+                break;
+            }
+        }
+
+        if (requireUnique && matches.size() > 1) {
+            throw new IllegalStateException("Preset name \"" + name + "\" is not unique: slots "
+                + matches.keySet().stream().sorted().map(String::valueOf).collect(Collectors.joining(", ")));
+        }
+        return matches.values().stream().findFirst();
+    }
+
+    @Override
+    public Map<String, String> getBulk(Collection<String> keys) throws IOException {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String response : sendPipelined(packer.packGet(keys, this::generateCid))) {
+            values.putAll(parser.parseGetResponse(response));
+        }
+        return values;
+    }
+
+    @Override
+    public Optional<Preset> getCurrentPreset() throws IOException {
+        String cmd = parser.buildCurrentPresetCommand(generateCid());
+        String response = sendCommand(cmd);
+        return parser.parseCurrentPreset(response);
+    }
+
+    @Override
+    public Optional<Preset> recallPreset(int presetNumber) throws IOException {
+        PendingRecall recall = prepareRecall(presetNumber);
+        issueRecall(recall);
+        completeRecall(recall);
+        return recall.loadedPreset();
+    }
+
+    /**
+     * Does everything a recall needs before the SET is sent: validates the number,
+     * checks the current preset and starts listening for the confirming NOTIFY and
+     * the changes that follow it.
+     *
+     * @param presetNumber the preset number to load (1-50)
+     * @return the prepared recall, ready to issue
+     * @throws IOException if communication fails
+     */
+    public PendingRecall prepareRecall(int presetNumber) throws IOException {
+        if (presetNumber < 1 || presetNumber > MAX_PRESET_NUMBER) {
+            throw new IllegalArgumentException("Preset number must be between 1 and " + MAX_PRESET_NUMBER);
+        }
+
+        // Check if we're already on this preset
+        long checkStart = System.nanoTime();
+        Optional<Preset> currentBefore = getCurrentPreset();
+        metrics.recordSince(Phase.RECALL_CHECK, checkStart);
+
+        // Listen before sending so the NOTIFY cannot slip past between the ack and the wait
+        CompletableFuture<String> presetNotify = dispatcher.awaitNotify(
+            line -> parser.isPresetNotify(line, presetNumber));
+        SettleDetector settle = new SettleDetector(sleeper);
+        dispatcher.addNotifyListener(settle);
+        // Encoded now so that issuing is a single write
+        byte[] line = CommandEncoder.encodeLine(parser.buildRecallCommand(presetNumber, generateCid()));
+        int cid = ResponseDispatcher.findCid(line, 0, line.length);
+        return new PendingRecall(presetNumber, line, cid, currentBefore, presetNotify, settle);
+    }
+
+    /**
+     * Sends the SET for a prepared recall without waiting for the response.
+     *
+     * @param recall a recall from {@link #prepareRecall}
+     * @throws IOException if the command could not be sent
+     */
+    public void issueRecall(PendingRecall recall) throws IOException {
+        try {
+            CompletableFuture<String> ack = dispatcher.register(recall.cid());
+            try {
+                writeLine(recall.line());
+            } catch (IOException e) {
+                dispatcher.cancel(recall.cid());
+                throw e;
+            }
+            recall.issued(ack, System.nanoTime());
+        } catch (IOException e) {
+            release(recall);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for an issued recall to be acknowledged and confirmed, then waits for the
+     * NOTIFY stream to go quiet and verifies the preset (unless verification is disabled).
+     *
+     * @param recall a recall passed to {@link #issueRecall}
+     * @throws IOException if communication fails or the mixer rejects the recall
+     */
+    public void completeRecall(PendingRecall recall) throws IOException {
+        try {
+            awaitRecall(recall);
+        } finally {
+            release(recall);
+        }
+    }
+
+    private void awaitRecall(PendingRecall recall) throws IOException {
+        int presetNumber = recall.presetNumber();
+        String response = await(recall.ack(), () -> dispatcher.cancel(recall.cid()));
+
+        // Response should be "OK SET CID:<id>"; an empty slot answers "OK SET PRESET/LOAD:ERR5 ..."
+        if (!response.startsWith("OK SET") || response.contains("PRESET/LOAD:ERR")) {
+            throw new TascamProtocolException("Failed to recall preset: " + response);
+        }
+        // Both stamps are taken on the reader thread, so a late completeRecall does not inflate them
+        metrics.record(Phase.RECALL_ACK, recall.ackedNanos() - recall.issuedNanos().getAsLong());
+
+        // Wait for NOTIFY PRESET/CUR:<n> confirming the preset change is complete
+        // If already on this preset, mixer won't send NOTIFY - skip waiting for it
+        if (recall.alreadyOnPreset()) {
+            recall.loaded(recall.currentBefore());
+        } else {
+            String notify = await(recall.presetNotify());
+            logger.debug("Preset change confirmed: {}", notify);
+            metrics.record(Phase.RECALL_NOTIFY, recall.confirmedNanos().getAsLong() - recall.ackedNanos());
+            recall.loaded(parser.parseCurrentPreset(notify));
+        }
+
+        // Verify once the mixer has stopped announcing changes, or at the latest after recallWaitMs
+        if (recall.preempted()) {
+            logger.debug("Preset {} recall superseded, skipping verification", presetNumber);
+        } else if (recallWaitMs > 0) {
+            long settleStart = System.nanoTime();
+            SettleDetector settle = recall.settle();
+            // The quiet window runs from the ack at the earliest, even if no NOTIFY follows
+            settle.activityAt(recall.ackedNanos());
+            boolean quiet = settle.awaitQuiet(settleQuietMs, settleStart + TimeUnit.MILLISECONDS.toNanos(recallWaitMs));
+            metrics.recordSince(Phase.RECALL_SETTLE, settleStart);
+            if (settle.preempted()) {
+                logger.debug("Preset {} recall superseded while settling, skipping verification", presetNumber);
+                return;
+            }
+            if (!quiet) {
+                logger.debug("NOTIFY stream still busy after {}ms, verifying anyway", recallWaitMs);
+            }
+            long verifyStart = System.nanoTime();
+            verifyPresetLoaded(presetNumber);
+            metrics.recordSince(Phase.RECALL_VERIFY, verifyStart);
+            logger.debug("Preset {} recalled and verified successfully", presetNumber);
+        } else {
+            logger.debug("Preset {} recall sent (verification skipped)", presetNumber);
+        }
+    }
+
+    /**
+     * Stops listening on behalf of a recall that has finished or been abandoned.
+     */
+    private void release(PendingRecall recall) {
+        recall.cancel();
+        dispatcher.removeNotifyListener(recall.settle());
+    }
+
+    /**
+     * Verifies that the expected preset is now active.
+     */
+    private void verifyPresetLoaded(int expectedPresetNumber) throws IOException {
+        Optional<Preset> current = getCurrentPreset();
+        if (current.isEmpty()) {
+            throw new PresetRecallException("Failed to verify preset after recall");
+        }
+        if (current.get().number() != expectedPresetNumber) {
+            throw new PresetRecallException("Preset recall verification failed: expected " + expectedPresetNumber
+                + " but got " + current.get().number());
+        }
+    }
+
+    /**
+     * Checks the line the mixer sends in reply to the initial CR+LF.
+     */
+    protected static void checkPasswordPrompt(String response) throws TascamProtocolException {
+        checkNotBusy(response);
+        if (response == null || !response.contains("Enter Password")) {
+            throw new TascamProtocolException("Unexpected response: " + response);
+        }
+    }
+
+    /**
+     * Checks the line the mixer sends in reply to the password.
+     */
+    protected static void checkLoginResult(String response) throws TascamProtocolException {
+        if (response == null) {
+            throw new TascamProtocolException("No response after password");
+        }
+        checkNotBusy(response);
+        if (!response.contains("Login Successful")) {
+            throw new TascamProtocolException("Login failed: " + response);
+        }
+    }
+
+    private static void checkNotBusy(String response) throws MixerBusyException {
+        if (response != null && response.contains("Another User Already Connected")) {
+            throw new MixerBusyException("Another user is already connected to the mixer");
+        }
+    }
+
+    protected String sendCommand(String command) throws IOException {
+        return sendPipelined(List.of(command)).get(0);
+    }
+
+    /**
+     * A command that has been sent, with the CID its response will carry.
+     */
+    protected record Submitted(int cid, CompletableFuture<String> response) {}
+
+    /**
+     * Sends a command without waiting for its response.
+     */
+    protected Submitted submit(String command) throws IOException {
+        int cid = parser.extractCid(command)
+            .map(ResponseDispatcher::parseCid)
+            .orElse(OptionalInt.empty())
+            .orElseThrow(() -> new IllegalArgumentException("Command has no numeric CID: " + command));
+        CompletableFuture<String> future = dispatcher.register(cid);
+        try {
+            writeCommand(command);
+        } catch (IOException e) {
+            dispatcher.cancel(cid);
+            throw e;
+        }
+        return new Submitted(cid, future);
+    }
+
+    /**
+     * Sends commands without waiting for each response, keeping up to
+     * {@code pipelineWindow} in flight. Responses are matched to commands by CID,
+     * so they may arrive in any order.
+     *
+     * @param commands commands, each carrying a unique CID
+     * @return the responses, in command order
+     */
+    protected List<String> sendPipelined(List<String> commands) throws IOException {
+        List<Submitted> futures = new ArrayList<>(commands.size());
+        List<String> responses = new ArrayList<>(commands.size());
+        int window = pipelineWindow;
+        for (String command : commands) {
+            if (futures.size() - responses.size() >= window) {
+                responses.add(await(futures.get(responses.size())));
+            }
+            futures.add(submit(command));
+        }
+        while (responses.size() < futures.size()) {
+            responses.add(await(futures.get(responses.size())));
+        }
+        return responses;
+    }
+
+    /**
+     * Waits up to the read timeout for a command's response. On a timeout the command is
+     * forgotten, so a late response is dropped rather than kept for a caller who has gone.
+     */
+    protected String await(Submitted command) throws IOException {
+        return await(command.response(), () -> dispatcher.cancel(command.cid()));
+    }
+
+    /**
+     * Waits up to the read timeout for a NOTIFY future.
+     */
+    protected String await(CompletableFuture<String> future) throws IOException {
+        return await(future, () -> { });
+    }
+
+    private String await(CompletableFuture<String> future, Runnable onTimeout) throws IOException {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            onTimeout.run();
+            metrics.timedOut();
+            throw new TascamProtocolException("No response from device within " + timeoutMs + "ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new TascamProtocolException("Unexpected failure: " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for device");
+        }
+    }
+
+    protected String generateCid() {
+        return String.valueOf(cidCounter.getAndIncrement());
+    }
+}
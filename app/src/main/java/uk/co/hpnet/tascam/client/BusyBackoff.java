@@ -0,0 +1,119 @@
+package uk.co.hpnet.tascam.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.metrics.ClientMetrics.Phase;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Connects to a mixer that may be busy with another client, retrying with jittered
+ * exponential backoff until an overall deadline.
+ * <p>
+ * The mixer accepts a single TCP session and answers any other login with
+ * "Another User Already Connected". Each retry uses a fresh client. Delays start at
+ * {@code initialDelayMs}, double after each refusal up to {@code maxDelayMs}, and are
+ * drawn uniformly from the upper half of that range, so that several waiters do not
+ * retry in step. Other failures are not retried.
+ */
+public final class BusyBackoff {
+
+    private static final Logger logger = LogManager.getLogger(BusyBackoff.class);
+
+    static final long DEFAULT_INITIAL_DELAY_MS = 250;
+    static final long DEFAULT_MAX_DELAY_MS = 8000;
+
+    /**
+     * Makes a single attempt, failing at once if the mixer is busy.
+     */
+    public static final BusyBackoff NONE = new BusyBackoff(0);
+
+    private final long deadlineMs;
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final Sleeper sleeper;
+    private final LongUnaryOperator jitter;
+
+    /**
+     * @param deadlineMs how long to keep retrying a busy mixer, in milliseconds (0 for a single attempt)
+     */
+    public BusyBackoff(long deadlineMs) {
+        this(deadlineMs, DEFAULT_INITIAL_DELAY_MS, DEFAULT_MAX_DELAY_MS, Sleeper.defaultSleeper(),
+            delay -> ThreadLocalRandom.current().nextLong(delay / 2, delay + 1));
+    }
+
+    /**
+     * Creates a backoff with custom delays and dependencies (for testing).
+     *
+     * @param jitter picks the actual delay for a nominal one
+     */
+    BusyBackoff(long deadlineMs, long initialDelayMs, long maxDelayMs, Sleeper sleeper, LongUnaryOperator jitter) {
+        this.deadlineMs = deadlineMs;
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.sleeper = sleeper;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Returns this backoff with its deadline cut short to at most {@code limitMs}
+     * (e.g. the time left before a scheduled recall is due).
+     */
+    public BusyBackoff withDeadlineAtMost(long limitMs) {
+        if (limitMs >= deadlineMs) {
+            return this;
+        }
+        return new BusyBackoff(Math.max(0, limitMs), initialDelayMs, maxDelayMs, sleeper, jitter);
+    }
+
+    /**
+     * Connects a client, retrying while the mixer is busy.
+     * Time spent waiting and the number of refusals go into the client's metrics.
+     *
+     * @param clientFactory creates an unconnected client for each attempt
+     * @return the logged-in client
+     * @throws MixerBusyException if the mixer was still busy at the deadline
+     * @throws IOException if connecting failed for any other reason
+     */
+    public <C extends AbstractTascamClient> C connect(Supplier<C> clientFactory, String host, int port,
+                                                      String password) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        long delayMs = initialDelayMs;
+        int refusals = 0;
+        while (true) {
+            C client = clientFactory.get();
+            try {
+                client.connect(host, port, password);
+                if (refusals > 0) {
+                    client.metrics().addBusyRefusals(refusals);
+                    client.metrics().recordSince(Phase.BUSY_WAIT, start);
+                }
+                return client;
+            } catch (MixerBusyException e) {
+                client.close();
+                refusals++;
+                long sleepMs = jitter.applyAsLong(delayMs);
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sleepMs) - deadline > 0) {
+                    client.metrics().addBusyRefusals(refusals);
+                    client.metrics().recordSince(Phase.BUSY_WAIT, start);
+                    if (deadlineMs == 0) {
+                        throw e;
+                    }
+                    throw new MixerBusyException("Mixer " + host + ":" + port + " still busy after "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+                }
+                logger.debug("Mixer {}:{} busy, retrying in {}ms", host, port, sleepMs);
+                sleeper.sleep(sleepMs);
+                delayMs = Math.min(delayMs * 2, maxDelayMs);
+            } catch (IOException | RuntimeException e) {
+                client.close();
+                throw e;
+            }
+        }
+    }
+}
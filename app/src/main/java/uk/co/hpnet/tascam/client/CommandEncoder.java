@@ -0,0 +1,70 @@
+package uk.co.hpnet.tascam.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes command lines to UTF-8 with their CR+LF terminator.
+ * <p>
+ * {@link #encode} writes into a buffer owned by the encoder and reused for every command,
+ * so a transport can send each line with one write and no intermediate strings. Commands are
+ * almost always ASCII and take a direct char-to-byte path; anything else goes through the
+ * JDK encoder. An instance is not thread-safe: transports guard it with their write lock.
+ */
+final class CommandEncoder {
+
+    private byte[] buffer = new byte[CommandPacker.MAX_COMMAND_BYTES];
+
+    /**
+     * Encodes a command and CR+LF into {@link #buffer()}.
+     *
+     * @param command the command, without CR+LF
+     * @return the number of bytes written, starting at index 0
+     */
+    int encode(String command) {
+        int length = command.length();
+        ensureCapacity(length + 2);
+        for (int i = 0; i < length; i++) {
+            char c = command.charAt(i);
+            if (c >= 0x80) {
+                return encodeSlow(command);
+            }
+            buffer[i] = (byte) c;
+        }
+        buffer[length] = '\r';
+        buffer[length + 1] = '\n';
+        return length + 2;
+    }
+
+    /**
+     * The buffer filled by the last {@link #encode}; valid until the next call.
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Encodes a command and CR+LF into a new array of exactly the right size, for
+     * lines that are prepared ahead of sending or handed to another thread.
+     */
+    static byte[] encodeLine(String command) {
+        CommandEncoder encoder = new CommandEncoder();
+        int length = encoder.encode(command);
+        return Arrays.copyOf(encoder.buffer, length);
+    }
+
+    private int encodeSlow(String command) {
+        byte[] encoded = command.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(encoded.length + 2);
+        System.arraycopy(encoded, 0, buffer, 0, encoded.length);
+        buffer[encoded.length] = '\r';
+        buffer[encoded.length + 1] = '\n';
+        return encoded.length + 2;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (buffer.length < needed) {
+            buffer = new byte[Math.max(needed, buffer.length * 2)];
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package uk.co.hpnet.tascam.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Packs protocol keys into as few commands as possible.
+ * The device accepts at most 1024 bytes per command, including the CID and CR+LF,
+ * so each command is filled up to that limit before a new one is started.
+ */
+public class CommandPacker {
+
+    /**
+     * Maximum command length accepted by the device, including CR+LF.
+     */
+    public static final int MAX_COMMAND_BYTES = 1024;
+
+    private static final int LINE_TERMINATOR_BYTES = 2;
+    private static final String CID_PREFIX = " CID:";
+
+    private final int maxCommandBytes;
+
+    public CommandPacker() {
+        this(MAX_COMMAND_BYTES);
+    }
+
+    /**
+     * Creates a packer with a custom byte limit (for testing).
+     */
+    CommandPacker(int maxCommandBytes) {
+        this.maxCommandBytes = maxCommandBytes;
+    }
+
+    /**
+     * Packs keys into GET commands, preserving key order.
+     *
+     * @param keys the keys to query
+     * @param cidSupplier supplies a fresh command ID for each command
+     * @return the commands, without line terminators
+     * @throws IllegalArgumentException if a single key cannot fit in a command
+     */
+    public List<String> packGet(Collection<String> keys, Supplier<String> cidSupplier) {
+        return pack("GET", keys, cidSupplier);
+    }
+
+    /**
+     * Packs meter keys into METER subscription commands, preserving key order.
+     *
+     * @param keys the meters to subscribe to
+     * @param cidSupplier supplies a fresh command ID for each command
+     * @return the commands, without line terminators
+     * @throws IllegalArgumentException if a single key cannot fit in a command
+     */
+    public List<String> packMeter(Collection<String> keys, Supplier<String> cidSupplier) {
+        return pack("METER", keys, cidSupplier);
+    }
+
+    private List<String> pack(String commandType, Collection<String> keys, Supplier<String> cidSupplier) {
+        List<String> commands = new ArrayList<>();
+        if (keys.isEmpty()) {
+            return commands;
+        }
+
+        StringBuilder cmd = null;
+        int used = 0;
+        int budget = 0;
+        String cid = null;
+        for (String key : keys) {
+            int keyBytes = 1 + key.getBytes(StandardCharsets.UTF_8).length;
+            if (cmd != null && used + keyBytes > budget) {
+                commands.add(cmd.append(CID_PREFIX).append(cid).toString());
+                cmd = null;
+            }
+            if (cmd == null) {
+                cid = cidSupplier.get();
+                cmd = new StringBuilder(commandType);
+                used = cmd.length();
+                budget = maxCommandBytes - LINE_TERMINATOR_BYTES - CID_PREFIX.length() - cid.length();
+                if (used + keyBytes > budget) {
+                    throw new IllegalArgumentException("Key too long for a single command: " + key);
+                }
+            }
+            cmd.append(' ').append(key);
+            used += keyBytes;
+        }
+        commands.add(cmd.append(CID_PREFIX).append(cid).toString());
+        return commands;
+    }
+}
@@ -0,0 +1,163 @@
+package uk.co.hpnet.tascam.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open-addressing table of in-flight commands keyed by their numeric CID.
+ * Avoids boxing the key on every command; all methods are synchronized.
+ *
+ * @param <V> the value held for each in-flight command
+ */
+class InFlightTable<V> {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    InFlightTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a value for a CID.
+     *
+     * @throws IllegalArgumentException if the CID is already in flight
+     */
+    synchronized void put(int cid, V value) {
+        if (cid == EMPTY) {
+            throw new IllegalArgumentException("Reserved CID: " + cid);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = slot(cid, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == cid) {
+                throw new IllegalArgumentException("CID already in flight: " + cid);
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = cid;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * Removes and returns the value for a CID.
+     *
+     * @return the value, or null if the CID is not in flight
+     */
+    @SuppressWarnings("unchecked")
+    synchronized V remove(int cid) {
+        int mask = keys.length - 1;
+        int i = slot(cid, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == cid) {
+                V value = (V) values[i];
+                deleteAt(i);
+                return value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns the only value in the table.
+     *
+     * @return the value, or null unless exactly one command is in flight
+     */
+    @SuppressWarnings("unchecked")
+    synchronized V removeSole() {
+        if (size != 1) {
+            return null;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                V value = (V) values[i];
+                deleteAt(i);
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns every value in the table.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized List<V> drain() {
+        List<V> drained = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                drained.add((V) values[i]);
+            }
+        }
+        allocate(INITIAL_CAPACITY);
+        return drained;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void deleteAt(int i) {
+        int mask = keys.length - 1;
+        keys[i] = EMPTY;
+        values[i] = null;
+        size--;
+
+        // Shift later entries of the probe run back so lookups need no tombstones
+        int j = (i + 1) & mask;
+        while (keys[j] != EMPTY) {
+            int key = keys[j];
+            Object value = values[j];
+            keys[j] = EMPTY;
+            values[j] = null;
+            size--;
+            reinsert(key, value);
+            j = (j + 1) & mask;
+        }
+    }
+
+    private void reinsert(int key, Object value) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                reinsert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+        size = 0;
+    }
+
+    private static int slot(int key, int mask) {
+        // Fibonacci hashing spreads sequential CIDs across the table
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,94 @@
+package uk.co.hpnet.tascam.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Frames lines from a blocking stream without decoding them.
+ * <p>
+ * Bytes are read into one reusable buffer and lines are split on LF, with a preceding CR
+ * dropped. After {@link #next} returns true the line is available as a region of
+ * {@link #buffer()} until the following call; {@link #decode} turns it into a
+ * {@code String} only for consumers that need one.
+ */
+final class LineReader {
+
+    private static final int INITIAL_BUFFER_BYTES = 16 * 1024;
+
+    private final InputStream in;
+    private byte[] buffer = new byte[INITIAL_BUFFER_BYTES];
+    private int start;
+    private int limit;
+    private int lineStart;
+    private int lineLength;
+
+    LineReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Advances to the next line, blocking until one is complete.
+     *
+     * @return false at end of stream (a trailing unterminated line is discarded)
+     */
+    boolean next() throws IOException {
+        // Counted from start, so it survives fill() compacting the buffer
+        int scanned = 0;
+        while (true) {
+            for (int i = start + scanned; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    lineStart = start;
+                    lineLength = (i > start && buffer[i - 1] == '\r' ? i - 1 : i) - start;
+                    start = i + 1;
+                    return true;
+                }
+            }
+            scanned = limit - start;
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int lineStart() {
+        return lineStart;
+    }
+
+    int lineLength() {
+        return lineLength;
+    }
+
+    String decode() {
+        return new String(buffer, lineStart, lineLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads more bytes, compacting or growing the buffer first if it is full.
+     */
+    private boolean fill() throws IOException {
+        if (start == limit) {
+            start = 0;
+            limit = 0;
+        } else if (limit == buffer.length) {
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, limit - start);
+                limit -= start;
+                start = 0;
+            } else {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
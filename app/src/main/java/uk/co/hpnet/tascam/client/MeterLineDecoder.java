@@ -0,0 +1,143 @@
+package uk.co.hpnet.tascam.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Decodes {@code METER <key>:<level> ...} lines into a frame of floats, one per subscribed key.
+ * <p>
+ * Works on the received bytes: no strings, no regex and no boxing, since meter lines arrive
+ * many times a second for every channel. Keys are matched against the subscription in the
+ * order the previous line used, so a mixer that repeats its key order, as any will, costs
+ * one comparison per value. Keys not subscribed are skipped; a subscribed key missing from
+ * a line keeps the value it last had. Levels are decimal dB, or {@code -INF} for silence;
+ * anything else decodes as NaN.
+ */
+final class MeterLineDecoder {
+
+    private static final int METER_PREFIX_LENGTH = "METER ".length();
+    private static final byte[] INF = "INF".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[][] keys;
+    private int expected;
+
+    MeterLineDecoder(List<String> keys) {
+        this.keys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            this.keys[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Updates {@code frame} from one METER line.
+     *
+     * @return how many subscribed values the line carried
+     */
+    int decode(byte[] bytes, int offset, int length, float[] frame) {
+        int end = offset + length;
+        int i = offset + METER_PREFIX_LENGTH;
+        int decoded = 0;
+        while (i < end) {
+            if (bytes[i] == ' ') {
+                i++;
+                continue;
+            }
+            int start = i;
+            int colon = -1;
+            while (i < end && bytes[i] != ' ') {
+                if (bytes[i] == ':' && colon < 0) {
+                    colon = i;
+                }
+                i++;
+            }
+            if (colon <= start) {
+                continue;
+            }
+            int channel = channelOf(bytes, start, colon);
+            if (channel >= 0) {
+                frame[channel] = parseLevel(bytes, colon + 1, i);
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    private int channelOf(byte[] bytes, int from, int to) {
+        for (int tried = 0; tried < keys.length; tried++) {
+            int candidate = expected + tried;
+            if (candidate >= keys.length) {
+                candidate -= keys.length;
+            }
+            if (matches(keys[candidate], bytes, from, to)) {
+                expected = candidate + 1 == keys.length ? 0 : candidate + 1;
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] key, byte[] bytes, int from, int to) {
+        if (to - from != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (bytes[from + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses {@code [-]digits[.digits]} or {@code [-]INF} (any case) without allocating.
+     */
+    static float parseLevel(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        if (to - i == INF.length && equalsIgnoreCase(bytes, i, INF)) {
+            return negative ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                // Beyond 18 digits precision is long gone for a float anyway
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (point) {
+                        scale++;
+                    }
+                } else if (!point) {
+                    scale--;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                return Float.NaN;
+            }
+        }
+        if (digits == 0) {
+            return Float.NaN;
+        }
+        double value = scale >= 0 ? mantissa / Math.pow(10, scale) : mantissa * Math.pow(10, -scale);
+        return (float) (negative ? -value : value);
+    }
+
+    private static boolean equalsIgnoreCase(byte[] bytes, int from, byte[] upper) {
+        for (int i = 0; i < upper.length; i++) {
+            byte b = bytes[from + i];
+            if (b != upper[i] && b != upper[i] + ('a' - 'A')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package uk.co.hpnet.tascam.client;
+
+import uk.co.hpnet.tascam.meter.MeterDecimator;
+import uk.co.hpnet.tascam.meter.MeterRing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A stream of meter levels from one mixer, as returned by {@link AbstractTascamClient#subscribeMeters}.
+ * <p>
+ * The transport's reader thread decodes each METER line into a preallocated frame, one
+ * float per subscribed key in subscription order, and publishes it to a {@link MeterRing}.
+ * Consumers take a {@link MeterRing.Reader} or a {@link MeterDecimator} and poll it from
+ * their own thread; none of this allocates once set up.
+ */
+public final class MeterSubscription implements AutoCloseable {
+
+    private final List<String> keys;
+    private final MeterLineDecoder decoder;
+    private final MeterRing ring;
+    private final float[] frame;
+    private final Consumer<MeterSubscription> onClose;
+
+    MeterSubscription(List<String> keys, int capacity, Consumer<MeterSubscription> onClose) {
+        this.keys = List.copyOf(keys);
+        this.decoder = new MeterLineDecoder(keys);
+        this.ring = new MeterRing(keys.size(), capacity);
+        this.frame = new float[keys.size()];
+        Arrays.fill(frame, Float.NaN);
+        this.onClose = onClose;
+    }
+
+    /**
+     * The meter keys, in frame order.
+     */
+    public List<String> keys() {
+        return keys;
+    }
+
+    public MeterRing ring() {
+        return ring;
+    }
+
+    /**
+     * A reader that receives every frame still buffered and every one after it, as long as it keeps up.
+     */
+    public MeterRing.Reader newReader() {
+        return ring.newReader();
+    }
+
+    /**
+     * A reader that combines every {@code factor} frames into one, keeping each channel's peak.
+     */
+    public MeterDecimator newDecimator(int factor) {
+        return new MeterDecimator(ring, factor);
+    }
+
+    /**
+     * Decodes one METER line; called on the transport's reader thread only.
+     */
+    void onMeter(byte[] bytes, int offset, int length) {
+        if (decoder.decode(bytes, offset, length, frame) > 0) {
+            ring.publish(frame, System.nanoTime());
+        }
+    }
+
+    /**
+     * Stops decoding METER lines into this subscription. The mixer keeps sending them
+     * until the connection closes; lines nobody subscribes to are dropped unread.
+     */
+    @Override
+    public void close() {
+        onClose.accept(this);
+    }
+}
@@ -0,0 +1,12 @@
+package uk.co.hpnet.tascam.client;
+
+/**
+ * Thrown when the mixer refuses a login because another client holds its only session.
+ * Unlike other login failures this is usually temporary, so it can be retried.
+ */
+public class MixerBusyException extends TascamProtocolException {
+
+    public MixerBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,340 @@
+package uk.co.hpnet.tascam.client;
+
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A local copy of chosen mixer parameters, seeded with one bulk GET and kept current from NOTIFY.
+ * <p>
+ * The mixer pushes a NOTIFY whenever a parameter changes, whoever changed it, so once seeded
+ * the mirror answers reads such as the current preset without a round trip. Keys are fixed
+ * when the mirror is created and interned to slots: NOTIFY parameters are looked up by
+ * their bytes in a small open-addressed table, without decoding, and a value is only turned
+ * into a string when it actually changed. Reads are lock-free; {@link #currentPreset()}
+ * reads its two keys consistently, never the number of one preset with the name of another.
+ * <p>
+ * Values are as the mixer sends them, less surrounding quotes. An error value ({@code ERRn})
+ * or a key the mixer never reported reads as empty. Every value carries the
+ * {@link System#nanoTime()} at which it was last set or confirmed; once the connection has
+ * ended ({@link #isLive()} false) nothing updates any more and the values are only as good
+ * as their timestamps.
+ */
+public class MixerStateMirror implements RawNotifyListener, AutoCloseable {
+
+    /** The current preset and whether it has been changed since it was recalled. */
+    public static final List<String> DEFAULT_KEYS = List.of("PRESET/CUR", "PRESET/NAME", "PRESET/CMP");
+
+    private static final int NOTIFY_PREFIX_LENGTH = "NOTIFY ".length();
+    private static final int NEVER = 0;
+
+    private final AbstractTascamClient client;
+    private final List<String> names;
+    private final Map<String, Key> keys = new HashMap<>();
+    private final KeyTable table;
+    private final AtomicReferenceArray<String> values;
+    private final AtomicLongArray updatedNanos;
+    // Even when no write is in progress; readers of several keys retry if it moved
+    private final AtomicLong version = new AtomicLong();
+    private final Key presetNumber;
+    private final Key presetName;
+    // Writer-side state, guarded by writeLock: raw bytes of each value and when a NOTIFY last set it
+    private final Object writeLock = new Object();
+    private final byte[][] raw;
+    private final long[] notifiedNanos;
+    private volatile long syncedNanos = NEVER;
+
+    /**
+     * An interned key: a slot in the mirror, so reads need no lookup.
+     */
+    public record Key(String name, int slot) {}
+
+    /**
+     * Starts listening for NOTIFYs and seeds every key with one bulk GET.
+     *
+     * @param client a logged-in client
+     * @param keys the parameters to mirror
+     * @throws IOException if the seeding GET fails; the mirror is then detached
+     */
+    public static MixerStateMirror open(AbstractTascamClient client, List<String> keys) throws IOException {
+        MixerStateMirror mirror = new MixerStateMirror(client, keys);
+        try {
+            mirror.resync();
+        } catch (IOException | RuntimeException e) {
+            mirror.close();
+            throw e;
+        }
+        return mirror;
+    }
+
+    /**
+     * Creates a mirror listening for NOTIFYs but not yet seeded; see {@link #open}.
+     */
+    MixerStateMirror(AbstractTascamClient client, List<String> keys) {
+        this.client = client;
+        this.names = List.copyOf(keys);
+        this.table = new KeyTable(names);
+        for (int slot = 0; slot < names.size(); slot++) {
+            if (this.keys.putIfAbsent(names.get(slot), new Key(names.get(slot), slot)) != null) {
+                throw new IllegalArgumentException("Duplicate key: " + names.get(slot));
+            }
+        }
+        this.values = new AtomicReferenceArray<>(names.size());
+        this.updatedNanos = new AtomicLongArray(names.size());
+        this.raw = new byte[names.size()][];
+        this.notifiedNanos = new long[names.size()];
+        this.presetNumber = this.keys.get("PRESET/CUR");
+        this.presetName = this.keys.get("PRESET/NAME");
+        // Listening before the seed GET goes out, so no change can fall between the two
+        client.addRawNotifyListener(this);
+    }
+
+    /**
+     * Looks up a mirrored key once, for repeated reads.
+     *
+     * @throws IllegalArgumentException if the key is not mirrored
+     */
+    public Key key(String name) {
+        Key key = keys.get(name);
+        if (key == null) {
+            throw new IllegalArgumentException("Not mirrored: " + name);
+        }
+        return key;
+    }
+
+    public Optional<String> get(Key key) {
+        return Optional.ofNullable(values.get(key.slot()));
+    }
+
+    public Optional<String> get(String name) {
+        return get(key(name));
+    }
+
+    /**
+     * When the key was last set or confirmed, on the {@link System#nanoTime()} clock;
+     * empty if the mixer has never reported it.
+     */
+    public OptionalLong updatedNanos(Key key) {
+        long nanos = updatedNanos.get(key.slot());
+        return nanos == NEVER ? OptionalLong.empty() : OptionalLong.of(nanos);
+    }
+
+    /**
+     * When every key was last read from the mixer by {@link #resync}.
+     */
+    public long syncedNanos() {
+        return syncedNanos;
+    }
+
+    /**
+     * Whether the connection the mirror follows is still open, so its values are current.
+     */
+    public boolean isLive() {
+        return client.isOpen();
+    }
+
+    /**
+     * The preset the mixer has loaded, with no round trip.
+     *
+     * @throws IllegalStateException if {@code PRESET/CUR} and {@code PRESET/NAME} are not both mirrored
+     */
+    public Optional<Preset> currentPreset() {
+        if (presetNumber == null || presetName == null) {
+            throw new IllegalStateException("The current preset is not mirrored");
+        }
+        String number;
+        String name;
+        long before;
+        do {
+            before = version.get();
+            number = values.get(presetNumber.slot());
+            name = values.get(presetName.slot());
+        } while ((before & 1) != 0 || version.get() != before);
+
+        if (number == null || name == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new Preset(Integer.parseInt(number), name));
+        } catch (IllegalArgumentException e) {
+            // No preset loaded (slot 0) or a name the model rejects
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Re-reads every key with one bulk GET. A key changed by a NOTIFY while the GET was
+     * in flight keeps the NOTIFY's value, which is the newer.
+     *
+     * @throws IOException if the GET fails; values are left as they were
+     */
+    public void resync() throws IOException {
+        long started = System.nanoTime();
+        Map<String, String> fresh = client.getBulk(names);
+        long now = System.nanoTime();
+        synchronized (writeLock) {
+            version.incrementAndGet();
+            try {
+                for (int slot = 0; slot < names.size(); slot++) {
+                    if (notifiedNanos[slot] - started > 0) {
+                        continue;
+                    }
+                    String value = fresh.get(names.get(slot));
+                    byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+                    store(slot, bytes, 0, bytes == null ? 0 : bytes.length, now);
+                }
+            } finally {
+                version.incrementAndGet();
+            }
+            syncedNanos = now;
+        }
+    }
+
+    /**
+     * Applies one NOTIFY line; called on the transport's reader thread.
+     */
+    @Override
+    public void onNotify(byte[] bytes, int offset, int length) {
+        long now = System.nanoTime();
+        int end = offset + length;
+        int i = offset + NOTIFY_PREFIX_LENGTH;
+        synchronized (writeLock) {
+            boolean writing = false;
+            try {
+                while (i < end) {
+                    if (bytes[i] == ' ') {
+                        i++;
+                        continue;
+                    }
+                    int start = i;
+                    int colon = -1;
+                    boolean quoted = false;
+                    while (i < end && (quoted || bytes[i] != ' ')) {
+                        if (bytes[i] == '"') {
+                            quoted = !quoted;
+                        } else if (bytes[i] == ':' && colon < 0 && !quoted) {
+                            colon = i;
+                        }
+                        i++;
+                    }
+                    if (colon <= start) {
+                        continue;
+                    }
+                    int slot = table.slotOf(bytes, start, colon);
+                    if (slot < 0) {
+                        continue;
+                    }
+                    if (!writing) {
+                        // One version step for the whole line: its parameters change together
+                        version.incrementAndGet();
+                        writing = true;
+                    }
+                    store(slot, bytes, colon + 1, i, now);
+                    notifiedNanos[slot] = now;
+                }
+            } finally {
+                if (writing) {
+                    version.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets a slot from raw value bytes (null for absent). Caller holds writeLock.
+     */
+    private void store(int slot, byte[] bytes, int from, int to, long now) {
+        if (bytes != null && to - from >= 2 && bytes[from] == '"' && bytes[to - 1] == '"') {
+            from++;
+            to--;
+        } else if (bytes != null && isError(bytes, from, to)) {
+            bytes = null;
+        }
+        byte[] previous = raw[slot];
+        boolean unchanged = bytes == null
+            ? previous == null
+            : previous != null && Arrays.equals(previous, 0, previous.length, bytes, from, to);
+        if (!unchanged) {
+            raw[slot] = bytes == null ? null : Arrays.copyOfRange(bytes, from, to);
+            values.set(slot, bytes == null ? null : new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+        updatedNanos.set(slot, bytes == null ? NEVER : now);
+    }
+
+    private static boolean isError(byte[] bytes, int from, int to) {
+        if (to - from < 4 || bytes[from] != 'E' || bytes[from + 1] != 'R' || bytes[from + 2] != 'R') {
+            return false;
+        }
+        for (int i = from + 3; i < to; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops following NOTIFYs. Values read afterwards are as they were.
+     */
+    @Override
+    public void close() {
+        client.removeRawNotifyListener(this);
+    }
+
+    /**
+     * Open-addressed map from key bytes to slot, sized to stay at most half full.
+     */
+    private static final class KeyTable {
+
+        private final byte[][] keys;
+        private final int[] slots;
+        private final int mask;
+
+        KeyTable(List<String> names) {
+            int size = Integer.highestOneBit(Math.max(2, names.size() * 2 - 1)) << 1;
+            this.keys = new byte[size][];
+            this.slots = new int[size];
+            this.mask = size - 1;
+            for (int slot = 0; slot < names.size(); slot++) {
+                byte[] key = names.get(slot).getBytes(StandardCharsets.UTF_8);
+                int index = hash(key, 0, key.length) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                slots[index] = slot;
+            }
+        }
+
+        int slotOf(byte[] bytes, int from, int to) {
+            int index = hash(bytes, from, to) & mask;
+            byte[] key;
+            while ((key = keys[index]) != null) {
+                if (Arrays.equals(key, 0, key.length, bytes, from, to)) {
+                    return slots[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            // FNV-1a, then spread so the low bits used for the index depend on every byte
+            int hash = 0x811c9dc5;
+            for (int i = from; i < to; i++) {
+                hash = (hash ^ bytes[i]) * 0x01000193;
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package uk.co.hpnet.tascam.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One non-blocking mixer connection, driven entirely by its {@link NioEventLoop}.
+ * <p>
+ * The login handshake is a small state machine advanced by each received line.
+ * Once logged in, CR+LF framed lines are handed to the {@link ResponseDispatcher} as bytes.
+ * Outbound commands are queued by any thread and copied into a direct buffer
+ * on the loop thread.
+ */
+class NioConnection {
+
+    private static final Logger logger = LogManager.getLogger(NioConnection.class);
+
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+    private static final int WRITE_BUFFER_BYTES = 4 * CommandPacker.MAX_COMMAND_BYTES;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    enum State { CONNECTING, AWAIT_PROMPT, AWAIT_LOGIN, READY, CLOSED }
+
+    private final NioEventLoop loop;
+    private final SocketChannel channel;
+    private final String password;
+    private final ResponseDispatcher dispatcher;
+    private final CompletableFuture<Void> login = new CompletableFuture<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+    private final Queue<byte[]> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable flushTask = this::flushFromLoop;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private SelectionKey key;
+    private volatile State state = State.CONNECTING;
+
+    NioConnection(NioEventLoop loop, SocketChannel channel, String password, ResponseDispatcher dispatcher) {
+        this.loop = loop;
+        this.channel = channel;
+        this.password = password;
+        this.dispatcher = dispatcher;
+        writeBuffer.flip();
+    }
+
+    /**
+     * Starts connecting; the returned future completes once login succeeds.
+     */
+    CompletableFuture<Void> start(InetSocketAddress address) {
+        loop.execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                key = channel.register(loop.selector(), SelectionKey.OP_CONNECT, this);
+                if (channel.connect(address)) {
+                    onConnected();
+                }
+            } catch (IOException e) {
+                closeNow(e);
+            }
+        });
+        return login;
+    }
+
+    State state() {
+        return state;
+    }
+
+    /**
+     * Queues an encoded line, CR+LF included. Safe to call from any thread.
+     *
+     * @throws IOException if the connection is closed
+     */
+    void sendLine(byte[] line) throws IOException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("SEND: {}", new String(line, 0, line.length - 2, StandardCharsets.UTF_8));
+        }
+        enqueue(line);
+    }
+
+    private void enqueue(byte[] encoded) throws IOException {
+        if (state == State.CLOSED) {
+            throw new TascamProtocolException("Connection closed");
+        }
+        if (encoded.length > WRITE_BUFFER_BYTES) {
+            throw new IllegalArgumentException("Command too long: " + encoded.length + " bytes");
+        }
+        outbound.add(encoded);
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(flushTask);
+        }
+    }
+
+    /**
+     * Closes the connection from any thread.
+     */
+    void close(IOException cause) {
+        loop.execute(() -> closeNow(cause));
+    }
+
+    /**
+     * Closes the connection; must run on the loop thread.
+     */
+    void closeNow(IOException cause) {
+        if (state == State.CLOSED) {
+            return;
+        }
+        state = State.CLOSED;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+        login.completeExceptionally(cause);
+        dispatcher.close(cause instanceof TascamProtocolException ? cause
+            : new TascamProtocolException("Connection lost: " + cause.getMessage(), cause));
+    }
+
+    /**
+     * Handles a ready key; called by the loop thread.
+     */
+    void handle(SelectionKey readyKey) {
+        try {
+            if (!readyKey.isValid()) {
+                return;
+            }
+            if (readyKey.isConnectable()) {
+                if (channel.finishConnect()) {
+                    onConnected();
+                }
+            }
+            if (readyKey.isValid() && readyKey.isReadable()) {
+                onReadable();
+            }
+            if (readyKey.isValid() && readyKey.isWritable()) {
+                writePending();
+            }
+        } catch (IOException e) {
+            closeNow(e);
+        }
+    }
+
+    private void onConnected() throws IOException {
+        logger.debug("Connected to {}", channel.getRemoteAddress());
+        state = State.AWAIT_PROMPT;
+        key.interestOps(SelectionKey.OP_READ);
+        // Send initial CR+LF to start login
+        enqueueRaw(CRLF);
+    }
+
+    private void onReadable() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            closeNow(new TascamProtocolException("Connection closed by device"));
+            return;
+        }
+        readBuffer.flip();
+        while (readBuffer.hasRemaining() && state != State.CLOSED) {
+            // Copy up to and including the next LF into the line buffer in one go
+            int newline = -1;
+            for (int i = readBuffer.position(); i < readBuffer.limit(); i++) {
+                if (readBuffer.get(i) == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            int chunk = (newline < 0 ? readBuffer.limit() : newline) - readBuffer.position();
+            if (lineLength + chunk > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + chunk));
+            }
+            readBuffer.get(line, lineLength, chunk);
+            lineLength += chunk;
+            if (newline >= 0) {
+                readBuffer.get(); // the LF
+                int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                lineLength = 0;
+                onLine(length);
+            }
+        }
+        readBuffer.clear();
+    }
+
+    /**
+     * Handles the line held in {@code line[0, length)}. Only the login steps need it decoded.
+     */
+    private void onLine(int length) throws IOException {
+        if (state == State.READY) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("RECV: {}", new String(line, 0, length, StandardCharsets.UTF_8));
+            }
+            dispatcher.dispatch(line, 0, length);
+            return;
+        }
+        String received = new String(line, 0, length, StandardCharsets.UTF_8);
+        logger.debug("RECV: {}", received);
+        switch (state) {
+            case AWAIT_PROMPT -> {
+                AbstractTascamClient.checkPasswordPrompt(received);
+                logger.debug("Sending password");
+                state = State.AWAIT_LOGIN;
+                enqueueRaw(CommandEncoder.encodeLine(password));
+            }
+            case AWAIT_LOGIN -> {
+                AbstractTascamClient.checkLoginResult(received);
+                logger.debug("Login successful");
+                state = State.READY;
+                login.complete(null);
+            }
+            default -> logger.debug("Ignoring line in state {}", state);
+        }
+    }
+
+    private void enqueueRaw(byte[] data) throws IOException {
+        outbound.add(data);
+        writePending();
+    }
+
+    private void flushFromLoop() {
+        flushScheduled.set(false);
+        if (state == State.CLOSED || state == State.CONNECTING) {
+            return;
+        }
+        try {
+            writePending();
+        } catch (IOException e) {
+            closeNow(e);
+        }
+    }
+
+    /**
+     * Copies queued lines into the direct buffer and writes as much as the socket takes.
+     */
+    private void writePending() throws IOException {
+        if (state == State.CONNECTING) {
+            return;
+        }
+        while (true) {
+            writeBuffer.compact();
+            byte[] next;
+            while ((next = outbound.peek()) != null && writeBuffer.remaining() >= next.length) {
+                outbound.poll();
+                writeBuffer.put(next);
+            }
+            writeBuffer.flip();
+            if (!writeBuffer.hasRemaining()) {
+                break;
+            }
+            channel.write(writeBuffer);
+            if (writeBuffer.hasRemaining()) {
+                // Socket buffer full; finish when the channel becomes writable again
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            if (outbound.isEmpty()) {
+                break;
+            }
+        }
+        if (key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+}
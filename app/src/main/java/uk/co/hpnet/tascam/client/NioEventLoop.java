@@ -0,0 +1,111 @@
+package uk.co.hpnet.tascam.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single selector thread that drives any number of {@link TascamNioClient} connections.
+ * <p>
+ * All socket I/O and connection state changes happen on this thread; callers only
+ * queue work for it. One loop comfortably holds sessions to hundreds of mixers,
+ * as each connection is just a channel, two buffers and a small state machine.
+ */
+public class NioEventLoop implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(NioEventLoop.class);
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public NioEventLoop() throws IOException {
+        this("tascam-nio");
+    }
+
+    /**
+     * Creates and starts an event loop.
+     *
+     * @param threadName name of the selector thread
+     * @throws IOException if the selector cannot be opened
+     */
+    public NioEventLoop(String threadName) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Runs a task on the event loop thread.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select(this::handle);
+            } catch (IOException e) {
+                logger.warn("Selector failed: {}", e.toString());
+            }
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Event loop task failed: {}", e.toString());
+                }
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioConnection connection) {
+                connection.closeNow(new TascamProtocolException("Event loop closed"));
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (key.attachment() instanceof NioConnection connection) {
+            connection.handle(key);
+        }
+    }
+
+    /**
+     * Stops the loop and closes every connection it drives.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        if (!inEventLoop()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
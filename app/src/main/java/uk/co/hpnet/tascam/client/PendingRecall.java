@@ -0,0 +1,145 @@
+package uk.co.hpnet.tascam.client;
+
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A preset recall split into its phases, so the SET can be issued at a chosen instant.
+ * Created by {@link AbstractTascamClient#prepareRecall}, sent by
+ * {@link AbstractTascamClient#issueRecall} and confirmed by
+ * {@link AbstractTascamClient#completeRecall}.
+ */
+public final class PendingRecall {
+
+    private final int presetNumber;
+    private final byte[] line;
+    private final int cid;
+    private final Optional<Preset> currentBefore;
+    private final CompletableFuture<String> presetNotifyWaiter;
+    private final CompletableFuture<String> presetNotify;
+    private final SettleDetector settle;
+    private volatile CompletableFuture<String> ack;
+    private volatile long issuedNanos;
+    private volatile long ackedNanos;
+    private volatile long confirmedNanos;
+    private volatile Optional<Preset> loadedPreset = Optional.empty();
+
+    PendingRecall(int presetNumber, byte[] line, int cid, Optional<Preset> currentBefore,
+                  CompletableFuture<String> presetNotify, SettleDetector settle) {
+        this.presetNumber = presetNumber;
+        this.settle = settle;
+        this.line = line;
+        this.cid = cid;
+        this.currentBefore = currentBefore;
+        this.presetNotifyWaiter = presetNotify;
+        // Stamped on the reader thread as the NOTIFY is dispatched, before any waiter resumes
+        this.presetNotify = presetNotify.thenApply(notify -> {
+            confirmedNanos = System.nanoTime();
+            return notify;
+        });
+    }
+
+    public int presetNumber() {
+        return presetNumber;
+    }
+
+    /**
+     * Whether the mixer was already on this preset, in which case it sends no NOTIFY.
+     */
+    public boolean alreadyOnPreset() {
+        return currentBefore.isPresent() && currentBefore.get().number() == presetNumber;
+    }
+
+    /**
+     * The preset the mixer reported as loaded once the recall completed, with the name
+     * it gave for the slot. Empty until then, or if the mixer did not report a name.
+     */
+    public Optional<Preset> loadedPreset() {
+        return loadedPreset;
+    }
+
+    /**
+     * The {@link System#nanoTime()} just after the SET was written, or empty if not yet issued.
+     */
+    public OptionalLong issuedNanos() {
+        return ack == null ? OptionalLong.empty() : OptionalLong.of(issuedNanos);
+    }
+
+    /**
+     * The {@link System#nanoTime()} at which the preset NOTIFY arrived, or empty if it has not.
+     */
+    public OptionalLong confirmedNanos() {
+        return presetNotify.isDone() && !presetNotify.isCompletedExceptionally()
+            ? OptionalLong.of(confirmedNanos) : OptionalLong.empty();
+    }
+
+    /**
+     * The encoded SET line, CR+LF included.
+     */
+    byte[] line() {
+        return line;
+    }
+
+    int cid() {
+        return cid;
+    }
+
+    CompletableFuture<String> presetNotify() {
+        return presetNotify;
+    }
+
+    /**
+     * The {@link System#nanoTime()} at which the SET's response arrived; valid once {@link #ack()} is done.
+     */
+    long ackedNanos() {
+        return ackedNanos;
+    }
+
+    CompletableFuture<String> ack() {
+        return ack;
+    }
+
+    SettleDetector settle() {
+        return settle;
+    }
+
+    Optional<Preset> currentBefore() {
+        return currentBefore;
+    }
+
+    void loaded(Optional<Preset> preset) {
+        this.loadedPreset = preset;
+    }
+
+    void issued(CompletableFuture<String> ack, long issuedNanos) {
+        this.issuedNanos = issuedNanos;
+        // Stamped on the reader thread as the response is dispatched, like the NOTIFY
+        this.ack = ack.thenApply(response -> {
+            ackedNanos = System.nanoTime();
+            return response;
+        });
+    }
+
+    /**
+     * Marks the recall as superseded by a newer one. If it has not yet been confirmed it still
+     * waits for the acknowledgement and the preset NOTIFY, but the settle wait ends early and
+     * verification is skipped, so the newer recall can go out sooner. Safe to call from any thread.
+     */
+    public void preempt() {
+        settle.preempt();
+    }
+
+    public boolean preempted() {
+        return settle.preempted();
+    }
+
+    /**
+     * Abandons the recall, releasing its NOTIFY waiter.
+     */
+    void cancel() {
+        presetNotifyWaiter.cancel(false);
+    }
+}
@@ -0,0 +1,321 @@
+package uk.co.hpnet.tascam.client;
+
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Single-pass, byte-level parser for preset GET responses and NOTIFY lines.
+ * <p>
+ * Each line is tokenized once into {@code KEY:VALUE} pairs, with quoted values allowed to
+ * contain spaces. Slot values land in arrays indexed by preset number, so parsing allocates
+ * nothing once a slot's name has been seen: a name is only decoded to a {@code String} when
+ * its bytes change. State accumulates across {@link #parse} calls until {@link #reset}, which
+ * suits a listing split over several responses.
+ * <p>
+ * Understood keys: {@code PRESET/<n>/NAME}, {@code PRESET/<n>/LOCK}, {@code PRESET/<n>/CLEARED},
+ * {@code PRESET/CUR}, {@code PRESET/NAME} and {@code CID}. Error values such as {@code ERR5}
+ * leave the key unset, as do slot numbers outside 1 to the maximum preset number.
+ * <p>
+ * Not thread-safe: use one instance per thread or per call.
+ */
+public final class PresetResponseParser {
+
+    private static final byte[] PRESET = "PRESET/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NAME = "NAME".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOCK = "LOCK".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLEARED = "CLEARED".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CUR = "CUR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CID = "CID".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ON = "ON".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OFF = "OFF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "TRUE".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "FALSE".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int NO_VALUE = -1;
+
+    // Per-slot state bits
+    private static final byte HAS_NAME = 1;
+    private static final byte LOCK_KNOWN = 2;
+    private static final byte LOCKED = 4;
+    private static final byte CLEARED_KNOWN = 8;
+    private static final byte IS_CLEARED = 16;
+
+    private final int maxPreset;
+    private final byte[] slotState;
+    private final byte[][] nameBytes;
+    private final int[] nameLength;
+    private final String[] nameCache;
+
+    private int currentNumber = NO_VALUE;
+    private byte[] currentNameBytes = new byte[32];
+    private int currentNameLength = NO_VALUE;
+    private String currentNameCache;
+    private int cid = NO_VALUE;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Creates a parser for slots 1 to 50.
+     */
+    public PresetResponseParser() {
+        this(AbstractTascamClient.MAX_PRESET_NUMBER);
+    }
+
+    PresetResponseParser(int maxPreset) {
+        this.maxPreset = maxPreset;
+        this.slotState = new byte[maxPreset + 1];
+        this.nameBytes = new byte[maxPreset + 1][];
+        this.nameLength = new int[maxPreset + 1];
+        this.nameCache = new String[maxPreset + 1];
+    }
+
+    /**
+     * Forgets everything parsed so far. Decoded names are kept for reuse.
+     */
+    public PresetResponseParser reset() {
+        Arrays.fill(slotState, (byte) 0);
+        currentNumber = NO_VALUE;
+        currentNameLength = NO_VALUE;
+        cid = NO_VALUE;
+        return this;
+    }
+
+    /**
+     * Parses one line, without its CR+LF.
+     */
+    public PresetResponseParser parse(String line) {
+        return parse(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public PresetResponseParser parse(byte[] line) {
+        return parse(line, 0, line.length);
+    }
+
+    /**
+     * Parses the buffer's remaining bytes as one line. The buffer's position is not changed.
+     */
+    public PresetResponseParser parse(ByteBuffer line) {
+        if (line.hasArray()) {
+            return parse(line.array(), line.arrayOffset() + line.position(), line.remaining());
+        }
+        int length = line.remaining();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        line.get(line.position(), scratch, 0, length);
+        return parse(scratch, 0, length);
+    }
+
+    /**
+     * Parses one line held in {@code bytes[offset, offset + length)}.
+     */
+    public PresetResponseParser parse(byte[] bytes, int offset, int length) {
+        cid = NO_VALUE;
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            while (i < end && isSeparator(bytes[i])) {
+                i++;
+            }
+            int keyStart = i;
+            while (i < end && bytes[i] != ':' && !isSeparator(bytes[i])) {
+                i++;
+            }
+            if (i >= end || bytes[i] != ':') {
+                // A bare word such as OK, GET or NOTIFY
+                continue;
+            }
+            int keyEnd = i++;
+
+            int valueStart;
+            int valueEnd;
+            boolean quoted = i < end && bytes[i] == '"';
+            if (quoted) {
+                valueStart = ++i;
+                while (i < end && bytes[i] != '"') {
+                    i++;
+                }
+                if (i >= end) {
+                    // Unterminated quote: nothing usable follows
+                    return this;
+                }
+                valueEnd = i++;
+                while (i < end && !isSeparator(bytes[i])) {
+                    i++;
+                }
+            } else {
+                valueStart = i;
+                while (i < end && !isSeparator(bytes[i])) {
+                    i++;
+                }
+                valueEnd = i;
+            }
+            onPair(bytes, keyStart, keyEnd, valueStart, valueEnd, quoted);
+        }
+        return this;
+    }
+
+    /**
+     * The non-cleared presets seen since the last reset, in slot order.
+     */
+    public List<Preset> presets() {
+        List<Preset> presets = new ArrayList<>();
+        for (int n = 1; n <= maxPreset; n++) {
+            byte state = slotState[n];
+            // A slot only counts once the device has said it is not cleared
+            if ((state & HAS_NAME) != 0 && (state & CLEARED_KNOWN) != 0 && (state & IS_CLEARED) == 0) {
+                Optional<Boolean> locked = (state & LOCK_KNOWN) != 0
+                    ? Optional.of((state & LOCKED) != 0)
+                    : Optional.empty();
+                presets.add(new Preset(n, name(n), locked));
+            }
+        }
+        return presets;
+    }
+
+    /**
+     * The current preset, if both {@code PRESET/CUR} and {@code PRESET/NAME} were seen since the
+     * last reset. The first of each wins, as it does for a listing that carries them once.
+     */
+    public Optional<Preset> currentPreset() {
+        if (currentNumber == NO_VALUE || currentNameLength == NO_VALUE) {
+            return Optional.empty();
+        }
+        if (currentNameCache == null) {
+            currentNameCache = new String(currentNameBytes, 0, currentNameLength, StandardCharsets.UTF_8);
+        }
+        return Optional.of(new Preset(currentNumber, currentNameCache));
+    }
+
+    /**
+     * The numeric CID of the last line parsed, or -1 if it carried none.
+     */
+    public int cid() {
+        return cid;
+    }
+
+    private String name(int n) {
+        if (nameCache[n] == null) {
+            nameCache[n] = new String(nameBytes[n], 0, nameLength[n], StandardCharsets.UTF_8);
+        }
+        return nameCache[n];
+    }
+
+    private void onPair(byte[] b, int keyStart, int keyEnd, int valueStart, int valueEnd, boolean quoted) {
+        if (regionEquals(b, keyStart, keyEnd, CID)) {
+            cid = quoted ? NO_VALUE : parseNumber(b, valueStart, valueEnd);
+            return;
+        }
+        if (!startsWith(b, keyStart, keyEnd, PRESET)) {
+            return;
+        }
+        int rest = keyStart + PRESET.length;
+
+        if (regionEquals(b, rest, keyEnd, CUR)) {
+            int number = quoted ? NO_VALUE : parseNumber(b, valueStart, valueEnd);
+            if (currentNumber == NO_VALUE && number >= 1 && number <= maxPreset) {
+                currentNumber = number;
+            }
+            return;
+        }
+        if (regionEquals(b, rest, keyEnd, NAME)) {
+            if (currentNameLength == NO_VALUE && quoted && valueEnd > valueStart) {
+                setCurrentName(b, valueStart, valueEnd);
+            }
+            return;
+        }
+
+        // PRESET/<n>/<field>
+        int slash = rest;
+        while (slash < keyEnd && b[slash] != '/') {
+            slash++;
+        }
+        int n = parseNumber(b, rest, slash);
+        if (n < 1 || n > maxPreset || slash >= keyEnd) {
+            return;
+        }
+        int field = slash + 1;
+        if (regionEquals(b, field, keyEnd, NAME)) {
+            if (quoted && valueEnd > valueStart) {
+                setSlotName(n, b, valueStart, valueEnd);
+            }
+        } else if (quoted) {
+            return;
+        } else if (regionEquals(b, field, keyEnd, LOCK)) {
+            if (regionEquals(b, valueStart, valueEnd, ON)) {
+                slotState[n] |= LOCK_KNOWN | LOCKED;
+            } else if (regionEquals(b, valueStart, valueEnd, OFF)) {
+                slotState[n] = (byte) ((slotState[n] | LOCK_KNOWN) & ~LOCKED);
+            }
+        } else if (regionEquals(b, field, keyEnd, CLEARED)) {
+            if (regionEquals(b, valueStart, valueEnd, TRUE)) {
+                slotState[n] |= CLEARED_KNOWN | IS_CLEARED;
+            } else if (regionEquals(b, valueStart, valueEnd, FALSE)) {
+                slotState[n] = (byte) ((slotState[n] | CLEARED_KNOWN) & ~IS_CLEARED);
+            }
+        }
+    }
+
+    private void setSlotName(int n, byte[] b, int start, int end) {
+        int length = end - start;
+        byte[] existing = nameBytes[n];
+        if (existing == null || existing.length < length) {
+            nameBytes[n] = Arrays.copyOfRange(b, start, end);
+            nameCache[n] = null;
+        } else if (nameLength[n] != length || !Arrays.equals(existing, 0, length, b, start, end)) {
+            System.arraycopy(b, start, existing, 0, length);
+            nameCache[n] = null;
+        }
+        nameLength[n] = length;
+        slotState[n] |= HAS_NAME;
+    }
+
+    private void setCurrentName(byte[] b, int start, int end) {
+        int length = end - start;
+        if (currentNameBytes.length < length) {
+            currentNameBytes = new byte[Math.max(length, currentNameBytes.length * 2)];
+            currentNameCache = null;
+        } else if (currentNameLength != length
+            || !Arrays.equals(currentNameBytes, 0, length, b, start, end)) {
+            currentNameCache = null;
+        }
+        System.arraycopy(b, start, currentNameBytes, 0, length);
+        currentNameLength = length;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Parses ASCII digits, returning -1 if the region is empty, not all digits or too large.
+     */
+    private static int parseNumber(byte[] b, int start, int end) {
+        if (start >= end || end - start > 9) {
+            return NO_VALUE;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return NO_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean regionEquals(byte[] b, int start, int end, byte[] expected) {
+        return end - start == expected.length && Arrays.equals(b, start, end, expected, 0, expected.length);
+    }
+
+    private static boolean startsWith(byte[] b, int start, int end, byte[] prefix) {
+        return end - start >= prefix.length
+            && Arrays.equals(b, start, start + prefix.length, prefix, 0, prefix.length);
+    }
+}
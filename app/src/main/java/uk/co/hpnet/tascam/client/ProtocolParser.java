@@ -11,11 +11,8 @@ import java.util.regex.Pattern;
  */
 public class ProtocolParser {
 
-    private static final Pattern PRESET_NAME_PATTERN = Pattern.compile("PRESET/(\\d+)/NAME:\"([^\"]+)\"");
-    private static final Pattern PRESET_LOCK_PATTERN = Pattern.compile("PRESET/(\\d+)/LOCK:(ON|OFF)");
-    private static final Pattern PRESET_CLEARED_PATTERN = Pattern.compile("PRESET/(\\d+)/CLEARED:(TRUE|FALSE)");
-    private static final Pattern CURRENT_PRESET_PATTERN = Pattern.compile("PRESET/CUR:(\\d+)");
-    private static final Pattern CURRENT_NAME_PATTERN = Pattern.compile("PRESET/NAME:\"([^\"]+)\"");
+    private static final Pattern CID_PATTERN = Pattern.compile("(?:^| )CID:(\\w+)");
+    private static final String GET_RESPONSE_PREFIX = "OK GET";
 
     /**
      * Builds a GET command for a batch of presets.
@@ -27,15 +24,37 @@ public class ProtocolParser {
      */
     public String buildPresetBatchCommand(int startPreset, int count, String cid) {
         StringBuilder cmd = new StringBuilder("GET");
-        for (int j = startPreset; j < startPreset + count; j++) {
-            cmd.append(" PRESET/").append(j).append("/NAME");
-            cmd.append(" PRESET/").append(j).append("/LOCK");
-            cmd.append(" PRESET/").append(j).append("/CLEARED");
+        for (String key : presetSlotKeys(startPreset, startPreset + count - 1)) {
+            cmd.append(' ').append(key);
         }
         cmd.append(" CID:").append(cid);
         return cmd.toString();
     }
 
+    /**
+     * Returns the keys needed to describe a range of preset slots.
+     *
+     * @param firstPreset first preset number (inclusive)
+     * @param lastPreset last preset number (inclusive)
+     * @return NAME, LOCK and CLEARED keys for each slot, in slot order
+     */
+    public List<String> presetSlotKeys(int firstPreset, int lastPreset) {
+        List<String> keys = new ArrayList<>();
+        for (int j = firstPreset; j <= lastPreset; j++) {
+            keys.add("PRESET/" + j + "/NAME");
+            keys.add("PRESET/" + j + "/LOCK");
+            keys.add("PRESET/" + j + "/CLEARED");
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the keys needed to describe the current preset.
+     */
+    public List<String> currentPresetKeys() {
+        return List.of("PRESET/CUR", "PRESET/NAME");
+    }
+
     /**
      * Builds a GET command for current preset info.
      *
@@ -67,43 +86,87 @@ public class ProtocolParser {
         return "NOTIFY PRESET/CUR:" + presetNumber;
     }
 
+    /**
+     * Extracts the command ID from a command or its response.
+     * NG responses echo the original command, so its CID is found too.
+     * The last CID wins, as the CID parameter always follows any quoted names.
+     *
+     * @param line a command or response line
+     * @return the CID, or empty if the line carries none
+     */
+    public Optional<String> extractCid(String line) {
+        Matcher matcher = CID_PATTERN.matcher(line);
+        String cid = null;
+        while (matcher.find()) {
+            cid = matcher.group(1);
+        }
+        return Optional.ofNullable(cid);
+    }
+
+    /**
+     * Checks whether a line is the NOTIFY announcing that a preset became current.
+     *
+     * @param line a line received from the device
+     * @param presetNumber the expected preset number
+     * @return true if the line reports exactly that preset
+     */
+    public boolean isPresetNotify(String line, int presetNumber) {
+        String prefix = buildPresetNotifyPrefix(presetNumber);
+        return line.startsWith(prefix)
+            && (line.length() == prefix.length() || line.charAt(prefix.length()) == ' ');
+    }
+
     /**
      * Parses a batch response containing preset info.
      *
      * @param response the raw response string
-     * @return list of non-cleared presets found in the response
+     * @return list of non-cleared presets found in the response, in slot order
+     * @see PresetResponseParser
      */
     public List<Preset> parsePresetBatch(String response) {
-        Map<Integer, String> names = new HashMap<>();
-        Map<Integer, Boolean> locks = new HashMap<>();
-        Map<Integer, Boolean> cleared = new HashMap<>();
-
-        Matcher nameMatcher = PRESET_NAME_PATTERN.matcher(response);
-        while (nameMatcher.find()) {
-            int num = Integer.parseInt(nameMatcher.group(1));
-            names.put(num, nameMatcher.group(2));
-        }
-
-        Matcher lockMatcher = PRESET_LOCK_PATTERN.matcher(response);
-        while (lockMatcher.find()) {
-            int num = Integer.parseInt(lockMatcher.group(1));
-            locks.put(num, "ON".equals(lockMatcher.group(2)));
-        }
+        return new PresetResponseParser().parse(response).presets();
+    }
 
-        Matcher clearedMatcher = PRESET_CLEARED_PATTERN.matcher(response);
-        while (clearedMatcher.find()) {
-            int num = Integer.parseInt(clearedMatcher.group(1));
-            cleared.put(num, "TRUE".equals(clearedMatcher.group(2)));
+    /**
+     * Parses a GET response into its key/value pairs.
+     * Values are returned as sent by the device, so quoted strings keep their quotes
+     * and errors appear as {@code ERRn}. The CID is not included.
+     *
+     * @param response the raw response string
+     * @return the values keyed by parameter, in response order
+     * @throws TascamProtocolException if the response is not a GET response
+     */
+    public Map<String, String> parseGetResponse(String response) throws TascamProtocolException {
+        if (!response.startsWith(GET_RESPONSE_PREFIX)) {
+            throw new TascamProtocolException("Unexpected response to GET: " + response);
         }
 
-        // Build preset objects for non-cleared slots
-        List<Preset> presets = new ArrayList<>();
-        for (Integer num : names.keySet()) {
-            if (!cleared.getOrDefault(num, true)) {
-                presets.add(new Preset(num, names.get(num), locks.get(num)));
+        Map<String, String> values = new LinkedHashMap<>();
+        int i = GET_RESPONSE_PREFIX.length();
+        int length = response.length();
+        while (i < length) {
+            if (response.charAt(i) == ' ') {
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean quoted = false;
+            while (i < length && (quoted || response.charAt(i) != ' ')) {
+                if (response.charAt(i) == '"') {
+                    quoted = !quoted;
+                }
+                i++;
+            }
+            String token = response.substring(start, i);
+            int colon = token.indexOf(':');
+            if (colon > 0) {
+                String key = token.substring(0, colon);
+                if (!"CID".equals(key)) {
+                    values.put(key, token.substring(colon + 1));
+                }
             }
         }
-        return presets;
+        return values;
     }
 
     /**
@@ -111,17 +174,9 @@ public class ProtocolParser {
      *
      * @param response the raw response string
      * @return the current preset, or empty if not found
+     * @see PresetResponseParser
      */
     public Optional<Preset> parseCurrentPreset(String response) {
-        Matcher curMatcher = CURRENT_PRESET_PATTERN.matcher(response);
-        Matcher nameMatcher = CURRENT_NAME_PATTERN.matcher(response);
-        
-        if (!curMatcher.find() || !nameMatcher.find()) {
-            return Optional.empty();
-        }
-
-        int number = Integer.parseInt(curMatcher.group(1));
-        String name = nameMatcher.group(1);
-        return Optional.of(new Preset(number, name));
+        return new PresetResponseParser().parse(response).currentPreset();
     }
 }
@@ -0,0 +1,20 @@
+package uk.co.hpnet.tascam.client;
+
+/**
+ * Receives NOTIFY lines as the bytes read from the socket, before any decoding.
+ * <p>
+ * For consumers that handle every NOTIFY and want to avoid a {@code String} per line:
+ * a connection with only raw listeners never decodes a NOTIFY at all. The bytes are the
+ * transport's read buffer, so they must be used or copied before returning; the listener
+ * runs on the transport's reader thread and must not block.
+ */
+@FunctionalInterface
+public interface RawNotifyListener {
+
+    /**
+     * @param bytes buffer holding the line, UTF-8, starting {@code NOTIFY } and without CR+LF
+     * @param offset where the line starts
+     * @param length line length in bytes
+     */
+    void onNotify(byte[] bytes, int offset, int length);
+}
@@ -0,0 +1,279 @@
+package uk.co.hpnet.tascam.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.metrics.ClientMetrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Routes lines received from the mixer to whoever is waiting for them.
+ * OK/NG responses complete the future registered for their CID; NOTIFY lines
+ * are passed to every registered waiter and listener, raw listeners first; METER lines
+ * go to every meter subscription. Safe for use from many threads,
+ * with {@link #dispatch} called from a single reader.
+ */
+class ResponseDispatcher {
+
+    private static final Logger logger = LogManager.getLogger(ResponseDispatcher.class);
+
+    private static final byte[] NOTIFY_PREFIX = "NOTIFY ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] METER_PREFIX = "METER ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OK_PREFIX = "OK ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NG_PREFIX = "NG ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CID_PREFIX = "CID:".getBytes(StandardCharsets.US_ASCII);
+
+    static final int NO_CID = -1;
+    static final int NON_NUMERIC_CID = -2;
+
+    private final InFlightTable<CompletableFuture<String>> inFlight = new InFlightTable<>();
+    private final List<Consumer<String>> notifyListeners = new CopyOnWriteArrayList<>();
+    private final List<RawNotifyListener> rawNotifyListeners = new CopyOnWriteArrayList<>();
+    private final List<MeterSubscription> meterSubscriptions = new CopyOnWriteArrayList<>();
+    private final List<NotifyWaiter> notifyWaiters = new CopyOnWriteArrayList<>();
+    private volatile IOException closedCause;
+    private volatile ClientMetrics metrics = new ClientMetrics();
+
+    /**
+     * Sets where received bytes and skipped NOTIFY lines are counted.
+     */
+    void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers a command awaiting its response.
+     *
+     * @param cid the numeric command ID
+     * @return a future completed with the response line
+     */
+    CompletableFuture<String> register(int cid) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        IOException cause = closedCause;
+        if (cause != null) {
+            future.completeExceptionally(cause);
+            return future;
+        }
+        inFlight.put(cid, future);
+        // Close may have drained the table between the check and the put
+        if (closedCause != null && inFlight.remove(cid) != null) {
+            future.completeExceptionally(closedCause);
+        }
+        return future;
+    }
+
+    /**
+     * Forgets a command whose response is no longer wanted (e.g. the write failed).
+     */
+    void cancel(int cid) {
+        inFlight.remove(cid);
+    }
+
+    /**
+     * How many commands are waiting for a response.
+     */
+    int pendingCount() {
+        return inFlight.size();
+    }
+
+    void addNotifyListener(Consumer<String> listener) {
+        notifyListeners.add(listener);
+    }
+
+    void removeNotifyListener(Consumer<String> listener) {
+        notifyListeners.remove(listener);
+    }
+
+    void addRawNotifyListener(RawNotifyListener listener) {
+        rawNotifyListeners.add(listener);
+    }
+
+    void removeRawNotifyListener(RawNotifyListener listener) {
+        rawNotifyListeners.remove(listener);
+    }
+
+    void addMeterSubscription(MeterSubscription subscription) {
+        meterSubscriptions.add(subscription);
+    }
+
+    void removeMeterSubscription(MeterSubscription subscription) {
+        meterSubscriptions.remove(subscription);
+    }
+
+    /**
+     * Returns a future completed by the first NOTIFY line matching the predicate.
+     * The waiter is registered immediately, so call this before sending the
+     * command that triggers the NOTIFY.
+     */
+    CompletableFuture<String> awaitNotify(Predicate<String> predicate) {
+        NotifyWaiter waiter = new NotifyWaiter(predicate, new CompletableFuture<>());
+        notifyWaiters.add(waiter);
+        waiter.future().whenComplete((line, error) -> notifyWaiters.remove(waiter));
+        IOException cause = closedCause;
+        if (cause != null) {
+            waiter.future().completeExceptionally(cause);
+        }
+        return waiter.future();
+    }
+
+    /**
+     * Routes one line received from the mixer, given as UTF-8 bytes without CR+LF.
+     * The line is only decoded if something wants it: a NOTIFY nobody is listening for
+     * and responses nobody is waiting for are dropped as bytes.
+     */
+    void dispatch(byte[] bytes, int offset, int length) {
+        // The CR+LF stripped by the transport was received too
+        metrics.addBytesReceived(length + 2L);
+        if (startsWith(bytes, offset, length, NOTIFY_PREFIX)) {
+            for (RawNotifyListener listener : rawNotifyListeners) {
+                try {
+                    listener.onNotify(bytes, offset, length);
+                } catch (RuntimeException e) {
+                    logger.warn("NOTIFY listener failed: {}", e.toString());
+                }
+            }
+            if (notifyListeners.isEmpty() && notifyWaiters.isEmpty()) {
+                return;
+            }
+            String line = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            for (Consumer<String> listener : notifyListeners) {
+                try {
+                    listener.accept(line);
+                } catch (RuntimeException e) {
+                    logger.warn("NOTIFY listener failed: {}", e.toString());
+                }
+            }
+            // Waiters last, so listeners have seen the line before a waiting caller resumes
+            boolean waited = false;
+            boolean matched = false;
+            for (NotifyWaiter waiter : notifyWaiters) {
+                waited = true;
+                if (waiter.predicate().test(line)) {
+                    waiter.future().complete(line);
+                    matched = true;
+                }
+            }
+            if (waited && !matched) {
+                metrics.notifySkipped();
+            }
+            return;
+        }
+        if (startsWith(bytes, offset, length, METER_PREFIX)) {
+            // Decoded straight from the read buffer: meter lines never become strings
+            for (MeterSubscription subscription : meterSubscriptions) {
+                try {
+                    subscription.onMeter(bytes, offset, length);
+                } catch (RuntimeException e) {
+                    logger.warn("Meter subscription failed: {}", e.toString());
+                }
+            }
+            return;
+        }
+        if (!startsWith(bytes, offset, length, OK_PREFIX) && !startsWith(bytes, offset, length, NG_PREFIX)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Ignoring unexpected line: {}", new String(bytes, offset, length, StandardCharsets.UTF_8));
+            }
+            return;
+        }
+
+        int cid = findCid(bytes, offset, length);
+        CompletableFuture<String> future;
+        if (cid >= 0) {
+            future = inFlight.remove(cid);
+        } else if (cid == NO_CID) {
+            // A response without a CID can only belong to a lone command
+            future = inFlight.removeSole();
+        } else {
+            future = null;
+        }
+        if (future == null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Ignoring unmatched line: {}", new String(bytes, offset, length, StandardCharsets.UTF_8));
+            }
+            return;
+        }
+        future.complete(new String(bytes, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Fails every waiting command and NOTIFY waiter; later registrations fail immediately.
+     */
+    void close(IOException cause) {
+        if (closedCause == null) {
+            closedCause = cause;
+        }
+        for (CompletableFuture<String> future : inFlight.drain()) {
+            future.completeExceptionally(cause);
+        }
+        for (NotifyWaiter waiter : notifyWaiters) {
+            waiter.future().completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Whether the connection behind this dispatcher has ended.
+     */
+    boolean isClosed() {
+        return closedCause != null;
+    }
+
+    /**
+     * Parses a CID sent by this client; CIDs are always decimal integers.
+     */
+    static OptionalInt parseCid(String cid) {
+        try {
+            return OptionalInt.of(Integer.parseInt(cid));
+        } catch (NumberFormatException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    /**
+     * Finds the last {@code CID:<word>} parameter in a line, as {@link ProtocolParser#extractCid} does.
+     *
+     * @return the CID, {@link #NO_CID} if there is none, or {@link #NON_NUMERIC_CID}
+     */
+    static int findCid(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int cid = NO_CID;
+        for (int i = offset; i + CID_PREFIX.length < end; i++) {
+            if ((i == offset || bytes[i - 1] == ' ') && startsWith(bytes, i, end - i, CID_PREFIX)) {
+                int valueStart = i + CID_PREFIX.length;
+                int valueEnd = valueStart;
+                long value = 0;
+                boolean numeric = true;
+                while (valueEnd < end && isWordByte(bytes[valueEnd])) {
+                    byte b = bytes[valueEnd++];
+                    if (b >= '0' && b <= '9' && value <= Integer.MAX_VALUE) {
+                        value = value * 10 + (b - '0');
+                    } else {
+                        numeric = false;
+                    }
+                }
+                if (valueEnd > valueStart) {
+                    cid = numeric && value <= Integer.MAX_VALUE ? (int) value : NON_NUMERIC_CID;
+                    i = valueEnd - 1;
+                }
+            }
+        }
+        return cid;
+    }
+
+    private static boolean isWordByte(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_';
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length, byte[] prefix) {
+        return length >= prefix.length && Arrays.equals(bytes, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private record NotifyWaiter(Predicate<String> predicate, CompletableFuture<String> future) {}
+}
@@ -0,0 +1,77 @@
+package uk.co.hpnet.tascam.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Decides when a mixer has settled after a preset recall by watching its NOTIFY stream.
+ * <p>
+ * A recall makes the mixer announce every parameter it changes; once no NOTIFY has arrived
+ * for a quiet window the preset has finished loading. Registered as a NOTIFY listener, the
+ * detector only stamps the arrival time, so the reader thread does no extra work.
+ */
+final class SettleDetector implements Consumer<String> {
+
+    /** Longest single sleep, so a preemption is noticed promptly. */
+    private static final long PREEMPT_CHECK_MS = 20;
+
+    private final Sleeper sleeper;
+    private volatile long lastActivityNanos;
+    private volatile boolean preempted;
+
+    SettleDetector(Sleeper sleeper) {
+        this.sleeper = sleeper;
+        this.lastActivityNanos = System.nanoTime();
+    }
+
+    @Override
+    public void accept(String notify) {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    /**
+     * Treats {@code nanos} as activity, e.g. the SET's acknowledgement when no NOTIFY is expected.
+     */
+    void activityAt(long nanos) {
+        if (nanos - lastActivityNanos > 0) {
+            lastActivityNanos = nanos;
+        }
+    }
+
+    /**
+     * Ends any wait in progress, and any later one, within {@value #PREEMPT_CHECK_MS}ms.
+     */
+    void preempt() {
+        preempted = true;
+    }
+
+    boolean preempted() {
+        return preempted;
+    }
+
+    /**
+     * Waits until no NOTIFY has arrived for {@code quietMs}, or until the deadline.
+     *
+     * @param quietMs how long the stream must be silent
+     * @param deadlineNanos {@link System#nanoTime()} after which to stop waiting
+     * @return true if the stream went quiet, false if the deadline came first or the wait was preempted
+     */
+    boolean awaitQuiet(long quietMs, long deadlineNanos) {
+        long quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMs);
+        while (!preempted) {
+            long now = System.nanoTime();
+            long quietAt = lastActivityNanos + quietNanos;
+            if (now - quietAt >= 0) {
+                return true;
+            }
+            if (now - deadlineNanos >= 0) {
+                return false;
+            }
+            // Sleep to whichever comes first; a NOTIFY meanwhile just moves quietAt on
+            long wakeAt = quietAt - deadlineNanos < 0 ? quietAt : deadlineNanos;
+            long sleepMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(wakeAt - now + 999_999));
+            sleeper.sleep(Math.min(sleepMs, PREEMPT_CHECK_MS));
+        }
+        return false;
+    }
+}
@@ -1,10 +1,14 @@
 package uk.co.hpnet.tascam.client;
 
 import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Client interface for communicating with Tascam MX-DCP series mixers.
@@ -35,6 +39,27 @@ public interface TascamClient extends AutoCloseable {
      */
     List<Preset> listPresets() throws IOException;
 
+    /**
+     * Get all non-empty presets and the currently active preset in one pass.
+     *
+     * @return the presets, sorted by number, and the current preset
+     * @throws IOException if communication fails
+     */
+    PresetListing listPresetsWithCurrent() throws IOException;
+
+    /**
+     * Find a preset by name (case-insensitive), reading only as many slots as needed.
+     * The current preset is checked first, then slots in ascending order; the search
+     * stops at the first match unless uniqueness is required.
+     *
+     * @param name the preset name
+     * @param requireUnique if true, read every slot and fail if more than one matches
+     * @return the matching preset, or empty if none matches
+     * @throws IllegalStateException if uniqueness is required and several slots match
+     * @throws IOException if communication fails
+     */
+    Optional<Preset> findPresetByName(String name, boolean requireUnique) throws IOException;
+
     /**
      * Get the currently active preset.
      *
@@ -47,7 +72,33 @@ public interface TascamClient extends AutoCloseable {
      * Recall (load) a preset by number.
      *
      * @param presetNumber the preset number to load (1-50)
+     * @return the preset the mixer reports as loaded, or empty if it gave no name
      * @throws IOException if communication fails or preset doesn't exist
      */
-    void recallPreset(int presetNumber) throws IOException;
+    Optional<Preset> recallPreset(int presetNumber) throws IOException;
+
+    /**
+     * Get the values of arbitrary keys, packing them into as few commands as possible.
+     * Values are returned as sent by the device (quoted strings keep their quotes,
+     * errors appear as {@code ERRn}).
+     *
+     * @param keys the keys to query
+     * @return values keyed by parameter, in response order
+     * @throws IOException if communication fails
+     */
+    Map<String, String> getBulk(Collection<String> keys) throws IOException;
+
+    /**
+     * Register a listener for NOTIFY lines pushed by the mixer.
+     *
+     * @param listener receives each raw NOTIFY line
+     */
+    void addNotifyListener(Consumer<String> listener);
+
+    /**
+     * Remove a previously registered NOTIFY listener.
+     *
+     * @param listener the listener to remove
+     */
+    void removeNotifyListener(Consumer<String> listener);
 }
@@ -0,0 +1,99 @@
+package uk.co.hpnet.tascam.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.metrics.ClientMetrics.Phase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking implementation of TascamClient built on {@link SocketChannel}.
+ * <p>
+ * Connections hold no thread of their own: every client sharing an {@link NioEventLoop}
+ * is driven by that loop's single selector thread, so one process can keep sessions
+ * open to hundreds of mixers. Calls on this client still block the caller until the
+ * mixer responds, exactly like {@link TascamTcpClient}.
+ */
+public class TascamNioClient extends AbstractTascamClient {
+
+    private static final Logger logger = LogManager.getLogger(TascamNioClient.class);
+
+    private final NioEventLoop loop;
+    private NioConnection connection;
+
+    /**
+     * Creates a client driven by the given event loop.
+     *
+     * @param loop the event loop shared with other clients
+     * @param recallWaitMs milliseconds to wait after recall before verification (0 to skip verification)
+     * @param timeoutMs connect, login and response timeout in milliseconds
+     */
+    public TascamNioClient(NioEventLoop loop, long recallWaitMs, int timeoutMs) {
+        this(loop, GLOBAL_CID_COUNTER, recallWaitMs, timeoutMs, Sleeper.defaultSleeper());
+    }
+
+    /**
+     * Creates a client with custom dependencies (for testing).
+     */
+    TascamNioClient(NioEventLoop loop, AtomicInteger cidCounter, long recallWaitMs, int timeoutMs, Sleeper sleeper) {
+        super(cidCounter, recallWaitMs, timeoutMs, sleeper);
+        this.loop = loop;
+    }
+
+    @Override
+    public void connect(String host, int port, String password) throws IOException {
+        logger.debug("Connecting to {}:{}", host, port);
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        connection = new NioConnection(loop, SocketChannel.open(), password, dispatcher);
+        try {
+            // Connect and login are one asynchronous step here, so both count as login
+            long loginStart = System.nanoTime();
+            connection.start(address).get(timeoutMs, TimeUnit.MILLISECONDS);
+            metrics().recordSince(Phase.LOGIN, loginStart);
+            loggedIn();
+        } catch (TimeoutException e) {
+            connection.close(new TascamProtocolException("Login timed out"));
+            throw new TascamProtocolException("No login response from " + host + ":" + port + " within " + timeoutMs + "ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new TascamProtocolException("Unexpected failure: " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            connection.close(new TascamProtocolException("Connect interrupted"));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted connecting to " + host + ":" + port);
+        }
+    }
+
+    @Override
+    public void close() {
+        logger.debug("Closing connection");
+        TascamProtocolException cause = new TascamProtocolException("Connection closed");
+        if (connection != null) {
+            connection.close(cause);
+        }
+        dispatcher.close(cause);
+    }
+
+    @Override
+    protected void writeCommand(String command) throws IOException {
+        writeLine(CommandEncoder.encodeLine(command));
+    }
+
+    @Override
+    protected void writeLine(byte[] line) throws IOException {
+        if (connection == null) {
+            throw new TascamProtocolException("Not connected");
+        }
+        connection.sendLine(line);
+        metrics().addBytesSent(line.length);
+    }
+}
@@ -2,34 +2,40 @@ package uk.co.hpnet.tascam.client;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.journal.TrafficJournal;
+import uk.co.hpnet.tascam.journal.TrafficJournal.Direction;
+import uk.co.hpnet.tascam.metrics.ClientMetrics.Phase;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * TCP implementation of TascamClient for communicating with Tascam MX-DCP series mixers.
+ * <p>
+ * After login a background reader thread owns the socket's input. It completes
+ * each command's future when the response with its CID arrives and hands NOTIFY
+ * lines to registered listeners, so one session can be shared by concurrent callers.
+ * <p>
+ * Commands are encoded into a reusable buffer and sent with a single socket write;
+ * received lines are framed as bytes and only decoded when a caller needs them.
+ * <p>
+ * With a {@link TrafficJournal} set, every line in either direction is recorded in it,
+ * except the password.
  */
-public class TascamTcpClient implements TascamClient {
+public class TascamTcpClient extends AbstractTascamClient {
 
     private static final Logger logger = LogManager.getLogger(TascamTcpClient.class);
 
-    private static final int DEFAULT_TIMEOUT_MS = 10000;
-    private static final int MAX_PRESET_NUMBER = 50;
-    private static final int BATCH_SIZE = 5;
-    private static final AtomicInteger GLOBAL_CID_COUNTER = new AtomicInteger(1000);
-
-    private final AtomicInteger cidCounter;
-    private final long recallWaitMs;
-    private final int timeoutMs;
-    private final Sleeper sleeper;
-    private final ProtocolParser parser = new ProtocolParser();
+    private final Object writeLock = new Object();
+    private final CommandEncoder encoder = new CommandEncoder();
     private Socket socket;
-    private BufferedReader reader;
-    private PrintWriter writer;
+    private LineReader reader;
+    private OutputStream out;
+    private TrafficJournal journal;
+    private int journalHost;
 
     /**
      * Creates a client with custom recall wait time and default timeout.
@@ -54,45 +60,54 @@ public class TascamTcpClient implements TascamClient {
      * Creates a client with custom dependencies (for testing).
      */
     TascamTcpClient(AtomicInteger cidCounter, long recallWaitMs, int timeoutMs, Sleeper sleeper) {
-        this.cidCounter = cidCounter;
-        this.recallWaitMs = recallWaitMs;
-        this.timeoutMs = timeoutMs;
-        this.sleeper = sleeper;
+        super(cidCounter, recallWaitMs, timeoutMs, sleeper);
+    }
+
+    /**
+     * Records this client's traffic in a journal, which may be shared with other clients.
+     * Must be called before {@link #connect}.
+     */
+    public void setJournal(TrafficJournal journal) {
+        this.journal = journal;
     }
 
     @Override
     public void connect(String host, int port, String password) throws IOException {
         logger.debug("Connecting to {}:{}", host, port);
+        if (journal != null) {
+            journalHost = journal.host(host, port);
+        }
+        long connectStart = System.nanoTime();
         socket = new Socket(host, port);
+        metrics().recordSince(Phase.CONNECT, connectStart);
+        long loginStart = System.nanoTime();
         socket.setSoTimeout(timeoutMs);
-        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-        writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        // Commands are single small writes; don't hold them back waiting for ACKs
+        socket.setTcpNoDelay(true);
+        reader = new LineReader(socket.getInputStream());
+        out = socket.getOutputStream();
 
         // Send initial CR+LF to start login
-        sendRaw("\r\n");
+        sendRaw(new byte[] {'\r', '\n'});
 
         // Read "Enter Password" prompt
-        String response = readLine();
-        if (response == null || !response.contains("Enter Password")) {
-            throw new TascamProtocolException("Unexpected response: " + response);
-        }
+        checkPasswordPrompt(readLine());
 
         // Send password
         logger.debug("Sending password");
-        sendRaw(password + "\r\n");
+        sendRaw(CommandEncoder.encodeLine(password));
 
         // Read login result
-        response = readLine();
-        if (response == null) {
-            throw new TascamProtocolException("No response after password");
-        }
-        if (response.contains("Another User Already Connected")) {
-            throw new TascamProtocolException("Another user is already connected to the mixer");
-        }
-        if (!response.contains("Login Successful")) {
-            throw new TascamProtocolException("Login failed: " + response);
-        }
+        checkLoginResult(readLine());
         logger.debug("Login successful");
+        metrics().recordSince(Phase.LOGIN, loginStart);
+        loggedIn();
+
+        // From here on the reader thread owns the input; response waits use their own timeout
+        socket.setSoTimeout(0);
+        Thread.ofVirtual()
+            .name("tascam-reader-" + host + ":" + port)
+            .start(this::readLoop);
     }
 
     @Override
@@ -105,122 +120,79 @@ public class TascamTcpClient implements TascamClient {
         } catch (IOException e) {
             // Ignore close errors
         }
+        dispatcher.close(new TascamProtocolException("Connection closed"));
     }
 
     @Override
-    public List<Preset> listPresets() throws IOException {
-        List<Preset> presets = new ArrayList<>();
-        
-        // Query presets in batches to stay under 1024 byte limit
-        for (int i = 1; i <= MAX_PRESET_NUMBER; i += BATCH_SIZE) {
-            int count = Math.min(BATCH_SIZE, MAX_PRESET_NUMBER - i + 1);
-            String cmd = parser.buildPresetBatchCommand(i, count, generateCid());
-            String response = sendCommand(cmd);
-            presets.addAll(parser.parsePresetBatch(response));
+    protected void writeCommand(String command) throws IOException {
+        synchronized (writeLock) {
+            logger.debug("SEND: {}", command);
+            int length = encoder.encode(command);
+            out.write(encoder.buffer(), 0, length);
+            if (journal != null) {
+                journal.append(journalHost, Direction.SENT, encoder.buffer(), 0, length - 2);
+            }
+            metrics().addBytesSent(length);
         }
-
-        presets.sort(Comparator.comparingInt(Preset::number));
-        return presets;
-    }
-
-    @Override
-    public Optional<Preset> getCurrentPreset() throws IOException {
-        String cmd = parser.buildCurrentPresetCommand(generateCid());
-        String response = sendCommand(cmd);
-        return parser.parseCurrentPreset(response);
     }
 
     @Override
-    public void recallPreset(int presetNumber) throws IOException {
-        if (presetNumber < 1 || presetNumber > MAX_PRESET_NUMBER) {
-            throw new IllegalArgumentException("Preset number must be between 1 and " + MAX_PRESET_NUMBER);
-        }
-        
-        // Check if we're already on this preset
-        Optional<Preset> currentBefore = getCurrentPreset();
-        boolean alreadyOnPreset = currentBefore.isPresent() && currentBefore.get().number() == presetNumber;
-        
-        String cmd = parser.buildRecallCommand(presetNumber, generateCid());
-        String response = sendCommand(cmd);
-        
-        // Response should be "OK SET CID:<id>"
-        if (!response.startsWith("OK SET")) {
-            throw new TascamProtocolException("Failed to recall preset: " + response);
-        }
-        
-        // Wait for NOTIFY PRESET/CUR:<n> confirming the preset change is complete
-        // If already on this preset, mixer won't send NOTIFY - skip waiting for it
-        if (!alreadyOnPreset) {
-            waitForPresetNotify(presetNumber);
-        }
-        
-        // Wait for mixer to stabilize after preset load and verify
-        if (recallWaitMs > 0) {
-            sleeper.sleep(recallWaitMs);
-            verifyPresetLoaded(presetNumber);
-            logger.debug("Preset {} recalled and verified successfully", presetNumber);
-        } else {
-            logger.debug("Preset {} recall sent (verification skipped)", presetNumber);
+    protected void writeLine(byte[] line) throws IOException {
+        synchronized (writeLock) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("SEND: {}", new String(line, 0, line.length - 2, StandardCharsets.UTF_8));
+            }
+            out.write(line);
+            if (journal != null) {
+                journal.append(journalHost, Direction.SENT, line, 0, line.length - 2);
+            }
+            metrics().addBytesSent(line.length);
         }
     }
 
     /**
-     * Waits for the NOTIFY PRESET/CUR message confirming preset change.
-     * The mixer sends multiple NOTIFYs (mutes, levels, etc.) before the preset NOTIFY.
+     * Sends login bytes, which are never journaled.
      */
-    private void waitForPresetNotify(int presetNumber) throws IOException {
-        String expectedNotify = parser.buildPresetNotifyPrefix(presetNumber);
-        String notify;
-        while ((notify = readLine()) != null) {
-            logger.debug("Received: {}", notify);
-            if (notify.startsWith(expectedNotify)) {
-                logger.debug("Preset change confirmed: {}", notify);
-                break;
-            }
-            // Continue reading other NOTIFYs until we get the preset one
-        }
+    private void sendRaw(byte[] data) throws IOException {
+        out.write(data);
     }
 
     /**
-     * Verifies that the expected preset is now active.
+     * Reads one line during login, decoded.
      */
-    private void verifyPresetLoaded(int expectedPresetNumber) throws IOException {
-        Optional<Preset> current = getCurrentPreset();
-        if (current.isEmpty()) {
-            throw new PresetRecallException("Failed to verify preset after recall");
-        }
-        if (current.get().number() != expectedPresetNumber) {
-            throw new PresetRecallException("Preset recall verification failed: expected " + expectedPresetNumber 
-                + " but got " + current.get().number());
-        }
-    }
-
-    private void sendRaw(String data) {
-        writer.print(data);
-        writer.flush();
-    }
-
     private String readLine() throws IOException {
-        String line = reader.readLine();
-        if (line != null) {
-            logger.debug("RECV: {}", line);
+        if (!reader.next()) {
+            return null;
         }
+        journalReceived();
+        String line = reader.decode();
+        logger.debug("RECV: {}", line);
         return line;
     }
 
-    private String sendCommand(String command) throws IOException {
-        logger.debug("SEND: {}", command);
-        writer.print(command + "\r\n");
-        writer.flush();
-        
-        String response = readLine();
-        if (response == null) {
-            throw new TascamProtocolException("No response from device");
+    /**
+     * Reads lines until the connection ends, routing each through the dispatcher.
+     */
+    private void readLoop() {
+        IOException cause = new TascamProtocolException("Connection closed by device");
+        try {
+            while (reader.next()) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("RECV: {}", reader.decode());
+                }
+                journalReceived();
+                dispatcher.dispatch(reader.buffer(), reader.lineStart(), reader.lineLength());
+            }
+        } catch (IOException e) {
+            cause = new TascamProtocolException("Connection lost: " + e.getMessage(), e);
+        } finally {
+            dispatcher.close(cause);
         }
-        return response;
     }
 
-    private String generateCid() {
-        return String.valueOf(cidCounter.getAndIncrement());
+    private void journalReceived() {
+        if (journal != null) {
+            journal.append(journalHost, Direction.RECEIVED, reader.buffer(), reader.lineStart(), reader.lineLength());
+        }
     }
 }
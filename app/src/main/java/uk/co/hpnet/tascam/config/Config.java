@@ -14,6 +14,8 @@ import java.util.Properties;
  * host=192.168.1.100
  * port=54726
  * password=secret
+ * cacheTtl=86400
+ * journal=/var/log/tascam-preset
  * </pre>
  */
 public class Config {
@@ -23,11 +25,16 @@ public class Config {
     private final Optional<String> host;
     private final Optional<Integer> port;
     private final Optional<String> password;
+    private final Optional<Long> cacheTtlSeconds;
+    private final Optional<Path> journalDirectory;
     
-    private Config(Optional<String> host, Optional<Integer> port, Optional<String> password) {
+    private Config(Optional<String> host, Optional<Integer> port, Optional<String> password,
+                   Optional<Long> cacheTtlSeconds, Optional<Path> journalDirectory) {
         this.host = host;
         this.port = port;
         this.password = password;
+        this.cacheTtlSeconds = cacheTtlSeconds;
+        this.journalDirectory = journalDirectory;
     }
     
     public Optional<String> host() {
@@ -42,6 +49,20 @@ public class Config {
         return password;
     }
     
+    /**
+     * How long a cached preset catalog may be used before it is rescanned.
+     */
+    public Optional<Long> cacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+    
+    /**
+     * Where to keep a journal of all mixer traffic, if one should be kept.
+     */
+    public Optional<Path> journalDirectory() {
+        return journalDirectory;
+    }
+    
     /**
      * Loads config from ~/.tascam-preset.conf if it exists.
      * Returns empty config if file doesn't exist.
@@ -77,8 +98,16 @@ public class Config {
                 throw new ConfigException("Invalid port in " + configPath + ": " + props.getProperty("port"));
             }
             Optional<String> password = Optional.ofNullable(props.getProperty("password"));
+            Optional<Long> cacheTtlSeconds;
+            try {
+                cacheTtlSeconds = Optional.ofNullable(props.getProperty("cacheTtl"))
+                    .map(Long::parseLong);
+            } catch (NumberFormatException e) {
+                throw new ConfigException("Invalid cacheTtl in " + configPath + ": " + props.getProperty("cacheTtl"));
+            }
+            Optional<Path> journalDirectory = Optional.ofNullable(props.getProperty("journal")).map(Path::of);
             
-            return new Config(host, port, password);
+            return new Config(host, port, password, cacheTtlSeconds, journalDirectory);
         } catch (IOException e) {
             throw new ConfigException("Failed to read " + configPath + ": " + e.getMessage());
         }
@@ -104,6 +133,6 @@ public class Config {
      * Returns an empty config with no values set.
      */
     public static Config empty() {
-        return new Config(Optional.empty(), Optional.empty(), Optional.empty());
+        return new Config(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
     }
 }
@@ -0,0 +1,121 @@
+package uk.co.hpnet.tascam.daemon;
+
+import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * CLI side of the daemon socket: sends one request per connection and decodes the reply.
+ */
+public class DaemonClient {
+
+    private final Path socketPath;
+
+    public DaemonClient(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Whether a daemon is accepting connections on the given socket.
+     */
+    public static boolean isRunning(Path socketPath) {
+        if (!Files.exists(socketPath)) {
+            return false;
+        }
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public PresetListing listPresets(String host, int port) throws IOException {
+        List<String> reply = request(DaemonProtocol.LIST + " " + host + " " + port);
+        List<Preset> presets = new ArrayList<>();
+        Optional<Preset> current = Optional.empty();
+        for (String line : reply) {
+            if (line.startsWith(DaemonProtocol.PRESET + " ")) {
+                presets.add(DaemonProtocol.decodePreset(line.substring(DaemonProtocol.PRESET.length() + 1)));
+            } else if (line.startsWith(DaemonProtocol.CURRENT + " ")) {
+                current = Optional.of(DaemonProtocol.decodePreset(line.substring(DaemonProtocol.CURRENT.length() + 1)));
+            }
+        }
+        return new PresetListing(presets, current);
+    }
+
+    /**
+     * Recalls a preset by name through the daemon.
+     *
+     * @param requireUnique if true, fail rather than pick one of several presets with the name
+     * @return the preset recalled
+     */
+    public Preset recallPreset(String host, int port, String presetName, boolean requireUnique) throws IOException {
+        String verb = requireUnique ? DaemonProtocol.RECALL_UNIQUE : DaemonProtocol.RECALL;
+        return firstPreset(request(verb + " " + host + " " + port + " " + presetName))
+            .orElseThrow(() -> new IOException("Daemon did not report the recalled preset"));
+    }
+
+    /**
+     * Recalls a preset by slot number through the daemon.
+     *
+     * @return the preset the mixer reports as loaded, or empty if it gave no name
+     */
+    public Optional<Preset> recallPreset(String host, int port, int presetNumber) throws IOException {
+        return firstPreset(request(DaemonProtocol.LOAD + " " + host + " " + port + " " + presetNumber));
+    }
+
+    private static Optional<Preset> firstPreset(List<String> reply) {
+        return reply.stream()
+            .filter(line -> line.startsWith(DaemonProtocol.PRESET + " "))
+            .findFirst()
+            .map(line -> DaemonProtocol.decodePreset(line.substring(DaemonProtocol.PRESET.length() + 1)));
+    }
+
+    /**
+     * Sends a request and returns the reply lines after {@code OK}.
+     *
+     * @throws IOException if the daemon is unreachable or replied with {@code ERR}
+     */
+    private List<String> request(String request) throws IOException {
+        if (request.contains("\n") || request.contains("\r")) {
+            throw new IllegalArgumentException("Request must be a single line");
+        }
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            channel.write(StandardCharsets.UTF_8.encode(request + "\n"));
+            channel.shutdownOutput();
+
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String status = reader.readLine();
+            if (status == null) {
+                throw new IOException("Daemon closed the connection without replying");
+            }
+            if (status.startsWith(DaemonProtocol.ERR + " ")) {
+                throw new IOException(status.substring(DaemonProtocol.ERR.length() + 1));
+            }
+            if (!status.equals(DaemonProtocol.OK)) {
+                throw new IOException("Unexpected reply from daemon: " + status);
+            }
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+}
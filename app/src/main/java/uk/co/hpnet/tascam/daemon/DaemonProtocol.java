@@ -0,0 +1,68 @@
+package uk.co.hpnet.tascam.daemon;
+
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.util.Optional;
+
+/**
+ * Line format spoken between the CLI and the daemon over the Unix domain socket.
+ * <p>
+ * Each connection carries one request line and the daemon's reply, ended by the
+ * daemon closing the connection:
+ * <pre>
+ * LIST &lt;host&gt; &lt;port&gt;
+ *   OK
+ *   PRESET &lt;n&gt; &lt;ON|OFF|-&gt; &lt;name&gt;     (one per preset)
+ *   CURRENT &lt;n&gt; - &lt;name&gt;            (if a preset is active)
+ *
+ * RECALL &lt;host&gt; &lt;port&gt; &lt;name&gt;
+ * RECALL_UNIQUE &lt;host&gt; &lt;port&gt; &lt;name&gt;  (fails if several presets have the name)
+ *   OK
+ *   PRESET &lt;n&gt; &lt;ON|OFF|-&gt; &lt;name&gt;     (the preset that ended up active, which a newer
+ *                                       recall may have superseded; absent if that one was
+ *                                       a LOAD and the mixer gave no name)
+ *
+ * LOAD &lt;host&gt; &lt;port&gt; &lt;n&gt;
+ *   OK
+ *   PRESET &lt;n&gt; &lt;ON|OFF|-&gt; &lt;name&gt;     (if the mixer named the loaded preset)
+ *
+ * Any failure:
+ *   ERR &lt;message&gt;
+ * </pre>
+ * Names are always the last field, so they may contain spaces.
+ */
+final class DaemonProtocol {
+
+    static final String LIST = "LIST";
+    static final String RECALL = "RECALL";
+    static final String RECALL_UNIQUE = "RECALL_UNIQUE";
+    static final String LOAD = "LOAD";
+    static final String OK = "OK";
+    static final String ERR = "ERR";
+    static final String PRESET = "PRESET";
+    static final String CURRENT = "CURRENT";
+
+    private DaemonProtocol() {
+    }
+
+    static String encodePreset(String tag, Preset preset) {
+        String lock = preset.locked().map(locked -> locked ? "ON" : "OFF").orElse("-");
+        return tag + " " + preset.number() + " " + lock + " " + preset.name();
+    }
+
+    /**
+     * Decodes a line written by {@link #encodePreset}, without its tag.
+     */
+    static Preset decodePreset(String fields) {
+        String[] parts = fields.split(" ", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed preset line: " + fields);
+        }
+        Optional<Boolean> locked = switch (parts[1]) {
+            case "ON" -> Optional.of(true);
+            case "OFF" -> Optional.of(false);
+            default -> Optional.empty();
+        };
+        return new Preset(Integer.parseInt(parts[0]), parts[2], locked);
+    }
+}
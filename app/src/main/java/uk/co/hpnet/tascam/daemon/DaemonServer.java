@@ -0,0 +1,221 @@
+package uk.co.hpnet.tascam.daemon;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.client.AbstractTascamClient;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.metrics.ClientMetrics;
+import uk.co.hpnet.tascam.metrics.PrometheusExporter;
+import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Serves {@code list} and {@code recall} requests from the CLI over a Unix domain socket,
+ * using a resident {@link MixerSession} per mixer.
+ * <p>
+ * Requests follow {@link DaemonProtocol}. Each accepted connection is handled on its own
+ * virtual thread; sessions are created on the first request for a mixer and kept for the
+ * life of the daemon.
+ */
+public class DaemonServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(DaemonServer.class);
+
+    private final Path socketPath;
+    private final String password;
+    private final Supplier<AbstractTascamClient> clientFactory;
+    private final long keepaliveSeconds;
+    private final Map<String, MixerSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private ServerSocketChannel server;
+    private Runnable metricsExport;
+    private volatile BusyBackoff busyBackoff = BusyBackoff.NONE;
+
+    /**
+     * @param socketPath where to create the socket
+     * @param password login password used for every mixer
+     * @param clientFactory creates an unconnected client whenever a session (re)connects
+     * @param keepaliveSeconds seconds between keepalives on each session (0 to disable)
+     */
+    public DaemonServer(Path socketPath, String password, Supplier<AbstractTascamClient> clientFactory,
+                        long keepaliveSeconds) {
+        this.socketPath = socketPath;
+        this.password = password;
+        this.clientFactory = clientFactory;
+        this.keepaliveSeconds = keepaliveSeconds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tascam-keepalive").daemon(true).factory());
+    }
+
+    /**
+     * Binds the socket, replacing a stale socket file left by a previous daemon,
+     * and starts accepting requests.
+     */
+    public void start() throws IOException {
+        if (DaemonClient.isRunning(socketPath)) {
+            throw new IOException("A daemon is already listening on " + socketPath);
+        }
+        Files.deleteIfExists(socketPath);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        logger.debug("Listening on {}", socketPath);
+        Thread.ofVirtual().name("tascam-daemon-accept").start(this::acceptLoop);
+    }
+
+    /**
+     * Connects to a mixer now, so the first request does not pay for the login.
+     */
+    public MixerSession open(String host, int port) throws IOException {
+        MixerSession session = session(host, port);
+        session.open();
+        return session;
+    }
+
+    /**
+     * Sets how sessions wait for a mixer that another client is holding. Applies to
+     * sessions created afterwards, so call it before {@link #start}.
+     */
+    public void setBusyBackoff(BusyBackoff busyBackoff) {
+        this.busyBackoff = busyBackoff;
+    }
+
+    /**
+     * Writes metrics to a Prometheus text file every {@code intervalSeconds}, and once more on close.
+     * The clients must be recording into {@code metrics}, e.g. via the client factory.
+     */
+    public void exportMetrics(ClientMetrics metrics, Path file, long intervalSeconds) {
+        metricsExport = () -> {
+            try {
+                PrometheusExporter.writeFile(metrics, file);
+            } catch (IOException e) {
+                logger.warn("Could not write metrics to {}: {}", file, e.getMessage());
+            }
+        };
+        scheduler.scheduleWithFixedDelay(metricsExport, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public Path socketPath() {
+        return socketPath;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+        scheduler.shutdownNow();
+        sessions.values().forEach(MixerSession::close);
+        sessions.clear();
+        if (metricsExport != null) {
+            metricsExport.run();
+        }
+    }
+
+    private MixerSession session(String host, int port) {
+        return sessions.computeIfAbsent(host + ":" + port,
+            key -> new MixerSession(host, port, password, clientFactory, busyBackoff, scheduler, keepaliveSeconds));
+    }
+
+    private void acceptLoop() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                logger.warn("Accept failed: {}", e.getMessage());
+                return;
+            }
+            Thread.ofVirtual().name("tascam-daemon-request").start(() -> handle(channel));
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel;
+             BufferedReader reader = new BufferedReader(
+                 new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+
+            String request = reader.readLine();
+            if (request == null) {
+                return;
+            }
+            logger.debug("Request: {}", request);
+            try {
+                respond(request, writer);
+            } catch (Exception e) {
+                String message = e.getMessage() != null ? e.getMessage() : e.toString();
+                writer.print(DaemonProtocol.ERR + " " + message.replace('\n', ' ') + "\n");
+            }
+            writer.flush();
+        } catch (IOException e) {
+            logger.debug("Request connection failed: {}", e.getMessage());
+        }
+    }
+
+    private void respond(String request, PrintWriter writer) throws IOException {
+        String[] parts = request.split(" ", 4);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Malformed request: " + request);
+        }
+        MixerSession session = session(parts[1], Integer.parseInt(parts[2]));
+
+        switch (parts[0]) {
+            case DaemonProtocol.LIST -> {
+                PresetListing listing = session.listPresets();
+                writer.print(DaemonProtocol.OK + "\n");
+                for (Preset preset : listing.presets()) {
+                    writer.print(DaemonProtocol.encodePreset(DaemonProtocol.PRESET, preset) + "\n");
+                }
+                listing.current().ifPresent(current ->
+                    writer.print(DaemonProtocol.encodePreset(DaemonProtocol.CURRENT, current) + "\n"));
+            }
+            case DaemonProtocol.RECALL, DaemonProtocol.RECALL_UNIQUE -> {
+                if (parts.length < 4) {
+                    throw new IllegalArgumentException("Malformed request: " + request);
+                }
+                Optional<Preset> active = session.recall(parts[3], parts[0].equals(DaemonProtocol.RECALL_UNIQUE));
+                writer.print(DaemonProtocol.OK + "\n");
+                active.ifPresent(preset ->
+                    writer.print(DaemonProtocol.encodePreset(DaemonProtocol.PRESET, preset) + "\n"));
+            }
+            case DaemonProtocol.LOAD -> {
+                if (parts.length < 4) {
+                    throw new IllegalArgumentException("Malformed request: " + request);
+                }
+                Optional<Preset> loaded = session.recall(Integer.parseInt(parts[3]));
+                writer.print(DaemonProtocol.OK + "\n");
+                loaded.ifPresent(preset ->
+                    writer.print(DaemonProtocol.encodePreset(DaemonProtocol.PRESET, preset) + "\n"));
+            }
+            default -> throw new IllegalArgumentException("Unknown request: " + parts[0]);
+        }
+    }
+}
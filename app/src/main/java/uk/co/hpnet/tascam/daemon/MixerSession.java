@@ -0,0 +1,478 @@
+package uk.co.hpnet.tascam.daemon;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.catalog.CatalogRecall;
+import uk.co.hpnet.tascam.client.AbstractTascamClient;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.client.MixerBusyException;
+import uk.co.hpnet.tascam.client.MixerStateMirror;
+import uk.co.hpnet.tascam.client.PendingRecall;
+import uk.co.hpnet.tascam.client.TascamProtocolException;
+import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A long-lived, logged-in session to one mixer.
+ * <p>
+ * The session connects on first use and reconnects if the mixer dropped it. A periodic
+ * {@code GET DEVICE/NAME} keeps a live session inside the device's 3 minute idle timeout;
+ * a session that has already dropped is left for the next request to reconnect. The preset
+ * list is cached per connection, so a recall by name is usually a single SET; the list is
+ * re-read when a name is not found in it, or when the slot it names turns out to hold a
+ * different preset, in which case the right slot is then recalled. Operations are serialised, since the mixer
+ * accepts only one client and recalls must not overlap. Recalls queue separately and
+ * coalesce, so a burst of button presses ends on the last one without working through
+ * each in turn (see {@link #submitRecall(int)}).
+ * <p>
+ * Each connection also keeps a {@link MixerStateMirror} of the current preset, seeded at
+ * login and updated by the mixer's NOTIFYs, so {@link #currentPreset()} is answered
+ * locally without queuing behind a recall or going to the mixer.
+ * <p>
+ * If another client (such as a technician's tablet) holds the mixer, connecting backs off
+ * and retries per the session's {@link BusyBackoff}. Requests queue in arrival order behind
+ * that one acquisition and then share the session it obtains; if it gives up, everything
+ * that queued behind it fails with it rather than starting a fresh wait of its own.
+ */
+public class MixerSession implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(MixerSession.class);
+
+    static final String KEEPALIVE_KEY = "DEVICE/NAME";
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final Supplier<AbstractTascamClient> clientFactory;
+    private final BusyBackoff backoff;
+    // Fair, so queued requests run in the order they arrived
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final ScheduledFuture<?> keepalive;
+    private AbstractTascamClient client;
+    // Written under the lock, read without it
+    private volatile MixerStateMirror mirror;
+    private List<Preset> presets;
+    private final Object recalls = new Object();
+    private RecallTarget runningTarget;
+    private final List<CompletableFuture<Optional<Preset>>> runningCallers = new ArrayList<>();
+    private RecallTarget pendingTarget;
+    private long pendingQueuedAt;
+    private final List<CompletableFuture<Optional<Preset>>> pendingCallers = new ArrayList<>();
+    private final List<CompletableFuture<Optional<Preset>>> supersededCallers = new ArrayList<>();
+    private boolean draining;
+    private volatile PendingRecall inFlight;
+    private long failedAcquireStartNanos;
+    private long failedAcquireEndNanos;
+    private MixerBusyException failedAcquire;
+
+    /**
+     * @param host mixer host
+     * @param port mixer port
+     * @param password login password
+     * @param clientFactory creates an unconnected client whenever a (re)connect is needed
+     * @param backoff how to wait for the mixer if another client holds it
+     * @param scheduler runs the keepalive
+     * @param keepaliveSeconds seconds between keepalives (0 to disable)
+     */
+    public MixerSession(String host, int port, String password, Supplier<AbstractTascamClient> clientFactory,
+                        BusyBackoff backoff, ScheduledExecutorService scheduler, long keepaliveSeconds) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.clientFactory = clientFactory;
+        this.backoff = backoff;
+        this.keepalive = keepaliveSeconds > 0
+            ? scheduler.scheduleWithFixedDelay(this::sendKeepalive, keepaliveSeconds, keepaliveSeconds, TimeUnit.SECONDS)
+            : null;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    /**
+     * Connects now rather than on first use.
+     */
+    public void open() throws IOException {
+        long queuedAt = System.nanoTime();
+        lock.lock();
+        try {
+            client(queuedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public PresetListing listPresets() throws IOException {
+        long queuedAt = System.nanoTime();
+        lock.lock();
+        try {
+            PresetListing listing = client(queuedAt).listPresetsWithCurrent();
+            presets = listing.presets();
+            return listing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the preset the mixer currently has loaded, or empty if none.
+     * <p>
+     * While connected this is read from the mirror, as of the mixer's last NOTIFY;
+     * otherwise it connects and asks the mixer.
+     */
+    public Optional<Preset> currentPreset() throws IOException {
+        MixerStateMirror live = mirror;
+        if (live != null && live.isLive()) {
+            return live.currentPreset();
+        }
+        long queuedAt = System.nanoTime();
+        lock.lock();
+        try {
+            return client(queuedAt).getCurrentPreset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Recalls a preset by name (case-insensitive), waiting until it has completed.
+     *
+     * @param requireUnique if true, fail rather than pick one of several presets with the name
+     * @return the preset that ended up active: the one named, unless a newer recall superseded it;
+     *         empty only if that newer recall was by number and the mixer gave no name
+     * @throws IllegalArgumentException if no preset has that name
+     * @throws IllegalStateException if uniqueness is required and several presets have the name
+     */
+    public Optional<Preset> recall(String presetName, boolean requireUnique) throws IOException {
+        return await(submitRecall(presetName, requireUnique));
+    }
+
+    /**
+     * Recalls a preset by slot number, without resolving a name, waiting until it has completed.
+     *
+     * @return the preset that ended up active, or empty if the mixer gave no name
+     */
+    public Optional<Preset> recall(int presetNumber) throws IOException {
+        return await(submitRecall(presetNumber));
+    }
+
+    /**
+     * Queues a recall by name (case-insensitive). See {@link #submitRecall(int)} for how queued
+     * recalls combine.
+     */
+    public CompletableFuture<Optional<Preset>> submitRecall(String presetName, boolean requireUnique) {
+        return submit(new RecallTarget(presetName, requireUnique, 0));
+    }
+
+    /**
+     * Queues a recall by slot number.
+     * <p>
+     * Recalls on one mixer coalesce, last writer wins. A recall that arrives while another is
+     * waiting replaces it; one that arrives while another is in progress cuts short that one's
+     * settle wait and verification and runs straight after it. A recall of the same target
+     * as the one in progress just waits for it. Every future resolves to the preset that
+     * ended up active once the newest recall completes, or fails with that recall's error.
+     */
+    public CompletableFuture<Optional<Preset>> submitRecall(int presetNumber) {
+        return submit(new RecallTarget(null, false, presetNumber));
+    }
+
+    /**
+     * What a queued recall asks for: a name, or a slot number when {@code name} is null.
+     */
+    private record RecallTarget(String name, boolean requireUnique, int number) {
+
+        boolean sameAs(RecallTarget other) {
+            return other != null && requireUnique == other.requireUnique && number == other.number
+                && (name == null ? other.name == null : name.equalsIgnoreCase(other.name));
+        }
+    }
+
+    private CompletableFuture<Optional<Preset>> submit(RecallTarget target) {
+        CompletableFuture<Optional<Preset>> caller = new CompletableFuture<>();
+        boolean startDriver;
+        synchronized (recalls) {
+            if (pendingTarget == null && target.sameAs(runningTarget)) {
+                runningCallers.add(caller);
+                return caller;
+            }
+            if (!target.sameAs(pendingTarget)) {
+                supersededCallers.addAll(pendingCallers);
+                pendingCallers.clear();
+                pendingTarget = target;
+                pendingQueuedAt = System.nanoTime();
+            }
+            pendingCallers.add(caller);
+            PendingRecall current = inFlight;
+            if (current != null) {
+                current.preempt();
+            }
+            startDriver = !draining;
+            draining = true;
+        }
+        if (startDriver) {
+            Thread.ofVirtual().name("tascam-recall-" + host).start(this::drainRecalls);
+        }
+        return caller;
+    }
+
+    /**
+     * Runs queued recalls until none is left. Only one driver runs per session.
+     */
+    private void drainRecalls() {
+        while (true) {
+            RecallTarget target;
+            long queuedAt;
+            synchronized (recalls) {
+                if (pendingTarget == null) {
+                    draining = false;
+                    return;
+                }
+                target = pendingTarget;
+                queuedAt = pendingQueuedAt;
+                runningTarget = target;
+                runningCallers.addAll(pendingCallers);
+                pendingTarget = null;
+                pendingCallers.clear();
+            }
+
+            Optional<Preset> result = Optional.empty();
+            Throwable failure = null;
+            try {
+                result = runRecall(target, queuedAt);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+
+            List<CompletableFuture<Optional<Preset>>> finished;
+            synchronized (recalls) {
+                runningTarget = null;
+                if (pendingTarget != null) {
+                    // Superseded while running: these callers get the newer recall's outcome
+                    supersededCallers.addAll(runningCallers);
+                    runningCallers.clear();
+                    continue;
+                }
+                finished = new ArrayList<>(runningCallers);
+                finished.addAll(supersededCallers);
+                runningCallers.clear();
+                supersededCallers.clear();
+            }
+            for (CompletableFuture<Optional<Preset>> caller : finished) {
+                if (failure != null) {
+                    caller.completeExceptionally(failure);
+                } else {
+                    caller.complete(result);
+                }
+            }
+        }
+    }
+
+    private Optional<Preset> runRecall(RecallTarget target, long queuedAt) throws IOException {
+        lock.lock();
+        try {
+            AbstractTascamClient session = client(queuedAt);
+            if (target.name() == null) {
+                PendingRecall recall = recallSlot(session, target.number());
+                return recall == null ? Optional.empty() : recall.loadedPreset();
+            }
+            List<Preset> listed = presets;
+            Preset named = resolve(session, target.name(), target.requireUnique());
+            boolean cached = listed != null && presets == listed;
+            try {
+                PendingRecall recall = recallSlot(session, named.number());
+                if (recall == null) {
+                    return Optional.empty();
+                }
+                Optional<Preset> loaded = recall.loadedPreset();
+                if (!cached || recall.preempted() || loaded.isEmpty()
+                    || loaded.get().name().equalsIgnoreCase(named.name())) {
+                    return loaded.isPresent() ? loaded : Optional.of(named);
+                }
+                logger.debug("Cached presets for {}:{} are out of date: slot {} is now \"{}\"",
+                    host, port, named.number(), loaded.get().name());
+            } catch (TascamProtocolException e) {
+                if (!cached) {
+                    throw e;
+                }
+                // Most likely the cached slot has since been cleared
+                logger.debug("Recall of cached slot {} failed, re-reading presets: {}", named.number(), e.getMessage());
+            }
+
+            // Renamed, moved or deleted on the desk since the list was read: read it again and recall the right slot
+            presets = null;
+            Preset moved = resolve(session, target.name(), target.requireUnique());
+            PendingRecall recall = recallSlot(session, moved.number());
+            if (recall == null) {
+                return Optional.empty();
+            }
+            return recall.loadedPreset().isPresent() ? recall.loadedPreset() : Optional.of(moved);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends one recall and waits for it to complete. Caller holds the lock.
+     *
+     * @return the completed recall, or null if a newer one superseded it before anything was sent
+     */
+    private PendingRecall recallSlot(AbstractTascamClient session, int number) throws IOException {
+        synchronized (recalls) {
+            if (pendingTarget != null) {
+                // Superseded while resolving; nothing has been sent, so skip it
+                return null;
+            }
+        }
+        PendingRecall recall = session.prepareRecall(number);
+        synchronized (recalls) {
+            inFlight = recall;
+            if (pendingTarget != null) {
+                recall.preempt();
+            }
+        }
+        try {
+            session.issueRecall(recall);
+            session.completeRecall(recall);
+        } finally {
+            inFlight = null;
+        }
+        return recall;
+    }
+
+    /**
+     * Finds a preset by name in the cached listing, re-reading it if the name is missing. Caller holds the lock.
+     */
+    private Preset resolve(AbstractTascamClient session, String presetName, boolean requireUnique) throws IOException {
+        Optional<Preset> match = presets == null
+            ? Optional.empty()
+            : CatalogRecall.findByName(presets, presetName, requireUnique);
+        if (match.isEmpty()) {
+            // Not cached yet, or renamed on the desk since the last read
+            presets = session.listPresets();
+            match = CatalogRecall.findByName(presets, presetName, requireUnique);
+        }
+        return match.orElseThrow(
+            () -> new IllegalArgumentException("No preset found with name \"" + presetName + "\""));
+    }
+
+    private static Optional<Preset> await(CompletableFuture<Optional<Preset>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for recall");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (keepalive != null) {
+            keepalive.cancel(false);
+        }
+        lock.lock();
+        try {
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a logged-in client, reconnecting if the previous session ended. Caller holds the lock.
+     *
+     * @param queuedAt when the caller started waiting for the lock
+     */
+    private AbstractTascamClient client(long queuedAt) throws IOException {
+        if (client != null && client.isOpen()) {
+            return client;
+        }
+        if (client != null) {
+            logger.debug("Session to {}:{} ended, reconnecting", host, port);
+            disconnect();
+        }
+        // Queued behind an acquisition that gave up: share its outcome
+        if (failedAcquire != null && queuedAt - failedAcquireStartNanos >= 0 && failedAcquireEndNanos - queuedAt > 0) {
+            throw new MixerBusyException(failedAcquire.getMessage());
+        }
+        long start = System.nanoTime();
+        try {
+            client = backoff.connect(clientFactory, host, port, password);
+        } catch (MixerBusyException e) {
+            failedAcquireStartNanos = start;
+            failedAcquireEndNanos = System.nanoTime();
+            failedAcquire = e;
+            throw e;
+        }
+        failedAcquire = null;
+        try {
+            mirror = MixerStateMirror.open(client, MixerStateMirror.DEFAULT_KEYS);
+        } catch (IOException | RuntimeException e) {
+            disconnect();
+            throw e;
+        }
+        return client;
+    }
+
+    private void sendKeepalive() {
+        // A busy session is not idle, so skip rather than queue behind a recall
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            // Only a live session is kept; a dropped one waits for the next request, so a busy
+            // mixer never parks the scheduler thread that every session's keepalive shares
+            if (client == null || !client.isOpen()) {
+                return;
+            }
+            client.getBulk(List.of(KEEPALIVE_KEY));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Keepalive to {}:{} failed: {}", host, port, e.getMessage());
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the connection and everything cached from it. Caller holds the lock.
+     */
+    private void disconnect() {
+        if (mirror != null) {
+            mirror.close();
+            mirror = null;
+        }
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        presets = null;
+    }
+}
@@ -0,0 +1,234 @@
+package uk.co.hpnet.tascam.fleet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.client.AbstractTascamClient;
+import uk.co.hpnet.tascam.client.PendingRecall;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Recalls the same preset name on a group of mixers at (nearly) the same instant.
+ * <p>
+ * Everything slow happens before the recall: each mixer is connected, logged in,
+ * has the name resolved to its own slot number and is prepared for the recall.
+ * Then one thread per mixer waits at a shared gate; opening the gate releases every
+ * {@code SET PRESET/LOAD} write together. NOTIFY and verification waits run in parallel
+ * afterwards, so a slow mixer does not hold up the others.
+ */
+public class FleetRecall {
+
+    private static final Logger logger = LogManager.getLogger(FleetRecall.class);
+
+    private final String password;
+    private final Function<Target, AbstractTascamClient> clientFactory;
+
+    /**
+     * A mixer to recall on.
+     */
+    public record Target(String host, int port) {
+
+        /**
+         * Parses {@code host} or {@code host:port}.
+         */
+        public static Target parse(String spec, int defaultPort) {
+            int colon = spec.lastIndexOf(':');
+            if (colon < 0) {
+                return new Target(spec, defaultPort);
+            }
+            try {
+                return new Target(spec.substring(0, colon), Integer.parseInt(spec.substring(colon + 1)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid port in " + spec);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    /**
+     * What happened on one mixer.
+     *
+     * @param target the mixer
+     * @param preset the preset resolved on that mixer (empty if resolution failed)
+     * @param issueOffsetNanos time from gate release until this mixer's SET was written
+     * @param confirmLatencyNanos time from the SET write until the preset NOTIFY arrived
+     *                            (empty if the mixer was already on the preset or never confirmed)
+     * @param error why the recall failed on this mixer (empty on success)
+     */
+    public record Outcome(Target target, Optional<Preset> preset, OptionalLong issueOffsetNanos,
+                          OptionalLong confirmLatencyNanos, Optional<String> error) {
+
+        public boolean succeeded() {
+            return error.isEmpty();
+        }
+    }
+
+    /**
+     * Outcomes for every target, in target order.
+     */
+    public record Report(List<Outcome> outcomes) {
+
+        public boolean allSucceeded() {
+            return outcomes.stream().allMatch(Outcome::succeeded);
+        }
+
+        /**
+         * Spread between the first and last SET write, in nanoseconds.
+         */
+        public OptionalLong issueSkewNanos() {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (Outcome outcome : outcomes) {
+                if (outcome.issueOffsetNanos().isPresent()) {
+                    min = Math.min(min, outcome.issueOffsetNanos().getAsLong());
+                    max = Math.max(max, outcome.issueOffsetNanos().getAsLong());
+                }
+            }
+            return min == Long.MAX_VALUE ? OptionalLong.empty() : OptionalLong.of(max - min);
+        }
+    }
+
+    /**
+     * @param password login password used for every mixer
+     * @param clientFactory creates an unconnected client for each target
+     */
+    public FleetRecall(String password, Function<Target, AbstractTascamClient> clientFactory) {
+        this.password = password;
+        this.clientFactory = clientFactory;
+    }
+
+    /**
+     * Recalls the named preset on every target.
+     *
+     * @param targets the mixers
+     * @param presetName preset name, matched case-insensitively on each mixer
+     * @return the per-mixer outcomes
+     */
+    public Report recall(List<Target> targets, String presetName) throws InterruptedException {
+        List<Mixer> mixers = new ArrayList<>();
+        for (Target target : targets) {
+            mixers.add(new Mixer(target, clientFactory.apply(target)));
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Phase 1: connect, log in, resolve and prepare, all in parallel
+            runAll(executor, mixers, mixer -> {
+                mixer.client.connect(mixer.target.host(), mixer.target.port(), password);
+                mixer.preset = mixer.client.listPresets().stream()
+                    .filter(p -> p.name().equalsIgnoreCase(presetName))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No preset found with name \"" + presetName + "\""));
+                mixer.recall = mixer.client.prepareRecall(mixer.preset.number());
+            });
+
+            // Phase 2: release every SET together
+            List<Mixer> ready = mixers.stream().filter(mixer -> mixer.error == null).toList();
+            long releaseNanos = release(executor, ready);
+            for (Mixer mixer : ready) {
+                mixer.recall.issuedNanos().ifPresent(issued -> mixer.issueOffsetNanos = issued - releaseNanos);
+            }
+
+            // Phase 3: wait for NOTIFY and verify, in parallel
+            runAll(executor, ready.stream().filter(mixer -> mixer.error == null).toList(),
+                mixer -> mixer.client.completeRecall(mixer.recall));
+        } finally {
+            mixers.forEach(mixer -> mixer.client.close());
+        }
+
+        List<Outcome> outcomes = new ArrayList<>();
+        for (Mixer mixer : mixers) {
+            outcomes.add(mixer.outcome());
+        }
+        return new Report(outcomes);
+    }
+
+    /**
+     * Parks one thread per mixer at a gate, opens it once all are waiting and
+     * returns the instant it opened.
+     */
+    private long release(ExecutorService executor, List<Mixer> mixers) throws InterruptedException {
+        CountDownLatch armed = new CountDownLatch(mixers.size());
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Future<?>> issues = new ArrayList<>();
+        for (Mixer mixer : mixers) {
+            issues.add(executor.submit(() -> {
+                armed.countDown();
+                gate.await();
+                mixer.client.issueRecall(mixer.recall);
+                return null;
+            }));
+        }
+        armed.await();
+        long releaseNanos = System.nanoTime();
+        gate.countDown();
+        awaitAll(mixers, issues);
+        return releaseNanos;
+    }
+
+    private void runAll(ExecutorService executor, List<Mixer> mixers, MixerTask task) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Mixer mixer : mixers) {
+            futures.add(executor.submit(() -> {
+                task.run(mixer);
+                return null;
+            }));
+        }
+        awaitAll(mixers, futures);
+    }
+
+    private void awaitAll(List<Mixer> mixers, List<Future<?>> futures) throws InterruptedException {
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                Mixer mixer = mixers.get(i);
+                String message = e.getCause().getMessage();
+                mixer.error = message != null ? message : e.getCause().toString();
+                logger.debug("Fleet recall failed on {}: {}", mixer.target, e.getCause().toString());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface MixerTask {
+        void run(Mixer mixer) throws Exception;
+    }
+
+    private static final class Mixer {
+        final Target target;
+        final AbstractTascamClient client;
+        Preset preset;
+        PendingRecall recall;
+        Long issueOffsetNanos;
+        String error;
+
+        Mixer(Target target, AbstractTascamClient client) {
+            this.target = target;
+            this.client = client;
+        }
+
+        Outcome outcome() {
+            OptionalLong confirmLatency = OptionalLong.empty();
+            if (recall != null && recall.issuedNanos().isPresent() && recall.confirmedNanos().isPresent()) {
+                confirmLatency = OptionalLong.of(recall.confirmedNanos().getAsLong() - recall.issuedNanos().getAsLong());
+            }
+            return new Outcome(target, Optional.ofNullable(preset),
+                issueOffsetNanos == null ? OptionalLong.empty() : OptionalLong.of(issueOffsetNanos),
+                confirmLatency, Optional.ofNullable(error));
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package uk.co.hpnet.tascam.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.catalog.CatalogRecall;
+import uk.co.hpnet.tascam.catalog.PresetCatalog;
+import uk.co.hpnet.tascam.client.AbstractTascamClient;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.client.MixerBusyException;
+import uk.co.hpnet.tascam.daemon.MixerSession;
+import uk.co.hpnet.tascam.fleet.FleetRecall;
+import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Serves list, current and recall over HTTP, using a resident {@link MixerSession} per mixer.
+ * <pre>
+ * GET  /mixers/{host[:port]}/presets            {"presets":[...],"current":{...}|null,"cached":false}
+ * GET  /mixers/{host[:port]}/current            {"current":{...}|null}
+ * POST /mixers/{host[:port]}/recall?name=NAME   {"preset":{...}|null}   (add unique=true to refuse duplicates)
+ * POST /mixers/{host[:port]}/recall?number=N    {"preset":{...}|null}
+ * </pre>
+ * A recall answers with the preset that ended up active, which is a newer request's if one
+ * superseded it (see {@link MixerSession#submitRecall(int)}).
+ * Add {@code refresh=true} to a listing to rescan rather than use the catalog; {@code current}
+ * is null in a listing answered from the catalog. Parameters may also be sent as a
+ * form-encoded body. Errors are {@code {"error":"..."}}.
+ * <p>
+ * Only mixers named with {@link #allow} are served; a path naming any other is answered 404
+ * before anything connects, so a request cannot send the password to a host of its choosing.
+ * <p>
+ * Each request runs on its own virtual thread. A preset listing is answered from the
+ * {@link PresetCatalog} while it is fresh, without touching the mixer; everything else
+ * queues on the mixer's session, which serves one operation at a time. That queue is
+ * bounded: a request that would exceed it is answered 503 straight away rather than
+ * parking another thread behind a mixer that is already falling behind.
+ */
+public class HttpApiServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(HttpApiServer.class);
+
+    public static final int DEFAULT_MAX_QUEUED = 16;
+
+    private static final String PREFIX = "/mixers/";
+
+    private final InetSocketAddress address;
+    private final String password;
+    private final Supplier<AbstractTascamClient> clientFactory;
+    private final long keepaliveSeconds;
+    private final int defaultPort;
+    private final PresetCatalog catalog;
+    private final CatalogRecall catalogWriter;
+    private final Set<FleetRecall.Target> allowed = ConcurrentHashMap.newKeySet();
+    private final Map<String, Mixer> mixers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private HttpServer server;
+    private volatile BusyBackoff busyBackoff = BusyBackoff.NONE;
+    private volatile int maxQueued = DEFAULT_MAX_QUEUED;
+
+    private record Mixer(MixerSession session, Semaphore queue) {}
+
+    /**
+     * @param address where to listen (port 0 picks a free one)
+     * @param password login password used for every mixer
+     * @param clientFactory creates an unconnected client whenever a session (re)connects
+     * @param keepaliveSeconds seconds between keepalives on each session (0 to disable)
+     * @param defaultPort mixer port when a path gives only a host
+     * @param catalog preset catalog used to answer listings without a scan
+     */
+    public HttpApiServer(InetSocketAddress address, String password, Supplier<AbstractTascamClient> clientFactory,
+                         long keepaliveSeconds, int defaultPort, PresetCatalog catalog) {
+        this.address = address;
+        this.password = password;
+        this.clientFactory = clientFactory;
+        this.keepaliveSeconds = keepaliveSeconds;
+        this.defaultPort = defaultPort;
+        this.catalog = catalog;
+        this.catalogWriter = new CatalogRecall(catalog);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tascam-keepalive").daemon(true).factory());
+    }
+
+    /**
+     * Sets how sessions wait for a mixer that another client is holding. Applies to
+     * sessions created afterwards, so call it before {@link #start}.
+     */
+    public void setBusyBackoff(BusyBackoff busyBackoff) {
+        this.busyBackoff = busyBackoff;
+    }
+
+    /**
+     * Sets how many requests may be in progress or waiting on one mixer before more are
+     * refused with 503. Applies to sessions created afterwards, so call it before {@link #start}.
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Adds a mixer to those this server serves. Requests for any other are answered 404.
+     */
+    public void allow(String host, int port) {
+        allowed.add(new FleetRecall.Target(host, port));
+    }
+
+    /**
+     * Binds the port and starts serving.
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext(PREFIX, this::handle);
+        server.start();
+        logger.debug("Listening on {}", server.getAddress());
+    }
+
+    /**
+     * Serves a mixer and connects to it now, so the first request does not pay for the login.
+     */
+    public void open(String host, int port) throws IOException {
+        allow(host, port);
+        mixer(host, port).session().open();
+    }
+
+    /**
+     * The address actually bound, once started.
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+        mixers.values().forEach(mixer -> mixer.session().close());
+        mixers.clear();
+    }
+
+    private Mixer mixer(String host, int port) {
+        return mixers.computeIfAbsent(host + ":" + port, key -> new Mixer(
+            new MixerSession(host, port, password, clientFactory, busyBackoff, scheduler, keepaliveSeconds),
+            new Semaphore(maxQueued)));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int status;
+            String body;
+            try {
+                Response response = respond(exchange);
+                status = response.status();
+                body = response.body();
+            } catch (MixerBusyException e) {
+                status = 503;
+                body = Json.error(e.getMessage());
+            } catch (IOException e) {
+                // The mixer, not this server, failed
+                status = 502;
+                body = Json.error(message(e));
+            } catch (IllegalStateException e) {
+                status = 409;
+                body = Json.error(message(e));
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = Json.error(message(e));
+            } catch (RuntimeException e) {
+                logger.warn("Request {} failed", exchange.getRequestURI(), e);
+                status = 500;
+                body = Json.error(message(e));
+            }
+            send(exchange, status, body);
+        }
+    }
+
+    private record Response(int status, String body) {}
+
+    private Response respond(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath().substring(PREFIX.length());
+        int slash = path.indexOf('/');
+        if (slash <= 0 || path.indexOf('/', slash + 1) >= 0) {
+            return new Response(404, Json.error("Not found"));
+        }
+        FleetRecall.Target target = FleetRecall.Target.parse(decode(path.substring(0, slash)), defaultPort);
+        if (!allowed.contains(target)) {
+            return new Response(404, Json.error("Unknown mixer " + target));
+        }
+        String action = path.substring(slash + 1);
+        String method = exchange.getRequestMethod();
+        String expected = action.equals("recall") ? "POST" : "GET";
+        if (!List.of("presets", "current", "recall").contains(action)) {
+            return new Response(404, Json.error("Not found"));
+        }
+        if (!method.equals(expected)) {
+            exchange.getResponseHeaders().set("Allow", expected);
+            return new Response(405, Json.error("Use " + expected));
+        }
+        Map<String, String> params = params(exchange);
+
+        if (action.equals("presets") && !Boolean.parseBoolean(params.get("refresh"))) {
+            Optional<List<Preset>> cached = catalog.load(target.host(), target.port());
+            if (cached.isPresent()) {
+                return new Response(200, "{\"presets\":" + Json.presets(cached.get())
+                    + ",\"current\":null,\"cached\":true}");
+            }
+        }
+
+        Mixer mixer = mixer(target.host(), target.port());
+        if (!mixer.queue().tryAcquire()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            return new Response(503, Json.error("Too many requests queued for " + target));
+        }
+        try {
+            MixerSession session = mixer.session();
+            return switch (action) {
+                case "presets" -> {
+                    PresetListing listing = session.listPresets();
+                    catalogWriter.save(target.host(), target.port(), listing.presets());
+                    yield new Response(200, "{\"presets\":" + Json.presets(listing.presets())
+                        + ",\"current\":" + Json.preset(listing.current()) + ",\"cached\":false}");
+                }
+                case "current" -> new Response(200, "{\"current\":" + Json.preset(session.currentPreset()) + "}");
+                default -> recall(session, params);
+            };
+        } finally {
+            mixer.queue().release();
+        }
+    }
+
+    private Response recall(MixerSession session, Map<String, String> params) throws IOException {
+        String number = params.get("number");
+        if (number != null) {
+            int slot;
+            try {
+                slot = Integer.parseInt(number);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid preset number: " + number);
+            }
+            return new Response(200, "{\"preset\":" + Json.preset(session.recall(slot)) + "}");
+        }
+        String name = params.get("name");
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Give a preset name or number");
+        }
+        try {
+            Optional<Preset> preset = session.recall(name, Boolean.parseBoolean(params.get("unique")));
+            return new Response(200, "{\"preset\":" + Json.preset(preset) + "}");
+        } catch (IllegalArgumentException e) {
+            // The only argument that can be wrong here is the name
+            return new Response(404, Json.error(message(e)));
+        }
+    }
+
+    /**
+     * Query parameters, plus form-encoded body parameters for POST.
+     */
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            } else if (!pair.isEmpty()) {
+                params.put(decode(pair), "");
+            }
+        }
+    }
+
+    private static String decode(String text) {
+        return URLDecoder.decode(text, StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String message(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package uk.co.hpnet.tascam.http;
+
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The few JSON shapes the HTTP API returns, written by hand to keep the tool dependency-free.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * {@code {"number":2,"name":"Quiet Mode","locked":true}}; {@code locked} is null when unknown.
+     */
+    static String preset(Preset preset) {
+        return "{\"number\":" + preset.number()
+            + ",\"name\":" + string(preset.name())
+            + ",\"locked\":" + preset.locked().map(String::valueOf).orElse("null") + "}";
+    }
+
+    static String preset(Optional<Preset> preset) {
+        return preset.map(Json::preset).orElse("null");
+    }
+
+    static String presets(List<Preset> presets) {
+        StringBuilder json = new StringBuilder("[");
+        for (Preset preset : presets) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(preset(preset));
+        }
+        return json.append(']').toString();
+    }
+
+    static String error(String message) {
+        return "{\"error\":" + string(message) + "}";
+    }
+
+    static String string(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
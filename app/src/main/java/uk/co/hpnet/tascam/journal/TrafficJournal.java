@@ -0,0 +1,549 @@
+package uk.co.hpnet.tascam.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only record of every line sent to and received from the mixers, for reading
+ * after an incident.
+ * <p>
+ * Records go straight into a memory-mapped segment file: an append is a timestamp, a
+ * bounds check and a copy, with no formatting, allocation or system call, so the journal
+ * can stay on where debug logging could not. What has been appended is in the page cache
+ * and survives the process crashing. When a segment is full the next one is started, and
+ * the oldest are deleted once the directory holds more than {@code maxBytes} of segments.
+ * Segment layout (big-endian):
+ * <pre>
+ * int   magic "TPJ1"
+ * int   reserved (0)
+ * long  started at (epoch nanoseconds)
+ * records, each padded to a multiple of 8 bytes:
+ *   int   record length (header and line, before padding); 0 where the data ends
+ *   byte  direction (1 sent, 2 received, 3 host definition)
+ *   byte  flags (1 line truncated to fit the segment)
+ *   short host id
+ *   long  timestamp (epoch nanoseconds)
+ *   line bytes, without CR+LF; for a host definition, host:port
+ * </pre>
+ * Host ids stand in for {@code host:port} in each record. Every segment starts with the
+ * definitions of the hosts known so far, so it can be read on its own. The record length
+ * is written last, so a reader never sees a record that is still being written.
+ * <p>
+ * Several processes may journal to one directory. Each holds an exclusive file lock on the
+ * segment it is writing; a journal that opens resumes the newest segment if it has room
+ * and nobody holds it, and otherwise starts its own. Retention never deletes a locked
+ * segment. Host definitions are per writer, so a resumed segment simply defines its
+ * hosts again; a reader takes the latest definition of each id.
+ * <p>
+ * Appends from any number of clients are serialised by one short lock. A journal that
+ * fails to start a segment logs a warning and stops recording; it never fails the
+ * connection it records.
+ */
+public class TrafficJournal implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(TrafficJournal.class);
+
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final int MAGIC = 0x54504A31; // "TPJ1"
+    private static final int SEGMENT_HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 16;
+    private static final byte HOST = 3;
+    private static final byte TRUNCATED = 1;
+    private static final String SEGMENT_PREFIX = "traffic-";
+    private static final String SEGMENT_SUFFIX = ".tpj";
+
+    /** Segments journals in this JVM are writing: probing them would drop the JVM's own lock. */
+    private static final Set<Path> HELD = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Which way a line went.
+     */
+    public enum Direction {
+        SENT((byte) 1),
+        RECEIVED((byte) 2);
+
+        private final byte code;
+
+        Direction(byte code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * One line read back from a journal.
+     *
+     * @param epochNanos when it was sent or received
+     * @param direction which way it went
+     * @param host {@code host:port} of the mixer
+     * @param line the line, without CR+LF
+     * @param truncated whether the line was cut short to fit its segment
+     */
+    public record Entry(long epochNanos, Direction direction, String host, String line, boolean truncated) {
+
+        public Instant instant() {
+            return Instant.ofEpochSecond(0, epochNanos);
+        }
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long maxBytes;
+    // Wall clock read once; record times are offsets on the monotonic clock from here
+    private final long originEpochNanos;
+    private final long originNanoTime;
+    // Guarded by this
+    private final List<byte[]> hosts = new ArrayList<>();
+    private final Map<String, Integer> hostIds = new HashMap<>();
+    private long nextSequence;
+    private Path segmentFile;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private int firstRecord;
+    private boolean closed;
+
+    /**
+     * Opens a journal, continuing in the newest segment already in the directory if it has
+     * room and no other journal is writing it, or after it otherwise.
+     *
+     * @param directory where segment files are kept (created if missing)
+     * @param segmentBytes size of each segment file
+     * @param maxBytes how many bytes of segments to keep in the directory, including those
+     *                 being written
+     */
+    public TrafficJournal(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        if (segmentBytes < SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES * 4) {
+            throw new IllegalArgumentException("Segment too small: " + segmentBytes);
+        }
+        if (maxBytes < segmentBytes) {
+            throw new IllegalArgumentException("Must keep at least one segment");
+        }
+        // One spelling per directory, so segments held in this JVM are recognised
+        this.directory = directory.toAbsolutePath().normalize();
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        Instant now = Instant.now();
+        this.originNanoTime = System.nanoTime();
+        this.originEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        Files.createDirectories(this.directory);
+        List<Path> existing = segmentFiles(this.directory);
+        for (Path file : existing) {
+            nextSequence = Math.max(nextSequence, sequenceOf(file) + 1);
+        }
+        synchronized (this) {
+            if (existing.isEmpty() || !resume(existing.get(existing.size() - 1))) {
+                startSegment();
+            }
+        }
+    }
+
+    public TrafficJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Returns the id to record a mixer's lines under, defining it on first use.
+     */
+    public synchronized int host(String host, int port) {
+        String name = host + ":" + port;
+        Integer id = hostIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (hosts.size() > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many hosts in one journal");
+        }
+        int newId = hosts.size();
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        hosts.add(bytes);
+        hostIds.put(name, newId);
+        if (!closed) {
+            write(HOST, newId, bytes, 0, bytes.length, timestamp());
+        }
+        return newId;
+    }
+
+    /**
+     * Records one line.
+     *
+     * @param host an id from {@link #host}
+     * @param direction which way the line went
+     * @param bytes holds the line, without CR+LF
+     */
+    public void append(int host, Direction direction, byte[] bytes, int offset, int length) {
+        long timestamp = timestamp();
+        synchronized (this) {
+            if (!closed) {
+                write(direction.code, host, bytes, offset, length, timestamp);
+            }
+        }
+    }
+
+    private long timestamp() {
+        return originEpochNanos + (System.nanoTime() - originNanoTime);
+    }
+
+    /**
+     * Writes a record, starting a new segment if it does not fit. Caller holds the lock.
+     */
+    private void write(byte direction, int host, byte[] bytes, int offset, int length, long timestamp) {
+        // A segment holding only host definitions is as fresh as it gets: cut the line instead
+        if (padded(RECORD_HEADER_BYTES + length) > segment.remaining() && segment.position() > firstRecord) {
+            if (!rotate()) {
+                return;
+            }
+        }
+        put(direction, host, bytes, offset, length, timestamp);
+    }
+
+    /**
+     * Writes a record into the current segment, truncating the line to the space left.
+     */
+    private void put(byte direction, int host, byte[] bytes, int offset, int length, long timestamp) {
+        int room = segment.remaining() - RECORD_HEADER_BYTES;
+        if (room < 0) {
+            return;
+        }
+        byte flags = 0;
+        if (length > room) {
+            length = room;
+            flags = TRUNCATED;
+        }
+        int at = segment.position();
+        segment.put(at + 4, direction);
+        segment.put(at + 5, flags);
+        segment.putShort(at + 6, (short) host);
+        segment.putLong(at + 8, timestamp);
+        segment.put(at + RECORD_HEADER_BYTES, bytes, offset, length);
+        // The length publishes the record: everything else must be in place first
+        VarHandle.storeStoreFence();
+        segment.putInt(at, RECORD_HEADER_BYTES + length);
+        segment.position(Math.min(at + padded(RECORD_HEADER_BYTES + length), segment.capacity()));
+    }
+
+    private static int padded(int recordLength) {
+        return (recordLength + 7) & ~7;
+    }
+
+    /**
+     * Starts the next segment. Caller holds the lock.
+     *
+     * @return false if it could not be started and the journal has stopped
+     */
+    private boolean rotate() {
+        try {
+            startSegment();
+            return true;
+        } catch (IOException e) {
+            logger.warn("Traffic journal in {} stopped: {}", directory, e.getMessage());
+            closed = true;
+            segment = null;
+            releaseSegment();
+            return false;
+        }
+    }
+
+    /**
+     * Maps a new segment file and defines every known host in it. Caller holds the lock.
+     */
+    private void startSegment() throws IOException {
+        Path file;
+        FileChannel channel;
+        while (true) {
+            file = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+            try {
+                // Another process journaling to the same directory may have taken this number
+                channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // Try the next one
+            }
+        }
+        MappedByteBuffer mapped;
+        try {
+            // Nobody else can have the new file yet; the lock tells later openers it is taken
+            channel.lock();
+            // The mapping extends the file; unwritten pages read as zeros, which marks the end
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        adopt(file, channel, mapped);
+        long now = timestamp();
+        segment.putInt(MAGIC);
+        segment.putInt(0);
+        segment.putLong(now);
+        for (int id = 0; id < hosts.size(); id++) {
+            byte[] name = hosts.get(id);
+            put(HOST, id, name, 0, name.length, now);
+        }
+        firstRecord = segment.position();
+        trim();
+        logger.debug("Journaling to {}", file);
+    }
+
+    /**
+     * Continues an existing segment after its last record, if it is a full-size segment
+     * with room left that no other journal holds. Caller holds the lock.
+     *
+     * @return false if the segment was left alone
+     */
+    private boolean resume(Path file) throws IOException {
+        if (HELD.contains(file) || sizeOf(file) != segmentBytes) {
+            return false;
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            // Trimmed by another journal since the listing
+            return false;
+        }
+        try {
+            if (channel.tryLock() == null) {
+                // Another process is still writing it
+                channel.close();
+                return false;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            if (mapped.getInt(0) != MAGIC) {
+                channel.close();
+                return false;
+            }
+            int at = SEGMENT_HEADER_BYTES;
+            int recordLength;
+            while ((recordLength = recordLengthAt(mapped, at)) > 0) {
+                at = Math.min(at + padded(recordLength), segmentBytes);
+            }
+            if (segmentBytes - at < RECORD_HEADER_BYTES * 4) {
+                channel.close();
+                return false;
+            }
+            // A crash mid-append leaves a record without its length: clear it, or the records
+            // written over it could end in the middle of it and a reader would trip on the rest
+            for (int word = at; word + 8 <= segmentBytes && mapped.getLong(word) != 0; word += 8) {
+                mapped.putLong(word, 0);
+            }
+            mapped.position(at);
+            adopt(file, channel, mapped);
+            // Anything already in the segment may be rotated away from, unlike a fresh one
+            firstRecord = SEGMENT_HEADER_BYTES;
+            logger.debug("Journaling to {} from offset {}", file, at);
+            return true;
+        } catch (OverlappingFileLockException e) {
+            channel.close();
+            return false;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Makes a locked, mapped file the segment being written, letting go of the previous one.
+     * Caller holds the lock.
+     */
+    private void adopt(Path file, FileChannel channel, MappedByteBuffer mapped) {
+        releaseSegment();
+        segmentFile = file;
+        segmentChannel = channel;
+        segment = mapped;
+        HELD.add(file);
+    }
+
+    /**
+     * Drops the file lock on the segment being written; its mapping stays usable. Caller holds the lock.
+     */
+    private void releaseSegment() {
+        if (segmentChannel == null) {
+            return;
+        }
+        try {
+            // Closing the channel releases its lock
+            segmentChannel.close();
+        } catch (IOException e) {
+            logger.debug("Could not close journal segment {}: {}", segmentFile, e.getMessage());
+        }
+        HELD.remove(segmentFile);
+        segmentChannel = null;
+        segmentFile = null;
+    }
+
+    /**
+     * Deletes the oldest segments in the directory, whoever wrote them, until what is left
+     * fits in {@code maxBytes}. Segments that a journal is still writing are skipped.
+     * Caller holds the lock.
+     */
+    private void trim() {
+        List<Path> files;
+        try {
+            files = segmentFiles(directory);
+        } catch (IOException e) {
+            logger.warn("Could not list journal segments in {}: {}", directory, e.getMessage());
+            return;
+        }
+        long total = 0;
+        for (Path file : files) {
+            total += sizeOf(file);
+        }
+        for (Path file : files) {
+            if (total <= maxBytes) {
+                return;
+            }
+            if (!HELD.contains(file)) {
+                total -= deleteUnlessLocked(file);
+            }
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            // Deleted by another journal since the listing
+            return 0;
+        }
+    }
+
+    /**
+     * Deletes a segment unless another process holds its lock.
+     *
+     * @return the bytes freed
+     */
+    private static long deleteUnlessLocked(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // Deleting while holding the lock: nobody can resume the file in between
+            if (channel.tryLock() == null) {
+                return 0;
+            }
+            long size = channel.size();
+            Files.delete(file);
+            return size;
+        } catch (IOException | OverlappingFileLockException e) {
+            logger.warn("Could not delete old journal segment {}: {}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Stops recording. What was appended stays in the segment files.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed && segment != null) {
+            segment.force();
+        }
+        closed = true;
+        segment = null;
+        releaseSegment();
+    }
+
+    /**
+     * Reads every segment in a directory, oldest first.
+     *
+     * @throws IOException if a segment cannot be read or is not a journal segment
+     */
+    public static void read(Path directory, Consumer<Entry> consumer) throws IOException {
+        for (Path file : segmentFiles(directory)) {
+            readSegment(file, consumer);
+        }
+    }
+
+    private static void readSegment(Path file, Consumer<Entry> consumer) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a journal segment: " + file);
+            }
+            Map<Integer, String> hosts = new HashMap<>();
+            int at = SEGMENT_HEADER_BYTES;
+            int recordLength;
+            while ((recordLength = recordLengthAt(buffer, at)) > 0) {
+                byte direction = buffer.get(at + 4);
+                boolean truncated = (buffer.get(at + 5) & TRUNCATED) != 0;
+                int host = buffer.getShort(at + 6);
+                long timestamp = buffer.getLong(at + 8);
+                byte[] line = new byte[recordLength - RECORD_HEADER_BYTES];
+                buffer.get(at + RECORD_HEADER_BYTES, line);
+                String text = new String(line, StandardCharsets.UTF_8);
+                if (direction == HOST) {
+                    hosts.put(host, text);
+                } else {
+                    consumer.accept(new Entry(timestamp,
+                        direction == Direction.SENT.code ? Direction.SENT : Direction.RECEIVED,
+                        hosts.getOrDefault(host, "#" + host), text, truncated));
+                }
+                at = Math.min(at + padded(recordLength), buffer.limit());
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt journal segment " + file, e);
+        }
+    }
+
+    /**
+     * Returns the length of the record at {@code at}, or 0 where the data ends, including
+     * at a record cut off by a crash mid-write.
+     */
+    private static int recordLengthAt(ByteBuffer buffer, int at) {
+        if (buffer.limit() - at < RECORD_HEADER_BYTES) {
+            return 0;
+        }
+        int recordLength = buffer.getInt(at);
+        return recordLength < RECORD_HEADER_BYTES || recordLength > buffer.limit() - at ? 0 : recordLength;
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // Zero-padded sequence numbers sort in the order the segments were written
+            return files
+                .filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package uk.co.hpnet.tascam.meter;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a meter stream to one frame in every {@code factor}, holding each channel's peak.
+ * <p>
+ * For consumers slower than the mixer, such as a dashboard redrawing a few times a second:
+ * rather than showing whichever frame happens to be newest, each output frame carries the
+ * highest level every channel reached across the frames it replaces, so short peaks are
+ * still seen. NaN (no reading) never wins over a real level. Like the reader it drains,
+ * a decimator belongs to one thread and allocates nothing after construction.
+ */
+public final class MeterDecimator {
+
+    private final MeterRing.Reader reader;
+    private final int factor;
+    private final float[] frame;
+    private final float[] peak;
+    private int combined;
+
+    /**
+     * @param ring the ring to read; the decimator takes a reader of its own
+     * @param factor frames combined into each output frame
+     */
+    public MeterDecimator(MeterRing ring, int factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("Decimation factor must be at least 1");
+        }
+        this.reader = ring.newReader();
+        this.factor = factor;
+        this.frame = new float[ring.channels()];
+        this.peak = new float[ring.channels()];
+        Arrays.fill(peak, Float.NaN);
+    }
+
+    /**
+     * Drains waiting frames until {@code factor} of them have been combined.
+     *
+     * @param dest receives the per-channel peaks when a frame is complete
+     * @return true if {@code dest} was filled; false if fewer than {@code factor} frames
+     *         have arrived since the last output (they are kept for the next call)
+     */
+    public boolean poll(float[] dest) {
+        while (reader.poll(frame)) {
+            for (int channel = 0; channel < frame.length; channel++) {
+                float value = frame[channel];
+                if (value > peak[channel] || Float.isNaN(peak[channel])) {
+                    peak[channel] = value;
+                }
+            }
+            if (++combined == factor) {
+                System.arraycopy(peak, 0, dest, 0, peak.length);
+                Arrays.fill(peak, Float.NaN);
+                combined = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Frames lost because this decimator fell a whole ring behind.
+     */
+    public long dropped() {
+        return reader.dropped();
+    }
+}
@@ -0,0 +1,153 @@
+package uk.co.hpnet.tascam.meter;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed ring of meter frames, written by one thread and read by any number of {@link Reader}s.
+ * <p>
+ * Every slot is a {@code float[]} allocated up front, so publishing and polling copy floats
+ * and nothing else: no locks, no boxing and no garbage however fast frames arrive. The
+ * writer never waits. A reader that falls more than a ring behind loses the oldest frames,
+ * which for meters is the right trade: a late level is worth nothing. Reads are validated
+ * the way a seqlock's are, so a frame overwritten while it was being copied is detected
+ * and skipped rather than returned torn.
+ */
+public final class MeterRing {
+
+    private final int channels;
+    private final int mask;
+    private final float[][] frames;
+    private final long[] timestamps;
+    // Frames the writer has started; a slot is being overwritten once its sequence + capacity is claimed
+    private final AtomicLong claimed = new AtomicLong();
+    // Frames completely written
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * @param channels values per frame
+     * @param capacity frames held; rounded up to a power of two
+     */
+    public MeterRing(int channels, int capacity) {
+        if (channels < 1 || capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Need at least one channel and a capacity of 1 to 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.channels = channels;
+        this.mask = size - 1;
+        this.frames = new float[size][channels];
+        this.timestamps = new long[size];
+    }
+
+    public int channels() {
+        return channels;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Total frames published so far.
+     */
+    public long published() {
+        return published.get();
+    }
+
+    /**
+     * Copies a frame into the ring. Only ever called from one thread.
+     *
+     * @param frame {@link #channels()} values
+     * @param timestampNanos when the frame was received, on the {@link System#nanoTime()} clock
+     */
+    public void publish(float[] frame, long timestampNanos) {
+        long sequence = claimed.get();
+        claimed.set(sequence + 1);
+        // Readers must see the claim before any of the overwrite
+        VarHandle.storeStoreFence();
+        int slot = (int) (sequence & mask);
+        System.arraycopy(frame, 0, frames[slot], 0, channels);
+        timestamps[slot] = timestampNanos;
+        published.set(sequence + 1);
+    }
+
+    /**
+     * A reader that starts with the oldest frame still in the ring, so frames published
+     * just before it was created are not missed.
+     */
+    public Reader newReader() {
+        return new Reader(Math.max(0, published.get() - frames.length));
+    }
+
+    /**
+     * One consumer's position in the ring. Not thread-safe: each consuming thread needs its own.
+     */
+    public final class Reader {
+
+        private long next;
+        private long dropped;
+        private long timestampNanos;
+
+        private Reader(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Copies the next frame, if there is one.
+         *
+         * @param dest receives {@link #channels()} values
+         * @return false if no frame is waiting
+         */
+        public boolean poll(float[] dest) {
+            while (true) {
+                long available = published.get();
+                if (next >= available) {
+                    return false;
+                }
+                long oldest = available - frames.length;
+                if (next < oldest) {
+                    dropped += oldest - next;
+                    next = oldest;
+                }
+                int slot = (int) (next & mask);
+                System.arraycopy(frames[slot], 0, dest, 0, channels);
+                long stamp = timestamps[slot];
+                // The copy must be complete before the overwrite check
+                VarHandle.loadLoadFence();
+                if (claimed.get() - next > frames.length) {
+                    // Overwritten while copying
+                    dropped++;
+                    next++;
+                    continue;
+                }
+                timestampNanos = stamp;
+                next++;
+                return true;
+            }
+        }
+
+        /**
+         * Frames waiting to be polled, at most the ring's capacity.
+         */
+        public int available() {
+            return (int) Math.min(published.get() - next, frames.length);
+        }
+
+        /**
+         * When the frame last returned by {@link #poll} was received.
+         */
+        public long timestampNanos() {
+            return timestampNanos;
+        }
+
+        /**
+         * Frames this reader missed because it fell a whole ring behind.
+         */
+        public long dropped() {
+            return dropped;
+        }
+    }
+}
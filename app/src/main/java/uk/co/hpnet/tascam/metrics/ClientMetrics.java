@@ -0,0 +1,129 @@
+package uk.co.hpnet.tascam.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-phase timings and traffic counters for one or more mixer clients.
+ * <p>
+ * Every client records into its own instance unless given a shared one, as the daemon does
+ * so that all its sessions report together. All recording is lock-free.
+ */
+public final class ClientMetrics {
+
+    /**
+     * The steps a list or recall spends its time in.
+     */
+    public enum Phase {
+        /** Waiting for another client to free the mixer's only session. */
+        BUSY_WAIT("busy_wait"),
+        /** Opening the TCP connection. */
+        CONNECT("connect"),
+        /** Password exchange, up to "Login Successful". */
+        LOGIN("login"),
+        /** Reading every preset slot. */
+        LIST_PRESETS("list_presets"),
+        /** The current-preset GET sent before a recall. */
+        RECALL_CHECK("recall_check"),
+        /** From writing the recall SET to its OK. */
+        RECALL_ACK("recall_ack"),
+        /** From the SET's OK to the NOTIFY confirming the preset. */
+        RECALL_NOTIFY("recall_notify"),
+        /** The post-recall wait before verification. */
+        RECALL_SETTLE("recall_settle"),
+        /** The current-preset GET verifying the recall. */
+        RECALL_VERIFY("recall_verify");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * The name used for this phase in exported metrics.
+         */
+        public String label() {
+            return label;
+        }
+    }
+
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder notifySkipped = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder busyRefusals = new LongAdder();
+
+    public ClientMetrics() {
+        // Filled up front so the map is never written after construction
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public void record(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    /**
+     * Records a phase that began at {@code startNanos} (from {@link System#nanoTime()}) and ends now.
+     */
+    public void recordSince(Phase phase, long startNanos) {
+        record(phase, System.nanoTime() - startNanos);
+    }
+
+    public void addBytesSent(long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    public void addBytesReceived(long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    /**
+     * Counts a NOTIFY that arrived while a recall was waiting but was not the one it waited for.
+     */
+    public void notifySkipped() {
+        notifySkipped.increment();
+    }
+
+    /**
+     * Counts a response or NOTIFY that did not arrive within the read timeout.
+     */
+    public void timedOut() {
+        timeouts.increment();
+    }
+
+    /**
+     * Counts logins refused because another client held the mixer.
+     */
+    public void addBusyRefusals(long refusals) {
+        busyRefusals.add(refusals);
+    }
+
+    public LatencyHistogram phase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    public long bytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long bytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long notifySkippedCount() {
+        return notifySkipped.sum();
+    }
+
+    public long timeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long busyRefusalCount() {
+        return busyRefusals.sum();
+    }
+}
@@ -0,0 +1,103 @@
+package uk.co.hpnet.tascam.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with fixed buckets from 50µs to 10s.
+ * <p>
+ * Recording is one atomic increment and one {@link LongAdder} add, so it is safe and cheap
+ * from any number of threads. Buckets follow the Prometheus convention: each has an inclusive
+ * upper bound, and an implicit last bucket catches everything slower than 10s.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Bucket upper bounds in nanoseconds, ascending.
+     */
+    static final long[] BOUNDS_NANOS = {
+        50_000L, 100_000L, 250_000L, 500_000L,
+        1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+        100_000_000L, 250_000_000L, 500_000_000L,
+        1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L,
+    };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_NANOS.length + 1);
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * Records one observation. Negative durations are counted as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sumNanos.add(value);
+    }
+
+    /**
+     * Copies the current counts. Concurrent recording may land on either side of the copy,
+     * so the total can trail the sum by an observation or two.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, sumNanos.sum());
+    }
+
+    private static int bucket(long nanos) {
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            if (nanos <= BOUNDS_NANOS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS_NANOS.length;
+    }
+
+    /**
+     * A point-in-time copy of a histogram.
+     *
+     * @param counts observations per bucket (not cumulative), the last being the overflow bucket
+     * @param sumNanos total of all observations
+     */
+    public record Snapshot(long[] counts, long sumNanos) {
+
+        public long count() {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            return total;
+        }
+
+        /**
+         * Upper bound of bucket {@code i} in nanoseconds, or {@link Long#MAX_VALUE} for the overflow bucket.
+         */
+        public long boundNanos(int i) {
+            return i < BOUNDS_NANOS.length ? BOUNDS_NANOS[i] : Long.MAX_VALUE;
+        }
+
+        /**
+         * Estimates a quantile as the upper bound of the bucket it falls in.
+         *
+         * @param quantile between 0 and 1
+         * @return the bound in nanoseconds, {@link Long#MAX_VALUE} if it lies beyond 10s, or 0 if empty
+         */
+        public long quantileNanos(double quantile) {
+            long total = count();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return boundNanos(i);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
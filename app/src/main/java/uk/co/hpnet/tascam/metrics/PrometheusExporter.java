@@ -0,0 +1,77 @@
+package uk.co.hpnet.tascam.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes {@link ClientMetrics} in the Prometheus text exposition format (version 0.0.4).
+ * <p>
+ * Phase timings become one {@code tascam_phase_seconds} histogram labelled by phase;
+ * the traffic counters become {@code _total} counters. The file form suits the node
+ * exporter's textfile collector.
+ */
+public final class PrometheusExporter {
+
+    private PrometheusExporter() {
+    }
+
+    public static void write(ClientMetrics metrics, Appendable out) throws IOException {
+        out.append("# HELP tascam_phase_seconds Time spent in each step of talking to a mixer.\n");
+        out.append("# TYPE tascam_phase_seconds histogram\n");
+        for (ClientMetrics.Phase phase : ClientMetrics.Phase.values()) {
+            LatencyHistogram.Snapshot snapshot = metrics.phase(phase).snapshot();
+            String label = "phase=\"" + phase.label() + "\"";
+            long cumulative = 0;
+            long[] counts = snapshot.counts();
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < counts.length - 1 ? seconds(snapshot.boundNanos(i)) : "+Inf";
+                out.append("tascam_phase_seconds_bucket{").append(label)
+                    .append(",le=\"").append(le).append("\"} ").append(Long.toString(cumulative)).append('\n');
+            }
+            out.append("tascam_phase_seconds_sum{").append(label).append("} ")
+                .append(seconds(snapshot.sumNanos())).append('\n');
+            out.append("tascam_phase_seconds_count{").append(label).append("} ")
+                .append(Long.toString(cumulative)).append('\n');
+        }
+        counter(out, "tascam_bytes_sent_total", "Bytes written to mixers after login.", metrics.bytesSent());
+        counter(out, "tascam_bytes_received_total", "Bytes read from mixers after login.", metrics.bytesReceived());
+        counter(out, "tascam_notify_skipped_total",
+            "NOTIFY lines received during a recall that were not its confirmation.", metrics.notifySkippedCount());
+        counter(out, "tascam_timeouts_total", "Waits for a response or NOTIFY that timed out.", metrics.timeoutCount());
+        counter(out, "tascam_busy_refusals_total", "Logins refused because another client held the mixer.",
+            metrics.busyRefusalCount());
+    }
+
+    /**
+     * Writes the metrics to a file, replacing it atomically so a scraper never reads a partial file.
+     */
+    public static void writeFile(ClientMetrics metrics, Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                write(metrics, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void counter(Appendable out, String name, String help, long value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+}
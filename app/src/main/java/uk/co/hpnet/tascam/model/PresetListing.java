@@ -0,0 +1,23 @@
+package uk.co.hpnet.tascam.model;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * All non-empty presets on the mixer, together with the currently active one.
+ *
+ * @param presets the non-empty presets, sorted by number
+ * @param current the currently active preset (empty if no preset is active)
+ */
+public record PresetListing(List<Preset> presets, Optional<Preset> current) {
+
+    public PresetListing {
+        if (presets == null) {
+            throw new IllegalArgumentException("Presets must not be null");
+        }
+        if (current == null) {
+            throw new IllegalArgumentException("Current must not be null (use Optional.empty())");
+        }
+        presets = List.copyOf(presets);
+    }
+}
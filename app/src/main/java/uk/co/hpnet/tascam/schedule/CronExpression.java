@@ -0,0 +1,141 @@
+package uk.co.hpnet.tascam.schedule;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.Optional;
+
+/**
+ * A five-field cron expression: minute, hour, day of month, month and day of week.
+ * <p>
+ * Each field is {@code *}, a number, a range {@code a-b}, any of those with a step
+ * {@code /n}, or a comma-separated list of them. Day of week runs from 0 (Sunday) to 7
+ * (Sunday again). As in cron, when both day of month and day of week are restricted a
+ * day matching either one fires.
+ */
+public final class CronExpression {
+
+    /** How far ahead {@link #next} looks before deciding the expression never fires. */
+    private static final int MAX_YEARS_AHEAD = 5;
+
+    private final String spec;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean dayOfMonthRestricted;
+    private final boolean dayOfWeekRestricted;
+
+    private CronExpression(String spec, String[] fields) {
+        this.spec = spec;
+        this.minutes = parseField(fields[0], 0, 59, "minute");
+        this.hours = parseField(fields[1], 0, 23, "hour");
+        this.daysOfMonth = parseField(fields[2], 1, 31, "day of month");
+        this.months = parseField(fields[3], 1, 12, "month");
+        this.daysOfWeek = parseField(fields[4], 0, 7, "day of week");
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+        }
+        this.dayOfMonthRestricted = !fields[2].equals("*");
+        this.dayOfWeekRestricted = !fields[4].equals("*");
+    }
+
+    /**
+     * Parses an expression such as {@code "30 18 * * 1-5"}.
+     *
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static CronExpression parse(String spec) {
+        String[] fields = spec.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Cron expression needs 5 fields, got " + fields.length + ": " + spec);
+        }
+        return new CronExpression(spec.trim(), fields);
+    }
+
+    /**
+     * Returns the first time strictly after {@code after} that matches, at second zero,
+     * or empty if the expression never matches (e.g. 31 February).
+     */
+    public Optional<ZonedDateTime> next(ZonedDateTime after) {
+        ZonedDateTime time = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        int lastYear = after.getYear() + MAX_YEARS_AHEAD;
+        while (time.getYear() <= lastYear) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if (!dayMatches(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if (!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if (!minutes.get(time.getMinute())) {
+                time = time.plusMinutes(1);
+            } else {
+                return Optional.of(time);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean dayMatches(ZonedDateTime time) {
+        boolean dom = daysOfMonth.get(time.getDayOfMonth());
+        boolean dow = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+        if (dayOfMonthRestricted && dayOfWeekRestricted) {
+            return dom || dow;
+        }
+        return dom && dow;
+    }
+
+    private static BitSet parseField(String field, int min, int max, String name) {
+        BitSet values = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max, name);
+                part = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if (part.equals("*")) {
+                from = min;
+                to = max;
+            } else {
+                int dash = part.indexOf('-');
+                if (dash >= 0) {
+                    from = parseNumber(part.substring(0, dash), min, max, name);
+                    to = parseNumber(part.substring(dash + 1), min, max, name);
+                    if (from > to) {
+                        throw new IllegalArgumentException("Invalid " + name + " range: " + part);
+                    }
+                } else {
+                    from = parseNumber(part, min, max, name);
+                    // "5/15" means from 5 to the end in steps of 15
+                    to = slash >= 0 ? max : from;
+                }
+            }
+            for (int value = from; value <= to; value += step) {
+                values.set(value);
+            }
+        }
+        return values;
+    }
+
+    private static int parseNumber(String text, int min, int max, String name) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value < min || value > max) {
+                throw new IllegalArgumentException(
+                    "Invalid " + name + ": " + text + " (must be " + min + "-" + max + ")");
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + text);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
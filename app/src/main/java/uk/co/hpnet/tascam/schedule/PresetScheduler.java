@@ -0,0 +1,230 @@
+package uk.co.hpnet.tascam.schedule;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.catalog.CatalogRecall;
+import uk.co.hpnet.tascam.client.AbstractTascamClient;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.client.PendingRecall;
+import uk.co.hpnet.tascam.fleet.FleetRecall;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Recalls presets at the times given by {@link ScheduleRule}s, from a long-running process.
+ * <p>
+ * Each rule has its own thread. A warm-up period before each fire time the thread
+ * connects, logs in, resolves the preset name to a slot and prepares the recall, so
+ * that at the fire time only the {@code SET PRESET/LOAD} write is left. The thread
+ * parks until just before the fire time and spins for the last moment, then issues
+ * the SET and reports how far from the scheduled instant it went out. The session is
+ * closed after each run, leaving the mixer free for other users in between.
+ * <p>
+ * A mixer accepts one session at a time, so rules on the same mixer take turns, and a
+ * mixer busy with another user is retried per the {@link BusyBackoff} until the recall
+ * is due.
+ */
+public class PresetScheduler implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(PresetScheduler.class);
+
+    public static final Duration DEFAULT_WARMUP = Duration.ofSeconds(10);
+
+    /** Parking can overshoot by a scheduler tick; the last stretch is spun instead. */
+    private static final long SPIN_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final String password;
+    private final Function<FleetRecall.Target, AbstractTascamClient> clientFactory;
+    private final Duration warmup;
+    private final Clock clock;
+    private final Consumer<Run> listener;
+    private final List<Thread> threads = new ArrayList<>();
+    private final ConcurrentMap<FleetRecall.Target, ReentrantLock> targetLocks = new ConcurrentHashMap<>();
+    private volatile BusyBackoff busyBackoff = BusyBackoff.NONE;
+    private volatile boolean closed;
+
+    /**
+     * What happened at one fire time.
+     *
+     * @param rule the rule that fired
+     * @param scheduled the time the recall was due
+     * @param preset the preset resolved on the mixer (empty if resolution failed)
+     * @param driftNanos time from the scheduled instant until the SET was written;
+     *                   negative if early, empty if it was never written
+     * @param error why the run failed (empty on success)
+     */
+    public record Run(ScheduleRule rule, ZonedDateTime scheduled, Optional<Preset> preset,
+                      OptionalLong driftNanos, Optional<String> error) {
+
+        public boolean succeeded() {
+            return error.isEmpty();
+        }
+    }
+
+    /**
+     * @param password login password used for every mixer
+     * @param clientFactory creates an unconnected client for each run
+     * @param warmup how long before each fire time to connect and prepare
+     * @param clock the wall clock the rules are evaluated against
+     * @param listener receives every run as it completes
+     */
+    public PresetScheduler(String password, Function<FleetRecall.Target, AbstractTascamClient> clientFactory,
+                           Duration warmup, Clock clock, Consumer<Run> listener) {
+        this.password = password;
+        this.clientFactory = clientFactory;
+        this.warmup = warmup;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets how to wait for a mixer that another user is connected to. The wait is cut
+     * short when the recall falls due. Defaults to a single attempt.
+     */
+    public void setBusyBackoff(BusyBackoff busyBackoff) {
+        this.busyBackoff = busyBackoff;
+    }
+
+    /**
+     * Starts a thread for each rule. Returns immediately.
+     */
+    public synchronized void start(List<ScheduleRule> rules) {
+        for (ScheduleRule rule : rules) {
+            threads.add(Thread.ofVirtual().name("schedule-" + rule.target()).start(() -> runRule(rule)));
+        }
+    }
+
+    private void runRule(ScheduleRule rule) {
+        ZonedDateTime after = ZonedDateTime.now(clock);
+        while (!closed) {
+            Optional<ZonedDateTime> next = rule.cron().next(after);
+            if (next.isEmpty()) {
+                logger.warn("Rule never fires again: {}", rule);
+                return;
+            }
+            ZonedDateTime scheduled = next.get();
+            logger.debug("Next recall of \"{}\" on {} at {}", rule.presetName(), rule.target(), scheduled);
+            try {
+                Duration untilWarmup = Duration.between(clock.instant(), scheduled.toInstant().minus(warmup));
+                if (untilWarmup.isPositive()) {
+                    Thread.sleep(untilWarmup);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (closed) {
+                return;
+            }
+            listener.accept(fire(rule, scheduled));
+            after = scheduled;
+        }
+    }
+
+    /**
+     * Connects, prepares and issues one recall at the scheduled instant, once no other
+     * rule is using the same mixer. Returns without recalling if the instant was missed
+     * by more than the warm-up.
+     */
+    Run fire(ScheduleRule rule, ZonedDateTime scheduled) {
+        ReentrantLock lock = targetLocks.computeIfAbsent(rule.target(), target -> new ReentrantLock());
+        try {
+            Duration untilMissed = Duration.between(clock.instant(), scheduled.toInstant().plus(warmup));
+            if (!lock.tryLock(Math.max(0, untilMissed.toNanos()), TimeUnit.NANOSECONDS)) {
+                return missed(rule, scheduled);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Run(rule, scheduled, Optional.empty(), OptionalLong.empty(), Optional.of("Scheduler closed"));
+        }
+        try {
+            Duration late = Duration.between(scheduled.toInstant(), clock.instant());
+            if (late.compareTo(warmup) > 0) {
+                return missed(rule, scheduled);
+            }
+            return connectAndFire(rule, scheduled);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Run missed(ScheduleRule rule, ZonedDateTime scheduled) {
+        Duration late = Duration.between(scheduled.toInstant(), clock.instant());
+        return new Run(rule, scheduled, Optional.empty(), OptionalLong.empty(),
+            Optional.of("Missed by " + late.toSeconds() + "s"));
+    }
+
+    private Run connectAndFire(ScheduleRule rule, ZonedDateTime scheduled) {
+        FleetRecall.Target target = rule.target();
+        AbstractTascamClient client = null;
+        Preset preset = null;
+        PendingRecall recall = null;
+        long dueNanos = 0;
+        try {
+            // A busy mixer is worth waiting for only until the recall is due
+            long untilDueMs = Duration.between(clock.instant(), scheduled.toInstant()).toMillis();
+            client = busyBackoff.withDeadlineAtMost(untilDueMs)
+                .connect(() -> clientFactory.apply(target), target.host(), target.port(), password);
+            preset = CatalogRecall.findByName(client.listPresets(), rule.presetName(), false)
+                .orElseThrow(() -> new IllegalStateException("No preset found with name \"" + rule.presetName() + "\""));
+            recall = client.prepareRecall(preset.number());
+
+            // Map the wall-clock instant onto the monotonic clock once, then wait on that
+            dueNanos = System.nanoTime() + Duration.between(clock.instant(), scheduled.toInstant()).toNanos();
+            waitUntil(dueNanos);
+            client.issueRecall(recall);
+            client.completeRecall(recall);
+            return new Run(rule, scheduled, Optional.of(preset), drift(recall, dueNanos), Optional.empty());
+        } catch (Exception e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            logger.debug("Scheduled recall failed on {}: {}", target, e.toString());
+            return new Run(rule, scheduled, Optional.ofNullable(preset),
+                recall == null ? OptionalLong.empty() : drift(recall, dueNanos), Optional.of(message));
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    private static OptionalLong drift(PendingRecall recall, long dueNanos) {
+        return recall.issuedNanos().isPresent()
+            ? OptionalLong.of(recall.issuedNanos().getAsLong() - dueNanos)
+            : OptionalLong.empty();
+    }
+
+    private static void waitUntil(long dueNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = dueNanos - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Scheduler closed");
+            }
+        }
+        while (System.nanoTime() < dueNanos) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Stops every rule. A recall already in progress is abandoned.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        threads.forEach(Thread::interrupt);
+    }
+}
@@ -0,0 +1,38 @@
+package uk.co.hpnet.tascam.schedule;
+
+import uk.co.hpnet.tascam.fleet.FleetRecall;
+
+import java.util.Arrays;
+
+/**
+ * Recall a named preset on one mixer whenever a cron expression fires.
+ *
+ * @param cron when to recall
+ * @param target the mixer
+ * @param presetName preset name, matched case-insensitively
+ */
+public record ScheduleRule(CronExpression cron, FleetRecall.Target target, String presetName) {
+
+    private static final int CRON_FIELDS = 5;
+
+    /**
+     * Parses {@code <minute> <hour> <day> <month> <weekday> <host[:port]> <preset name>}.
+     * The preset name is the rest of the line and may contain spaces.
+     *
+     * @throws IllegalArgumentException if the rule is malformed
+     */
+    public static ScheduleRule parse(String spec, int defaultPort) {
+        String[] parts = spec.trim().split("\\s+", CRON_FIELDS + 2);
+        if (parts.length < CRON_FIELDS + 2) {
+            throw new IllegalArgumentException(
+                "Rule needs 5 cron fields, a mixer and a preset name: " + spec);
+        }
+        CronExpression cron = CronExpression.parse(String.join(" ", Arrays.copyOf(parts, CRON_FIELDS)));
+        return new ScheduleRule(cron, FleetRecall.Target.parse(parts[CRON_FIELDS], defaultPort), parts[CRON_FIELDS + 1]);
+    }
+
+    @Override
+    public String toString() {
+        return cron + " " + target + " " + presetName;
+    }
+}
@@ -0,0 +1,321 @@
+package uk.co.hpnet.tascam.shell;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.catalog.CatalogRecall;
+import uk.co.hpnet.tascam.client.AbstractTascamClient;
+import uk.co.hpnet.tascam.client.PresetRecallException;
+import uk.co.hpnet.tascam.client.TascamProtocolException;
+import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a sequence of commands over one logged-in client, for cue scripts and interactive use.
+ * <pre>
+ * list                     presets, current one marked *
+ * current                  the loaded preset
+ * recall NAME              recall by name (case-insensitive; quotes optional)
+ * recall --number N        recall a slot without resolving a name
+ * wait SECONDS             pause, e.g. between cues
+ * get KEY...               read raw parameters, one KEY=VALUE line each
+ * quit                     stop reading
+ * </pre>
+ * Blank lines and lines starting with {@code #} are skipped. Each command's output is
+ * written and flushed as soon as it completes.
+ * <p>
+ * The mixer accepts only one client, so the whole script shares one login. The preset list
+ * is read once and reused to resolve names. It is re-read when a name is not found in it,
+ * or when the mixer reports a different name for the slot it loaded, as after a preset was
+ * renamed or moved on the desk; the right slot is then recalled. A recall prints what the
+ * mixer reports as loaded.
+ * <p>
+ * The device drops a session that sends nothing for three minutes, so while {@link #run}
+ * sits in a {@code wait} or at the prompt, it reads {@code DEVICE/NAME} once per keepalive
+ * interval without a command.
+ */
+public class ShellSession {
+
+    private static final Logger logger = LogManager.getLogger(ShellSession.class);
+
+    public static final Duration DEFAULT_KEEPALIVE = Duration.ofSeconds(60);
+
+    static final String KEEPALIVE_KEY = "DEVICE/NAME";
+
+    private final AbstractTascamClient client;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Duration keepalive;
+    private List<Preset> presets;
+    private volatile long lastActivityNanos = System.nanoTime();
+
+    /**
+     * @param client a logged-in client, used for every command
+     * @param out where command output goes
+     * @param err where errors and the interactive prompt go
+     */
+    public ShellSession(AbstractTascamClient client, PrintStream out, PrintStream err) {
+        this(client, out, err, DEFAULT_KEEPALIVE);
+    }
+
+    /**
+     * @param keepalive idle time after which {@link #run} sends a keepalive (zero to disable)
+     */
+    public ShellSession(AbstractTascamClient client, PrintStream out, PrintStream err, Duration keepalive) {
+        this.client = client;
+        this.out = out;
+        this.err = err;
+        this.keepalive = keepalive;
+    }
+
+    /**
+     * Reads and runs commands until the input ends or {@code quit}.
+     * <p>
+     * A command that fails is reported on the error stream. An interactive session, or one
+     * told to keep going, then carries on with the next command; a script otherwise stops.
+     * An I/O failure other than the mixer refusing a command always stops, since the
+     * connection can no longer be trusted.
+     *
+     * @param input commands, one per line
+     * @param interactive if true, prompt before each command and never stop on a failure
+     * @param keepGoing if true, carry on after a failed command
+     * @return 0 if every command succeeded, 1 otherwise
+     */
+    public int run(BufferedReader input, boolean interactive, boolean keepGoing) throws IOException {
+        if (!keepalive.isPositive()) {
+            return runCommands(input, interactive, keepGoing);
+        }
+        ScheduledExecutorService keepaliveScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tascam-keepalive").daemon(true).factory());
+        long nanos = keepalive.toNanos();
+        keepaliveScheduler.scheduleWithFixedDelay(this::sendKeepalive, nanos, nanos, TimeUnit.NANOSECONDS);
+        try {
+            return runCommands(input, interactive, keepGoing);
+        } finally {
+            keepaliveScheduler.shutdownNow();
+        }
+    }
+
+    private int runCommands(BufferedReader input, boolean interactive, boolean keepGoing) throws IOException {
+        boolean failed = false;
+        int lineNumber = 0;
+        while (true) {
+            if (interactive) {
+                err.print("tascam> ");
+                err.flush();
+            }
+            String line = input.readLine();
+            if (line == null) {
+                break;
+            }
+            lineNumber++;
+            try {
+                if (!execute(line)) {
+                    break;
+                }
+            } catch (TascamProtocolException | PresetRecallException | IllegalArgumentException | IllegalStateException e) {
+                failed = true;
+                err.println(interactive ? "Error: " + e.getMessage() : "Error (line " + lineNumber + "): " + e.getMessage());
+                if (!interactive && !keepGoing) {
+                    break;
+                }
+            } catch (IOException e) {
+                err.println("Error (line " + lineNumber + "): " + e.getMessage());
+                return 1;
+            }
+        }
+        return failed ? 1 : 0;
+    }
+
+    /**
+     * Runs one command line.
+     *
+     * @return false if the line asked to quit
+     * @throws IllegalArgumentException if the line is not a valid command, or names no preset
+     * @throws IllegalStateException if the mixer's state prevents the command
+     * @throws IOException if communication fails
+     */
+    public boolean execute(String line) throws IOException {
+        String trimmed = line.strip();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return true;
+        }
+        String[] parts = trimmed.split("\\s+", 2);
+        String argument = parts.length > 1 ? parts[1] : "";
+        String command = parts[0].toLowerCase();
+        switch (command) {
+            case "list" -> list();
+            case "current" -> current();
+            case "recall" -> recall(argument);
+            case "wait" -> pause(argument);
+            case "get" -> get(argument);
+            case "quit", "exit" -> {
+                return false;
+            }
+            default -> throw new IllegalArgumentException("Unknown command: " + parts[0]
+                + " (expected list, current, recall, wait, get or quit)");
+        }
+        if (!command.equals("wait")) {
+            lastActivityNanos = System.nanoTime();
+        }
+        out.flush();
+        return true;
+    }
+
+    private void sendKeepalive() {
+        // Any command since the last tick already kept the session alive
+        if (System.nanoTime() - lastActivityNanos < keepalive.toNanos()) {
+            return;
+        }
+        try {
+            client.getBulk(List.of(KEEPALIVE_KEY));
+            lastActivityNanos = System.nanoTime();
+        } catch (IOException | RuntimeException e) {
+            // The next command reports the lost connection
+            logger.warn("Keepalive failed: {}", e.getMessage());
+        }
+    }
+
+    private void list() throws IOException {
+        PresetListing listing = client.listPresetsWithCurrent();
+        presets = listing.presets();
+        if (presets.isEmpty()) {
+            out.println("No presets found.");
+            return;
+        }
+        int currentNumber = listing.current().map(Preset::number).orElse(-1);
+        for (Preset preset : presets) {
+            out.printf("%s%2d: \"%s\"%s%n",
+                preset.number() == currentNumber ? "*" : " ",
+                preset.number(),
+                preset.name(),
+                preset.locked().map(locked -> locked ? " [locked]" : "").orElse(""));
+        }
+    }
+
+    private void current() throws IOException {
+        Optional<Preset> current = client.getCurrentPreset();
+        if (current.isPresent()) {
+            out.println("Current preset " + current.get().number() + ": \"" + current.get().name() + "\"");
+        } else {
+            out.println("No current preset");
+        }
+    }
+
+    private void recall(String argument) throws IOException {
+        if (argument.isEmpty()) {
+            throw new IllegalArgumentException("recall needs a preset name or --number N");
+        }
+        String[] words = argument.split("\\s+");
+        if (words[0].equals("--number") || words[0].equals("-n")) {
+            if (words.length != 2) {
+                throw new IllegalArgumentException("recall --number needs one slot number");
+            }
+            int slot = parseInt(words[1], "preset number");
+            Optional<Preset> loaded = client.recallPreset(slot);
+            out.println(loaded.map(p -> "Recalled preset " + p.number() + ": \"" + p.name() + "\"")
+                .orElse("Recalled preset " + slot));
+            return;
+        }
+        String presetName = unquote(argument);
+        List<Preset> listed = presets;
+        Preset preset = resolve(presetName);
+        boolean cached = listed != null && presets == listed;
+        Optional<Preset> loaded = Optional.empty();
+        boolean stale;
+        try {
+            loaded = client.recallPreset(preset.number());
+            stale = cached && loaded.isPresent() && !loaded.get().name().equalsIgnoreCase(preset.name());
+            if (stale) {
+                logger.debug("Preset list is out of date: slot {} is now \"{}\"",
+                    preset.number(), loaded.get().name());
+            }
+        } catch (TascamProtocolException e) {
+            if (!cached) {
+                throw e;
+            }
+            // Most likely the cached slot has since been cleared
+            logger.debug("Recall of cached slot {} failed, re-reading presets: {}", preset.number(), e.getMessage());
+            stale = true;
+        }
+        if (stale) {
+            // Renamed, moved or deleted on the desk since the list was read
+            presets = null;
+            preset = resolve(presetName);
+            loaded = client.recallPreset(preset.number());
+        }
+        Preset active = loaded.orElse(preset);
+        out.println("Recalled preset " + active.number() + ": \"" + active.name() + "\"");
+    }
+
+    private Preset resolve(String presetName) throws IOException {
+        Optional<Preset> match = presets == null
+            ? Optional.empty()
+            : CatalogRecall.findByName(presets, presetName, false);
+        if (match.isEmpty()) {
+            // Not read yet, or renamed on the desk since the last read
+            logger.debug("Reading presets to resolve \"{}\"", presetName);
+            presets = client.listPresets();
+            match = CatalogRecall.findByName(presets, presetName, false);
+        }
+        return match.orElseThrow(
+            () -> new IllegalArgumentException("No preset found with name \"" + presetName + "\""));
+    }
+
+    private void pause(String argument) throws IOException {
+        double seconds;
+        try {
+            seconds = Double.parseDouble(argument);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("wait needs a number of seconds: " + argument);
+        }
+        if (seconds < 0 || Double.isNaN(seconds)) {
+            throw new IllegalArgumentException("wait needs a number of seconds: " + argument);
+        }
+        try {
+            Thread.sleep((long) (seconds * 1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting");
+        }
+    }
+
+    private void get(String argument) throws IOException {
+        if (argument.isEmpty()) {
+            throw new IllegalArgumentException("get needs at least one key");
+        }
+        List<String> keys = Arrays.asList(argument.split("\\s+"));
+        Map<String, String> values = client.getBulk(keys);
+        for (String key : keys) {
+            String value = values.get(key);
+            out.println(key + "=" + (value != null ? value : ""));
+        }
+    }
+
+    private static int parseInt(String text, String what) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + what + ": " + text);
+        }
+    }
+
+    private static String unquote(String text) {
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,62 @@
+package uk.co.hpnet.tascam.snapshot;
+
+import java.io.IOException;
+
+/**
+ * Compares two snapshots in one pass over each.
+ * <p>
+ * Both files hold their entries in key order, so the comparison is a merge: step whichever
+ * cursor is behind, and compare values where the keys meet. Matching entries are compared
+ * as bytes and never decoded; only differences become strings.
+ */
+public final class SnapshotDiff {
+
+    private SnapshotDiff() {
+    }
+
+    /**
+     * Receives each difference, in key order.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param key the parameter
+         * @param before its value in the first snapshot, or null if absent there
+         * @param after its value in the second snapshot, or null if absent there
+         */
+        void onDifference(String key, String before, String after);
+    }
+
+    /**
+     * Reports every key whose value differs, or which only one snapshot has.
+     *
+     * @return the number of differences
+     * @throws IOException if either snapshot is unreadable
+     */
+    public static int compare(SnapshotFile.Cursor before, SnapshotFile.Cursor after, Listener listener) throws IOException {
+        int differences = 0;
+        boolean hasBefore = before.next();
+        boolean hasAfter = after.next();
+        while (hasBefore || hasAfter) {
+            int order = !hasBefore ? 1 : !hasAfter ? -1 : before.compareKey(after);
+            if (order < 0) {
+                listener.onDifference(before.key(), before.value(), null);
+                differences++;
+                hasBefore = before.next();
+            } else if (order > 0) {
+                listener.onDifference(after.key(), null, after.value());
+                differences++;
+                hasAfter = after.next();
+            } else {
+                if (!before.sameValue(after)) {
+                    listener.onDifference(before.key(), before.value(), after.value());
+                    differences++;
+                }
+                hasBefore = before.next();
+                hasAfter = after.next();
+            }
+        }
+        return differences;
+    }
+}
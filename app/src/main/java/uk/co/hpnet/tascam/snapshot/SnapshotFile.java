@@ -0,0 +1,253 @@
+package uk.co.hpnet.tascam.snapshot;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A mixer's parameters at one moment, stored compactly for later comparison.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * int   magic "TPS1"
+ * long  taken at (epoch milliseconds)
+ * short source length, then that many UTF-8 bytes (e.g. host:port)
+ * int   entry count
+ * per entry, in ascending key order (bytes compared unsigned):
+ *   byte  leading bytes shared with the previous key
+ *   byte  remaining key length, then those bytes
+ *   short value length, then that many UTF-8 bytes
+ * </pre>
+ * Keys are front-coded: a run of {@code PRESET/12/...} keys stores the common part once.
+ * Values are as the mixer reported them, quotes included. The fixed key order lets two
+ * snapshots be compared in a single pass over each (see {@link SnapshotDiff}).
+ */
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x54505331; // "TPS1"
+    private static final int MAX_KEY_BYTES = 255;
+    private static final int MAX_VALUE_BYTES = 0xFFFF;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes a snapshot, replacing any file already there.
+     *
+     * @param file where to write
+     * @param source identifies the mixer, e.g. {@code host:port}
+     * @param takenAtMillis when the values were read
+     * @param values parameter values by key, in any order
+     * @throws IllegalArgumentException if a key or value is too long to store
+     */
+    public static void write(Path file, String source, long takenAtMillis, Map<String, String> values) throws IOException {
+        byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+        if (sourceBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Source too long: " + source);
+        }
+        List<byte[][]> entries = new ArrayList<>(values.size());
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            if (key.length > MAX_KEY_BYTES) {
+                throw new IllegalArgumentException("Key too long: " + entry.getKey());
+            }
+            if (value.length > MAX_VALUE_BYTES) {
+                throw new IllegalArgumentException("Value too long for " + entry.getKey());
+            }
+            entries.add(new byte[][]{key, value});
+        }
+        entries.sort((a, b) -> Arrays.compareUnsigned(a[0], b[0]));
+
+        int size = Integer.BYTES + Long.BYTES + Short.BYTES + sourceBytes.length + Integer.BYTES;
+        byte[] previous = new byte[0];
+        for (byte[][] entry : entries) {
+            size += 2 + entry[0].length - shared(previous, entry[0]) + Short.BYTES + entry[1].length;
+            previous = entry[0];
+        }
+
+        Path absolute = file.toAbsolutePath();
+        Path directory = absolute.getParent();
+        Files.createDirectories(directory);
+        // Written aside and moved into place, so an interrupted write never leaves half a snapshot
+        Path temp = Files.createTempFile(directory, absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                write(buffer, sourceBytes, takenAtMillis, entries);
+                buffer.force();
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void write(ByteBuffer buffer, byte[] source, long takenAtMillis, List<byte[][]> entries) {
+        try {
+            buffer.putInt(MAGIC);
+            buffer.putLong(takenAtMillis);
+            buffer.putShort((short) source.length);
+            buffer.put(source);
+            buffer.putInt(entries.size());
+            byte[] previous = new byte[0];
+            for (byte[][] entry : entries) {
+                byte[] key = entry[0];
+                int shared = shared(previous, key);
+                buffer.put((byte) shared);
+                buffer.put((byte) (key.length - shared));
+                buffer.put(key, shared, key.length - shared);
+                buffer.putShort((short) entry[1].length);
+                buffer.put(entry[1]);
+                previous = key;
+            }
+        } catch (BufferOverflowException e) {
+            throw new IllegalStateException("Snapshot size miscalculated", e);
+        }
+    }
+
+    private static int shared(byte[] previous, byte[] key) {
+        int limit = Math.min(previous.length, key.length);
+        int mismatch = Arrays.mismatch(previous, 0, limit, key, 0, limit);
+        return mismatch < 0 ? limit : mismatch;
+    }
+
+    /**
+     * Opens a snapshot for reading, entry by entry.
+     *
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static Cursor open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                if (buffer.getInt() != MAGIC) {
+                    throw new IOException("Not a snapshot file: " + file);
+                }
+                long takenAt = buffer.getLong();
+                byte[] source = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(source);
+                int count = buffer.getInt();
+                if (count < 0) {
+                    throw new IOException("Corrupt snapshot " + file + ": negative entry count");
+                }
+                return new Cursor(file, buffer, new String(source, StandardCharsets.UTF_8), takenAt, count);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated snapshot " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Steps through a snapshot's entries in key order. The current key and value are held
+     * in reusable buffers, so reading a whole file allocates nothing per entry.
+     */
+    public static final class Cursor {
+
+        private final Path file;
+        private final ByteBuffer buffer;
+        private final String source;
+        private final long takenAtMillis;
+        private final int count;
+        private int read;
+        private final byte[] key = new byte[MAX_KEY_BYTES];
+        private int keyLength;
+        private byte[] value = new byte[64];
+        private int valueLength;
+
+        private Cursor(Path file, ByteBuffer buffer, String source, long takenAtMillis, int count) {
+            this.file = file;
+            this.buffer = buffer;
+            this.source = source;
+            this.takenAtMillis = takenAtMillis;
+            this.count = count;
+        }
+
+        public String source() {
+            return source;
+        }
+
+        public long takenAtMillis() {
+            return takenAtMillis;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return false once every entry has been read
+         * @throws IOException if the file is truncated or its keys are out of order
+         */
+        public boolean next() throws IOException {
+            if (read == count) {
+                return false;
+            }
+            try {
+                int shared = buffer.get() & 0xFF;
+                int rest = buffer.get() & 0xFF;
+                if (shared > keyLength || shared + rest > MAX_KEY_BYTES) {
+                    throw new IOException("Corrupt snapshot " + file + " at entry " + read);
+                }
+                int previousLength = keyLength;
+                byte previousByte = shared < previousLength ? key[shared] : 0;
+                buffer.get(key, shared, rest);
+                keyLength = shared + rest;
+                // A key must sort after the previous one: differ upwards at the first new byte, or extend it
+                boolean ascending = read == 0
+                    || (shared < previousLength
+                        ? rest > 0 && Byte.toUnsignedInt(key[shared]) > Byte.toUnsignedInt(previousByte)
+                        : rest > 0);
+                if (!ascending) {
+                    throw new IOException("Corrupt snapshot " + file + ": keys out of order at entry " + read);
+                }
+                valueLength = buffer.getShort() & 0xFFFF;
+                if (valueLength > value.length) {
+                    value = new byte[Math.max(valueLength, value.length * 2)];
+                }
+                buffer.get(value, 0, valueLength);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated snapshot " + file + " at entry " + read, e);
+            }
+            read++;
+            return true;
+        }
+
+        /**
+         * Compares the current key with another cursor's, as unsigned bytes.
+         */
+        public int compareKey(Cursor other) {
+            return Arrays.compareUnsigned(key, 0, keyLength, other.key, 0, other.keyLength);
+        }
+
+        /**
+         * Whether the current value is byte for byte the other cursor's.
+         */
+        public boolean sameValue(Cursor other) {
+            return Arrays.equals(value, 0, valueLength, other.value, 0, other.valueLength);
+        }
+
+        public String key() {
+            return new String(key, 0, keyLength, StandardCharsets.UTF_8);
+        }
+
+        public String value() {
+            return new String(value, 0, valueLength, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package uk.co.hpnet.tascam.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The parameter keys a snapshot reads.
+ * <p>
+ * A key file lists one key per line; blank lines and lines starting with {@code #} are
+ * skipped. A numeric range in braces expands to one key per number, so
+ * {@code MUTE/{1..32}} stands for {@code MUTE/1} to {@code MUTE/32}; a key may hold
+ * several ranges. Repeated keys are read once.
+ */
+public final class SnapshotKeys {
+
+    private static final Pattern RANGE = Pattern.compile("\\{(\\d+)\\.\\.(\\d+)}");
+
+    /** Expansion beyond this is almost certainly a typo in a range. */
+    static final int MAX_KEYS = 100_000;
+
+    private SnapshotKeys() {
+    }
+
+    /**
+     * Device name, current preset and every slot's name, lock and cleared flag.
+     */
+    public static List<String> defaults() {
+        return parse(List.of(
+            "DEVICE/NAME",
+            "PRESET/CUR",
+            "PRESET/NAME",
+            "PRESET/CMP",
+            "PRESET/{1..50}/NAME",
+            "PRESET/{1..50}/LOCK",
+            "PRESET/{1..50}/CLEARED"));
+    }
+
+    /**
+     * Reads a key file.
+     *
+     * @throws IllegalArgumentException if a range is invalid or the file names no keys
+     */
+    public static List<String> load(Path file) throws IOException {
+        List<String> keys = parse(Files.readAllLines(file));
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("No keys in " + file);
+        }
+        return keys;
+    }
+
+    /**
+     * Expands key lines, in order.
+     *
+     * @throws IllegalArgumentException if a range is invalid
+     */
+    public static List<String> parse(List<String> lines) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String line : lines) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            if (trimmed.contains(" ")) {
+                throw new IllegalArgumentException("Keys cannot contain spaces: " + trimmed);
+            }
+            expand(trimmed, keys);
+        }
+        return List.copyOf(keys);
+    }
+
+    private static void expand(String key, Set<String> into) {
+        Matcher range = RANGE.matcher(key);
+        if (!range.find()) {
+            if (into.size() >= MAX_KEYS) {
+                throw new IllegalArgumentException("More than " + MAX_KEYS + " keys");
+            }
+            into.add(key);
+            return;
+        }
+        int from;
+        int to;
+        try {
+            from = Integer.parseInt(range.group(1));
+            to = Integer.parseInt(range.group(2));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid range in " + key);
+        }
+        if (from > to) {
+            throw new IllegalArgumentException("Range runs backwards in " + key);
+        }
+        if (to - from >= MAX_KEYS) {
+            throw new IllegalArgumentException("More than " + MAX_KEYS + " keys");
+        }
+        String before = key.substring(0, range.start());
+        String after = key.substring(range.end());
+        for (int n = from; n <= to; n++) {
+            expand(before + n + after, into);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package uk.co.hpnet.tascam.watch;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.client.RawNotifyListener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Writes each NOTIFY line as one line of JSON (NDJSON), for feeding a logging pipeline.
+ * <pre>
+ * NOTIFY MUTE/1:ON LEVEL/1:-12.0 PRESET/NAME:"Quiet Mode"
+ * {"mixer":"10.0.0.5:54726","ts":1760000000000,"values":{"MUTE/1":"ON","LEVEL/1":"-12.0","PRESET/NAME":"Quiet Mode"}}
+ * </pre>
+ * Values are always JSON strings, with the mixer's quotes removed; {@code ts} is the
+ * epoch time in milliseconds at which the line was read.
+ * <p>
+ * A NOTIFY burst after a preset recall can run to thousands of lines a second, so lines
+ * are encoded straight from the socket's bytes into a reusable buffer, with no strings or
+ * maps per line, and a separate thread writes the buffer out. The two buffers swap each
+ * time the writer is ready, so the reader thread never waits for the output while the
+ * output keeps up on average, and a slow moment on the output turns into one larger write
+ * rather than a stall on the socket. Only if more than {@code maxBufferedBytes} pile up
+ * does the reader wait, leaving the mixer's TCP window to absorb the rest.
+ */
+public class NotifyJsonWriter implements RawNotifyListener, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(NotifyJsonWriter.class);
+
+    public static final int DEFAULT_MAX_BUFFERED_BYTES = 8 * 1024 * 1024;
+
+    private static final int NOTIFY_PREFIX_LENGTH = "NOTIFY ".length();
+    private static final byte[] TS = ",\"ts\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUES = ",\"values\":{".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "}}\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] prefix;
+    private final LongSupplier clock;
+    private final int maxBufferedBytes;
+    private final Thread writer;
+    private final Object lock = new Object();
+    // Guarded by lock; the reader encodes into filling while the writer drains the other buffer
+    private byte[] filling = new byte[64 * 1024];
+    private int filled;
+    private byte[] draining = new byte[64 * 1024];
+    private boolean closed;
+    private long linesWritten;
+    private IOException failure;
+
+    /**
+     * @param out where the JSON lines go
+     * @param mixer identifies the mixer in every line, e.g. {@code host:port}
+     * @param clock epoch milliseconds for each line's timestamp
+     * @param maxBufferedBytes how much may wait for the output before the reader is held up
+     */
+    public NotifyJsonWriter(OutputStream out, String mixer, LongSupplier clock, int maxBufferedBytes) {
+        this.out = out;
+        this.prefix = ("{\"mixer\":" + quote(mixer)).getBytes(StandardCharsets.UTF_8);
+        this.clock = clock;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.writer = Thread.ofPlatform().name("notify-writer").daemon(true).start(this::writeLoop);
+    }
+
+    public NotifyJsonWriter(OutputStream out, String mixer) {
+        this(out, mixer, System::currentTimeMillis, DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * How many lines have been encoded so far.
+     */
+    public long linesWritten() {
+        synchronized (lock) {
+            return linesWritten;
+        }
+    }
+
+    @Override
+    public void onNotify(byte[] bytes, int offset, int length) {
+        long millis = clock.getAsLong();
+        synchronized (lock) {
+            if (failure != null || closed) {
+                return;
+            }
+            if (filled > maxBufferedBytes) {
+                logger.debug("Output behind by {} bytes, holding the reader", filled);
+                while (filled > maxBufferedBytes && failure == null && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            // Worst case every byte becomes a six-byte escape
+            ensureCapacity(prefix.length + TS.length + 20 + VALUES.length + length * 6 + END.length);
+            encode(bytes, offset, length, millis);
+            linesWritten++;
+            lock.notifyAll();
+        }
+    }
+
+    private void encode(byte[] bytes, int offset, int length, long millis) {
+        append(prefix);
+        append(TS);
+        appendLong(millis);
+        append(VALUES);
+
+        int end = offset + length;
+        int i = offset + NOTIFY_PREFIX_LENGTH;
+        boolean first = true;
+        while (i < end) {
+            if (bytes[i] == ' ') {
+                i++;
+                continue;
+            }
+            // A parameter runs to the next space outside quotes, like a GET response's
+            int start = i;
+            int colon = -1;
+            boolean quoted = false;
+            while (i < end && (quoted || bytes[i] != ' ')) {
+                if (bytes[i] == '"') {
+                    quoted = !quoted;
+                } else if (bytes[i] == ':' && colon < 0 && !quoted) {
+                    colon = i;
+                }
+                i++;
+            }
+            if (colon <= start) {
+                continue;
+            }
+            int valueStart = colon + 1;
+            int valueEnd = i;
+            if (valueEnd - valueStart >= 2 && bytes[valueStart] == '"' && bytes[valueEnd - 1] == '"') {
+                valueStart++;
+                valueEnd--;
+            }
+            if (!first) {
+                filling[filled++] = ',';
+            }
+            first = false;
+            appendString(bytes, start, colon);
+            filling[filled++] = ':';
+            appendString(bytes, valueStart, valueEnd);
+        }
+        append(END);
+    }
+
+    /**
+     * Appends bytes as a JSON string. UTF-8 sequences pass through unchanged.
+     */
+    private void appendString(byte[] bytes, int from, int to) {
+        filling[filled++] = '"';
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b == '"' || b == '\\') {
+                filling[filled++] = '\\';
+                filling[filled++] = b;
+            } else if (b >= 0 && b < 0x20) {
+                filling[filled++] = '\\';
+                filling[filled++] = 'u';
+                filling[filled++] = '0';
+                filling[filled++] = '0';
+                filling[filled++] = HEX[b >> 4];
+                filling[filled++] = HEX[b & 0xf];
+            } else {
+                filling[filled++] = b;
+            }
+        }
+        filling[filled++] = '"';
+    }
+
+    private void appendLong(long value) {
+        if (value < 0) {
+            filling[filled++] = '-';
+            value = -value;
+        }
+        int start = filled;
+        do {
+            filling[filled++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // Digits went in least significant first
+        for (int left = start, right = filled - 1; left < right; left++, right--) {
+            byte digit = filling[left];
+            filling[left] = filling[right];
+            filling[right] = digit;
+        }
+    }
+
+    private void append(byte[] bytes) {
+        System.arraycopy(bytes, 0, filling, filled, bytes.length);
+        filled += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (filled + extra > filling.length) {
+            filling = Arrays.copyOf(filling, Math.max(filling.length * 2, filled + extra));
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            int length;
+            synchronized (lock) {
+                while (filled == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (filled == 0) {
+                    return;
+                }
+                byte[] full = filling;
+                filling = draining;
+                draining = full;
+                length = filled;
+                filled = 0;
+                // A reader held up by a full buffer can carry on
+                lock.notifyAll();
+            }
+            try {
+                out.write(draining, 0, length);
+                out.flush();
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                logger.warn("Writing NOTIFY lines failed: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes out everything encoded so far and stops the writer.
+     *
+     * @throws IOException if the output failed at any point
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static String quote(String text) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\');
+            }
+            json.append(c);
+        }
+        return json.append('"').toString();
+    }
+}
@@ -0,0 +1,149 @@
+package uk.co.hpnet.tascam.watch;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.hpnet.tascam.client.AbstractTascamClient;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.client.RawNotifyListener;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Holds a session to one mixer and passes every NOTIFY it sends to a listener.
+ * <p>
+ * The session is kept inside the device's idle timeout with a periodic
+ * {@code GET DEVICE/NAME}, as the daemon's sessions are. If the mixer drops it, or a
+ * keepalive fails, the watcher logs in again after a short pause and carries on; NOTIFYs
+ * sent while it was disconnected are lost.
+ */
+public class NotifyWatcher implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(NotifyWatcher.class);
+
+    static final String KEEPALIVE_KEY = "DEVICE/NAME";
+
+    /** How often a dropped connection is noticed between keepalives. */
+    private static final Duration POLL = Duration.ofSeconds(1);
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(2);
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final Supplier<AbstractTascamClient> clientFactory;
+    private final BusyBackoff backoff;
+    private final Duration keepalive;
+    private final RawNotifyListener listener;
+    private volatile boolean closed;
+    private volatile Thread runner;
+
+    /**
+     * @param host mixer host
+     * @param port mixer port
+     * @param password login password
+     * @param clientFactory creates an unconnected client for each (re)connect
+     * @param backoff how to wait for the mixer if another client holds it
+     * @param keepalive time between keepalives (zero to disable)
+     * @param listener receives every NOTIFY line
+     */
+    public NotifyWatcher(String host, int port, String password, Supplier<AbstractTascamClient> clientFactory,
+                         BusyBackoff backoff, Duration keepalive, RawNotifyListener listener) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.clientFactory = clientFactory;
+        this.backoff = backoff;
+        this.keepalive = keepalive;
+        this.listener = listener;
+    }
+
+    /**
+     * Watches until {@link #close} is called or the thread is interrupted.
+     *
+     * @throws IOException if the first login fails; later failures are retried
+     */
+    public void run() throws IOException {
+        runner = Thread.currentThread();
+        boolean first = true;
+        while (!closed) {
+            AbstractTascamClient client;
+            try {
+                client = backoff.connect(clientFactory, host, port, password);
+            } catch (IOException e) {
+                if (first || closed) {
+                    throw e;
+                }
+                logger.warn("Reconnecting to {}:{} failed: {}", host, port, e.getMessage());
+                if (!pause(RECONNECT_DELAY)) {
+                    return;
+                }
+                continue;
+            }
+            first = false;
+            try (client) {
+                client.addRawNotifyListener(listener);
+                logger.debug("Watching {}:{}", host, port);
+                if (!hold(client)) {
+                    return;
+                }
+            }
+            if (!closed) {
+                logger.warn("Connection to {}:{} lost, reconnecting", host, port);
+                if (!pause(RECONNECT_DELAY)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the session alive until it fails.
+     *
+     * @return false if interrupted or closed
+     */
+    private boolean hold(AbstractTascamClient client) {
+        long keepaliveNanos = keepalive.toNanos();
+        long nextKeepalive = System.nanoTime() + keepaliveNanos;
+        while (!closed && client.isOpen()) {
+            long untilKeepalive = nextKeepalive - System.nanoTime();
+            if (keepaliveNanos > 0 && untilKeepalive <= 0) {
+                try {
+                    client.getBulk(List.of(KEEPALIVE_KEY));
+                } catch (IOException e) {
+                    logger.warn("Keepalive to {}:{} failed: {}", host, port, e.getMessage());
+                    return true;
+                }
+                nextKeepalive = System.nanoTime() + keepaliveNanos;
+                continue;
+            }
+            Duration wait = keepaliveNanos > 0 && untilKeepalive < POLL.toNanos() ? Duration.ofNanos(untilKeepalive) : POLL;
+            if (!pause(wait)) {
+                return false;
+            }
+        }
+        return !closed;
+    }
+
+    private boolean pause(Duration duration) {
+        try {
+            Thread.sleep(duration);
+            return !closed;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stops watching; {@link #run} returns once the current session is closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread = runner;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
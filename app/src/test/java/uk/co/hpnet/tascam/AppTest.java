@@ -1,13 +1,17 @@
 package uk.co.hpnet.tascam;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+import uk.co.hpnet.tascam.daemon.DaemonServer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -134,6 +138,139 @@ class AppTest {
         }
     }
 
+    @Test
+    void recallCommandByNumberSkipsNameResolution() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1)) {
+            CapturedOutput output = runWithStdin("\n", "--host", "localhost", "-p", String.valueOf(server.getPort()),
+                "recall", "-w", "0.01", "--number", "2");
+            
+            assertTrue(output.stdout.contains("Recalled preset 2: \"Quiet Mode\""), output.stdout + output.stderr);
+            assertEquals(2, server.getCurrentPresetNumber());
+            assertTrue(server.getReceivedCommands().stream().noneMatch(c -> c.contains("PRESET/1/NAME")),
+                "Should not scan preset slots");
+        }
+    }
+
+    @Test
+    void recallCommandUniqueRejectsDuplicateNames() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Service", false),
+            2, new FakeTascamServer.TestPreset("Service", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1)) {
+            CapturedOutput output = runWithStdin("\n", "--host", "localhost", "-p", String.valueOf(server.getPort()),
+                "recall", "--no-cache", "--unique", "Service");
+            
+            assertTrue(output.stderr.contains("is not unique: slots 1, 2"), output.stderr);
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void fleetCommandRecallsOnEveryMixer() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+
+        try (FakeTascamServer first = new FakeTascamServer(presets, 1);
+             FakeTascamServer second = new FakeTascamServer(presets, 1)) {
+            CapturedOutput output = runWithStdin("\n", "fleet", "-w", "0.01",
+                "-m", "localhost:" + first.getPort(), "-m", "localhost:" + second.getPort(), "Quiet Mode");
+            
+            assertTrue(output.stdout.contains("localhost:" + first.getPort() + ": recalled preset 2"), output.stdout);
+            assertTrue(output.stdout.contains("localhost:" + second.getPort() + ": recalled preset 2"), output.stdout);
+            assertTrue(output.stdout.contains("Issue skew:"), "Should report issue skew");
+            assertEquals(2, first.getCurrentPresetNumber());
+            assertEquals(2, second.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void shellRunsScriptFromStdinAfterThePassword() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1)) {
+            // First line answers the password prompt; the script follows on the same stdin
+            CapturedOutput output = runWithStdin("\nlist\nrecall quiet mode\ncurrent\n",
+                "--host", "localhost", "-p", String.valueOf(server.getPort()), "shell", "-w", "0.01");
+
+            assertTrue(output.stdout.contains("* 1: \"Default Mix\""), output.stdout + output.stderr);
+            assertTrue(output.stdout.contains("Recalled preset 2: \"Quiet Mode\""), output.stdout + output.stderr);
+            assertTrue(output.stdout.contains("Current preset 2: \"Quiet Mode\""), output.stdout + output.stderr);
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void snapshotsBeforeAndAfterARecallDiffByTheCurrentPreset(@TempDir Path tempDir) throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", true)
+        );
+        Path golden = tempDir.resolve("golden.snap");
+        Path after = tempDir.resolve("after.snap");
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1)) {
+            String port = String.valueOf(server.getPort());
+            CapturedOutput first = runWithStdin("\n", "--host", "localhost", "-p", port, "snapshot", "-o", golden.toString());
+            assertTrue(first.stdout.contains("Saved"), first.stdout + first.stderr);
+            int commands = server.getReceivedCommands().size();
+            assertTrue(commands < 5, "Keys should be packed into a few GETs: " + server.getReceivedCommands());
+
+            runWithStdin("\n", "--host", "localhost", "-p", port, "recall", "-w", "0.01", "--number", "2");
+            runWithStdin("\n", "--host", "localhost", "-p", port, "snapshot", "-o", after.toString());
+        }
+
+        CapturedOutput diff = runWithStdin("", "diff", golden.toString(), after.toString());
+        assertTrue(diff.stdout.contains("~ PRESET/CUR: 1 -> 2"), diff.stdout + diff.stderr);
+        assertTrue(diff.stdout.contains("~ PRESET/NAME: \"Default Mix\" -> \"Quiet Mode\""), diff.stdout);
+        assertTrue(diff.stdout.contains("2 difference(s)"), diff.stdout);
+
+        CapturedOutput same = runWithStdin("", "diff", golden.toString(), golden.toString());
+        assertTrue(same.stdout.contains("No differences"), same.stdout + same.stderr);
+    }
+
+    @Test
+    void listAndRecallGoThroughRunningDaemon(@TempDir Path tempDir) throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+        Path socket = tempDir.resolve("daemon.sock");
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             DaemonServer daemon = new DaemonServer(socket, "", () -> new TascamTcpClient(0, 5000), 0)) {
+            daemon.start();
+            String port = String.valueOf(server.getPort());
+
+            // No stdin: the daemon already holds the password
+            CapturedOutput list = runWithStdin("", "--socket", socket.toString(), "--host", "localhost", "-p", port, "list");
+            assertTrue(list.stdout.contains("* 1: \"Default Mix\""), list.stdout + list.stderr);
+            assertFalse(list.stdout.contains("Password"), "Should not prompt for a password");
+
+            CapturedOutput recall = runWithStdin("", "--socket", socket.toString(), "--host", "localhost", "-p", port,
+                "recall", "Quiet Mode");
+            assertTrue(recall.stdout.contains("Recalled preset 2: \"Quiet Mode\""), recall.stdout + recall.stderr);
+            assertEquals(2, server.getCurrentPresetNumber());
+            assertFalse(recall.stderr.contains("Warning"), recall.stderr);
+
+            CapturedOutput tuned = runWithStdin("", "--socket", socket.toString(), "--host", "localhost", "-p", port,
+                "recall", "-w", "1", "--rescan", "Default Mix");
+            assertTrue(tuned.stdout.contains("Recalled preset 1: \"Default Mix\""), tuned.stdout + tuned.stderr);
+            assertTrue(tuned.stderr.contains("ignores --wait, --rescan"), tuned.stderr);
+        }
+    }
+
     record CapturedOutput(String stdout, String stderr) {}
 
     /**
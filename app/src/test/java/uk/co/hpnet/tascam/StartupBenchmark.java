@@ -0,0 +1,156 @@
+package uk.co.hpnet.tascam;
+
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times complete CLI processes, launch to exit, against an in-process {@link FakeTascamServer}.
+ * <p>
+ * JMH measures code inside a warmed-up JVM; this measures what a user waits for when
+ * running the tool once - JVM start, class loading, Log4j and picocli setup, login and
+ * the command itself. Each variant is a command line that starts the tool (a JVM with or
+ * without a CDS archive, a native binary); the tool's own arguments are appended. Every
+ * process gets a scratch home directory whose config file points at the fake mixer, so
+ * the real config, catalog and daemon socket are never touched.
+ * <pre>
+ * StartupBenchmark [--runs N] [--warmup N] [--training] [--workdir DIR]
+ *                  --variant NAME COMMAND... [--variant NAME COMMAND...]
+ * </pre>
+ * {@code --training} runs each variant once through {@code recall --rescan}, which
+ * lists and then recalls, instead of timing {@code list}. That is the run used to write
+ * a CDS archive or a native-image profile, so it should exercise as much as possible.
+ * {@code --workdir} sets where the processes run, which is where an instrumented native
+ * binary writes its profile.
+ * <p>
+ * Run with {@code ./gradlew startupBenchmark}.
+ */
+public final class StartupBenchmark {
+
+    private static final String TARGET_PRESET = "Quiet Mode";
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = 20;
+        int warmup = 3;
+        boolean training = false;
+        Path workdir = null;
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        List<String> current = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--training" -> training = true;
+                case "--workdir" -> workdir = Path.of(args[++i]);
+                case "--variant" -> {
+                    current = new ArrayList<>();
+                    variants.put(args[++i], current);
+                }
+                default -> {
+                    if (current == null) {
+                        throw new IllegalArgumentException("Expected --variant before " + args[i]);
+                    }
+                    current.add(args[i]);
+                }
+            }
+        }
+        if (variants.isEmpty()) {
+            throw new IllegalArgumentException("Give at least one --variant NAME COMMAND...");
+        }
+        if (training) {
+            runs = 1;
+            warmup = 0;
+        }
+
+        Map<Integer, FakeTascamServer.TestPreset> presets = new HashMap<>();
+        for (int slot = 1; slot <= 50; slot++) {
+            presets.put(slot, new FakeTascamServer.TestPreset("Preset " + slot, false));
+        }
+        presets.put(2, new FakeTascamServer.TestPreset(TARGET_PRESET, false));
+
+        Path home = Files.createTempDirectory("tascam-startup");
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1)) {
+            Files.writeString(home.resolve(".tascam-preset.conf"),
+                "host=127.0.0.1\nport=" + server.getPort() + "\npassword=\n");
+            List<String> command = training
+                ? List.of("recall", "--rescan", TARGET_PRESET)
+                : List.of("list");
+
+            System.out.printf("%-12s %6s %10s %10s %10s%n", "variant", "runs", "min ms", "median ms", "p90 ms");
+            for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+                List<String> line = commandLine(variant.getValue(), home, command);
+                for (int i = 0; i < warmup; i++) {
+                    launch(line, home, workdir);
+                }
+                long[] nanos = new long[runs];
+                for (int i = 0; i < runs; i++) {
+                    nanos[i] = launch(line, home, workdir);
+                }
+                Arrays.sort(nanos);
+                System.out.printf("%-12s %6d %10.1f %10.1f %10.1f%n", variant.getKey(), runs,
+                    millis(nanos[0]), millis(nanos[runs / 2]), millis(nanos[(int) Math.ceil(runs * 0.9) - 1]));
+            }
+        } finally {
+            deleteRecursively(home);
+        }
+    }
+
+    /**
+     * The variant's command with a scratch home directory added straight after the executable,
+     * so it is a system property for a JVM or a native binary alike, then the tool's arguments.
+     */
+    private static List<String> commandLine(List<String> variant, Path home, List<String> command) {
+        List<String> line = new ArrayList<>();
+        line.add(variant.get(0));
+        line.add("-Duser.home=" + home);
+        line.addAll(variant.subList(1, variant.size()));
+        line.addAll(command);
+        return line;
+    }
+
+    private static long launch(List<String> line, Path home, Path workdir) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(line)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT);
+        builder.environment().put("XDG_CACHE_HOME", home.resolve("cache").toString());
+        if (workdir != null) {
+            builder.directory(workdir.toFile());
+        }
+        long start = System.nanoTime();
+        Process process = builder.start();
+        process.getOutputStream().close();
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Timed out: " + String.join(" ", line));
+        }
+        long elapsed = System.nanoTime() - start;
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException("Exit " + process.exitValue() + ": " + String.join(" ", line));
+        }
+        return elapsed;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            for (Path path : paths.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
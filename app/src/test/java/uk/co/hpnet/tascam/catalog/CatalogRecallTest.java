@@ -0,0 +1,113 @@
+package uk.co.hpnet.tascam.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogRecallTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("Default Mix", false),
+        2, new FakeTascamServer.TestPreset("Quiet Mode", false),
+        3, new FakeTascamServer.TestPreset("Loud Mode", false)
+    );
+
+    @TempDir
+    Path tempDir;
+
+    private PresetCatalog catalog() {
+        return new PresetCatalog(tempDir, Duration.ofHours(1));
+    }
+
+    private static boolean isSlotScan(String command) {
+        return command.contains("PRESET/1/NAME");
+    }
+
+    @Test
+    void missingCatalogIsFilledByScan() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            client.connect("localhost", server.getPort(), "");
+
+            Preset preset = new CatalogRecall(catalog()).recall(client, "localhost", server.getPort(), "quiet mode", false);
+
+            assertEquals(new Preset(2, "Quiet Mode", false), preset);
+            assertEquals(2, server.getCurrentPresetNumber());
+            assertEquals(3, catalog().load("localhost", server.getPort()).orElseThrow().size());
+        }
+    }
+
+    @Test
+    void cachedCatalogSkipsScan() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            catalog().save("localhost", server.getPort(), List.of(
+                new Preset(1, "Default Mix", false),
+                new Preset(2, "Quiet Mode", false)));
+            client.connect("localhost", server.getPort(), "");
+
+            Preset preset = new CatalogRecall(catalog()).recall(client, "localhost", server.getPort(), "Quiet Mode", false);
+
+            assertEquals(2, preset.number());
+            assertEquals(2, server.getCurrentPresetNumber());
+            assertTrue(server.getReceivedCommands().stream().noneMatch(CatalogRecallTest::isSlotScan),
+                server.getReceivedCommands().toString());
+        }
+    }
+
+    @Test
+    void nameMismatchRescansAndRecallsCorrectSlot() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            // Stale: "Loud Mode" has since moved from slot 2 to slot 3
+            catalog().save("localhost", server.getPort(), List.of(new Preset(2, "Loud Mode", false)));
+            client.connect("localhost", server.getPort(), "");
+
+            Preset preset = new CatalogRecall(catalog()).recall(client, "localhost", server.getPort(), "Loud Mode", false);
+
+            assertEquals(new Preset(3, "Loud Mode", false), preset);
+            assertEquals(3, server.getCurrentPresetNumber());
+            assertEquals(Optional.of(new Preset(3, "Loud Mode", false)),
+                catalog().load("localhost", server.getPort()).orElseThrow().stream()
+                    .filter(p -> p.number() == 3).findFirst());
+        }
+    }
+
+    @Test
+    void clearedSlotRescans() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            catalog().save("localhost", server.getPort(), List.of(new Preset(9, "Quiet Mode", false)));
+            client.connect("localhost", server.getPort(), "");
+
+            Preset preset = new CatalogRecall(catalog()).recall(client, "localhost", server.getPort(), "Quiet Mode", false);
+
+            assertEquals(2, preset.number());
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void unknownNameThrows() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            client.connect("localhost", server.getPort(), "");
+
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () ->
+                new CatalogRecall(catalog()).recall(client, "localhost", server.getPort(), "Missing", false));
+            assertEquals("No preset found with name \"Missing\"", e.getMessage());
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package uk.co.hpnet.tascam.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresetCatalogTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    private PresetCatalog catalogAt(Instant instant) {
+        return new PresetCatalog(tempDir, Duration.ofHours(1), Clock.fixed(instant, ZoneOffset.UTC));
+    }
+
+    @Test
+    void savedPresetsLoadBack() throws IOException {
+        List<Preset> presets = List.of(
+            new Preset(1, "Default Mix", false),
+            new Preset(7, "Chœur – Évening", true),
+            new Preset(50, "Unknown Lock")
+        );
+        catalogAt(NOW).save("192.168.1.100", 54726, presets);
+
+        assertEquals(Optional.of(presets), catalogAt(NOW).load("192.168.1.100", 54726));
+        assertEquals(Optional.empty(), catalogAt(NOW).load("192.168.1.100", 1234), "Catalogs are per port");
+        assertEquals(Optional.empty(), catalogAt(NOW).load("192.168.1.101", 54726), "Catalogs are per host");
+    }
+
+    @Test
+    void catalogExpiresAfterTtl() throws IOException {
+        catalogAt(NOW).save("mixer", 54726, List.of(new Preset(1, "Default Mix", false)));
+
+        assertTrue(catalogAt(NOW.plus(Duration.ofMinutes(59))).load("mixer", 54726).isPresent());
+        assertTrue(catalogAt(NOW.plus(Duration.ofMinutes(61))).load("mixer", 54726).isEmpty());
+    }
+
+    @Test
+    void invalidateRemovesCatalog() throws IOException {
+        PresetCatalog catalog = catalogAt(NOW);
+        catalog.save("mixer", 54726, List.of(new Preset(1, "Default Mix", false)));
+
+        catalog.invalidate("mixer", 54726);
+
+        assertTrue(catalog.load("mixer", 54726).isEmpty());
+    }
+
+    @Test
+    void corruptCatalogIsIgnored() throws IOException {
+        PresetCatalog catalog = catalogAt(NOW);
+        catalog.save("mixer", 54726, List.of(new Preset(1, "Default Mix", false)));
+        Path file = catalog.file("mixer", 54726);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertTrue(catalog.load("mixer", 54726).isEmpty());
+
+        Files.writeString(file, "not a catalog");
+        assertTrue(catalog.load("mixer", 54726).isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.metrics.ClientMetrics;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusyBackoffTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("Default Mix", false)
+    );
+
+    private static TascamTcpClient newClient() {
+        return new TascamTcpClient(0, 5000);
+    }
+
+    @Test
+    void secondClientIsRefusedAsBusy() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient holder = newClient()) {
+            server.rejectConcurrentClients();
+            holder.connect("localhost", server.getPort(), "");
+
+            assertThrows(MixerBusyException.class,
+                () -> BusyBackoff.NONE.connect(BusyBackoffTest::newClient, "localhost", server.getPort(), ""));
+        }
+    }
+
+    @Test
+    void retriesWithGrowingJitteredDelaysUntilTheMixerIsFree() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            server.rejectConcurrentClients();
+            TascamTcpClient holder = newClient();
+            holder.connect("localhost", server.getPort(), "");
+
+            List<Long> sleeps = new CopyOnWriteArrayList<>();
+            Sleeper sleeper = millis -> {
+                sleeps.add(millis);
+                // The other user leaves after the third refusal
+                if (sleeps.size() == 3) {
+                    holder.close();
+                }
+                Sleeper.defaultSleeper().sleep(millis);
+            };
+            BusyBackoff backoff = new BusyBackoff(10_000, 10, 40, sleeper, delay -> delay - 1);
+
+            try (TascamTcpClient client = backoff.connect(BusyBackoffTest::newClient, "localhost", server.getPort(), "")) {
+                assertEquals(new Preset(1, "Default Mix", false), client.listPresets().get(0));
+                assertEquals(List.of(9L, 19L, 39L), sleeps.subList(0, 3));
+                assertTrue(sleeps.stream().allMatch(ms -> ms <= 39), sleeps.toString());
+
+                ClientMetrics metrics = client.metrics();
+                assertEquals(sleeps.size(), metrics.busyRefusalCount());
+                assertEquals(1, metrics.phase(ClientMetrics.Phase.BUSY_WAIT).snapshot().count());
+            }
+        }
+    }
+
+    @Test
+    void givesUpAtTheDeadline() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient holder = newClient()) {
+            server.rejectConcurrentClients();
+            holder.connect("localhost", server.getPort(), "");
+
+            List<TascamTcpClient> attempts = new ArrayList<>();
+            BusyBackoff backoff = new BusyBackoff(200, 20, 50, Sleeper.defaultSleeper(), delay -> delay);
+            long start = System.nanoTime();
+
+            MixerBusyException e = assertThrows(MixerBusyException.class, () -> backoff.connect(() -> {
+                TascamTcpClient client = newClient();
+                attempts.add(client);
+                return client;
+            }, "localhost", server.getPort(), ""));
+
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(elapsedMs < 2000, elapsedMs + "ms");
+            assertTrue(e.getMessage().contains("still busy"), e.getMessage());
+            assertTrue(attempts.size() > 2, attempts.size() + " attempts");
+            assertTrue(attempts.stream().noneMatch(TascamTcpClient::isOpen));
+        }
+    }
+
+    @Test
+    void otherLoginFailuresAreNotRetried() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1, "secret")) {
+            List<Long> sleeps = new ArrayList<>();
+            BusyBackoff backoff = new BusyBackoff(10_000, 10, 40, sleeps::add, delay -> delay);
+
+            IOException e = assertThrows(IOException.class,
+                () -> backoff.connect(BusyBackoffTest::newClient, "localhost", server.getPort(), "wrong"));
+            assertFalse(e instanceof MixerBusyException);
+            assertTrue(sleeps.isEmpty());
+        }
+    }
+}
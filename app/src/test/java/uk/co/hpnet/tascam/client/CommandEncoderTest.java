@@ -0,0 +1,66 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandEncoderTest {
+
+    @Test
+    void encodesAsciiCommandWithCrLfIntoReusedBuffer() {
+        CommandEncoder encoder = new CommandEncoder();
+
+        int length = encoder.encode("SET PRESET/LOAD:2 CID:1001");
+        byte[] buffer = encoder.buffer();
+        assertEquals("SET PRESET/LOAD:2 CID:1001\r\n", new String(buffer, 0, length, StandardCharsets.UTF_8));
+
+        length = encoder.encode("GET PRESET/CUR CID:1002");
+        assertSame(buffer, encoder.buffer(), "Buffer is reused between commands");
+        assertEquals("GET PRESET/CUR CID:1002\r\n", new String(buffer, 0, length, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encodesNonAsciiAsUtf8() {
+        CommandEncoder encoder = new CommandEncoder();
+        String command = "SET PRESET/3/NAME:\"Chœur 日本\" CID:7";
+
+        int length = encoder.encode(command);
+
+        assertArrayEquals((command + "\r\n").getBytes(StandardCharsets.UTF_8),
+            Arrays.copyOf(encoder.buffer(), length));
+    }
+
+    @Test
+    void growsForCommandsLongerThanTheLimit() {
+        String command = "GET " + "K".repeat(3 * CommandPacker.MAX_COMMAND_BYTES);
+
+        byte[] line = CommandEncoder.encodeLine(command);
+
+        assertEquals(command.length() + 2, line.length);
+        assertEquals('\n', line[line.length - 1]);
+    }
+
+    @Test
+    void findsCidLikeProtocolParser() {
+        ProtocolParser parser = new ProtocolParser();
+        String[] lines = {
+            "OK GET PRESET/CUR:1 CID:1001 ",
+            "NG GET PRESET/CUR CID:42",
+            "OK GET PRESET/NAME:\"Has CID:99 inside\" CID:7 ",
+            "OK SET CID:abc ",
+            "OK SET ",
+            "OK SET XCID:5 ",
+            "CID:12",
+        };
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            int expected = parser.extractCid(line)
+                .map(cid -> ResponseDispatcher.parseCid(cid).orElse(ResponseDispatcher.NON_NUMERIC_CID))
+                .orElse(ResponseDispatcher.NO_CID);
+            assertEquals(expected, ResponseDispatcher.findCid(bytes, 0, bytes.length), line);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandPackerTest {
+
+    private final ProtocolParser parser = new ProtocolParser();
+
+    @Test
+    void packsAllPresetSlotsIntoFewCommandsUnderLimit() {
+        AtomicInteger cid = new AtomicInteger(1000);
+        List<String> keys = parser.presetSlotKeys(1, 50);
+
+        List<String> commands = new CommandPacker().packGet(keys, () -> String.valueOf(cid.getAndIncrement()));
+
+        assertEquals(3, commands.size());
+        for (String command : commands) {
+            int bytes = (command + "\r\n").getBytes(StandardCharsets.UTF_8).length;
+            assertTrue(bytes <= CommandPacker.MAX_COMMAND_BYTES, "Command too long: " + bytes);
+            assertTrue(command.startsWith("GET "));
+        }
+        assertEquals(keys, keysOf(commands));
+    }
+
+    @Test
+    void eachCommandGetsItsOwnCid() {
+        AtomicInteger cid = new AtomicInteger(1000);
+
+        List<String> commands = new CommandPacker(40).packGet(
+            List.of("PRESET/1/NAME", "PRESET/2/NAME", "PRESET/3/NAME"),
+            () -> String.valueOf(cid.getAndIncrement()));
+
+        assertEquals(List.of(
+            "GET PRESET/1/NAME CID:1000",
+            "GET PRESET/2/NAME CID:1001",
+            "GET PRESET/3/NAME CID:1002"
+        ), commands);
+    }
+
+    @Test
+    void fillsCommandExactlyToLimit() {
+        // "GET A B CID:1" + CR+LF = 15 bytes
+        List<String> commands = new CommandPacker(15).packGet(List.of("A", "B", "C"), () -> "1");
+
+        assertEquals(List.of("GET A B CID:1", "GET C CID:1"), commands);
+    }
+
+    @Test
+    void countsUtf8BytesNotChars() {
+        // "GET é CID:1" is 11 chars but 12 bytes, + CR+LF = 14 bytes
+        assertEquals(List.of("GET é CID:1"), new CommandPacker(14).packGet(List.of("é"), () -> "1"));
+        assertThrows(IllegalArgumentException.class, () ->
+            new CommandPacker(13).packGet(List.of("é"), () -> "1"));
+    }
+
+    @Test
+    void emptyKeysProduceNoCommands() {
+        assertEquals(List.of(), new CommandPacker().packGet(List.of(), () -> "1"));
+    }
+
+    @Test
+    void keyTooLongThrows() {
+        assertThrows(IllegalArgumentException.class, () ->
+            new CommandPacker(10).packGet(List.of("PRESET/1/NAME"), () -> "1"));
+    }
+
+    @Test
+    void meterKeysPackIntoMeterCommands() {
+        List<String> commands = new CommandPacker(30).packMeter(
+            List.of("CH/1", "CH/2", "CH/3", "CH/4"), () -> "7");
+
+        assertEquals(List.of("METER CH/1 CH/2 CH/3 CID:7", "METER CH/4 CID:7"), commands);
+    }
+
+    private static List<String> keysOf(List<String> commands) {
+        List<String> keys = new ArrayList<>();
+        for (String command : commands) {
+            String[] tokens = command.split(" ");
+            keys.addAll(Arrays.asList(tokens).subList(1, tokens.length - 1));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,76 @@
+package uk.co.hpnet.tascam.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Many {@link FakeTascamServer}s on ephemeral ports, for scale and soak tests.
+ * <p>
+ * Every mixer runs on virtual threads, so a farm of thousands costs little more than
+ * its sockets. Network conditions apply to every mixer; set them before connecting.
+ */
+public class FakeMixerFarm implements AutoCloseable {
+
+    private final List<FakeTascamServer> mixers;
+
+    /**
+     * Starts {@code count} mixers, each with the presets {@code presetsFor} gives for its index.
+     */
+    public FakeMixerFarm(int count, IntFunction<Map<Integer, FakeTascamServer.TestPreset>> presetsFor,
+                         int currentPresetNumber) throws IOException {
+        this.mixers = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                FakeTascamServer mixer = new FakeTascamServer(presetsFor.apply(i), currentPresetNumber);
+                mixer.disableCommandRecording();
+                mixers.add(mixer);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return mixers.size();
+    }
+
+    public FakeTascamServer mixer(int index) {
+        return mixers.get(index);
+    }
+
+    public int port(int index) {
+        return mixers.get(index).getPort();
+    }
+
+    public FakeMixerFarm latency(Duration rtt, Duration jitter) {
+        return each(mixer -> mixer.setLatency(rtt, jitter));
+    }
+
+    public FakeMixerFarm notifyStorm(int lines) {
+        return each(mixer -> mixer.setNotifyStorm(lines));
+    }
+
+    public FakeMixerFarm fragmentation(int maxBytes) {
+        return each(mixer -> mixer.setFragmentation(maxBytes));
+    }
+
+    public FakeMixerFarm stalls(int everyResponses, Duration stall) {
+        return each(mixer -> mixer.setStalls(everyResponses, stall));
+    }
+
+    private FakeMixerFarm each(Consumer<FakeTascamServer> setting) {
+        mixers.forEach(setting);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        mixers.forEach(FakeTascamServer::close);
+    }
+}
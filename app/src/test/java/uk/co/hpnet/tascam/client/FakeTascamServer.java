@@ -3,35 +3,62 @@ package uk.co.hpnet.tascam.client;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Fake Tascam server for testing. Simulates the device protocol.
+ * <p>
+ * Runs on virtual threads, so thousands can share one JVM (see {@link FakeMixerFarm}).
+ * Network conditions can be simulated: round-trip time with jitter, a storm of NOTIFY
+ * lines before each preset NOTIFY, responses split into small TCP segments, and stalls.
+ * Responses are delayed from the moment their command arrives, so pipelined commands
+ * all see one round trip, as they would on a real link.
  */
 public class FakeTascamServer implements AutoCloseable {
 
-    private static final Pattern GET_PATTERN = Pattern.compile("GET (.+) CID:(\\w+)");
-    private static final Pattern SET_PATTERN = Pattern.compile("SET (.+) CID:(\\w+)");
-    private static final Pattern PRESET_QUERY_PATTERN = Pattern.compile("PRESET/(\\d+)/(NAME|LOCK|CLEARED)");
-    private static final Pattern PRESET_LOAD_PATTERN = Pattern.compile("PRESET/LOAD:(\\d+)");
+    private static final String CID_PREFIX = "CID:";
+    private static final String PRESET_PREFIX = "PRESET/";
+    private static final String LOAD_PREFIX = "PRESET/LOAD:";
+    private static final int DEFAULT_NOTIFY_STORM = 3;
 
     private final ServerSocket serverSocket;
     private final Map<Integer, TestPreset> presets;
     private final AtomicInteger currentPresetNumber;
     private final String password;
     private final AtomicBoolean running = new AtomicBoolean(true);
+    private final List<String> receivedCommands = new CopyOnWriteArrayList<>();
+    private volatile int heldResponses = 1;
+    private volatile boolean reverseHeldResponses;
+    private volatile String unsolicitedNotify;
+    private volatile boolean rejectConcurrentClients;
+    private volatile boolean recordCommands = true;
+    private volatile long rttNanos;
+    private volatile long jitterNanos;
+    private volatile int notifyStorm = DEFAULT_NOTIFY_STORM;
+    private volatile int fragmentBytes;
+    private volatile int stallEvery;
+    private volatile long stallNanos;
+    private volatile int meterFrames;
+    private volatile int idleTimeoutMs;
+    private final AtomicBoolean clientLoggedIn = new AtomicBoolean();
     private Thread serverThread;
 
     public record TestPreset(String name, boolean locked) {}
 
     public FakeTascamServer(Map<Integer, TestPreset> presets, int currentPresetNumber, String password) throws IOException {
         this.serverSocket = new ServerSocket(0); // Ephemeral port
-        this.presets = new HashMap<>(presets);
+        this.presets = new ConcurrentHashMap<>(presets);
         this.currentPresetNumber = new AtomicInteger(currentPresetNumber);
         this.password = password;
         startServer();
@@ -52,12 +79,121 @@ public class FakeTascamServer implements AutoCloseable {
         return currentPresetNumber.get();
     }
 
+    /**
+     * Saves a preset into a slot, or clears the slot if {@code preset} is null, as if
+     * someone had edited presets on the desk.
+     */
+    public void setPreset(int number, TestPreset preset) {
+        if (preset == null) {
+            presets.remove(number);
+        } else {
+            presets.put(number, preset);
+        }
+    }
+
+    /**
+     * Holds responses until {@code count} commands have arrived, then sends them together.
+     * A client that waits for each response before sending its next command will stall.
+     *
+     * @param count number of commands to collect before responding
+     * @param reverse send the held responses in reverse order
+     */
+    public void holdResponses(int count, boolean reverse) {
+        this.heldResponses = count;
+        this.reverseHeldResponses = reverse;
+    }
+
+    /**
+     * Sends the given NOTIFY line before every response, as if another
+     * controller were changing the mixer at the same time.
+     */
+    public void setUnsolicitedNotify(String notify) {
+        this.unsolicitedNotify = notify;
+    }
+
+    /**
+     * Behaves like the real device towards a second client: while one client is connected,
+     * any other is answered "Another User Already Connected" after its password.
+     * Without this, a second client simply waits until the first disconnects.
+     */
+    public void rejectConcurrentClients() {
+        this.rejectConcurrentClients = true;
+    }
+
+    /**
+     * Delays every response by the round-trip time plus a uniformly random jitter,
+     * measured from when its command arrived. Responses keep their order.
+     */
+    public void setLatency(Duration rtt, Duration jitter) {
+        this.rttNanos = rtt.toNanos();
+        this.jitterNanos = jitter.toNanos();
+    }
+
+    /**
+     * Sets how many parameter NOTIFY lines precede the preset NOTIFY after a recall (default 3).
+     */
+    public void setNotifyStorm(int lines) {
+        this.notifyStorm = lines;
+    }
+
+    /**
+     * Writes responses in segments of at most {@code maxBytes}, flushing each, so the client
+     * sees lines split across reads (and multi-byte characters split across segments).
+     * 0 sends each batch of responses in one write.
+     */
+    public void setFragmentation(int maxBytes) {
+        this.fragmentBytes = maxBytes;
+    }
+
+    /**
+     * Pauses for {@code stall} before every {@code everyResponses}-th response, as a device
+     * busy loading a preset or a congested link would. 0 disables stalls.
+     */
+    public void setStalls(int everyResponses, Duration stall) {
+        this.stallEvery = everyResponses;
+        this.stallNanos = stall.toNanos();
+    }
+
+    /**
+     * Sets how many METER lines follow the response to a METER subscription (default 0).
+     * Frame {@code f} (from 0) reports {@code -(f + i + 1).5} dB for the {@code i}-th key.
+     */
+    public void setMeterFrames(int frames) {
+        this.meterFrames = frames;
+    }
+
+    /**
+     * Drops a logged-in client that sends nothing for this long, as the device does after
+     * three minutes. Zero (the default) never drops.
+     */
+    public void setIdleTimeout(Duration idle) {
+        this.idleTimeoutMs = (int) idle.toMillis();
+    }
+
+    /**
+     * Stops recording received commands, so long soak runs do not grow without bound.
+     */
+    public void disableCommandRecording() {
+        this.recordCommands = false;
+    }
+
+    /**
+     * Returns every command received after login, in order.
+     */
+    public List<String> getReceivedCommands() {
+        return List.copyOf(receivedCommands);
+    }
+
     private void startServer() {
-        serverThread = new Thread(() -> {
+        serverThread = Thread.ofVirtual().name("fake-tascam-" + getPort()).start(() -> {
             while (running.get()) {
                 try {
                     Socket client = serverSocket.accept();
-                    handleClient(client);
+                    if (rejectConcurrentClients) {
+                        Thread.ofVirtual().start(() -> serveOrReject(client));
+                    } else {
+                        handleClient(client);
+                    }
                 } catch (IOException e) {
                     if (running.get()) {
                         e.printStackTrace();
@@ -65,133 +201,304 @@ public class FakeTascamServer implements AutoCloseable {
                 }
             }
         });
-        serverThread.setDaemon(true);
-        serverThread.start();
     }
 
-    private void handleClient(Socket client) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+    private void serveOrReject(Socket client) {
+        try {
+            if (clientLoggedIn.compareAndSet(false, true)) {
+                try {
+                    handleClient(client);
+                } finally {
+                    clientLoggedIn.set(false);
+                }
+            } else {
+                rejectBusy(client);
+            }
+        } catch (IOException e) {
+            if (running.get()) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void rejectBusy(Socket client) throws IOException {
+        try (client;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
              PrintWriter writer = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            reader.readLine(); // Initial CR+LF
+            writer.print("Enter Password\r\n");
+            writer.flush();
+            reader.readLine();
+            writer.print("Another User Already Connected\r\n");
+            writer.flush();
+        }
+    }
+
+    private void handleClient(Socket client) throws IOException {
+        try (client;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8))) {
+            client.setTcpNoDelay(true);
+            OutputStream out = client.getOutputStream();
 
             // Login handshake
             String line = reader.readLine(); // Initial CR+LF
-            writer.print("Enter Password\r\n");
-            writer.flush();
+            write(out, "Enter Password\r\n");
 
             String passwordAttempt = reader.readLine();
             if (!password.equals(passwordAttempt)) {
-                writer.print("Login Failed\r\n");
-                writer.flush();
+                write(out, "Login Failed\r\n");
                 return;
             }
 
-            writer.print("Login Successful\r\n");
-            writer.flush();
+            write(out, "Login Successful\r\n");
+            client.setSoTimeout(idleTimeoutMs);
+
+            // Responses go out on their own thread, so they can be delayed without delaying reads
+            BlockingQueue<Outbound> outbound = new LinkedBlockingQueue<>();
+            Thread writer = Thread.ofVirtual().start(() -> writeLoop(out, outbound));
 
             // Command loop
-            while ((line = reader.readLine()) != null) {
-                String response = handleCommand(line);
-                writer.print(response + "\r\n");
-                writer.flush();
+            try {
+                List<String> held = new ArrayList<>();
+                long lastDue = 0;
+                while ((line = reader.readLine()) != null) {
+                    long receivedAt = System.nanoTime();
+                    if (recordCommands) {
+                        receivedCommands.add(line);
+                    }
+                    String notify = unsolicitedNotify;
+                    if (notify != null) {
+                        held.add(notify);
+                    }
+                    held.add(handleCommand(line));
+                    if (held.size() >= heldResponses * (notify != null ? 2 : 1)) {
+                        if (reverseHeldResponses) {
+                            Collections.reverse(held);
+                        }
+                        StringBuilder batch = new StringBuilder();
+                        for (String response : held) {
+                            batch.append(response).append("\r\n");
+                        }
+                        held.clear();
+                        // Never earlier than the previous batch, so responses keep their order
+                        lastDue = Math.max(lastDue, receivedAt + responseDelayNanos());
+                        outbound.add(new Outbound(batch.toString(), lastDue));
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                // Idle for too long: hang up, as the device does
+            } finally {
+                outbound.add(Outbound.END);
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private long responseDelayNanos() {
+        long jitter = jitterNanos;
+        return rttNanos + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    }
+
+    private void writeLoop(OutputStream out, BlockingQueue<Outbound> outbound) {
+        int sent = 0;
+        try {
+            while (true) {
+                Outbound next = outbound.take();
+                if (next == Outbound.END) {
+                    return;
+                }
+                sleepUntil(next.dueNanos());
+                int every = stallEvery;
+                if (every > 0 && ++sent % every == 0) {
+                    LockSupport.parkNanos(stallNanos);
+                }
+                write(out, next.text());
+            }
+        } catch (IOException e) {
+            // Client went away; the reader will notice too
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(OutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int segment = fragmentBytes;
+        if (segment <= 0) {
+            out.write(bytes);
+        } else {
+            for (int offset = 0; offset < bytes.length; offset += segment) {
+                out.write(bytes, offset, Math.min(segment, bytes.length - offset));
+                out.flush();
             }
         }
+        out.flush();
+    }
+
+    private static void sleepUntil(long dueNanos) {
+        long remaining;
+        while ((remaining = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
     }
 
     private String handleCommand(String command) {
-        Matcher getMatcher = GET_PATTERN.matcher(command);
-        if (getMatcher.matches()) {
-            String params = getMatcher.group(1);
-            String cid = getMatcher.group(2);
-            return handleGetCommand(params, cid);
+        // "<GET|SET> <params...> CID:<id>"
+        int firstSpace = command.indexOf(' ');
+        int cidStart = command.lastIndexOf(" " + CID_PREFIX);
+        if (firstSpace < 0 || cidStart <= firstSpace) {
+            return "NG " + command;
         }
-        
-        Matcher setMatcher = SET_PATTERN.matcher(command);
-        if (setMatcher.matches()) {
-            String params = setMatcher.group(1);
-            String cid = setMatcher.group(2);
-            return handleSetCommand(params, cid);
+        String cid = command.substring(cidStart + 1 + CID_PREFIX.length());
+        if (cid.isEmpty() || !cid.chars().allMatch(c -> Character.isLetterOrDigit(c) || c == '_')) {
+            return "NG " + command;
         }
-        
-        return "NG " + command;
+        String params = command.substring(firstSpace + 1, cidStart);
+
+        return switch (command.substring(0, firstSpace)) {
+            case "GET" -> handleGetCommand(params, cid);
+            case "SET" -> handleSetCommand(params, cid);
+            case "METER" -> handleMeterCommand(params, cid);
+            default -> "NG " + command;
+        };
     }
 
     private String handleGetCommand(String params, String cid) {
         StringBuilder response = new StringBuilder("OK GET");
 
-        // Handle PRESET/CUR and PRESET/NAME
-        if (params.contains("PRESET/CUR")) {
-            response.append(" PRESET/CUR:").append(currentPresetNumber.get());
-        }
-        if (params.contains("PRESET/NAME") && !params.contains("PRESET/NAME:")) {
-            TestPreset current = presets.get(currentPresetNumber.get());
-            if (current != null) {
-                response.append(" PRESET/NAME:\"").append(current.name()).append("\"");
+        for (String key : params.split(" ")) {
+            if (key.equals("PRESET/CUR")) {
+                response.append(" PRESET/CUR:").append(currentPresetNumber.get());
+            } else if (key.equals("PRESET/NAME")) {
+                TestPreset current = presets.get(currentPresetNumber.get());
+                if (current != null) {
+                    response.append(" PRESET/NAME:\"").append(current.name()).append("\"");
+                }
+            } else if (key.startsWith(PRESET_PREFIX)) {
+                appendSlotValue(response, key);
             }
         }
 
-        // Handle individual preset queries
-        Matcher presetMatcher = PRESET_QUERY_PATTERN.matcher(params);
-        while (presetMatcher.find()) {
-            int num = Integer.parseInt(presetMatcher.group(1));
-            String field = presetMatcher.group(2);
-            TestPreset preset = presets.get(num);
+        response.append(" CID:").append(cid).append(" ");
+        return response.toString();
+    }
 
-            switch (field) {
-                case "NAME" -> {
-                    if (preset != null) {
-                        response.append(" PRESET/").append(num).append("/NAME:\"").append(preset.name()).append("\"");
-                    } else {
-                        response.append(" PRESET/").append(num).append("/NAME:ERR5");
-                    }
-                }
-                case "LOCK" -> {
-                    if (preset != null) {
-                        response.append(" PRESET/").append(num).append("/LOCK:").append(preset.locked() ? "ON" : "OFF");
-                    } else {
-                        response.append(" PRESET/").append(num).append("/LOCK:ERR5");
-                    }
+    /**
+     * Answers a {@code PRESET/<n>/NAME}, {@code LOCK} or {@code CLEARED} key; other keys are ignored.
+     */
+    private void appendSlotValue(StringBuilder response, String key) {
+        int slash = key.indexOf('/', PRESET_PREFIX.length());
+        if (slash < 0) {
+            return;
+        }
+        int num;
+        try {
+            num = Integer.parseInt(key.substring(PRESET_PREFIX.length(), slash));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        TestPreset preset = presets.get(num);
+
+        switch (key.substring(slash + 1)) {
+            case "NAME" -> {
+                if (preset != null) {
+                    response.append(" PRESET/").append(num).append("/NAME:\"").append(preset.name()).append("\"");
+                } else {
+                    response.append(" PRESET/").append(num).append("/NAME:ERR5");
                 }
-                case "CLEARED" -> {
-                    response.append(" PRESET/").append(num).append("/CLEARED:").append(preset == null ? "TRUE" : "FALSE");
+            }
+            case "LOCK" -> {
+                if (preset != null) {
+                    response.append(" PRESET/").append(num).append("/LOCK:").append(preset.locked() ? "ON" : "OFF");
+                } else {
+                    response.append(" PRESET/").append(num).append("/LOCK:ERR5");
                 }
             }
+            case "CLEARED" -> {
+                response.append(" PRESET/").append(num).append("/CLEARED:").append(preset == null ? "TRUE" : "FALSE");
+            }
+            default -> {
+                // Not a slot key this fake knows
+            }
         }
-
-        response.append(" CID:").append(cid).append(" ");
-        return response.toString();
     }
 
     private String handleSetCommand(String params, String cid) {
-        Matcher loadMatcher = PRESET_LOAD_PATTERN.matcher(params);
-        if (loadMatcher.find()) {
-            int presetNumber = Integer.parseInt(loadMatcher.group(1));
+        int load = params.indexOf(LOAD_PREFIX);
+        if (load >= 0) {
+            int end = load + LOAD_PREFIX.length();
+            while (end < params.length() && Character.isDigit(params.charAt(end))) {
+                end++;
+            }
+            int presetNumber = Integer.parseInt(params.substring(load + LOAD_PREFIX.length(), end));
             TestPreset preset = presets.get(presetNumber);
-            
+
             if (preset == null) {
                 return "OK SET PRESET/LOAD:ERR5 CID:" + cid + " ";
             }
-            
+
             int previousPreset = currentPresetNumber.get();
             currentPresetNumber.set(presetNumber);
-            
+
             // Only send NOTIFY stream if the preset actually changed
             if (presetNumber != previousPreset) {
                 // Simulate real mixer behavior: OK response, then multiple NOTIFYs before preset NOTIFY
                 // Real mixer sends mute changes, level changes, etc. before the preset change NOTIFY
-                return "OK SET CID:" + cid + " \r\n" +
-                       "NOTIFY MUTE/1:OFF\r\n" +
-                       "NOTIFY MUTE/2:OFF\r\n" +
-                       "NOTIFY LEVEL/1:-12.0\r\n" +
-                       "NOTIFY PRESET/CUR:" + presetNumber + " PRESET/NAME:\"" + preset.name() + "\"";
+                StringBuilder response = new StringBuilder("OK SET CID:").append(cid).append(" \r\n");
+                appendNotifyStorm(response, notifyStorm);
+                return response.append("NOTIFY PRESET/CUR:").append(presetNumber)
+                    .append(" PRESET/NAME:\"").append(preset.name()).append("\"").toString();
             } else {
                 // Recalling current preset - no NOTIFY sent
                 return "OK SET CID:" + cid + " ";
             }
         }
-        
+
         return "OK SET " + params + ":ERR1 CID:" + cid + " ";
     }
 
+    /**
+     * Accepts {@code CH/<n>} meter keys and answers others with ERR1, then streams the
+     * configured number of METER lines for the accepted keys.
+     */
+    private String handleMeterCommand(String params, String cid) {
+        List<String> accepted = new ArrayList<>();
+        StringBuilder response = new StringBuilder("OK METER");
+        for (String key : params.split(" ")) {
+            if (key.startsWith("CH/")) {
+                accepted.add(key);
+            } else {
+                response.append(' ').append(key).append(":ERR1");
+            }
+        }
+        response.append(" CID:").append(cid).append(' ');
+        for (int frame = 0; frame < meterFrames && !accepted.isEmpty(); frame++) {
+            response.append("\r\nMETER");
+            for (int i = 0; i < accepted.size(); i++) {
+                response.append(' ').append(accepted.get(i)).append(":-").append(frame + i + 1).append(".5");
+            }
+        }
+        return response.toString();
+    }
+
+    /**
+     * Appends parameter NOTIFYs: MUTE/1, MUTE/2 and LEVEL/1 first, then further channels.
+     */
+    private static void appendNotifyStorm(StringBuilder response, int lines) {
+        for (int i = 0; i < lines; i++) {
+            int channel = i / 3 * 2 + 1;
+            switch (i % 3) {
+                case 0 -> response.append("NOTIFY MUTE/").append(channel).append(":OFF\r\n");
+                case 1 -> response.append("NOTIFY MUTE/").append(channel + 1).append(":OFF\r\n");
+                default -> response.append("NOTIFY LEVEL/").append(channel).append(":-12.0\r\n");
+            }
+        }
+    }
+
     @Override
     public void close() {
         running.set(false);
@@ -204,4 +511,8 @@ public class FakeTascamServer implements AutoCloseable {
             serverThread.interrupt();
         }
     }
+
+    private record Outbound(String text, long dueNanos) {
+        static final Outbound END = new Outbound("", 0);
+    }
 }
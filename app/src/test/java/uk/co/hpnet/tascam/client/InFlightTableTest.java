@@ -0,0 +1,70 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightTableTest {
+
+    @Test
+    void putAndRemoveManyEntries() {
+        InFlightTable<String> table = new InFlightTable<>();
+        for (int cid = 1000; cid < 1500; cid++) {
+            table.put(cid, "cmd" + cid);
+        }
+        assertEquals(500, table.size());
+
+        // Remove every other entry, then check the rest are still reachable
+        for (int cid = 1000; cid < 1500; cid += 2) {
+            assertEquals("cmd" + cid, table.remove(cid));
+        }
+        for (int cid = 1001; cid < 1500; cid += 2) {
+            assertEquals("cmd" + cid, table.remove(cid));
+        }
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void removeUnknownCidReturnsNull() {
+        InFlightTable<String> table = new InFlightTable<>();
+        table.put(1, "one");
+
+        assertNull(table.remove(2));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void duplicateCidThrows() {
+        InFlightTable<String> table = new InFlightTable<>();
+        table.put(7, "first");
+
+        assertThrows(IllegalArgumentException.class, () -> table.put(7, "second"));
+    }
+
+    @Test
+    void removeSoleOnlyWhenExactlyOneInFlight() {
+        InFlightTable<String> table = new InFlightTable<>();
+        table.put(1, "one");
+        table.put(2, "two");
+        assertNull(table.removeSole());
+
+        table.remove(1);
+        assertEquals("two", table.removeSole());
+        assertNull(table.removeSole());
+    }
+
+    @Test
+    void drainReturnsEverythingAndEmptiesTable() {
+        InFlightTable<String> table = new InFlightTable<>();
+        table.put(1, "one");
+        table.put(2, "two");
+        table.put(3, "three");
+
+        assertEquals(Set.of("one", "two", "three"), new HashSet<>(table.drain()));
+        assertEquals(0, table.size());
+        assertNull(table.remove(1));
+    }
+}
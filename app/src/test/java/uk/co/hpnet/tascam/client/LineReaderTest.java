@@ -0,0 +1,61 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineReaderTest {
+
+    private static List<String> readAll(InputStream in) throws IOException {
+        LineReader reader = new LineReader(in);
+        List<String> lines = new ArrayList<>();
+        while (reader.next()) {
+            lines.add(reader.decode());
+        }
+        return lines;
+    }
+
+    @Test
+    void splitsOnCrLfAndBareLf() throws IOException {
+        byte[] input = "Enter Password\r\nLogin Successful\r\nNOTIFY MUTE/1:OFF\n\r\n".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(List.of("Enter Password", "Login Successful", "NOTIFY MUTE/1:OFF", ""),
+            readAll(new ByteArrayInputStream(input)));
+    }
+
+    @Test
+    void reassemblesLinesDeliveredOneByteAtATime() throws IOException {
+        String text = "OK GET PRESET/CUR:1 PRESET/NAME:\"Chœur 日本\" CID:1001 \r\nOK SET CID:1002 \r\n";
+        InputStream trickle = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        assertEquals(List.of("OK GET PRESET/CUR:1 PRESET/NAME:\"Chœur 日本\" CID:1001 ", "OK SET CID:1002 "),
+            readAll(trickle));
+    }
+
+    @Test
+    void growsForLinesLongerThanTheBuffer() throws IOException {
+        String longLine = "NOTIFY " + "X".repeat(40_000);
+        String text = "short\r\n" + longLine + "\r\nafter\r\n";
+
+        assertEquals(List.of("short", longLine, "after"),
+            readAll(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void discardsUnterminatedTrailingLine() throws IOException {
+        assertEquals(List.of("complete"),
+            readAll(new ByteArrayInputStream("complete\r\npartial".getBytes(StandardCharsets.UTF_8))));
+    }
+}
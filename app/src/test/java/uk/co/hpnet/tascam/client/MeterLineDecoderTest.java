@@ -0,0 +1,54 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeterLineDecoderTest {
+
+    private static int decode(MeterLineDecoder decoder, String line, float[] frame) {
+        byte[] bytes = ("##" + line).getBytes(StandardCharsets.UTF_8);
+        return decoder.decode(bytes, 2, bytes.length - 2, frame);
+    }
+
+    private static float level(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        return MeterLineDecoder.parseLevel(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void decodesValuesIntoSubscriptionOrder() {
+        MeterLineDecoder decoder = new MeterLineDecoder(List.of("CH/1", "CH/2", "CH/3"));
+        float[] frame = new float[3];
+
+        assertEquals(3, decode(decoder, "METER CH/3:-3.25 CH/1:-1.5 CH/2:0", frame));
+        assertArrayEquals(new float[]{-1.5f, 0f, -3.25f}, frame);
+    }
+
+    @Test
+    void missingKeysKeepTheirValueAndUnknownKeysAreSkipped() {
+        MeterLineDecoder decoder = new MeterLineDecoder(List.of("CH/1", "CH/2"));
+        float[] frame = new float[2];
+        Arrays.fill(frame, -99f);
+
+        assertEquals(1, decode(decoder, "METER CH/9:-1.0 CH/2:-12.0 CH/10:-2.0", frame));
+        assertArrayEquals(new float[]{-99f, -12f}, frame);
+    }
+
+    @Test
+    void parsesLevels() {
+        assertEquals(-12.5f, level("-12.5"));
+        assertEquals(6f, level("+6"));
+        assertEquals(0.125f, level(".125"));
+        assertEquals(Float.NEGATIVE_INFINITY, level("-INF"));
+        assertEquals(Float.NEGATIVE_INFINITY, level("-inf"));
+        assertTrue(Float.isNaN(level("")));
+        assertTrue(Float.isNaN(level("-")));
+        assertTrue(Float.isNaN(level("ERR1")));
+        assertTrue(Float.isNaN(level("1.2.3")));
+    }
+}
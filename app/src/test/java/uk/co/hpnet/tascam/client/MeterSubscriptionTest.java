@@ -0,0 +1,84 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.meter.MeterDecimator;
+import uk.co.hpnet.tascam.meter.MeterRing;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeterSubscriptionTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("Default Mix", false)
+    );
+
+    private static boolean pollWithin(MeterRing.Reader reader, float[] dest) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!reader.poll(dest)) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    @Test
+    void meterLinesArriveAsFrames() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            server.setMeterFrames(5);
+            client.connect("localhost", server.getPort(), "");
+
+            try (MeterSubscription meters = client.subscribeMeters(List.of("CH/1", "CH/2", "CH/3"), 16)) {
+                assertEquals(List.of("CH/1", "CH/2", "CH/3"), meters.keys());
+                MeterRing.Reader reader = meters.newReader();
+                float[] frame = new float[3];
+                for (int f = 0; f < 5; f++) {
+                    assertTrue(pollWithin(reader, frame), "Frame " + f + " never arrived");
+                    assertArrayEquals(new float[]{-(f + 1.5f), -(f + 2.5f), -(f + 3.5f)}, frame);
+                }
+                assertTrue(server.getReceivedCommands().get(0).startsWith("METER CH/1 CH/2 CH/3 CID:"),
+                    server.getReceivedCommands().toString());
+            }
+        }
+    }
+
+    @Test
+    void decimatorHoldsPeaksAcrossFrames() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            server.setMeterFrames(4);
+            client.connect("localhost", server.getPort(), "");
+
+            try (MeterSubscription meters = client.subscribeMeters(List.of("CH/1", "CH/2"), 16)) {
+                MeterDecimator decimator = meters.newDecimator(4);
+                float[] peak = new float[2];
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (!decimator.poll(peak)) {
+                    assertTrue(System.nanoTime() < deadline, "Four frames never arrived");
+                    Thread.sleep(1);
+                }
+                // Levels fall with each frame, so the first frame holds the peak
+                assertArrayEquals(new float[]{-1.5f, -2.5f}, peak);
+            }
+        }
+    }
+
+    @Test
+    void rejectedKeyFailsTheSubscription() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            client.connect("localhost", server.getPort(), "");
+
+            TascamProtocolException e = assertThrows(TascamProtocolException.class,
+                () -> client.subscribeMeters(List.of("CH/1", "BOGUS/1"), 16));
+            assertTrue(e.getMessage().contains("BOGUS/1:ERR1"), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MixerStateMirrorTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("Default Mix", false),
+        2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+    );
+
+    private static void notify(MixerStateMirror mirror, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        mirror.onNotify(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void seededWithOneGet() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            client.connect("localhost", server.getPort(), "");
+
+            try (MixerStateMirror mirror = MixerStateMirror.open(client, MixerStateMirror.DEFAULT_KEYS)) {
+                assertEquals(Optional.of(new Preset(1, "Default Mix")), mirror.currentPreset());
+                assertEquals(Optional.of("Default Mix"), mirror.get("PRESET/NAME"));
+                // The fake does not report PRESET/CMP
+                assertEquals(Optional.empty(), mirror.get("PRESET/CMP"));
+                assertTrue(mirror.updatedNanos(mirror.key("PRESET/CMP")).isEmpty());
+                assertTrue(mirror.syncedNanos() != 0);
+                assertTrue(mirror.isLive());
+                assertEquals(1, server.getReceivedCommands().size(), server.getReceivedCommands().toString());
+            }
+        }
+    }
+
+    @Test
+    void recallIsSeenWithoutAnotherGet() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            client.connect("localhost", server.getPort(), "");
+
+            try (MixerStateMirror mirror = MixerStateMirror.open(client, MixerStateMirror.DEFAULT_KEYS)) {
+                long seeded = mirror.updatedNanos(mirror.key("PRESET/CUR")).orElseThrow();
+                client.recallPreset(2);
+                int afterRecall = server.getReceivedCommands().size();
+
+                assertEquals(Optional.of(new Preset(2, "Quiet Mode")), mirror.currentPreset());
+                assertTrue(mirror.updatedNanos(mirror.key("PRESET/CUR")).orElseThrow() - seeded > 0);
+                assertEquals(afterRecall, server.getReceivedCommands().size());
+            }
+        }
+    }
+
+    @Test
+    void changesFromAnotherControllerAreTracked() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            client.connect("localhost", server.getPort(), "");
+            server.setUnsolicitedNotify("NOTIFY MUTE/1:ON LEVEL/1:-3.0");
+
+            try (MixerStateMirror mirror = MixerStateMirror.open(client, List.of("PRESET/CUR", "MUTE/1"))) {
+                // The NOTIFY came just ahead of the seed's response
+                assertEquals(Optional.of("ON"), mirror.get("MUTE/1"));
+                assertThrows(IllegalArgumentException.class, () -> mirror.key("LEVEL/1"));
+                assertThrows(IllegalStateException.class, mirror::currentPreset);
+            }
+        }
+    }
+
+    @Test
+    void resyncKeepsNewerNotifiesAndDropsErrors() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            client.connect("localhost", server.getPort(), "");
+
+            try (MixerStateMirror mirror = MixerStateMirror.open(client, MixerStateMirror.DEFAULT_KEYS)) {
+                notify(mirror, "NOTIFY PRESET/CMP:ERR1 PRESET/NAME:\"Renamed Here\"");
+                assertEquals(Optional.empty(), mirror.get("PRESET/CMP"));
+                assertEquals(Optional.of(new Preset(1, "Renamed Here")), mirror.currentPreset());
+
+                long before = mirror.syncedNanos();
+                mirror.resync();
+                assertTrue(mirror.syncedNanos() - before > 0);
+                assertEquals(Optional.of(new Preset(1, "Default Mix")), mirror.currentPreset());
+            }
+        }
+    }
+
+    @Test
+    void closedMirrorStopsFollowing() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(0, 5000)) {
+            client.connect("localhost", server.getPort(), "");
+
+            MixerStateMirror mirror = MixerStateMirror.open(client, MixerStateMirror.DEFAULT_KEYS);
+            mirror.close();
+            client.recallPreset(2);
+
+            assertEquals(Optional.of(new Preset(1, "Default Mix")), mirror.currentPreset());
+        }
+    }
+}
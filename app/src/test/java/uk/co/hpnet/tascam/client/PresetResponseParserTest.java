@@ -0,0 +1,174 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresetResponseParserTest {
+
+    private static final String NAME_CHARS = "abcXYZ019 -_/:.éüß日本🎚";
+
+    private final RegexProtocolParser reference = new RegexProtocolParser();
+    private final ProtocolParser protocolParser = new ProtocolParser();
+
+    @Test
+    void parsesBatchWithErrorsAndClearedSlots() {
+        String response = "OK GET PRESET/CUR:2 PRESET/NAME:\"Quiet Mode\" "
+            + "PRESET/1/NAME:\"Default Mix\" PRESET/1/LOCK:OFF PRESET/1/CLEARED:FALSE "
+            + "PRESET/2/NAME:\"Quiet Mode\" PRESET/2/LOCK:ON PRESET/2/CLEARED:FALSE "
+            + "PRESET/3/NAME:ERR5 PRESET/3/LOCK:ERR5 PRESET/3/CLEARED:TRUE CID:1234 ";
+
+        PresetResponseParser parser = new PresetResponseParser().parse(response);
+
+        assertEquals(List.of(
+            new Preset(1, "Default Mix", false),
+            new Preset(2, "Quiet Mode", true)
+        ), parser.presets());
+        assertEquals(Optional.of(new Preset(2, "Quiet Mode")), parser.currentPreset());
+        assertEquals(1234, parser.cid());
+    }
+
+    @Test
+    void slotWithoutClearedKeyIsNotListed() {
+        PresetResponseParser parser = new PresetResponseParser()
+            .parse("OK GET PRESET/4/NAME:\"Orphan\" PRESET/4/LOCK:ON CID:1 ");
+
+        assertEquals(List.of(), parser.presets());
+    }
+
+    @Test
+    void parsesNotifyWithQuotedUtf8Name() {
+        PresetResponseParser parser = new PresetResponseParser()
+            .parse("NOTIFY PRESET/CUR:7 PRESET/NAME:\"Chœur: Évening 日本 🎚\"");
+
+        assertEquals(Optional.of(new Preset(7, "Chœur: Évening 日本 🎚")), parser.currentPreset());
+        assertEquals(-1, parser.cid());
+    }
+
+    @Test
+    void directBufferIsParsedWithoutMovingPosition() {
+        byte[] bytes = "OK GET PRESET/CUR:3 PRESET/NAME:\"Loud\" CID:99 ".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+
+        PresetResponseParser parser = new PresetResponseParser().parse(buffer);
+
+        assertEquals(Optional.of(new Preset(3, "Loud")), parser.currentPreset());
+        assertEquals(99, parser.cid());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void resetForgetsStateButReusesDecodedNames() {
+        PresetResponseParser parser = new PresetResponseParser();
+        String response = "OK GET PRESET/1/NAME:\"Default Mix\" PRESET/1/LOCK:OFF PRESET/1/CLEARED:FALSE CID:1 ";
+        String first = parser.parse(response).presets().get(0).name();
+
+        assertEquals(List.of(), parser.reset().presets());
+        assertSame(first, parser.parse(response).presets().get(0).name(), "Unchanged bytes reuse the decoded name");
+
+        parser.reset().parse("OK GET PRESET/1/NAME:\"Renamed\" PRESET/1/LOCK:OFF PRESET/1/CLEARED:FALSE CID:2 ");
+        assertEquals("Renamed", parser.presets().get(0).name());
+    }
+
+    @Test
+    void matchesRegexParserOnRandomResponses() {
+        Random random = new Random(20261016);
+        for (int round = 0; round < 2000; round++) {
+            List<String> responses = randomListing(random);
+            PresetResponseParser parser = new PresetResponseParser();
+            List<Preset> expectedPresets = new ArrayList<>();
+            Optional<Preset> expectedCurrent = Optional.empty();
+
+            for (String response : responses) {
+                List<Preset> batch = new ArrayList<>(reference.parsePresetBatch(response));
+                batch.sort(Comparator.comparingInt(Preset::number));
+                Optional<Preset> current = reference.parseCurrentPreset(response);
+
+                // Line by line, including through the ProtocolParser entry points
+                assertEquals(batch, new PresetResponseParser().parse(response).presets(), response);
+                assertEquals(batch, protocolParser.parsePresetBatch(response), response);
+                assertEquals(current, protocolParser.parseCurrentPreset(response), response);
+                int expectedCid = protocolParser.extractCid(response).map(Integer::parseInt).orElse(-1);
+                assertEquals(expectedCid, new PresetResponseParser().parse(response).cid(), response);
+
+                expectedPresets.addAll(batch);
+                if (expectedCurrent.isEmpty()) {
+                    expectedCurrent = current;
+                }
+                parser.parse(response);
+            }
+
+            // Accumulated across the listing, as the client uses it
+            expectedPresets.sort(Comparator.comparingInt(Preset::number));
+            assertEquals(expectedPresets, parser.presets());
+            assertEquals(expectedCurrent, parser.currentPreset());
+        }
+    }
+
+    /**
+     * Builds a listing split over a few responses, with a current preset in the first
+     * and sometimes a NOTIFY line.
+     */
+    private static List<String> randomListing(Random random) {
+        String[] names = new String[51];
+        for (int n = 1; n <= 50; n++) {
+            names[n] = random.nextInt(3) == 0 ? null : randomName(random);
+        }
+        int current = 1 + random.nextInt(50);
+
+        List<String> responses = new ArrayList<>();
+        int cid = 1000 + random.nextInt(100000);
+        int slot = 1;
+        while (slot <= 50) {
+            StringBuilder response = new StringBuilder("OK GET");
+            if (slot == 1 && names[current] != null) {
+                response.append(" PRESET/CUR:").append(current)
+                    .append(" PRESET/NAME:\"").append(names[current]).append('"');
+            }
+            int last = Math.min(50, slot + 5 + random.nextInt(15));
+            for (; slot <= last; slot++) {
+                if (names[slot] != null) {
+                    response.append(" PRESET/").append(slot).append("/NAME:\"").append(names[slot]).append('"')
+                        .append(" PRESET/").append(slot).append("/LOCK:").append(random.nextBoolean() ? "ON" : "OFF")
+                        .append(" PRESET/").append(slot).append("/CLEARED:FALSE");
+                } else {
+                    response.append(" PRESET/").append(slot).append("/NAME:ERR5")
+                        .append(" PRESET/").append(slot).append("/LOCK:ERR5")
+                        .append(" PRESET/").append(slot).append("/CLEARED:TRUE");
+                }
+            }
+            if (random.nextInt(10) > 0) {
+                response.append(" CID:").append(cid++).append(' ');
+            }
+            responses.add(response.toString());
+            if (random.nextInt(4) == 0) {
+                int notified = 1 + random.nextInt(50);
+                String name = names[notified] != null ? names[notified] : randomName(random);
+                responses.add("NOTIFY PRESET/CUR:" + notified + " PRESET/NAME:\"" + name + "\"");
+            }
+        }
+        return responses;
+    }
+
+    private static String randomName(Random random) {
+        int[] codePoints = NAME_CHARS.codePoints().toArray();
+        StringBuilder name = new StringBuilder();
+        // No leading space, so the name is never blank
+        name.appendCodePoint(codePoints[random.nextInt(9)]);
+        int length = random.nextInt(24);
+        for (int i = 0; i < length; i++) {
+            name.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettleDetectorTest {
+
+    private static long deadlineIn(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    void settlesOnceTheStreamIsQuiet() {
+        SettleDetector detector = new SettleDetector(Sleeper.defaultSleeper());
+        detector.accept("NOTIFY MUTE/1:OFF");
+
+        long start = System.nanoTime();
+        assertTrue(detector.awaitQuiet(50, deadlineIn(5000)));
+
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMs >= 45 && waitedMs < 1000, "waited " + waitedMs + "ms");
+    }
+
+    @Test
+    void busyStreamRunsIntoTheDeadline() throws InterruptedException {
+        SettleDetector detector = new SettleDetector(Sleeper.defaultSleeper());
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread notifier = Thread.ofPlatform().start(() -> {
+            while (running.get()) {
+                detector.accept("NOTIFY LEVEL/1:-12.0");
+                Sleeper.defaultSleeper().sleep(5);
+            }
+        });
+        try {
+            long start = System.nanoTime();
+            assertFalse(detector.awaitQuiet(100, deadlineIn(300)));
+
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(waitedMs >= 295 && waitedMs < 2000, "waited " + waitedMs + "ms");
+        } finally {
+            running.set(false);
+            notifier.join();
+        }
+    }
+
+    @Test
+    void quietWindowRunsFromLaterActivity() {
+        SettleDetector detector = new SettleDetector(Sleeper.defaultSleeper());
+        long ackedNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        detector.activityAt(ackedNanos);
+        // An earlier stamp does not move the window back
+        detector.activityAt(ackedNanos - TimeUnit.SECONDS.toNanos(1));
+
+        assertTrue(detector.awaitQuiet(20, deadlineIn(5000)));
+        assertTrue(System.nanoTime() - ackedNanos >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void preemptionEndsTheWaitEarly() throws InterruptedException {
+        SettleDetector detector = new SettleDetector(Sleeper.defaultSleeper());
+        Thread preempter = Thread.ofPlatform().start(() -> {
+            Sleeper.defaultSleeper().sleep(50);
+            detector.preempt();
+        });
+        try {
+            long start = System.nanoTime();
+            assertFalse(detector.awaitQuiet(5000, deadlineIn(10000)));
+
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(detector.preempted());
+            assertTrue(waitedMs < 1000, "waited " + waitedMs + "ms");
+        } finally {
+            preempter.join();
+        }
+    }
+}
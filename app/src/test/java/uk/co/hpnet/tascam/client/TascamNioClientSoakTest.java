@@ -0,0 +1,161 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.metrics.LatencyHistogram;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives hundreds of mixers from one NIO event loop. Too slow for every build: run with
+ * {@code ./gradlew soakTest}, which prints recalls per second and recall latency quantiles.
+ */
+@Tag("soak")
+class TascamNioClientSoakTest {
+
+    private static final int MIXER_COUNT = 200;
+    private static final int FARM_SIZE = 1000;
+
+    private final Sleeper mockSleeper = TestSleepers.sleepingMock();
+
+    private NioEventLoop loop;
+
+    @BeforeEach
+    void startLoop() throws IOException {
+        loop = new NioEventLoop("test-nio");
+    }
+
+    @AfterEach
+    void stopLoop() {
+        loop.close();
+    }
+
+    private TascamNioClient createTestClient(long recallWaitMs) {
+        return new TascamNioClient(loop, new AtomicInteger(1000), recallWaitMs, 10000, mockSleeper);
+    }
+
+    /**
+     * Recalls a preset, recording how long it took.
+     */
+    private static void timedRecall(TascamClient client, int preset, LatencyHistogram latency) throws IOException {
+        long start = System.nanoTime();
+        client.recallPreset(preset);
+        latency.record(System.nanoTime() - start);
+    }
+
+    private static void report(String test, LatencyHistogram latency, long elapsedNanos) {
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        System.out.printf("%s: %d recalls in %.2f s (%.0f recalls/s), p50 <= %.1f ms, p99 <= %.1f ms%n",
+            test, snapshot.count(), elapsedNanos / 1e9, snapshot.count() / (elapsedNanos / 1e9),
+            snapshot.quantileNanos(0.50) / 1e6, snapshot.quantileNanos(0.99) / 1e6);
+    }
+
+    @Test
+    void oneLoopDrivesManyMixers() throws Exception {
+        List<FakeTascamServer> servers = new ArrayList<>();
+        List<TascamClient> clients = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < MIXER_COUNT; i++) {
+                int preset = i % 50 + 1;
+                servers.add(new FakeTascamServer(Map.of(
+                    preset, new FakeTascamServer.TestPreset("Mixer " + i, false),
+                    51 - preset, new FakeTascamServer.TestPreset("Other " + i, false)
+                ), 51 - preset));
+                clients.add(createTestClient(0));
+            }
+
+            List<Future<?>> connects = new ArrayList<>();
+            for (int i = 0; i < MIXER_COUNT; i++) {
+                TascamClient client = clients.get(i);
+                int port = servers.get(i).getPort();
+                connects.add(executor.submit(() -> {
+                    client.connect("localhost", port, "");
+                    return null;
+                }));
+            }
+            for (Future<?> connect : connects) {
+                connect.get();
+            }
+
+            List<Future<List<Preset>>> listings = new ArrayList<>();
+            for (TascamClient client : clients) {
+                listings.add(executor.submit(client::listPresets));
+            }
+            for (int i = 0; i < MIXER_COUNT; i++) {
+                assertTrue(listings.get(i).get().contains(new Preset(i % 50 + 1, "Mixer " + i, false)));
+            }
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long start = System.nanoTime();
+            List<Future<?>> recalls = new ArrayList<>();
+            for (int i = 0; i < MIXER_COUNT; i++) {
+                TascamClient client = clients.get(i);
+                int preset = i % 50 + 1;
+                recalls.add(executor.submit(() -> {
+                    timedRecall(client, preset, latency);
+                    return null;
+                }));
+            }
+            for (Future<?> recall : recalls) {
+                recall.get();
+            }
+            report("oneLoopDrivesManyMixers", latency, System.nanoTime() - start);
+            for (int i = 0; i < MIXER_COUNT; i++) {
+                assertEquals(i % 50 + 1, servers.get(i).getCurrentPresetNumber());
+            }
+        } finally {
+            clients.forEach(TascamClient::close);
+            servers.forEach(FakeTascamServer::close);
+        }
+    }
+
+    @Test
+    void oneLoopDrivesFarmOverSlowFragmentedLinks() throws Exception {
+        List<TascamClient> clients = new ArrayList<>();
+        try (FakeMixerFarm farm = new FakeMixerFarm(FARM_SIZE, i -> Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false),
+                 2, new FakeTascamServer.TestPreset("Evening " + i, false)), 1);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            farm.latency(Duration.ofMillis(20), Duration.ofMillis(30))
+                .notifyStorm(40)
+                .fragmentation(7)
+                .stalls(5, Duration.ofMillis(200));
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long start = System.nanoTime();
+            List<Future<?>> recalls = new ArrayList<>();
+            for (int i = 0; i < FARM_SIZE; i++) {
+                TascamClient client = createTestClient(0);
+                clients.add(client);
+                int port = farm.port(i);
+                recalls.add(executor.submit(() -> {
+                    client.connect("localhost", port, "");
+                    timedRecall(client, 2, latency);
+                    return null;
+                }));
+            }
+            for (Future<?> recall : recalls) {
+                recall.get();
+            }
+            report("oneLoopDrivesFarmOverSlowFragmentedLinks", latency, System.nanoTime() - start);
+            for (int i = 0; i < FARM_SIZE; i++) {
+                assertEquals(2, farm.mixer(i).getCurrentPresetNumber());
+            }
+        } finally {
+            clients.forEach(TascamClient::close);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package uk.co.hpnet.tascam.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TascamNioClientTest {
+
+    private final Sleeper mockSleeper = TestSleepers.sleepingMock();
+
+    private NioEventLoop loop;
+
+    @BeforeEach
+    void startLoop() throws IOException {
+        loop = new NioEventLoop("test-nio");
+    }
+
+    @AfterEach
+    void stopLoop() {
+        loop.close();
+    }
+
+    private TascamNioClient createTestClient(long recallWaitMs) {
+        return new TascamNioClient(loop, new AtomicInteger(1000), recallWaitMs, 10000, mockSleeper);
+    }
+
+    @Test
+    void listAndRecallOverNio() throws Exception {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", true)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1, "secret");
+             TascamClient client = createTestClient(5000)) {
+
+            client.connect("localhost", server.getPort(), "secret");
+            PresetListing listing = client.listPresetsWithCurrent();
+            assertEquals(List.of(
+                new Preset(1, "Default Mix", false),
+                new Preset(2, "Quiet Mode", true)
+            ), listing.presets());
+            assertEquals(Optional.of(new Preset(1, "Default Mix")), listing.current());
+
+            client.recallPreset(2);
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void loginWithWrongPasswordFails() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(Map.of(), 0, "correct");
+             TascamClient client = createTestClient(0)) {
+
+            assertThrows(IOException.class, () ->
+                client.connect("localhost", server.getPort(), "wrong"));
+        }
+    }
+
+    @Test
+    void connectionRefusedThrowsIOException() {
+        TascamClient client = createTestClient(0);
+
+        // Port 70 (gopher) - unlikely to be listening, requires root to bind
+        assertThrows(IOException.class, () ->
+            client.connect("localhost", 70, ""));
+    }
+
+    @Test
+    void commandsFailAfterClose() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(Map.of(), 0)) {
+            TascamClient client = createTestClient(0);
+            client.connect("localhost", server.getPort(), "");
+            client.close();
+
+            assertThrows(IOException.class, client::getCurrentPreset);
+        }
+    }
+}
@@ -1,25 +1,31 @@
 package uk.co.hpnet.tascam.client;
 
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.hpnet.tascam.journal.TrafficJournal;
+import uk.co.hpnet.tascam.metrics.ClientMetrics;
 import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
-@ExtendWith(MockitoExtension.class)
 class TascamTcpClientTest {
 
-    @Mock
-    private Sleeper mockSleeper;
+    private final Sleeper mockSleeper = TestSleepers.sleepingMock();
 
     /**
      * Creates a test client with a mock sleeper.
@@ -87,6 +93,248 @@ class TascamTcpClientTest {
         }
     }
 
+    @Test
+    void listPresetsPacksCommandsUpToByteLimit() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            50, new FakeTascamServer.TestPreset("Last Slot", true)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             TascamClient client = createTestClientNoWait()) {
+            
+            client.connect("localhost", server.getPort(), "");
+            List<Preset> result = client.listPresets();
+
+            assertEquals(List.of(
+                new Preset(1, "Default Mix", false),
+                new Preset(50, "Last Slot", true)
+            ), result);
+
+            List<String> commands = server.getReceivedCommands();
+            assertEquals(3, commands.size(), "50 slots should fit in 3 commands");
+            for (String command : commands) {
+                assertTrue((command + "\r\n").getBytes(StandardCharsets.UTF_8).length <= CommandPacker.MAX_COMMAND_BYTES);
+            }
+        }
+    }
+
+    @Test
+    void listPresetsWithCurrentFoldsCurrentIntoFirstCommand() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 2);
+             TascamClient client = createTestClientNoWait()) {
+            
+            client.connect("localhost", server.getPort(), "");
+            PresetListing listing = client.listPresetsWithCurrent();
+
+            assertEquals(List.of(
+                new Preset(1, "Default Mix", false),
+                new Preset(2, "Quiet Mode", false)
+            ), listing.presets());
+            assertEquals(Optional.of(new Preset(2, "Quiet Mode")), listing.current());
+            assertTrue(server.getReceivedCommands().get(0).startsWith("GET PRESET/CUR PRESET/NAME "));
+        }
+    }
+
+    @Test
+    void getBulkReturnsRawValues() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             TascamClient client = createTestClientNoWait()) {
+            
+            client.connect("localhost", server.getPort(), "");
+            Map<String, String> values = client.getBulk(List.of("PRESET/CUR", "PRESET/1/NAME", "PRESET/2/NAME"));
+
+            assertEquals(Map.of(
+                "PRESET/CUR", "1",
+                "PRESET/1/NAME", "\"Default Mix\"",
+                "PRESET/2/NAME", "ERR5"
+            ), values);
+            assertEquals(1, server.getReceivedCommands().size());
+        }
+    }
+
+    @Test
+    void listPresetsPipelinesCommandsAndMatchesResponsesByCid() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            25, new FakeTascamServer.TestPreset("Middle", false),
+            50, new FakeTascamServer.TestPreset("Last Slot", true)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 25);
+             TascamTcpClient client = createTestClientNoWait()) {
+            
+            client.connect("localhost", server.getPort(), "");
+            // Server answers only once all 3 commands are in, and in reverse order
+            server.holdResponses(3, true);
+            PresetListing listing = client.listPresetsWithCurrent();
+
+            assertEquals(List.of(
+                new Preset(1, "Default Mix", false),
+                new Preset(25, "Middle", false),
+                new Preset(50, "Last Slot", true)
+            ), listing.presets());
+            assertEquals(Optional.of(new Preset(25, "Middle")), listing.current());
+        }
+    }
+
+    @Test
+    void timedOutCommandIsForgottenAndItsLateResponseDropped() throws Exception {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             TascamTcpClient client = new TascamTcpClient(new AtomicInteger(1000), 0, 300, mockSleeper)) {
+
+            client.connect("localhost", server.getPort(), "");
+            // The first response is held back until a second command arrives
+            server.holdResponses(2, false);
+            assertThrows(TascamProtocolException.class, () -> client.getBulk(List.of("PRESET/CUR")));
+            assertEquals(0, client.dispatcher.pendingCount());
+            assertEquals(1, client.metrics().timeoutCount());
+
+            assertEquals(Map.of("PRESET/NAME", "\"Default Mix\""), client.getBulk(List.of("PRESET/NAME")));
+            assertEquals(0, client.dispatcher.pendingCount());
+        }
+    }
+
+    @Test
+    void notifiesBetweenResponsesAreSkipped() throws Exception {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             TascamClient client = createTestClient()) {
+            
+            client.connect("localhost", server.getPort(), "");
+            server.setUnsolicitedNotify("NOTIFY MUTE/3:ON");
+
+            assertEquals(2, client.listPresets().size());
+            assertEquals(Optional.of(new Preset(1, "Default Mix")), client.getCurrentPreset());
+
+            client.recallPreset(2);
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void unsolicitedNotifiesGoToListeners() throws Exception {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             TascamClient client = createTestClientNoWait()) {
+            
+            client.connect("localhost", server.getPort(), "");
+            List<String> notifies = new CopyOnWriteArrayList<>();
+            client.addNotifyListener(notifies::add);
+            server.setUnsolicitedNotify("NOTIFY MUTE/3:ON");
+
+            assertEquals(Optional.of(new Preset(1, "Default Mix")), client.getCurrentPreset());
+            client.recallPreset(2);
+
+            assertTrue(notifies.contains("NOTIFY MUTE/3:ON"));
+            assertTrue(notifies.contains("NOTIFY PRESET/CUR:2 PRESET/NAME:\"Quiet Mode\""));
+        }
+    }
+
+    @Test
+    void concurrentCallersShareOneSession() throws Exception {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 2);
+             TascamClient client = createTestClientNoWait();
+             ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            
+            client.connect("localhost", server.getPort(), "");
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                boolean list = i % 2 == 0;
+                results.add(executor.submit(() -> list
+                    ? client.listPresets().size()
+                    : client.getCurrentPreset().orElseThrow().number()));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(2, results.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void findPresetByNameStopsAtCurrentPreset() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            45, new FakeTascamServer.TestPreset("Late Slot", true)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 45);
+             TascamClient client = createTestClientNoWait()) {
+
+            client.connect("localhost", server.getPort(), "");
+            Optional<Preset> found = client.findPresetByName("late slot", false);
+
+            assertEquals(Optional.of(new Preset(45, "Late Slot")), found);
+            assertEquals(1, server.getReceivedCommands().size(), "Current preset is checked in the first command");
+        }
+    }
+
+    @Test
+    void findPresetByNameScansOnlyUntilMatch() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", true),
+            45, new FakeTascamServer.TestPreset("Late Slot", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             TascamClient client = createTestClientNoWait()) {
+
+            client.connect("localhost", server.getPort(), "");
+            assertEquals(Optional.of(new Preset(2, "Quiet Mode", true)), client.findPresetByName("Quiet Mode", false));
+            assertEquals(1, server.getReceivedCommands().size(), "Slot 2 is in the first command");
+
+            assertEquals(Optional.of(new Preset(45, "Late Slot", false)), client.findPresetByName("Late Slot", false));
+            assertEquals(Optional.empty(), client.findPresetByName("Missing", false));
+        }
+    }
+
+    @Test
+    void findPresetByNameWithUniqueRejectsDuplicates() throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            3, new FakeTascamServer.TestPreset("Service", false),
+            40, new FakeTascamServer.TestPreset("SERVICE", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 3);
+             TascamClient client = createTestClientNoWait()) {
+
+            client.connect("localhost", server.getPort(), "");
+            assertEquals(Optional.of(new Preset(3, "Service", false)), client.findPresetByName("service", false));
+
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> client.findPresetByName("service", true));
+            assertEquals("Preset name \"service\" is not unique: slots 3, 40", e.getMessage());
+        }
+    }
+
     @Test
     void getCurrentPreset() throws IOException {
         Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
@@ -126,8 +374,61 @@ class TascamTcpClientTest {
             // Server should now be on preset 1
             assertEquals(1, server.getCurrentPresetNumber());
             
-            // Verify sleep was called with correct duration
-            verify(mockSleeper).sleep(5000);
+            // Settles on the quiet NOTIFY stream rather than sitting out the full wait
+            verify(mockSleeper, never()).sleep(5000);
+        }
+    }
+
+    @Test
+    void recallRecordsPhaseTimingsAndCounters() throws Exception {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Quiet Mode", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             TascamTcpClient client = createTestClient()) {
+
+            client.connect("localhost", server.getPort(), "");
+            client.recallPreset(2);
+
+            ClientMetrics metrics = client.metrics();
+            for (ClientMetrics.Phase phase : List.of(ClientMetrics.Phase.CONNECT, ClientMetrics.Phase.LOGIN,
+                    ClientMetrics.Phase.RECALL_CHECK, ClientMetrics.Phase.RECALL_ACK, ClientMetrics.Phase.RECALL_NOTIFY,
+                    ClientMetrics.Phase.RECALL_SETTLE, ClientMetrics.Phase.RECALL_VERIFY)) {
+                assertEquals(1, metrics.phase(phase).snapshot().count(), phase.label());
+            }
+            assertEquals(0, metrics.phase(ClientMetrics.Phase.LIST_PRESETS).snapshot().count());
+
+            // The fake sends MUTE, MUTE and LEVEL before the preset NOTIFY
+            assertEquals(3, metrics.notifySkippedCount());
+            long expectedSent = server.getReceivedCommands().stream()
+                .mapToLong(command -> command.getBytes(StandardCharsets.UTF_8).length + 2)
+                .sum();
+            assertEquals(expectedSent, metrics.bytesSent());
+            assertTrue(metrics.bytesReceived() > 0);
+            assertEquals(0, metrics.timeoutCount());
+        }
+    }
+
+    @Test
+    void recallSkipsNotifyStormSplitAcrossSegments() throws Exception {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Default Mix", false),
+            2, new FakeTascamServer.TestPreset("Café Überhall", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1);
+             TascamTcpClient client = createTestClient()) {
+            server.setNotifyStorm(200);
+            server.setFragmentation(3);
+
+            client.connect("localhost", server.getPort(), "");
+            assertTrue(client.listPresets().contains(new Preset(2, "Café Überhall", false)));
+            client.recallPreset(2);
+
+            assertEquals(2, server.getCurrentPresetNumber());
+            assertEquals(200, client.metrics().notifySkippedCount());
         }
     }
 
@@ -146,8 +447,9 @@ class TascamTcpClientTest {
             // Recall preset 2
             client.recallPreset(2);
             
-            // Verify the sleeper was called exactly once with 5000ms
-            verify(mockSleeper, times(1)).sleep(5000);
+            // Waits in steps no longer than the quiet window, never the full 5000ms
+            verify(mockSleeper, atLeastOnce()).sleep(anyLong());
+            verify(mockSleeper, never()).sleep(longThat(ms -> ms > 300));
             
             // Client should report preset 2 as current
             Optional<Preset> current = client.getCurrentPreset();
@@ -171,8 +473,8 @@ class TascamTcpClientTest {
             // but skip waiting for NOTIFY since mixer won't send one
             client.recallPreset(2);
             
-            // Sleep IS called since we still wait for stabilization
-            verify(mockSleeper).sleep(5000);
+            // Still waits for stabilization, timed from the SET's acknowledgement
+            verify(mockSleeper, atLeastOnce()).sleep(anyLong());
             
             // Still on preset 2
             assertEquals(2, server.getCurrentPresetNumber());
@@ -198,7 +500,7 @@ class TascamTcpClientTest {
             
             // Should complete successfully despite multiple NOTIFYs
             assertEquals(2, server.getCurrentPresetNumber());
-            verify(mockSleeper).sleep(5000);
+            verify(mockSleeper, never()).sleep(5000);
         }
     }
 
@@ -234,6 +536,32 @@ class TascamTcpClientTest {
         }
     }
 
+    @Test
+    void journalRecordsTrafficButNotThePassword(@TempDir Path journalDir) throws IOException {
+        Map<Integer, FakeTascamServer.TestPreset> presets = Map.of(
+            1, new FakeTascamServer.TestPreset("Test Preset", false)
+        );
+
+        try (FakeTascamServer server = new FakeTascamServer(presets, 1, "secret123");
+             TrafficJournal journal = new TrafficJournal(journalDir)) {
+            try (TascamTcpClient client = createTestClientNoWait()) {
+                client.setJournal(journal);
+                client.connect("localhost", server.getPort(), "secret123");
+                client.getCurrentPreset();
+            }
+
+            List<TrafficJournal.Entry> entries = new ArrayList<>();
+            TrafficJournal.read(journalDir, entries::add);
+            String mixer = "localhost:" + server.getPort();
+            assertTrue(entries.stream().allMatch(entry -> entry.host().equals(mixer)), entries.toString());
+            assertTrue(entries.stream().anyMatch(entry -> entry.direction() == TrafficJournal.Direction.SENT
+                && entry.line().startsWith("GET PRESET/CUR PRESET/NAME CID:")), entries.toString());
+            assertTrue(entries.stream().anyMatch(entry -> entry.direction() == TrafficJournal.Direction.RECEIVED
+                && entry.line().startsWith("OK GET PRESET/CUR:1")), entries.toString());
+            assertTrue(entries.stream().noneMatch(entry -> entry.line().contains("secret123")), entries.toString());
+        }
+    }
+
     @Test
     void loginWithWrongPasswordFails() throws IOException {
         Map<Integer, FakeTascamServer.TestPreset> presets = Map.of();
@@ -0,0 +1,27 @@
+package uk.co.hpnet.tascam.client;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * {@link Sleeper}s for client tests.
+ */
+final class TestSleepers {
+
+    private TestSleepers() {
+    }
+
+    /**
+     * A mock that really sleeps, so tests can still verify the calls. Settle detection sleeps
+     * in short steps until the NOTIFY stream goes quiet, so those steps must take real time.
+     */
+    static Sleeper sleepingMock() {
+        Sleeper sleeper = mock(Sleeper.class);
+        doAnswer(invocation -> {
+            Thread.sleep(invocation.<Long>getArgument(0));
+            return null;
+        }).when(sleeper).sleep(anyLong());
+        return sleeper;
+    }
+}
@@ -0,0 +1,146 @@
+package uk.co.hpnet.tascam.daemon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+import uk.co.hpnet.tascam.model.Preset;
+import uk.co.hpnet.tascam.model.PresetListing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DaemonServerTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("Default Mix", false),
+        2, new FakeTascamServer.TestPreset("Quiet Mode", true)
+    );
+
+    @TempDir
+    Path tempDir;
+
+    private DaemonServer startDaemon(long keepaliveSeconds) throws IOException {
+        DaemonServer daemon = new DaemonServer(tempDir.resolve("daemon.sock"), "",
+            () -> new TascamTcpClient(0, 5000), keepaliveSeconds);
+        daemon.start();
+        return daemon;
+    }
+
+    @Test
+    void listAndRecallThroughDaemon() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             DaemonServer daemon = startDaemon(0)) {
+            DaemonClient client = new DaemonClient(daemon.socketPath());
+
+            PresetListing listing = client.listPresets("localhost", server.getPort());
+            assertEquals(List.of(
+                new Preset(1, "Default Mix", false),
+                new Preset(2, "Quiet Mode", true)
+            ), listing.presets());
+            assertEquals(Optional.of(new Preset(1, "Default Mix")), listing.current());
+
+            Preset recalled = client.recallPreset("localhost", server.getPort(), "quiet mode", false);
+            assertEquals(new Preset(2, "Quiet Mode", true), recalled);
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void sessionIsReusedAndListingCached() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             DaemonServer daemon = startDaemon(0)) {
+            daemon.open("localhost", server.getPort());
+            DaemonClient client = new DaemonClient(daemon.socketPath());
+
+            client.recallPreset("localhost", server.getPort(), "Quiet Mode", false);
+            int afterFirst = server.getReceivedCommands().size();
+            client.recallPreset("localhost", server.getPort(), "Default Mix", false);
+
+            // Second recall reuses the login and the cached listing: current check plus SET only
+            List<String> second = server.getReceivedCommands().subList(afterFirst, server.getReceivedCommands().size());
+            assertEquals(2, second.size(), second.toString());
+            assertTrue(second.get(1).startsWith("SET PRESET/LOAD:1"), second.toString());
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void unknownPresetIsReportedAsError() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             DaemonServer daemon = startDaemon(0)) {
+            DaemonClient client = new DaemonClient(daemon.socketPath());
+
+            IOException e = assertThrows(IOException.class, () ->
+                client.recallPreset("localhost", server.getPort(), "Missing", false));
+            assertEquals("No preset found with name \"Missing\"", e.getMessage());
+        }
+    }
+
+    @Test
+    void requestsQueueBehindOneWaitForABusyMixer() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             DaemonServer daemon = new DaemonServer(tempDir.resolve("daemon.sock"), "",
+                 () -> new TascamTcpClient(0, 5000), 0)) {
+            server.rejectConcurrentClients();
+            TascamTcpClient tablet = new TascamTcpClient(0, 5000);
+            tablet.connect("localhost", server.getPort(), "");
+            daemon.setBusyBackoff(new BusyBackoff(10_000));
+            daemon.start();
+            DaemonClient client = new DaemonClient(daemon.socketPath());
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                Future<PresetListing> list = executor.submit(() -> client.listPresets("localhost", server.getPort()));
+                Future<Preset> recall = executor.submit(
+                    () -> client.recallPreset("localhost", server.getPort(), "Quiet Mode", false));
+                Thread.sleep(300);
+                assertFalse(list.isDone() || recall.isDone(), "Requests wait while the mixer is busy");
+
+                tablet.close();
+                assertEquals(2, list.get(10, TimeUnit.SECONDS).presets().size());
+                assertEquals(new Preset(2, "Quiet Mode", true), recall.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void idleSessionSendsKeepalive() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             DaemonServer daemon = startDaemon(1)) {
+            daemon.open("localhost", server.getPort());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getReceivedCommands().stream().noneMatch(c -> c.startsWith("GET DEVICE/NAME"))
+                && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(server.getReceivedCommands().stream().anyMatch(c -> c.startsWith("GET DEVICE/NAME")),
+                server.getReceivedCommands().toString());
+        }
+    }
+
+    @Test
+    void staleSocketFileIsReplacedAndRemovedOnClose() throws IOException {
+        Path socket = tempDir.resolve("daemon.sock");
+        Files.writeString(socket, "stale");
+
+        DaemonServer daemon = startDaemon(0);
+        assertTrue(DaemonClient.isRunning(socket));
+        daemon.close();
+
+        assertFalse(Files.exists(socket));
+        assertFalse(DaemonClient.isRunning(socket));
+    }
+}
@@ -0,0 +1,185 @@
+package uk.co.hpnet.tascam.daemon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MixerSessionTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("One", false),
+        2, new FakeTascamServer.TestPreset("Two", false),
+        3, new FakeTascamServer.TestPreset("Three", false),
+        4, new FakeTascamServer.TestPreset("Four", false)
+    );
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void stopScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    private MixerSession session(FakeTascamServer server, long settleQuietMs) {
+        return session(server, settleQuietMs, 0);
+    }
+
+    private MixerSession session(FakeTascamServer server, long settleQuietMs, long keepaliveSeconds) {
+        return new MixerSession("localhost", server.getPort(), "", () -> {
+            TascamTcpClient client = new TascamTcpClient(10000, 10000);
+            client.setSettleQuietWindow(settleQuietMs);
+            return client;
+        }, BusyBackoff.NONE, scheduler, keepaliveSeconds);
+    }
+
+    private static long loadsOf(FakeTascamServer server, int preset) {
+        return server.getReceivedCommands().stream()
+            .filter(command -> command.startsWith("SET PRESET/LOAD:" + preset + " "))
+            .count();
+    }
+
+    private static void awaitLoad(FakeTascamServer server, int preset) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (loadsOf(server, preset) == 0) {
+            assertTrue(System.nanoTime() < deadline, "SET for preset " + preset + " never arrived");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void burstEndsOnTheLastRecallAndSkipsTheOnesInBetween() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             MixerSession session = session(server, 300)) {
+            session.open();
+            server.setLatency(Duration.ofMillis(50), Duration.ZERO);
+
+            CompletableFuture<Optional<Preset>> two = session.submitRecall("two", false);
+            awaitLoad(server, 2);
+            CompletableFuture<Optional<Preset>> three = session.submitRecall(3);
+            CompletableFuture<Optional<Preset>> four = session.submitRecall("Four", false);
+
+            Optional<Preset> active = Optional.of(new Preset(4, "Four", false));
+            for (CompletableFuture<Optional<Preset>> caller : List.of(two, three, four)) {
+                assertEquals(active, caller.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(4, server.getCurrentPresetNumber());
+            // Three was replaced while waiting, so it never reached the mixer
+            assertEquals(0, loadsOf(server, 3));
+            assertEquals(1, loadsOf(server, 4));
+        }
+    }
+
+    @Test
+    void newerRecallCutsShortTheSettleWait() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             MixerSession session = session(server, 3000)) {
+            session.open();
+
+            long start = System.nanoTime();
+            CompletableFuture<Optional<Preset>> two = session.submitRecall(2);
+            awaitLoad(server, 2);
+            Optional<Preset> active = session.recall(3);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(Optional.of(new Preset(3, "Three")), active);
+            assertEquals(active, two.get());
+            // Each recall settles for 3s on its own; back to back they would take 6s
+            assertTrue(elapsedMs < 5000, "took " + elapsedMs + "ms");
+            assertEquals(3, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void sameTargetJoinsTheRecallInProgress() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             MixerSession session = session(server, 300)) {
+            session.open();
+
+            CompletableFuture<Optional<Preset>> first = session.submitRecall(2);
+            awaitLoad(server, 2);
+            CompletableFuture<Optional<Preset>> second = session.submitRecall(2);
+
+            assertEquals(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, loadsOf(server, 2));
+        }
+    }
+
+    @Test
+    void keepaliveLeavesADroppedSessionForTheNextRequest() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             MixerSession session = session(server, 300, 1)) {
+            server.setIdleTimeout(Duration.ofMillis(200));
+            session.open();
+
+            // Dropped well before the first keepalive; give two of them the chance to reconnect
+            Thread.sleep(2500);
+            List<String> commands = server.getReceivedCommands();
+            assertTrue(commands.stream().noneMatch(c -> c.startsWith("GET " + MixerSession.KEEPALIVE_KEY)),
+                commands.toString());
+
+            assertEquals(Optional.of(new Preset(2, "Two")), session.recall(2));
+        }
+    }
+
+    @Test
+    void presetMovedOnTheDeskIsRecalledFromItsNewSlot() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             MixerSession session = session(server, 300)) {
+            assertEquals(Optional.of(new Preset(2, "Two")), session.recall("Two", false));
+            session.recall(1);
+
+            // Saved into slot 4 on the desk, with slot 2 overwritten
+            server.setPreset(2, new FakeTascamServer.TestPreset("Spare", false));
+            server.setPreset(4, new FakeTascamServer.TestPreset("Two", false));
+
+            assertEquals(Optional.of(new Preset(4, "Two")), session.recall("Two", false));
+            assertEquals(4, server.getCurrentPresetNumber());
+            // The cached slot went out first, before the mixer's answer showed it was stale
+            assertEquals(2, loadsOf(server, 2));
+        }
+    }
+
+    @Test
+    void failureOfTheLastRecallReachesEveryCallerOfTheBurst() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             MixerSession session = session(server, 300)) {
+            session.open();
+
+            CompletableFuture<Optional<Preset>> two = session.submitRecall(2);
+            awaitLoad(server, 2);
+
+            assertThrows(IllegalArgumentException.class, () -> session.recall("Missing", false));
+            ExecutionException superseded = assertThrows(ExecutionException.class, () -> two.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, superseded.getCause());
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void currentPresetIsAnsweredFromTheMirror() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             MixerSession session = session(server, 300)) {
+            session.open();
+            session.recall(3);
+            int afterRecall = server.getReceivedCommands().size();
+
+            assertEquals(Optional.of(new Preset(3, "Three")), session.currentPreset());
+            assertEquals(afterRecall, server.getReceivedCommands().size());
+        }
+    }
+}
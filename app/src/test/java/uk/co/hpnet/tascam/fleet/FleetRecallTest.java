@@ -0,0 +1,79 @@
+package uk.co.hpnet.tascam.fleet;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetRecallTest {
+
+    private static final int MIXER_COUNT = 20;
+
+    @Test
+    void recallsSameNameOnEveryMixerUsingEachMixersSlot() throws Exception {
+        List<FakeTascamServer> servers = new ArrayList<>();
+        List<FleetRecall.Target> targets = new ArrayList<>();
+        try {
+            for (int i = 0; i < MIXER_COUNT; i++) {
+                // The same name lives in a different slot on each mixer
+                int slot = i + 2;
+                servers.add(new FakeTascamServer(Map.of(
+                    1, new FakeTascamServer.TestPreset("Day", false),
+                    slot, new FakeTascamServer.TestPreset("Evening", false)
+                ), 1));
+                targets.add(new FleetRecall.Target("localhost", servers.get(i).getPort()));
+            }
+
+            FleetRecall fleet = new FleetRecall("", target -> new TascamTcpClient(0, 10000));
+            FleetRecall.Report report = fleet.recall(targets, "evening");
+
+            assertTrue(report.allSucceeded(), () -> "Failures: " + report.outcomes());
+            for (int i = 0; i < MIXER_COUNT; i++) {
+                FleetRecall.Outcome outcome = report.outcomes().get(i);
+                assertEquals(Optional.of(new Preset(i + 2, "Evening", false)), outcome.preset());
+                assertTrue(outcome.issueOffsetNanos().isPresent());
+                assertTrue(outcome.confirmLatencyNanos().isPresent());
+                assertEquals(i + 2, servers.get(i).getCurrentPresetNumber());
+            }
+            assertTrue(report.issueSkewNanos().isPresent());
+        } finally {
+            servers.forEach(FakeTascamServer::close);
+        }
+    }
+
+    @Test
+    void mixerWithoutPresetFailsWithoutStoppingOthers() throws Exception {
+        try (FakeTascamServer withPreset = new FakeTascamServer(Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false),
+                 2, new FakeTascamServer.TestPreset("Evening", false)), 1);
+             FakeTascamServer withoutPreset = new FakeTascamServer(Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false)), 1)) {
+
+            FleetRecall fleet = new FleetRecall("", target -> new TascamTcpClient(0, 10000));
+            FleetRecall.Report report = fleet.recall(List.of(
+                new FleetRecall.Target("localhost", withPreset.getPort()),
+                new FleetRecall.Target("localhost", withoutPreset.getPort())
+            ), "Evening");
+
+            assertFalse(report.allSucceeded());
+            assertTrue(report.outcomes().get(0).succeeded());
+            assertTrue(report.outcomes().get(1).error().orElseThrow().contains("No preset found"));
+            assertEquals(2, withPreset.getCurrentPresetNumber());
+            assertEquals(1, withoutPreset.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void targetParsesOptionalPort() {
+        assertEquals(new FleetRecall.Target("mixer1", 54726), FleetRecall.Target.parse("mixer1", 54726));
+        assertEquals(new FleetRecall.Target("mixer2", 1234), FleetRecall.Target.parse("mixer2:1234", 54726));
+        assertThrows(IllegalArgumentException.class, () -> FleetRecall.Target.parse("mixer3:abc", 54726));
+    }
+}
@@ -0,0 +1,173 @@
+package uk.co.hpnet.tascam.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.hpnet.tascam.catalog.PresetCatalog;
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpApiServerTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("Default Mix", false),
+        2, new FakeTascamServer.TestPreset("Quiet Mode", true)
+    );
+
+    @TempDir
+    Path tempDir;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    private HttpApiServer startServer(FakeTascamServer server, int maxQueued) throws IOException {
+        HttpApiServer api = new HttpApiServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "",
+            () -> new TascamTcpClient(0, 5000), 0, 54726, new PresetCatalog(tempDir, Duration.ofHours(1)));
+        api.setMaxQueued(maxQueued);
+        api.allow("localhost", server.getPort());
+        api.start();
+        return api;
+    }
+
+    private HttpResponse<String> send(HttpApiServer api, String method, String path) throws Exception {
+        URI uri = URI.create("http://localhost:" + api.address().getPort() + path);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .method(method, HttpRequest.BodyPublishers.noBody())
+            .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void listCurrentAndRecall() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             HttpApiServer api = startServer(server, HttpApiServer.DEFAULT_MAX_QUEUED)) {
+            String mixer = "/mixers/localhost:" + server.getPort();
+
+            HttpResponse<String> list = send(api, "GET", mixer + "/presets");
+            assertEquals(200, list.statusCode());
+            assertEquals("{\"presets\":[{\"number\":1,\"name\":\"Default Mix\",\"locked\":false},"
+                + "{\"number\":2,\"name\":\"Quiet Mode\",\"locked\":true}],"
+                + "\"current\":{\"number\":1,\"name\":\"Default Mix\",\"locked\":null},\"cached\":false}", list.body());
+
+            HttpResponse<String> recall = send(api, "POST", mixer + "/recall?name=quiet%20mode");
+            assertEquals(200, recall.statusCode(), recall.body());
+            assertEquals(2, server.getCurrentPresetNumber());
+
+            HttpResponse<String> current = send(api, "GET", mixer + "/current");
+            assertEquals("{\"current\":{\"number\":2,\"name\":\"Quiet Mode\",\"locked\":null}}", current.body());
+
+            HttpResponse<String> byNumber = send(api, "POST", mixer + "/recall?number=1");
+            assertEquals(200, byNumber.statusCode(), byNumber.body());
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void secondListingIsAnsweredFromTheCatalog() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             HttpApiServer api = startServer(server, HttpApiServer.DEFAULT_MAX_QUEUED)) {
+            String mixer = "/mixers/localhost:" + server.getPort();
+
+            send(api, "GET", mixer + "/presets");
+            int afterFirst = server.getReceivedCommands().size();
+            HttpResponse<String> cached = send(api, "GET", mixer + "/presets");
+
+            assertTrue(cached.body().endsWith("\"cached\":true}"), cached.body());
+            assertEquals(afterFirst, server.getReceivedCommands().size());
+
+            HttpResponse<String> refreshed = send(api, "GET", mixer + "/presets?refresh=true");
+            assertTrue(refreshed.body().endsWith("\"cached\":false}"), refreshed.body());
+        }
+    }
+
+    @Test
+    void errorsMapToStatusCodes() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             HttpApiServer api = startServer(server, HttpApiServer.DEFAULT_MAX_QUEUED)) {
+            String mixer = "/mixers/localhost:" + server.getPort();
+
+            HttpResponse<String> unknown = send(api, "POST", mixer + "/recall?name=Nothing");
+            assertEquals(404, unknown.statusCode());
+            assertTrue(unknown.body().contains("No preset found"), unknown.body());
+
+            assertEquals(400, send(api, "POST", mixer + "/recall").statusCode());
+            assertEquals(400, send(api, "POST", mixer + "/recall?number=x").statusCode());
+            HttpResponse<String> wrongMethod = send(api, "GET", mixer + "/recall?name=Default%20Mix");
+            assertEquals(405, wrongMethod.statusCode());
+            assertEquals("POST", wrongMethod.headers().firstValue("Allow").orElseThrow());
+            assertEquals(404, send(api, "GET", mixer + "/volume").statusCode());
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void unknownMixerIsRefusedWithoutConnecting() throws Exception {
+        AtomicInteger clients = new AtomicInteger();
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             HttpApiServer api = new HttpApiServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "",
+                 () -> {
+                     clients.incrementAndGet();
+                     return new TascamTcpClient(0, 5000);
+                 }, 0, 54726, new PresetCatalog(tempDir, Duration.ofHours(1)))) {
+            api.allow("localhost", server.getPort());
+            api.start();
+
+            HttpResponse<String> elsewhere = send(api, "POST", "/mixers/169.254.169.254/recall?number=1");
+            assertEquals(404, elsewhere.statusCode());
+            assertTrue(elsewhere.body().contains("Unknown mixer"), elsewhere.body());
+            assertEquals(404, send(api, "GET", "/mixers/localhost:" + (server.getPort() + 1) + "/presets").statusCode());
+            assertEquals(0, clients.get());
+            assertTrue(server.getReceivedCommands().isEmpty());
+
+            assertEquals(200, send(api, "GET", "/mixers/localhost:" + server.getPort() + "/current").statusCode());
+            assertEquals(1, clients.get());
+        }
+    }
+
+    @Test
+    void requestsBeyondTheQueueLimitAreRefused() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             HttpApiServer api = startServer(server, 2);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            server.setLatency(Duration.ofMillis(200), Duration.ZERO);
+            String mixer = "/mixers/localhost:" + server.getPort();
+
+            List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                responses.add(executor.submit(() -> send(api, "GET", mixer + "/current")));
+            }
+            int ok = 0;
+            int refused = 0;
+            for (Future<HttpResponse<String>> response : responses) {
+                HttpResponse<String> result = response.get();
+                if (result.statusCode() == 200) {
+                    ok++;
+                } else {
+                    assertEquals(503, result.statusCode(), result.body());
+                    assertEquals("1", result.headers().firstValue("Retry-After").orElseThrow());
+                    refused++;
+                }
+            }
+            assertTrue(ok >= 2, "ok=" + ok);
+            assertTrue(refused > 0, "none refused");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package uk.co.hpnet.tascam.http;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonTest {
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() {
+        assertEquals("\"Say \\\"hi\\\" \\\\ bye\\n\\u0001\"", Json.string("Say \"hi\" \\ bye\n\u0001"));
+        assertEquals("\"Café\"", Json.string("Café"));
+    }
+
+    @Test
+    void writesPresetsWithUnknownLockAsNull() {
+        assertEquals("[{\"number\":1,\"name\":\"A\",\"locked\":true},{\"number\":2,\"name\":\"B\",\"locked\":null}]",
+            Json.presets(List.of(new Preset(1, "A", true), new Preset(2, "B"))));
+        assertEquals("null", Json.preset(Optional.empty()));
+        assertEquals("[]", Json.presets(List.of()));
+    }
+}
@@ -0,0 +1,185 @@
+package uk.co.hpnet.tascam.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.hpnet.tascam.journal.TrafficJournal.Direction;
+import uk.co.hpnet.tascam.journal.TrafficJournal.Entry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static void append(TrafficJournal journal, int host, Direction direction, String line) {
+        byte[] bytes = ("xx" + line).getBytes(StandardCharsets.UTF_8);
+        journal.append(host, direction, bytes, 2, bytes.length - 2);
+    }
+
+    private List<Entry> readAll() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        TrafficJournal.read(tempDir, entries::add);
+        return entries;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void linesReadBackWithHostAndDirection() throws IOException {
+        long before = System.currentTimeMillis();
+        try (TrafficJournal journal = new TrafficJournal(tempDir)) {
+            int first = journal.host("10.0.0.5", 54726);
+            int second = journal.host("10.0.0.6", 54726);
+            assertEquals(first, journal.host("10.0.0.5", 54726));
+
+            append(journal, first, Direction.SENT, "GET PRESET/CUR CID:1");
+            append(journal, second, Direction.RECEIVED, "NOTIFY PRESET/NAME:\"Chœur\"");
+            append(journal, first, Direction.RECEIVED, "");
+        }
+
+        List<Entry> entries = readAll();
+        assertEquals(3, entries.size());
+        assertEquals(new Entry(entries.get(0).epochNanos(), Direction.SENT, "10.0.0.5:54726", "GET PRESET/CUR CID:1", false),
+            entries.get(0));
+        assertEquals("10.0.0.6:54726", entries.get(1).host());
+        assertEquals("NOTIFY PRESET/NAME:\"Chœur\"", entries.get(1).line());
+        assertEquals("", entries.get(2).line(), "An empty line is still a record");
+        assertTrue(entries.get(0).instant().toEpochMilli() >= before, entries.get(0).instant().toString());
+        assertTrue(entries.get(2).epochNanos() >= entries.get(0).epochNanos());
+    }
+
+    @Test
+    void fullSegmentsRotateAndOldOnesAreDeleted() throws IOException {
+        try (TrafficJournal journal = new TrafficJournal(tempDir, 256, 3 * 256)) {
+            int host = journal.host("mixer", 54726);
+            for (int i = 0; i < 100; i++) {
+                append(journal, host, Direction.SENT, "SET PRESET/LOAD:" + i);
+            }
+        }
+
+        assertEquals(3, segmentCount());
+        List<Entry> entries = readAll();
+        // Only the newest lines survive, in order, and every segment still knows the host
+        assertEquals("SET PRESET/LOAD:99", entries.get(entries.size() - 1).line());
+        assertTrue(entries.size() < 100, entries.size() + " entries");
+        assertTrue(entries.stream().allMatch(entry -> entry.host().equals("mixer:54726")));
+    }
+
+    @Test
+    void reopeningResumesTheNewestSegment() throws IOException {
+        try (TrafficJournal journal = new TrafficJournal(tempDir, 4096, 4 * 4096)) {
+            append(journal, journal.host("mixer", 1), Direction.SENT, "first run");
+        }
+        try (TrafficJournal journal = new TrafficJournal(tempDir, 4096, 4 * 4096)) {
+            append(journal, journal.host("other", 2), Direction.SENT, "second run");
+        }
+
+        assertEquals(1, segmentCount());
+        List<Entry> entries = readAll();
+        assertEquals(List.of("first run", "second run"), entries.stream().map(Entry::line).toList());
+        // The second run reused host id 0; its own definition applies from there on
+        assertEquals(List.of("mixer:1", "other:2"), entries.stream().map(Entry::host).toList());
+    }
+
+    @Test
+    void recordCutOffByACrashIsClearedOnResume() throws IOException {
+        try (TrafficJournal journal = new TrafficJournal(tempDir, 4096, 4 * 4096)) {
+            append(journal, journal.host("mixer", 1), Direction.SENT, "before the crash");
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int end = bytes.length;
+        while (bytes[end - 1] == 0) {
+            end--;
+        }
+        end = (end + 7) & ~7;
+        // A record whose length never made it, holding what looks like a whole record
+        ByteBuffer partial = ByteBuffer.wrap(bytes, end, 48);
+        partial.putInt(0).put((byte) 1).put((byte) 0).putShort((short) 0).putLong(1);
+        partial.putInt(21).put((byte) 1).put((byte) 0).putShort((short) 0).putLong(2).put("BOGUS".getBytes());
+        Files.write(segment, bytes);
+
+        try (TrafficJournal journal = new TrafficJournal(tempDir, 4096, 4 * 4096)) {
+            append(journal, journal.host("mixer", 1), Direction.SENT, "after");
+        }
+
+        assertEquals(List.of("before the crash", "after"), readAll().stream().map(Entry::line).toList());
+    }
+
+    @Test
+    void segmentHeldByAnotherJournalIsNeitherResumedNorDeleted() throws IOException {
+        try (TrafficJournal first = new TrafficJournal(tempDir, 256, 2 * 256)) {
+            append(first, first.host("mixer", 1), Direction.SENT, "held");
+            try (TrafficJournal second = new TrafficJournal(tempDir, 256, 2 * 256)) {
+                assertEquals(2, segmentCount());
+                int host = second.host("mixer", 1);
+                for (int i = 0; i < 50; i++) {
+                    append(second, host, Direction.SENT, "SET PRESET/LOAD:" + i);
+                }
+            }
+        }
+
+        List<String> lines = readAll().stream().map(Entry::line).toList();
+        assertEquals("held", lines.get(0));
+        assertEquals("SET PRESET/LOAD:49", lines.get(lines.size() - 1));
+        assertEquals(2, segmentCount());
+    }
+
+    @Test
+    void retentionCountsBytesNotFiles() throws IOException {
+        try (TrafficJournal small = new TrafficJournal(tempDir, 256, 1024)) {
+            int host = small.host("mixer", 1);
+            for (int i = 0; i < 100; i++) {
+                append(small, host, Direction.SENT, "SET PRESET/LOAD:" + i);
+            }
+        }
+        assertEquals(4, segmentCount());
+
+        // A journal with bigger segments counts the small ones already there against its budget
+        try (TrafficJournal big = new TrafficJournal(tempDir, 512, 1024)) {
+            int host = big.host("mixer", 1);
+            for (int i = 0; i < 100; i++) {
+                append(big, host, Direction.SENT, "SET PRESET/LOAD:" + i);
+            }
+        }
+        assertEquals(2, segmentCount());
+    }
+
+    @Test
+    void lineLongerThanASegmentIsTruncated() throws IOException {
+        try (TrafficJournal journal = new TrafficJournal(tempDir, 128, 2 * 128)) {
+            append(journal, journal.host("mixer", 1), Direction.RECEIVED, "OK GET " + "X".repeat(500));
+        }
+
+        Entry entry = readAll().get(0);
+        assertTrue(entry.truncated());
+        assertTrue(entry.line().startsWith("OK GET XXX"), entry.line());
+    }
+
+    @Test
+    void otherFilesInTheDirectoryAreIgnored() throws IOException {
+        Files.writeString(tempDir.resolve("notes.txt"), "not a segment");
+        try (TrafficJournal journal = new TrafficJournal(tempDir)) {
+            append(journal, journal.host("mixer", 1), Direction.SENT, "GET DEVICE/NAME CID:7");
+        }
+
+        assertEquals(1, readAll().size());
+    }
+}
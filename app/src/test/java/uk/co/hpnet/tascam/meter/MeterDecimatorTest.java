@@ -0,0 +1,49 @@
+package uk.co.hpnet.tascam.meter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeterDecimatorTest {
+
+    @Test
+    void emitsEachChannelsPeakOverFactorFrames() {
+        MeterRing ring = new MeterRing(2, 16);
+        MeterDecimator decimator = new MeterDecimator(ring, 3);
+        float[] dest = new float[2];
+
+        ring.publish(new float[]{-20f, -6f}, 1);
+        ring.publish(new float[]{-3f, -40f}, 2);
+        assertFalse(decimator.poll(dest), "Two frames are not enough");
+
+        ring.publish(new float[]{-30f, Float.NaN}, 3);
+        ring.publish(new float[]{-50f, -50f}, 4);
+        assertTrue(decimator.poll(dest));
+        assertArrayEquals(new float[]{-3f, -6f}, dest);
+
+        // The fourth frame starts the next window
+        ring.publish(new float[]{-60f, -60f}, 5);
+        ring.publish(new float[]{-70f, -45f}, 6);
+        assertTrue(decimator.poll(dest));
+        assertArrayEquals(new float[]{-50f, -45f}, dest);
+    }
+
+    @Test
+    void channelWithoutReadingsStaysNaN() {
+        MeterRing ring = new MeterRing(2, 4);
+        MeterDecimator decimator = new MeterDecimator(ring, 2);
+        float[] dest = new float[2];
+
+        ring.publish(new float[]{-10f, Float.NaN}, 1);
+        ring.publish(new float[]{Float.NEGATIVE_INFINITY, Float.NaN}, 2);
+
+        assertTrue(decimator.poll(dest));
+        assertEquals(-10f, dest[0]);
+        assertTrue(Float.isNaN(dest[1]));
+    }
+
+    @Test
+    void rejectsFactorBelowOne() {
+        assertThrows(IllegalArgumentException.class, () -> new MeterDecimator(new MeterRing(1, 1), 0));
+    }
+}
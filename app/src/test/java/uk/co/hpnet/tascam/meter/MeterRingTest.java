@@ -0,0 +1,112 @@
+package uk.co.hpnet.tascam.meter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeterRingTest {
+
+    private static float[] frame(int channels, float value) {
+        float[] frame = new float[channels];
+        Arrays.fill(frame, value);
+        return frame;
+    }
+
+    @Test
+    void capacityRoundsUpToAPowerOfTwo() {
+        assertEquals(8, new MeterRing(2, 5).capacity());
+        assertEquals(8, new MeterRing(2, 8).capacity());
+        assertEquals(1, new MeterRing(2, 1).capacity());
+    }
+
+    @Test
+    void readerSeesFramesInOrderWithTheirTimestamps() {
+        MeterRing ring = new MeterRing(3, 4);
+        MeterRing.Reader reader = ring.newReader();
+        float[] dest = new float[3];
+
+        assertFalse(reader.poll(dest));
+        ring.publish(new float[]{-1f, -2f, -3f}, 100);
+        ring.publish(new float[]{-4f, -5f, -6f}, 200);
+
+        assertEquals(2, reader.available());
+        assertTrue(reader.poll(dest));
+        assertArrayEquals(new float[]{-1f, -2f, -3f}, dest);
+        assertEquals(100, reader.timestampNanos());
+        assertTrue(reader.poll(dest));
+        assertArrayEquals(new float[]{-4f, -5f, -6f}, dest);
+        assertEquals(200, reader.timestampNanos());
+        assertFalse(reader.poll(dest));
+        assertEquals(0, reader.dropped());
+    }
+
+    @Test
+    void newReaderStartsAtTheOldestFrameHeld() {
+        MeterRing ring = new MeterRing(1, 4);
+        for (int i = 0; i < 6; i++) {
+            ring.publish(frame(1, i), i);
+        }
+        MeterRing.Reader reader = ring.newReader();
+        float[] dest = new float[1];
+
+        assertTrue(reader.poll(dest));
+        assertEquals(2f, dest[0]);
+    }
+
+    @Test
+    void readerThatFallsBehindSkipsToTheOldestFrameHeld() {
+        MeterRing ring = new MeterRing(1, 4);
+        MeterRing.Reader reader = ring.newReader();
+        for (int i = 0; i < 10; i++) {
+            ring.publish(frame(1, i), i);
+        }
+        float[] dest = new float[1];
+
+        assertTrue(reader.poll(dest));
+        assertEquals(6f, dest[0]);
+        assertEquals(6, reader.dropped());
+        assertEquals(3, reader.available());
+    }
+
+    @Test
+    void concurrentReaderNeverSeesATornFrame() throws InterruptedException {
+        int channels = 64;
+        int frames = 200_000;
+        MeterRing ring = new MeterRing(channels, 16);
+        AtomicReference<String> torn = new AtomicReference<>();
+
+        Thread consumer = Thread.ofPlatform().start(() -> {
+            MeterRing.Reader reader = ring.newReader();
+            float[] dest = new float[channels];
+            float last = -1;
+            while (last < frames - 1 && torn.get() == null) {
+                if (!reader.poll(dest)) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                for (float value : dest) {
+                    if (value != dest[0]) {
+                        torn.set("Mixed frame: " + Arrays.toString(dest));
+                    }
+                }
+                if (dest[0] <= last) {
+                    torn.set("Out of order: " + dest[0] + " after " + last);
+                }
+                last = dest[0];
+            }
+        });
+
+        float[] frame = new float[channels];
+        for (int i = 0; i < frames; i++) {
+            Arrays.fill(frame, i);
+            ring.publish(frame, i);
+        }
+        consumer.join(10_000);
+
+        assertNull(torn.get());
+        assertFalse(consumer.isAlive(), "Consumer should have seen the last frame");
+    }
+}
@@ -0,0 +1,62 @@
+package uk.co.hpnet.tascam.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsByInclusiveUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(50_000);      // exactly 50µs
+        histogram.record(50_001);      // just over
+        histogram.record(3_000_000);   // 3ms
+        histogram.record(60_000_000_000L);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        long[] counts = snapshot.counts();
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[6]);
+        assertEquals(1, counts[counts.length - 1]);
+        assertEquals(4, snapshot.count());
+        assertEquals(50_000 + 50_001 + 3_000_000 + 60_000_000_000L, snapshot.sumNanos());
+    }
+
+    @Test
+    void estimatesQuantilesFromBucketBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(800_000);
+        }
+        histogram.record(40_000_000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1_000_000, snapshot.quantileNanos(0.5));
+        assertEquals(1_000_000, snapshot.quantileNanos(0.99));
+        assertEquals(50_000_000, snapshot.quantileNanos(1.0));
+        assertEquals(0, new LatencyHistogram().snapshot().quantileNanos(0.5));
+    }
+
+    @Test
+    void countsEveryObservationUnderContention() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i * 1_000L);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_000, histogram.snapshot().count());
+    }
+}
@@ -0,0 +1,53 @@
+package uk.co.hpnet.tascam.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrometheusExporterTest {
+
+    @Test
+    void writesCumulativeHistogramAndCounters() throws IOException {
+        ClientMetrics metrics = new ClientMetrics();
+        metrics.record(ClientMetrics.Phase.RECALL_ACK, 80_000);
+        metrics.record(ClientMetrics.Phase.RECALL_ACK, 2_000_000);
+        metrics.addBytesSent(27);
+        metrics.notifySkipped();
+
+        StringBuilder out = new StringBuilder();
+        PrometheusExporter.write(metrics, out);
+        String text = out.toString();
+
+        assertTrue(text.contains("# TYPE tascam_phase_seconds histogram\n"));
+        assertTrue(text.contains("tascam_phase_seconds_bucket{phase=\"recall_ack\",le=\"0.00005\"} 0\n"));
+        assertTrue(text.contains("tascam_phase_seconds_bucket{phase=\"recall_ack\",le=\"0.0001\"} 1\n"));
+        assertTrue(text.contains("tascam_phase_seconds_bucket{phase=\"recall_ack\",le=\"0.0025\"} 2\n"));
+        assertTrue(text.contains("tascam_phase_seconds_bucket{phase=\"recall_ack\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("tascam_phase_seconds_sum{phase=\"recall_ack\"} 0.00208\n"));
+        assertTrue(text.contains("tascam_phase_seconds_count{phase=\"recall_ack\"} 2\n"));
+        assertTrue(text.contains("tascam_phase_seconds_count{phase=\"connect\"} 0\n"));
+        assertTrue(text.contains("tascam_bytes_sent_total 27\n"));
+        assertTrue(text.contains("tascam_notify_skipped_total 1\n"));
+        assertTrue(text.contains("tascam_timeouts_total 0\n"));
+    }
+
+    @Test
+    void replacesFileWithoutLeavingTemporaryFiles(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tascam.prom");
+        ClientMetrics metrics = new ClientMetrics();
+
+        PrometheusExporter.writeFile(metrics, file);
+        metrics.timedOut();
+        PrometheusExporter.writeFile(metrics, file);
+
+        assertTrue(Files.readString(file).contains("tascam_timeouts_total 1\n"));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
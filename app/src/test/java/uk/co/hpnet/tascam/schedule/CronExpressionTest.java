@@ -0,0 +1,68 @@
+package uk.co.hpnet.tascam.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CronExpressionTest {
+
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    private static ZonedDateTime at(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, LONDON);
+    }
+
+    @Test
+    void everyMinuteFiresAtTheNextWholeMinute() {
+        CronExpression cron = CronExpression.parse("* * * * *");
+        assertEquals(Optional.of(at(2026, 10, 16, 9, 1)), cron.next(at(2026, 10, 16, 9, 0).plusSeconds(59)));
+        assertEquals(Optional.of(at(2026, 10, 16, 9, 1)), cron.next(at(2026, 10, 16, 9, 0)));
+    }
+
+    @Test
+    void weekdayEveningsSkipTheWeekend() {
+        CronExpression cron = CronExpression.parse("30 18 * * 1-5");
+        // 16 October 2026 is a Friday
+        assertEquals(Optional.of(at(2026, 10, 16, 18, 30)), cron.next(at(2026, 10, 16, 12, 0)));
+        assertEquals(Optional.of(at(2026, 10, 19, 18, 30)), cron.next(at(2026, 10, 16, 18, 30)));
+    }
+
+    @Test
+    void stepsListsAndRanges() {
+        CronExpression cron = CronExpression.parse("*/15 8,20 1-7 * *");
+        assertEquals(Optional.of(at(2026, 11, 1, 8, 0)), cron.next(at(2026, 10, 16, 9, 0)));
+        assertEquals(Optional.of(at(2026, 11, 1, 8, 15)), cron.next(at(2026, 11, 1, 8, 0)));
+        assertEquals(Optional.of(at(2026, 11, 1, 20, 0)), cron.next(at(2026, 11, 1, 8, 45)));
+    }
+
+    @Test
+    void dayOfMonthOrDayOfWeekWhenBothRestricted() {
+        CronExpression cron = CronExpression.parse("0 12 13 * 5");
+        // Tuesday 13th matches on the day of month, Friday 16th on the day of week
+        assertEquals(Optional.of(at(2026, 10, 16, 12, 0)), cron.next(at(2026, 10, 14, 0, 0)));
+        assertEquals(Optional.of(at(2026, 10, 13, 12, 0)), cron.next(at(2026, 10, 12, 0, 0)));
+    }
+
+    @Test
+    void sundayIsZeroOrSeven() {
+        assertEquals(CronExpression.parse("0 9 * * 0").next(at(2026, 10, 16, 0, 0)),
+            CronExpression.parse("0 9 * * 7").next(at(2026, 10, 16, 0, 0)));
+    }
+
+    @Test
+    void impossibleDateNeverFires() {
+        assertEquals(Optional.empty(), CronExpression.parse("0 0 31 2 *").next(at(2026, 1, 1, 0, 0)));
+    }
+
+    @Test
+    void rejectsMalformedExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("0 12 * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("60 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("0 5-2 * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("0 * * jan *"));
+    }
+}
@@ -0,0 +1,162 @@
+package uk.co.hpnet.tascam.schedule;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+import uk.co.hpnet.tascam.fleet.FleetRecall;
+import uk.co.hpnet.tascam.model.Preset;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresetSchedulerTest {
+
+    private static final Clock CLOCK = Clock.systemDefaultZone();
+
+    private static PresetScheduler scheduler() {
+        return new PresetScheduler("", target -> new TascamTcpClient(0, 10000),
+            PresetScheduler.DEFAULT_WARMUP, CLOCK, run -> {});
+    }
+
+    private static ScheduleRule rule(FakeTascamServer server, String presetName) {
+        return ScheduleRule.parse("* * * * * localhost:" + server.getPort() + " " + presetName, 54726);
+    }
+
+    @Test
+    void issuesTheRecallAtTheScheduledInstant() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false),
+                 7, new FakeTascamServer.TestPreset("Evening Show", false)), 1);
+             PresetScheduler scheduler = scheduler()) {
+
+            ZonedDateTime scheduled = ZonedDateTime.now(CLOCK).plus(Duration.ofMillis(500));
+            PresetScheduler.Run run = scheduler.fire(rule(server, "evening show"), scheduled);
+
+            assertTrue(run.succeeded(), () -> "Failed: " + run.error());
+            assertEquals(Optional.of(new Preset(7, "Evening Show", false)), run.preset());
+            long drift = run.driftNanos().orElseThrow();
+            assertTrue(drift >= 0, "issued early by " + -drift + "ns");
+            assertTrue(drift < TimeUnit.MILLISECONDS.toNanos(50), "issued late by " + drift + "ns");
+            assertEquals(7, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void unknownPresetFailsBeforeAnythingIsIssued() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false)), 1);
+             PresetScheduler scheduler = scheduler()) {
+
+            PresetScheduler.Run run = scheduler.fire(rule(server, "Evening"), ZonedDateTime.now(CLOCK).plusSeconds(1));
+
+            assertFalse(run.succeeded());
+            assertTrue(run.error().orElseThrow().contains("No preset found"));
+            assertTrue(run.driftNanos().isEmpty());
+            assertTrue(server.getReceivedCommands().stream().noneMatch(command -> command.startsWith("SET")));
+        }
+    }
+
+    @Test
+    void runMissedByMoreThanTheWarmupIsSkipped() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false),
+                 2, new FakeTascamServer.TestPreset("Evening", false)), 1);
+             PresetScheduler scheduler = scheduler()) {
+
+            PresetScheduler.Run run = scheduler.fire(rule(server, "Evening"), ZonedDateTime.now(CLOCK).minusMinutes(5));
+
+            assertTrue(run.error().orElseThrow().startsWith("Missed by"));
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void busyMixerIsRetriedDuringTheWarmup() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false),
+                 2, new FakeTascamServer.TestPreset("Evening", false)), 1);
+             TascamTcpClient holder = new TascamTcpClient(0, 10000);
+             PresetScheduler scheduler = scheduler()) {
+            server.rejectConcurrentClients();
+            holder.connect("localhost", server.getPort(), "");
+            scheduler.setBusyBackoff(new BusyBackoff(60_000));
+            // The other user leaves well before the recall is due
+            Thread.ofVirtual().start(() -> {
+                try {
+                    Thread.sleep(400);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                holder.close();
+            });
+
+            PresetScheduler.Run run = scheduler.fire(rule(server, "Evening"), ZonedDateTime.now(CLOCK).plusSeconds(3));
+
+            assertTrue(run.succeeded(), () -> "Failed: " + run.error());
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void busyMixerIsGivenUpWhenTheRecallFallsDue() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false),
+                 2, new FakeTascamServer.TestPreset("Evening", false)), 1);
+             TascamTcpClient holder = new TascamTcpClient(0, 10000);
+             PresetScheduler scheduler = scheduler()) {
+            server.rejectConcurrentClients();
+            holder.connect("localhost", server.getPort(), "");
+            scheduler.setBusyBackoff(new BusyBackoff(60_000));
+            long start = System.nanoTime();
+
+            PresetScheduler.Run run = scheduler.fire(rule(server, "Evening"),
+                ZonedDateTime.now(CLOCK).plus(Duration.ofMillis(800)));
+
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(run.error().orElseThrow().contains("still busy"), run.error().orElseThrow());
+            assertTrue(elapsedMs < 3000, elapsedMs + "ms");
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void rulesOnTheSameMixerTakeTurns() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(Map.of(
+                 1, new FakeTascamServer.TestPreset("Day", false),
+                 2, new FakeTascamServer.TestPreset("Evening", false),
+                 3, new FakeTascamServer.TestPreset("Night", false)), 1);
+             PresetScheduler scheduler = scheduler()) {
+            // Without turns, whichever rule logs in second would be refused
+            server.rejectConcurrentClients();
+            ZonedDateTime scheduled = ZonedDateTime.now(CLOCK).plus(Duration.ofMillis(500));
+
+            CompletableFuture<PresetScheduler.Run> evening =
+                CompletableFuture.supplyAsync(() -> scheduler.fire(rule(server, "Evening"), scheduled));
+            CompletableFuture<PresetScheduler.Run> night =
+                CompletableFuture.supplyAsync(() -> scheduler.fire(rule(server, "Night"), scheduled));
+
+            assertTrue(evening.get().succeeded(), () -> "Failed: " + evening.join().error());
+            assertTrue(night.get().succeeded(), () -> "Failed: " + night.join().error());
+            assertEquals(2, server.getReceivedCommands().stream().filter(command -> command.startsWith("SET")).count());
+        }
+    }
+
+    @Test
+    void ruleParsesCronMixerAndNameWithSpaces() {
+        ScheduleRule rule = ScheduleRule.parse("30 18 * * 1-5  mixer1:1234  Evening Show", 54726);
+        assertEquals("30 18 * * 1-5", rule.cron().toString());
+        assertEquals(new FleetRecall.Target("mixer1", 1234), rule.target());
+        assertEquals("Evening Show", rule.presetName());
+        assertEquals(new FleetRecall.Target("mixer2", 54726),
+            ScheduleRule.parse("0 9 * * * mixer2 Day", 54726).target());
+        assertThrows(IllegalArgumentException.class, () -> ScheduleRule.parse("0 9 * * * mixer2", 54726));
+    }
+}
@@ -0,0 +1,192 @@
+package uk.co.hpnet.tascam.shell;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShellSessionTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("Default Mix", false),
+        2, new FakeTascamServer.TestPreset("Quiet Mode", true),
+        3, new FakeTascamServer.TestPreset("Band", false)
+    );
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int runScript(FakeTascamServer server, String script, boolean keepGoing) throws IOException {
+        return runScript(server, script, keepGoing, ShellSession.DEFAULT_KEEPALIVE);
+    }
+
+    private int runScript(FakeTascamServer server, String script, boolean keepGoing, Duration keepalive)
+            throws IOException {
+        try (TascamTcpClient client = new TascamTcpClient(10000, 5000)) {
+            client.setSettleQuietWindow(20);
+            client.connect("localhost", server.getPort(), "");
+            ShellSession shell = new ShellSession(client, new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8), keepalive);
+            return shell.run(new BufferedReader(new StringReader(script)), false, keepGoing);
+        }
+    }
+
+    private String stdout() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String stderr() {
+        return err.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void cueScriptRunsInOrder() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            int status = runScript(server, """
+                # Act one
+                list
+                recall "Quiet Mode"
+                wait 0.01
+
+                recall band
+                current
+                """, false);
+
+            assertEquals(0, status, stderr());
+            List<String> lines = stdout().lines().toList();
+            assertEquals(List.of(
+                "* 1: \"Default Mix\"",
+                "  2: \"Quiet Mode\" [locked]",
+                "  3: \"Band\"",
+                "Recalled preset 2: \"Quiet Mode\"",
+                "Recalled preset 3: \"Band\"",
+                "Current preset 3: \"Band\""
+            ), lines);
+            assertEquals(3, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void presetNamesResolveFromOneScan() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            runScript(server, "recall Quiet Mode\nrecall Band\nrecall Default Mix\n", false);
+
+            long slotScans = server.getReceivedCommands().stream()
+                .filter(command -> command.startsWith("GET") && command.contains("PRESET/50/NAME"))
+                .count();
+            assertEquals(1, slotScans, server.getReceivedCommands().toString());
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void unknownNameIsRescannedBeforeFailing() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            int status = runScript(server, "list\nrecall Missing\nlist\n", false);
+
+            assertEquals(1, status);
+            assertTrue(stderr().contains("Error (line 2): No preset found with name \"Missing\""), stderr());
+            long slotScans = server.getReceivedCommands().stream()
+                .filter(command -> command.startsWith("GET") && command.contains("PRESET/50/NAME"))
+                .count();
+            // The listing, then one rescan for the missing name; the script stops before the second list
+            assertEquals(2, slotScans, server.getReceivedCommands().toString());
+        }
+    }
+
+    @Test
+    void presetMovedOnTheDeskIsRecalledFromItsNewSlot() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1);
+             TascamTcpClient client = new TascamTcpClient(10000, 5000)) {
+            client.setSettleQuietWindow(20);
+            client.connect("localhost", server.getPort(), "");
+            ShellSession shell = new ShellSession(client, new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8), Duration.ZERO);
+
+            shell.execute("recall Band");
+            shell.execute("recall Default Mix");
+            // Saved into slot 4 on the desk, with slot 3 overwritten
+            server.setPreset(3, new FakeTascamServer.TestPreset("Spare", false));
+            server.setPreset(4, new FakeTascamServer.TestPreset("Band", false));
+            shell.execute("recall Band");
+
+            assertEquals(List.of(
+                "Recalled preset 3: \"Band\"",
+                "Recalled preset 1: \"Default Mix\"",
+                "Recalled preset 4: \"Band\""
+            ), stdout().lines().toList());
+            assertEquals(4, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void keepGoingRunsTheRestOfTheScript() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            int status = runScript(server, "bogus\nrecall --number 9\nrecall --number 2\n", true);
+
+            assertEquals(1, status);
+            assertTrue(stderr().contains("Error (line 1): Unknown command: bogus"), stderr());
+            assertTrue(stderr().contains("Error (line 2):"), stderr());
+            assertTrue(stdout().contains("Recalled preset 2: \"Quiet Mode\""), stdout());
+            assertEquals(2, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void getPrintsEachKeyInOrder() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 2)) {
+            int status = runScript(server, "get PRESET/NAME PRESET/CUR\n", false);
+
+            assertEquals(0, status, stderr());
+            assertEquals(List.of("PRESET/NAME=\"Quiet Mode\"", "PRESET/CUR=2"), stdout().lines().toList());
+        }
+    }
+
+    @Test
+    void keepaliveHoldsTheSessionThroughALongWait() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            server.setIdleTimeout(Duration.ofMillis(400));
+
+            int status = runScript(server, "current\nwait 1.2\nrecall Band\n", false, Duration.ofMillis(150));
+
+            assertEquals(0, status, stderr());
+            assertEquals(3, server.getCurrentPresetNumber());
+            List<String> commands = server.getReceivedCommands();
+            assertTrue(commands.stream().anyMatch(command -> command.contains(ShellSession.KEEPALIVE_KEY)),
+                commands.toString());
+        }
+    }
+
+    @Test
+    void withoutKeepaliveTheIdleSessionIsDropped() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            server.setIdleTimeout(Duration.ofMillis(400));
+
+            int status = runScript(server, "current\nwait 1.2\nrecall Band\n", false, Duration.ZERO);
+
+            assertEquals(1, status);
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+
+    @Test
+    void quitStopsReading() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            int status = runScript(server, "quit\nrecall Band\n", false);
+
+            assertEquals(0, status);
+            assertEquals(1, server.getCurrentPresetNumber());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package uk.co.hpnet.tascam.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotDiffTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SnapshotFile.Cursor snapshot(String name, Map<String, String> values) throws IOException {
+        Path file = tempDir.resolve(name);
+        SnapshotFile.write(file, "mixer:54726", 0, values);
+        return SnapshotFile.open(file);
+    }
+
+    private static List<String> diff(SnapshotFile.Cursor before, SnapshotFile.Cursor after) throws IOException {
+        List<String> lines = new ArrayList<>();
+        int count = SnapshotDiff.compare(before, after, (key, was, now) -> lines.add(key + ": " + was + " -> " + now));
+        assertEquals(lines.size(), count);
+        return lines;
+    }
+
+    @Test
+    void identicalSnapshotsHaveNoDifferences() throws IOException {
+        Map<String, String> values = Map.of("PRESET/CUR", "1", "MUTE/1", "OFF", "MUTE/2", "ON");
+
+        assertEquals(List.of(), diff(snapshot("a.snap", values), snapshot("b.snap", values)));
+    }
+
+    @Test
+    void changedAddedAndRemovedKeysAreReportedInKeyOrder() throws IOException {
+        SnapshotFile.Cursor golden = snapshot("golden.snap",
+            Map.of("MUTE/1", "OFF", "MUTE/2", "OFF", "PRESET/CUR", "1", "PRESET/NAME", "\"Default Mix\""));
+        SnapshotFile.Cursor after = snapshot("after.snap",
+            Map.of("MUTE/1", "OFF", "MUTE/3", "ON", "PRESET/CUR", "2", "PRESET/NAME", "\"Default Mix\""));
+
+        assertEquals(List.of(
+            "MUTE/2: OFF -> null",
+            "MUTE/3: null -> ON",
+            "PRESET/CUR: 1 -> 2"), diff(golden, after));
+    }
+
+    @Test
+    void emptySnapshotDiffersByEveryKey() throws IOException {
+        SnapshotFile.Cursor empty = snapshot("empty.snap", Map.of());
+        SnapshotFile.Cursor full = snapshot("full.snap", Map.of("A", "1", "B", "2"));
+
+        assertEquals(List.of("A: null -> 1", "B: null -> 2"), diff(empty, full));
+    }
+}
@@ -0,0 +1,103 @@
+package uk.co.hpnet.tascam.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<String> entries(SnapshotFile.Cursor cursor) throws IOException {
+        List<String> entries = new ArrayList<>();
+        while (cursor.next()) {
+            entries.add(cursor.key() + "=" + cursor.value());
+        }
+        return entries;
+    }
+
+    @Test
+    void entriesReadBackInKeyOrder() throws IOException {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("PRESET/CUR", "2");
+        values.put("PRESET/2/NAME", "\"Chœur – Évening\"");
+        values.put("PRESET/10/NAME", "\"Ten\"");
+        values.put("PRESET/1/NAME", "\"One\"");
+        values.put("PRESET/1/LOCK", "ON");
+        Path file = tempDir.resolve("show.snap");
+
+        SnapshotFile.write(file, "mixer:54726", 1_760_000_000_000L, values);
+        SnapshotFile.Cursor cursor = SnapshotFile.open(file);
+
+        assertEquals("mixer:54726", cursor.source());
+        assertEquals(1_760_000_000_000L, cursor.takenAtMillis());
+        assertEquals(5, cursor.count());
+        assertEquals(List.of(
+            "PRESET/1/LOCK=ON",
+            "PRESET/1/NAME=\"One\"",
+            "PRESET/10/NAME=\"Ten\"",
+            "PRESET/2/NAME=\"Chœur – Évening\"",
+            "PRESET/CUR=2"), entries(cursor));
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    void sharedKeyPrefixesAreStoredOnce() throws IOException {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int slot = 1; slot <= 50; slot++) {
+            values.put("PRESET/" + slot + "/NAME", "\"Preset " + slot + "\"");
+            values.put("PRESET/" + slot + "/LOCK", "OFF");
+        }
+        int plain = values.entrySet().stream()
+            .mapToInt(entry -> entry.getKey().length() + entry.getValue().length())
+            .sum();
+        Path file = tempDir.resolve("slots.snap");
+
+        SnapshotFile.write(file, "mixer:54726", 0, values);
+
+        assertTrue(Files.size(file) < plain, Files.size(file) + " bytes, " + plain + " unencoded");
+        assertEquals(100, entries(SnapshotFile.open(file)).size());
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = tempDir.resolve("not.snap");
+        Files.writeString(file, "host=mixer\nport=54726\n");
+
+        IOException e = assertThrows(IOException.class, () -> SnapshotFile.open(file));
+        assertTrue(e.getMessage().contains("Not a snapshot"), e.getMessage());
+    }
+
+    @Test
+    void truncatedFileFailsOnTheMissingEntry() throws IOException {
+        Path file = tempDir.resolve("cut.snap");
+        SnapshotFile.write(file, "mixer:54726", 0, Map.of("A", "1", "B", "2"));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+
+        SnapshotFile.Cursor cursor = SnapshotFile.open(file);
+        assertTrue(cursor.next());
+        IOException e = assertThrows(IOException.class, cursor::next);
+        assertTrue(e.getMessage().contains("Truncated"), e.getMessage());
+    }
+
+    @Test
+    void overlongKeyIsRefused() {
+        Path file = tempDir.resolve("long.snap");
+
+        assertThrows(IllegalArgumentException.class,
+            () -> SnapshotFile.write(file, "mixer:54726", 0, Map.of("K".repeat(256), "1")));
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,38 @@
+package uk.co.hpnet.tascam.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotKeysTest {
+
+    @Test
+    void rangesExpandAndRepeatsAreDropped() {
+        List<String> keys = SnapshotKeys.parse(List.of(
+            "# channel mutes",
+            "MUTE/{1..3}",
+            "",
+            "MUTE/2",
+            "CH/{1..2}/AUX/{1..2}"));
+
+        assertEquals(List.of("MUTE/1", "MUTE/2", "MUTE/3",
+            "CH/1/AUX/1", "CH/1/AUX/2", "CH/2/AUX/1", "CH/2/AUX/2"), keys);
+    }
+
+    @Test
+    void defaultsCoverEverySlot() {
+        List<String> keys = SnapshotKeys.defaults();
+
+        assertTrue(keys.containsAll(List.of("PRESET/CUR", "PRESET/1/NAME", "PRESET/50/CLEARED")), keys.toString());
+        assertEquals(4 + 50 * 3, keys.size());
+    }
+
+    @Test
+    void invalidLinesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SnapshotKeys.parse(List.of("MUTE/{3..1}")));
+        assertThrows(IllegalArgumentException.class, () -> SnapshotKeys.parse(List.of("MUTE/{1..999999999}")));
+        assertThrows(IllegalArgumentException.class, () -> SnapshotKeys.parse(List.of("MUTE/1 MUTE/2")));
+    }
+}
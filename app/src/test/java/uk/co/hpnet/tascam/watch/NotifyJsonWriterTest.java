@@ -0,0 +1,121 @@
+package uk.co.hpnet.tascam.watch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotifyJsonWriterTest {
+
+    private static void notify(NotifyJsonWriter writer, String line) {
+        // Padded on both sides, as a line sits in the middle of a read buffer
+        byte[] bytes = ("xx" + line + "yy").getBytes(StandardCharsets.UTF_8);
+        writer.onNotify(bytes, 2, bytes.length - 4);
+    }
+
+    private static List<String> write(String... lines) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NotifyJsonWriter writer = new NotifyJsonWriter(out, "mixer:54726", () -> 1760000000123L, 1024)) {
+            for (String line : lines) {
+                notify(writer, line);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    @Test
+    void encodesEachParameterAsAString() throws IOException {
+        assertEquals(List.of(
+            "{\"mixer\":\"mixer:54726\",\"ts\":1760000000123,\"values\":{\"MUTE/1\":\"ON\",\"LEVEL/1\":\"-12.0\"}}"
+        ), write("NOTIFY MUTE/1:ON LEVEL/1:-12.0"));
+    }
+
+    @Test
+    void quotedValuesKeepTheirSpacesAndLoseTheirQuotes() throws IOException {
+        assertEquals(List.of(
+            "{\"mixer\":\"mixer:54726\",\"ts\":1760000000123,\"values\":{\"PRESET/CUR\":\"2\",\"PRESET/NAME\":\"Café Überhall\"}}"
+        ), write("NOTIFY PRESET/CUR:2 PRESET/NAME:\"Café Überhall\""));
+    }
+
+    @Test
+    void escapesWhatJsonRequires() throws IOException {
+        assertEquals(List.of(
+            "{\"mixer\":\"mixer:54726\",\"ts\":1760000000123,\"values\":{\"NAME\":\"a\\\\b\\\"c\\u0009d\"}}"
+        ), write("NOTIFY NAME:a\\b\"c\td"));
+    }
+
+    @Test
+    void skipsTokensWithoutAValue() throws IOException {
+        assertEquals(List.of(
+            "{\"mixer\":\"mixer:54726\",\"ts\":1760000000123,\"values\":{\"MUTE/2\":\"OFF\"}}",
+            "{\"mixer\":\"mixer:54726\",\"ts\":1760000000123,\"values\":{}}"
+        ), write("NOTIFY  garbage  MUTE/2:OFF ", "NOTIFY"));
+    }
+
+    @Test
+    void burstLargerThanTheBufferArrivesWholeAndInOrder() throws Exception {
+        int lines = 50_000;
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        // Output that stalls at first, so the reader has to wait for the buffer to drain
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+                sink.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                sink.write(b, off, len);
+            }
+        };
+
+        try (NotifyJsonWriter writer = new NotifyJsonWriter(slow, "m", () -> 0L, 4096)) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            });
+            for (int i = 0; i < lines; i++) {
+                notify(writer, "NOTIFY LEVEL/" + (i % 64 + 1) + ":" + i);
+            }
+            assertEquals(lines, writer.linesWritten());
+        }
+
+        List<String> written = sink.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(lines, written.size());
+        for (int i = 0; i < lines; i += 997) {
+            assertTrue(written.get(i).endsWith(":\"" + i + "\"}}"), written.get(i));
+        }
+    }
+
+    @Test
+    void outputFailureIsReportedOnClose() {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        NotifyJsonWriter writer = new NotifyJsonWriter(broken, "m", () -> 0L, 1024);
+        notify(writer, "NOTIFY MUTE/1:ON");
+
+        IOException e = assertThrows(IOException.class, writer::close);
+        assertEquals("Broken pipe", e.getMessage());
+    }
+}
@@ -0,0 +1,66 @@
+package uk.co.hpnet.tascam.watch;
+
+import org.junit.jupiter.api.Test;
+import uk.co.hpnet.tascam.client.BusyBackoff;
+import uk.co.hpnet.tascam.client.FakeTascamServer;
+import uk.co.hpnet.tascam.client.TascamTcpClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotifyWatcherTest {
+
+    private static final Map<Integer, FakeTascamServer.TestPreset> PRESETS = Map.of(
+        1, new FakeTascamServer.TestPreset("Default Mix", false)
+    );
+
+    @Test
+    void keepalivesGoOutAndNotifiesComeBack() throws Exception {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1)) {
+            // The fake pushes this ahead of every response, so each keepalive draws one
+            server.setUnsolicitedNotify("NOTIFY MUTE/3:ON");
+            List<String> seen = new CopyOnWriteArrayList<>();
+            NotifyWatcher watcher = new NotifyWatcher("localhost", server.getPort(), "",
+                () -> new TascamTcpClient(0, 5000), BusyBackoff.NONE, Duration.ofMillis(20),
+                (bytes, offset, length) -> seen.add(new String(bytes, offset, length, StandardCharsets.UTF_8)));
+            Thread runner = Thread.ofVirtual().start(() -> {
+                try {
+                    watcher.run();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (seen.size() < 3) {
+                assertTrue(System.nanoTime() < deadline, "Only saw " + seen);
+                Thread.sleep(10);
+            }
+            watcher.close();
+            assertTrue(runner.join(Duration.ofSeconds(5)), "Watcher should stop on close");
+
+            assertEquals("NOTIFY MUTE/3:ON", seen.get(0));
+            assertTrue(server.getReceivedCommands().stream()
+                .anyMatch(command -> command.startsWith("GET " + NotifyWatcher.KEEPALIVE_KEY)),
+                server.getReceivedCommands().toString());
+        }
+    }
+
+    @Test
+    void failedFirstLoginIsReported() throws IOException {
+        try (FakeTascamServer server = new FakeTascamServer(PRESETS, 1, "secret")) {
+            NotifyWatcher watcher = new NotifyWatcher("localhost", server.getPort(), "wrong",
+                () -> new TascamTcpClient(0, 5000), BusyBackoff.NONE, Duration.ofSeconds(60),
+                (bytes, offset, length) -> { });
+
+            assertThrows(IOException.class, watcher::run);
+        }
+    }
+}